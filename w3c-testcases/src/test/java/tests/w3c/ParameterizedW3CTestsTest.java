@@ -29,8 +29,12 @@ import java.util.Collection;
 import java.util.List;
 import java.util.ListIterator;
 
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamReader;
+
 import org.apache.ws.commons.schema.XmlSchema;
 import org.apache.ws.commons.schema.XmlSchemaCollection;
+import org.apache.ws.commons.schema.XmlSchemaException;
 import org.custommonkey.xmlunit.DetailedDiff;
 import org.custommonkey.xmlunit.Diff;
 import org.custommonkey.xmlunit.XMLAssert;
@@ -75,6 +79,38 @@ public class ParameterizedW3CTestsTest extends XMLAssert {
         return col.read(inputStreamReader);
     }
 
+    public XmlSchema loadSchemaWithStax(InputStream caseStream, String basePath) throws Exception {
+        XmlSchemaCollection col = new XmlSchemaCollection();
+        col.setBaseUri(basePath);
+        XMLStreamReader reader = XMLInputFactory.newInstance()
+            .createXMLStreamReader(new InputStreamReader(caseStream, UTF8));
+        try {
+            return col.read(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * The StAX builder must give the same model as the DOM builder, and reject the same cases.
+     */
+    @Test
+    public void testStaxBuilder() throws Exception {
+        String expected;
+        try {
+            expected = write(loadSchema(currentTest.getTestCase(), currentTest.getBaseFilePathname()));
+        } catch (XmlSchemaException e) {
+            expected = null;
+        }
+        String actual;
+        try {
+            actual = write(loadSchemaWithStax(currentTest.getTestCase(), currentTest.getBaseFilePathname()));
+        } catch (XmlSchemaException e) {
+            actual = null;
+        }
+        assertEquals(currentTest.getSchemaDocumentLink(), expected, actual);
+    }
+
     @Test
     public void testRoundTrip() throws Exception {
 
@@ -111,6 +147,12 @@ public class ParameterizedW3CTestsTest extends XMLAssert {
         }
     }
 
+    private static String write(XmlSchema schema) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        schema.write(baos);
+        return new String(baos.toByteArray(), UTF8.name());
+    }
+
     private void printFailureDetail(XmlSchema schema, DetailedDiff detaileddiffs) throws Exception {
         System.err.println("Failure detail");
         System.err.println("-----");
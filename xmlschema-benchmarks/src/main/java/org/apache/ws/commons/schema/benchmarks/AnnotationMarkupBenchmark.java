@@ -0,0 +1,115 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.ws.commons.schema.benchmarks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.xml.sax.InputSource;
+
+import org.apache.ws.commons.schema.AnnotationMarkupMode;
+import org.apache.ws.commons.schema.XmlSchemaCollection;
+
+/**
+ * Measures the heap retained by schemas read with each {@link AnnotationMarkupMode}. Run it with the schema
+ * files to measure as arguments, or without arguments to measure a generated schema with much documentation.
+ */
+public final class AnnotationMarkupBenchmark {
+    private static final int COPIES = 10;
+
+    private AnnotationMarkupBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        File generated = null;
+        if (args.length == 0) {
+            generated = generate();
+            args = new String[] {generated.getPath()};
+        }
+        try {
+            for (String arg : args) {
+                String systemId = new File(arg).toURI().toString();
+                for (AnnotationMarkupMode mode : AnnotationMarkupMode.values()) {
+                    // once to load the classes
+                    read(systemId, mode);
+                    long before = usedMemory();
+                    List<XmlSchemaCollection> retained = new ArrayList<XmlSchemaCollection>();
+                    for (int i = 0; i < COPIES; i++) {
+                        retained.add(read(systemId, mode));
+                    }
+                    long retainedBytes = (usedMemory() - before) / COPIES;
+                    System.out.println(arg + ": " + mode + " retains " + retainedBytes / 1024
+                                       + " KiB per collection");
+                    retained.clear();
+                }
+            }
+        } finally {
+            if (generated != null) {
+                generated.delete();
+            }
+        }
+    }
+
+    private static XmlSchemaCollection read(String systemId, AnnotationMarkupMode mode) {
+        XmlSchemaCollection collection = new XmlSchemaCollection();
+        collection.setAnnotationMarkupMode(mode);
+        collection.read(new InputSource(systemId));
+        return collection;
+    }
+
+    private static long usedMemory() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static File generate() throws Exception {
+        File file = File.createTempFile("documented", ".xsd");
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write("<schema xmlns='http://www.w3.org/2001/XMLSchema' "
+                         + "targetNamespace='urn:documented'>\n");
+            for (int i = 0; i < 1000; i++) {
+                writer.write("<simpleType name='type" + i + "'><annotation>");
+                for (int j = 0; j < 3; j++) {
+                    writer.write("<documentation xml:lang='en'><p xmlns='http://www.w3.org/1999/xhtml'>"
+                                 + "Paragraph " + j + " of the description of type " + i + ", with some "
+                                 + "<b>emphasis</b> and a <a href='http://example.org/" + i + "'>link</a>."
+                                 + "</p></documentation>");
+                }
+                writer.write("<appinfo source='urn:vendor'><vendor:info xmlns:vendor='urn:vendor' "
+                             + "code='" + i + "'/></appinfo>");
+                writer.write("</annotation><restriction base='string'/></simpleType>\n");
+            }
+            writer.write("</schema>\n");
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+}
@@ -0,0 +1,127 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ws.commons.schema.benchmarks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.w3c.dom.Document;
+
+import org.apache.ws.commons.schema.XmlSchemaCollection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures building the object model of schemas from documents that are already parsed, so that the time
+ * is that of the builder alone. Run it with java -jar target/benchmarks.jar BuildBenchmark; by default it
+ * measures a generated schema with many small complex types and a test schema of xmlschema-core, and
+ * -p schema=&lt;file&gt; measures other schema files.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class BuildBenchmark {
+    /**
+     * The value of {@link #schema} that measures a generated schema.
+     */
+    public static final String GENERATED = "generated";
+
+    /**
+     * The schema file to build, or {@link #GENERATED}.
+     */
+    @Param({GENERATED, Resources.CORE_RESOURCES + "/woden.xsd"})
+    public String schema;
+
+    private File generated;
+    private Document document;
+    private String systemId;
+
+    @Setup
+    public void parse() throws Exception {
+        File file;
+        if (GENERATED.equals(schema)) {
+            generated = generate();
+            file = generated;
+        } else {
+            file = new File(schema);
+        }
+        systemId = file.toURI().toString();
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        document = factory.newDocumentBuilder().parse(file);
+    }
+
+    @TearDown
+    public void delete() {
+        if (generated != null) {
+            generated.delete();
+            generated = null;
+        }
+    }
+
+    @Benchmark
+    public XmlSchemaCollection build() {
+        XmlSchemaCollection collection = new XmlSchemaCollection();
+        collection.read(document, systemId);
+        return collection;
+    }
+
+    private static File generate() throws Exception {
+        File file = File.createTempFile("generated", ".xsd");
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write("<schema xmlns='http://www.w3.org/2001/XMLSchema' xmlns:tns='urn:generated' "
+                         + "targetNamespace='urn:generated'>\n");
+            for (int i = 0; i < 1000; i++) {
+                writer.write("<complexType name='type" + i + "'><annotation><documentation>Type " + i
+                             + "</documentation></annotation><sequence>"
+                             + "<element name='a' type='string'/><element name='b' type='int' minOccurs='0'/>"
+                             + "<choice><element name='c' type='string'/><any/></choice></sequence>"
+                             + "<attribute name='id' type='ID'/><anyAttribute/></complexType>\n");
+                writer.write("<simpleType name='enum" + i + "'><restriction base='string'>"
+                             + "<enumeration value='x'/><enumeration value='y'/><maxLength value='8'/>"
+                             + "</restriction></simpleType>\n");
+                writer.write("<element name='element" + i + "' type='tns:type" + i + "'/>\n");
+            }
+            writer.write("</schema>\n");
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+}
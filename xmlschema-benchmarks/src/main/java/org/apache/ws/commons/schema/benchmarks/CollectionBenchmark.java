@@ -0,0 +1,78 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ws.commons.schema.benchmarks;
+
+import org.apache.ws.commons.schema.XmlSchemaCollection;
+import org.apache.ws.commons.schema.constants.Constants;
+
+/**
+ * Measures the time to create a schema collection, and the heap that each collection retains. Collections
+ * share the schema of the built-in datatypes, so both are small.
+ */
+public final class CollectionBenchmark {
+    private static final int WARMUP = 20000;
+    private static final int ITERATIONS = 100000;
+    private static final int RETAINED = 2000;
+
+    private CollectionBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        for (int i = 0; i < WARMUP; i++) {
+            create();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            create();
+        }
+        long time = System.nanoTime() - start;
+
+        XmlSchemaCollection[] collections = new XmlSchemaCollection[RETAINED];
+        long before = usedMemory();
+        for (int i = 0; i < RETAINED; i++) {
+            collections[i] = create();
+        }
+        long retained = usedMemory() - before;
+
+        System.out.println("new collection: " + micros(time) + " us, " + retained / collections.length
+                           + " bytes retained per collection");
+    }
+
+    private static XmlSchemaCollection create() {
+        XmlSchemaCollection collection = new XmlSchemaCollection();
+        if (collection.getTypeByQName(Constants.XSD_STRING) == null) {
+            throw new IllegalStateException();
+        }
+        return collection;
+    }
+
+    private static long usedMemory() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static String micros(long nanos) {
+        return String.format("%.2f", nanos / (double)ITERATIONS / 1000);
+    }
+}
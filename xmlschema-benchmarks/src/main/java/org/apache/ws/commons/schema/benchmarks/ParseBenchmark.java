@@ -0,0 +1,82 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.ws.commons.schema.benchmarks;
+
+import java.io.File;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.xml.sax.InputSource;
+
+import org.apache.ws.commons.schema.utils.DocumentBuilderPool;
+
+/**
+ * Compares parsing schema documents with a new factory and builder for each document, as schema
+ * collections used to, with parsing them with a {@link DocumentBuilderPool}. Run it with the schema files
+ * to measure as arguments, or without arguments to measure some of the test schemas of xmlschema-core.
+ */
+public final class ParseBenchmark {
+    private static final int WARMUP = 500;
+    private static final int ITERATIONS = 2000;
+
+    private ParseBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            args = new String[] {
+                Resources.core("importAux.xsd"), Resources.core("importBase.xsd"),
+                Resources.core("woden.xsd")
+            };
+        }
+        DocumentBuilderPool pool = new DocumentBuilderPool();
+        for (String arg : args) {
+            String systemId = new File(arg).toURI().toString();
+            for (int i = 0; i < WARMUP; i++) {
+                parseWithNewFactory(systemId);
+                pool.parse(new InputSource(systemId));
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                parseWithNewFactory(systemId);
+            }
+            long newFactoryTime = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                pool.parse(new InputSource(systemId));
+            }
+            long poolTime = System.nanoTime() - start;
+
+            System.out.println(arg + ": new factory " + micros(newFactoryTime) + " us, pool "
+                               + micros(poolTime) + " us per document");
+        }
+    }
+
+    private static void parseWithNewFactory(String systemId) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        factory.newDocumentBuilder().parse(new InputSource(systemId));
+    }
+
+    private static long micros(long nanos) {
+        return nanos / ITERATIONS / 1000;
+    }
+}
@@ -0,0 +1,53 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ws.commons.schema.benchmarks;
+
+/**
+ * Locations of the schemas that the benchmarks measure when they are given none, relative to the
+ * xmlschema-benchmarks directory.
+ */
+final class Resources {
+    /**
+     * Location of the test resources of xmlschema-core.
+     */
+    static final String CORE_RESOURCES = "../xmlschema-core/src/test/resources";
+
+    /**
+     * Location of the test resources of xmlschema-walker.
+     */
+    static final String WALKER_RESOURCES = "../xmlschema-walker/src/test/resources";
+
+    private Resources() {
+    }
+
+    /**
+     * Returns the location of a test resource of xmlschema-core.
+     */
+    static String core(String name) {
+        return CORE_RESOURCES + "/" + name;
+    }
+
+    /**
+     * Returns the location of a test resource of xmlschema-walker.
+     */
+    static String walker(String name) {
+        return WALKER_RESOURCES + "/" + name;
+    }
+}
@@ -0,0 +1,95 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ws.commons.schema.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+
+import org.xml.sax.InputSource;
+
+import org.apache.ws.commons.schema.XmlSchemaCollection;
+import org.apache.ws.commons.schema.XmlSchemaSnapshot;
+
+/**
+ * Compares reading a schema from its documents with restoring it from a snapshot. Run it with the schema
+ * files to measure as arguments, or without arguments to measure some of the test schemas of xmlschema-core.
+ */
+public final class SnapshotBenchmark {
+    private static final int WARMUP = 20;
+    private static final int ITERATIONS = 100;
+
+    private SnapshotBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            args = new String[] {
+                Resources.core("importBase.xsd"), Resources.core("allSimpleTypes.xsd"),
+                Resources.core("redefine-include/redefine-import1.xsd"), Resources.core("woden.xsd")
+            };
+        }
+        for (String arg : args) {
+            String systemId = new File(arg).toURI().toString();
+            XmlSchemaCollection collection = read(systemId);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            XmlSchemaSnapshot.write(collection, out);
+            byte[] snapshot = out.toByteArray();
+
+            for (int i = 0; i < WARMUP; i++) {
+                read(systemId);
+                restore(snapshot, true);
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                read(systemId);
+            }
+            long readTime = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                restore(snapshot, false);
+            }
+            long restoreTime = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                restore(snapshot, true);
+            }
+            long verifiedTime = System.nanoTime() - start;
+
+            System.out.println(arg + ": snapshot " + snapshot.length + " bytes, read "
+                               + micros(readTime) + " us, restore " + micros(restoreTime)
+                               + " us, restore and verify " + micros(verifiedTime) + " us");
+        }
+    }
+
+    private static XmlSchemaCollection read(String systemId) {
+        XmlSchemaCollection collection = new XmlSchemaCollection();
+        collection.read(new InputSource(systemId));
+        return collection;
+    }
+
+    private static XmlSchemaCollection restore(byte[] snapshot, boolean verify) throws Exception {
+        return XmlSchemaSnapshot.read(new ByteArrayInputStream(snapshot), verify);
+    }
+
+    private static long micros(long nanos) {
+        return nanos / ITERATIONS / 1000;
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.ws.commons.schema.benchmarks;
+
+import java.io.File;
+import java.io.StringWriter;
+
+import org.xml.sax.InputSource;
+
+import org.apache.ws.commons.schema.XmlSchema;
+import org.apache.ws.commons.schema.XmlSchemaCollection;
+import org.apache.ws.commons.schema.XmlSchemaSerializerService;
+import org.apache.ws.commons.schema.XmlSchemaStreamSerializer;
+
+/**
+ * Compares writing a schema through a DOM document and a transformer with the streaming serializer, and
+ * with the cached renderings of {@link XmlSchemaSerializerService}, which only caches frozen schemas. Run it
+ * with the schema files to measure as arguments, or without arguments to measure some of the test schemas
+ * of xmlschema-core.
+ */
+public final class StreamSerializerBenchmark {
+    private static final int WARMUP = 200;
+    private static final int ITERATIONS = 1000;
+
+    private StreamSerializerBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            args = new String[] {
+                Resources.core("importBase.xsd"), Resources.core("allSimpleTypes.xsd"),
+                Resources.core("woden.xsd")
+            };
+        }
+        for (String arg : args) {
+            String systemId = new File(arg).toURI().toString();
+            XmlSchemaCollection collection = new XmlSchemaCollection();
+            XmlSchema schema = collection.read(new InputSource(systemId));
+            collection.freeze();
+            XmlSchemaStreamSerializer serializer = new XmlSchemaStreamSerializer();
+            serializer.setExtReg(collection.getExtReg());
+            XmlSchemaSerializerService service = new XmlSchemaSerializerService(true);
+
+            for (int i = 0; i < WARMUP; i++) {
+                writeDom(schema);
+                writeStream(schema, serializer);
+                service.render(schema, null);
+            }
+            long start = System.nanoTime();
+            int domLength = 0;
+            for (int i = 0; i < ITERATIONS; i++) {
+                domLength = writeDom(schema);
+            }
+            long domTime = System.nanoTime() - start;
+            start = System.nanoTime();
+            int streamLength = 0;
+            for (int i = 0; i < ITERATIONS; i++) {
+                streamLength = writeStream(schema, serializer);
+            }
+            long streamTime = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                service.render(schema, null);
+            }
+            long cachedTime = System.nanoTime() - start;
+
+            System.out.println(arg + ": DOM " + micros(domTime) + " us (" + domLength + " chars), stream "
+                               + micros(streamTime) + " us (" + streamLength + " chars), cached "
+                               + (cachedTime / ITERATIONS) + " ns");
+        }
+    }
+
+    private static int writeDom(XmlSchema schema) {
+        StringWriter writer = new StringWriter();
+        schema.write(writer);
+        return writer.getBuffer().length();
+    }
+
+    private static int writeStream(XmlSchema schema, XmlSchemaStreamSerializer serializer) throws Exception {
+        StringWriter writer = new StringWriter();
+        serializer.serialize(schema, writer, null);
+        return writer.getBuffer().length();
+    }
+
+    private static long micros(long nanos) {
+        return nanos / ITERATIONS / 1000;
+    }
+}
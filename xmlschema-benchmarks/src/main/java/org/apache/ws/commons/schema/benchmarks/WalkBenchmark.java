@@ -0,0 +1,92 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ws.commons.schema.benchmarks;
+
+import java.io.File;
+import java.io.FileReader;
+
+import javax.xml.namespace.QName;
+import javax.xml.transform.stream.StreamSource;
+
+import org.apache.ws.commons.schema.XmlSchemaCollection;
+import org.apache.ws.commons.schema.XmlSchemaElement;
+import org.apache.ws.commons.schema.walker.XmlSchemaScopeCache;
+import org.apache.ws.commons.schema.walker.XmlSchemaWalker;
+
+/**
+ * Compares repeated walks by new walkers that each compute the type scopes
+ * again, as walkers used to, with walks by new walkers that share an
+ * {@link XmlSchemaScopeCache}. Run it optionally with a schema file and the
+ * namespace and local name of the root element as arguments; by default it
+ * walks a test schema of xmlschema-walker.
+ */
+public final class WalkBenchmark {
+    private static final int WARMUP = 2000;
+    private static final int ITERATIONS = 10000;
+    private static final int ROUNDS = 20;
+
+    private WalkBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            args = new String[] {
+                Resources.walker("test_schema.xsd"), "http://avro.apache.org/AvroTest", "root"
+            };
+        }
+        final XmlSchemaCollection collection = new XmlSchemaCollection();
+        final File file = new File(args[0]);
+        final FileReader reader = new FileReader(file);
+        try {
+            collection.read(new StreamSource(reader, file.getAbsolutePath()));
+        } finally {
+            reader.close();
+        }
+        final XmlSchemaElement root = collection.getElementByQName(new QName(args[1], args[2]));
+        final XmlSchemaScopeCache cache = new XmlSchemaScopeCache(collection);
+
+        for (int i = 0; i < WARMUP; i++) {
+            new XmlSchemaWalker(collection).walk(root);
+            new XmlSchemaWalker(cache).walk(root);
+        }
+        // alternate the two kinds of walks, so that both see the same machine load
+        long ownTime = 0;
+        long sharedTime = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS / ROUNDS; i++) {
+                new XmlSchemaWalker(collection).walk(root);
+            }
+            ownTime += System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS / ROUNDS; i++) {
+                new XmlSchemaWalker(cache).walk(root);
+            }
+            sharedTime += System.nanoTime() - start;
+        }
+
+        System.out.println(args[0] + ": own scopes " + micros(ownTime) + " us, shared scopes "
+                           + micros(sharedTime) + " us per walk");
+    }
+
+    private static long micros(long nanos) {
+        return nanos / ITERATIONS / 1000;
+    }
+}
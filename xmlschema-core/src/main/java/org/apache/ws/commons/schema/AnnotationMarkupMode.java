@@ -0,0 +1,43 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ws.commons.schema;
+
+/**
+ * Selects how a schema builder keeps the content of appinfo and documentation elements, see
+ * {@link XmlSchemaCollection#setAnnotationMarkupMode(AnnotationMarkupMode)}.
+ */
+public enum AnnotationMarkupMode {
+    /**
+     * Copy the markup into the object model as each annotation is built. This is the default.
+     */
+    EAGER,
+    /**
+     * Copy the markup the first time it is read from {@link XmlSchemaAppInfo#getMarkup()} or
+     * {@link XmlSchemaDocumentation#getMarkup()}. Until then the object model refers to the source DOM
+     * document, which must not be modified, nor read by other code unless it holds the lock of the document.
+     * Schemas read from a stream have their markup copied eagerly.
+     */
+    LAZY,
+    /**
+     * Do not keep the markup. The annotation items are still built with their source and language, but
+     * their markup is null.
+     */
+    DROP;
+}
@@ -45,6 +45,20 @@ class DocumentFragmentNodeList implements NodeList {
         }
     }
 
+    /**
+     * Construct a list of the children of a fragment that was built by the caller. The children are not
+     * copied.
+     *
+     * @param fragment the fragment that owns the nodes.
+     */
+    DocumentFragmentNodeList(DocumentFragment fragment) {
+        this.fragment = fragment;
+        nodes = new ArrayList<Node>();
+        for (Node child = fragment.getFirstChild(); child != null; child = child.getNextSibling()) {
+            nodes.add(child);
+        }
+    }
+
     /**
      * Create a list of the children of a given node that are elements with a specified qualified name.
      * 
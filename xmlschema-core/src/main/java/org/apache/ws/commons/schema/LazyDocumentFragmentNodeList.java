@@ -0,0 +1,71 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ws.commons.schema;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Node list of the children of a node, which are copied the first time the list is read. A DOM implementation
+ * need not support concurrent reads, so the copy is made under the lock of the document that owns the node;
+ * lists copied from the same document wait for each other. Other code must not read or modify that document
+ * until every list has been copied.
+ */
+class LazyDocumentFragmentNodeList implements NodeList {
+    private final Object lock;
+    private Node parentNode;
+    private volatile NodeList nodes;
+
+    /**
+     * Construct a list of the children of a given node.
+     *
+     * @param parentNode node from which to copy children when the list is first read. It must not be
+     *            modified until then.
+     */
+    LazyDocumentFragmentNodeList(Node parentNode) {
+        Document document = parentNode.getOwnerDocument();
+        this.lock = document == null ? parentNode : document;
+        this.parentNode = parentNode;
+    }
+
+    public int getLength() {
+        return getNodes().getLength();
+    }
+
+    public Node item(int index) {
+        return getNodes().item(index);
+    }
+
+    private NodeList getNodes() {
+        NodeList result = nodes;
+        if (result == null) {
+            synchronized (lock) {
+                result = nodes;
+                if (result == null) {
+                    result = new DocumentFragmentNodeList(parentNode);
+                    nodes = result;
+                    parentNode = null;
+                }
+            }
+        }
+        return result;
+    }
+}
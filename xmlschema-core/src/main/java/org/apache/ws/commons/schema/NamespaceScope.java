@@ -0,0 +1,140 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ws.commons.schema;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.xml.namespace.NamespaceContext;
+
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import org.apache.ws.commons.schema.constants.Constants;
+
+/**
+ * The namespace declarations of an element, chained to those of its ancestors. Prefixes that are not
+ * declared by any of the elements are looked up in an outer namespace context, if there is one. Only the
+ * elements that declare namespaces need a scope of their own, so the chain is short.
+ */
+final class NamespaceScope implements NamespaceContext {
+    /**
+     * The scope outside of any element, where no prefix is declared.
+     */
+    static final NamespaceScope NONE = new NamespaceScope(null, null);
+
+    final NamespaceScope parent;
+    private final NamespaceContext outer;
+    String[] prefixes;
+    String[] uris;
+
+    NamespaceScope(NamespaceScope parent, NamespaceContext outer) {
+        this.parent = parent;
+        this.outer = outer;
+    }
+
+    /**
+     * Get the scope of a DOM node.
+     *
+     * @param node the node, which is an element or a document.
+     * @param enclosing the scope of the parent of the node.
+     * @return the enclosing scope if the node does not declare any namespace, a new scope otherwise.
+     */
+    static NamespaceScope of(Node node, NamespaceScope enclosing) {
+        NamedNodeMap attributes = node.getAttributes();
+        int count = 0;
+        for (int i = 0; attributes != null && i < attributes.getLength(); i++) {
+            if (Constants.XMLNS_ATTRIBUTE_NS_URI.equals(attributes.item(i).getNamespaceURI())) {
+                count++;
+            }
+        }
+        if (count == 0) {
+            return enclosing;
+        }
+        NamespaceScope scope = new NamespaceScope(enclosing, null);
+        scope.prefixes = new String[count];
+        scope.uris = new String[count];
+        count = 0;
+        for (int i = 0; i < attributes.getLength(); i++) {
+            Node attr = attributes.item(i);
+            if (Constants.XMLNS_ATTRIBUTE_NS_URI.equals(attr.getNamespaceURI())) {
+                String localName = attr.getLocalName();
+                scope.prefixes[count] = Constants.XMLNS_ATTRIBUTE.equals(localName)
+                    ? Constants.DEFAULT_NS_PREFIX : localName;
+                scope.uris[count] = attr.getNodeValue();
+                count++;
+            }
+        }
+        return scope;
+    }
+
+    public String getNamespaceURI(String prefix) {
+        if (prefix == null) {
+            throw new IllegalArgumentException("The prefix must not be null.");
+        }
+        if (Constants.XML_NS_PREFIX.equals(prefix)) {
+            return Constants.XML_NS_URI;
+        }
+        if (Constants.XMLNS_ATTRIBUTE.equals(prefix)) {
+            return Constants.XMLNS_ATTRIBUTE_NS_URI;
+        }
+        for (NamespaceScope s = this; s != null; s = s.parent) {
+            for (int i = 0; s.prefixes != null && i < s.prefixes.length; i++) {
+                if (prefix.equals(s.prefixes[i])) {
+                    return s.uris[i];
+                }
+            }
+            if (s.outer != null) {
+                String uri = s.outer.getNamespaceURI(prefix);
+                return uri == null ? Constants.NULL_NS_URI : uri;
+            }
+        }
+        return Constants.NULL_NS_URI;
+    }
+
+    public String getPrefix(String namespaceURI) {
+        Iterator<String> iterator = getPrefixes(namespaceURI);
+        return iterator.hasNext() ? iterator.next() : null;
+    }
+
+    public Iterator<String> getPrefixes(String namespaceURI) {
+        if (namespaceURI == null) {
+            throw new IllegalArgumentException("The namespace URI must not be null.");
+        }
+        List<String> result = new ArrayList<String>();
+        for (NamespaceScope s = this; s != null; s = s.parent) {
+            for (int i = 0; s.prefixes != null && i < s.prefixes.length; i++) {
+                String prefix = s.prefixes[i];
+                if (!result.contains(prefix) && namespaceURI.equals(getNamespaceURI(prefix))) {
+                    result.add(prefix);
+                }
+            }
+            if (s.outer != null) {
+                String prefix = s.outer.getPrefix(namespaceURI);
+                if (prefix != null && !result.contains(prefix)
+                    && namespaceURI.equals(getNamespaceURI(prefix))) {
+                    result.add(prefix);
+                }
+            }
+        }
+        return result.iterator();
+    }
+}
@@ -21,14 +21,17 @@ package org.apache.ws.commons.schema;
 
 import java.lang.ref.SoftReference;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.Vector;
+import java.util.concurrent.Executor;
 
 import javax.xml.namespace.NamespaceContext;
 import javax.xml.namespace.QName;
@@ -44,6 +47,9 @@ import org.w3c.dom.NodeList;
 import org.xml.sax.InputSource;
 
 import org.apache.ws.commons.schema.XmlSchemaCollection.SchemaKey;
+import org.apache.ws.commons.schema.cache.SchemaCache;
+import org.apache.ws.commons.schema.cache.SchemaCacheKey;
+import org.apache.ws.commons.schema.cache.SchemaLoader;
 import org.apache.ws.commons.schema.constants.Constants;
 import org.apache.ws.commons.schema.extensions.ExtensionRegistry;
 import org.apache.ws.commons.schema.utils.DOMUtil;
@@ -61,14 +67,17 @@ import org.apache.ws.commons.schema.utils.XDOMUtil;
  * be thread-safe. This cache should only be used, then cleared, by callers aware of its existence. It is VERY
  * important that users of this cache call clearCache() after they are done. Usage of the cache is controlled
  * by calling initCache() which will initialize resolvedSchemas to non-null. Clearing of cache is done by
- * calling clearCache() which will clear and nullify resolvedSchemas
+ * calling clearCache() which will clear and nullify resolvedSchemas.
+ * <br/>
+ * A {@link SchemaCache} registered with the collection takes precedence over this per-thread cache. It can
+ * be shared between threads and collections, and does not need to be initialized and cleared by each thread.
  */
 public class SchemaBuilder {
 
     // default access for unit tests.
     static ThreadLocal<Map<String, SoftReference<XmlSchema>>> resolvedSchemas =
         new ThreadLocal<Map<String, SoftReference<XmlSchema>>>();
-    private static final Set<String> RESERVED_ATTRIBUTES = new HashSet<String>();
+    static final Set<String> RESERVED_ATTRIBUTES = new HashSet<String>();
     private static final String[] RESERVED_ATTRIBUTES_LIST = {
         "name", "type", "default", "fixed", "form", "id", "use", "ref"
     };
@@ -77,12 +86,33 @@ public class SchemaBuilder {
     XmlSchema currentSchema;
     DocumentBuilderFactory docFac;
 
-    private final TargetNamespaceValidator currentValidator;
+    final TargetNamespaceValidator currentValidator;
+    /**
+     * How the markup of annotations is kept, from the collection.
+     */
+    final AnnotationMarkupMode markupMode;
     /**
      * The extension registry to be used while building the schema model
      */
     private ExtensionRegistry extReg;
 
+    /**
+     * The nodes from the document down to the node whose namespace scope was looked up last, and their
+     * scopes. The schema is mostly visited in document order, so that a lookup only adds or removes the
+     * few nodes between the previous node and the current one.
+     */
+    private Node[] scopeNodes = new Node[16];
+    private NamespaceScope[] scopes = new NamespaceScope[16];
+    private int scopeDepth;
+    /**
+     * The position of each node of {@link #scopeNodes}.
+     */
+    private final Map<Node, Integer> scopeDepths = new IdentityHashMap<Node, Integer>();
+    /**
+     * Buffer for the nodes that are added by a lookup.
+     */
+    private Node[] scopePath = new Node[16];
+
     static {
         for (String s : RESERVED_ATTRIBUTES_LIST) {
             RESERVED_ATTRIBUTES.add(s);
@@ -96,8 +126,10 @@ public class SchemaBuilder {
      * @param validator
      */
     SchemaBuilder(XmlSchemaCollection collection, TargetNamespaceValidator validator) {
+        collection.checkNotFrozen();
         this.collection = collection;
         this.currentValidator = validator;
+        this.markupMode = collection.getAnnotationMarkupMode();
 
         if (collection.getExtReg() != null) {
             this.extReg = collection.getExtReg();
@@ -108,7 +140,10 @@ public class SchemaBuilder {
 
     /**
      * Remove any entries from the cache for the current thread. Entries for other threads are not altered.
+     *
+     * @deprecated register a {@link SchemaCache} with the collection instead.
      */
+    @Deprecated
     public static void clearCache() {
         Map<String, SoftReference<XmlSchema>> threadResolvedSchemas = resolvedSchemas.get();
 
@@ -124,7 +159,10 @@ public class SchemaBuilder {
      * each one must call this method at some point prior to attempting to resolve the first schema, or the
      * cache will not be used on that thread. IMPORTANT: The thread MUST call clearCache() when it is done
      * with the schemas or a large amount of memory may remain in-use.
+     *
+     * @deprecated register a {@link SchemaCache} with the collection instead.
      */
+    @Deprecated
     public static void initCache() {
 
         Map<String, SoftReference<XmlSchema>> threadResolvedSchemas = resolvedSchemas.get();
@@ -160,50 +198,64 @@ public class SchemaBuilder {
     }
 
     XmlSchemaDerivationMethod getDerivation(Element el, String attrName) {
-        if (el.hasAttribute(attrName) && !el.getAttribute(attrName).equals("")) {
+        return derivationValueOf(el.hasAttribute(attrName) ? el.getAttribute(attrName) : null);
+    }
+
+    String getEnumString(Element el, String attrName) {
+        return enumValueOf(el.hasAttribute(attrName) ? el.getAttribute(attrName) : null);
+    }
+
+    XmlSchemaForm getFormDefault(Element el, String attrName) {
+        return formValueOf(el.getAttributeNode(attrName) != null ? el.getAttribute(attrName) : null);
+    }
+
+    long getMaxOccurs(Element el) {
+        return occursValueOf(el.getAttributeNode("maxOccurs") != null ? el.getAttribute("maxOccurs") : null);
+    }
+
+    long getMinOccurs(Element el) {
+        return occursValueOf(el.getAttributeNode("minOccurs") != null ? el.getAttribute("minOccurs") : null);
+    }
+
+    /**
+     * Parse a block or final attribute value.
+     *
+     * @param value the attribute value, or null if the attribute is absent.
+     * @return the derivation method.
+     */
+    static XmlSchemaDerivationMethod derivationValueOf(String value) {
+        if (value != null && !value.equals("")) {
             // #all | List of (extension | restriction | substitution)
-            String derivationMethod = el.getAttribute(attrName).trim();
+            String derivationMethod = value.trim();
             return XmlSchemaDerivationMethod.schemaValueOf(derivationMethod);
         }
         return XmlSchemaDerivationMethod.NONE;
     }
 
-    String getEnumString(Element el, String attrName) {
-        if (el.hasAttribute(attrName)) {
-            return el.getAttribute(attrName).trim();
+    static String enumValueOf(String value) {
+        if (value != null) {
+            return value.trim();
         }
         return "none"; // local convention for empty value.
     }
 
-    XmlSchemaForm getFormDefault(Element el, String attrName) {
-        if (el.getAttributeNode(attrName) != null) {
-            String value = el.getAttribute(attrName);
+    static XmlSchemaForm formValueOf(String value) {
+        if (value != null) {
             return XmlSchemaForm.schemaValueOf(value);
         } else {
             return XmlSchemaForm.UNQUALIFIED;
         }
     }
 
-    long getMaxOccurs(Element el) {
-        try {
-            if (el.getAttributeNode("maxOccurs") != null) {
-                String value = el.getAttribute("maxOccurs");
-                if ("unbounded".equals(value)) {
-                    return Long.MAX_VALUE;
-                } else {
-                    return Long.parseLong(value);
-                }
-            }
-            return 1;
-        } catch (java.lang.NumberFormatException e) {
-            return 1;
-        }
-    }
-
-    long getMinOccurs(Element el) {
+    /**
+     * Parse a minOccurs or maxOccurs attribute value.
+     *
+     * @param value the attribute value, or null if the attribute is absent.
+     * @return the number of occurrences.
+     */
+    static long occursValueOf(String value) {
         try {
-            if (el.getAttributeNode("minOccurs") != null) {
-                String value = el.getAttribute("minOccurs");
+            if (value != null) {
                 if ("unbounded".equals(value)) {
                     return Long.MAX_VALUE;
                 } else {
@@ -259,14 +311,13 @@ public class SchemaBuilder {
      */
     XmlSchemaAppInfo handleAppInfo(Element content) {
         XmlSchemaAppInfo appInfo = new XmlSchemaAppInfo();
-        NodeList markup = new DocumentFragmentNodeList(content);
 
-        if (!content.hasAttribute("source") && markup.getLength() == 0) {
+        if (!content.hasAttribute("source") && content.getFirstChild() == null) {
             return null;
         }
 
         appInfo.setSource(getAttribute(content, "source"));
-        appInfo.setMarkup(markup);
+        appInfo.setMarkup(getMarkup(content));
         return appInfo;
     }
 
@@ -297,31 +348,45 @@ public class SchemaBuilder {
             // String elPrefix = el.getPrefix() == null ? "" :
             // el.getPrefix();
             // if(elPrefix.equals(schema.schema_ns_prefix)) {
-            if (el.getLocalName().equals("sequence")) {
+            switch (SchemaConstruct.forElement(el)) {
+            case SEQUENCE:
                 ct.setParticle(handleSequence(schema, el, schemaEl));
-            } else if (el.getLocalName().equals("choice")) {
+                break;
+            case CHOICE:
                 ct.setParticle(handleChoice(schema, el, schemaEl));
-            } else if (el.getLocalName().equals("all")) {
+                break;
+            case ALL:
                 ct.setParticle(handleAll(schema, el, schemaEl));
-            } else if (el.getLocalName().equals("attribute")) {
+                break;
+            case ATTRIBUTE:
                 ct.getAttributes().add(handleAttribute(schema, el, schemaEl));
-            } else if (el.getLocalName().equals("attributeGroup")) {
+                break;
+            case ATTRIBUTE_GROUP:
                 ct.getAttributes().add(handleAttributeGroupRef(schema, el));
-            } else if (el.getLocalName().equals("group")) {
+                break;
+            case GROUP: {
                 XmlSchemaGroupRef group = handleGroupRef(schema, el, schemaEl);
                 if (group.getParticle() == null) {
                     ct.setParticle(group);
                 } else {
                     ct.setParticle(group.getParticle());
                 }
-            } else if (el.getLocalName().equals("simpleContent")) {
+                break;
+            }
+            case SIMPLE_CONTENT:
                 ct.setContentModel(handleSimpleContent(schema, el, schemaEl));
-            } else if (el.getLocalName().equals("complexContent")) {
+                break;
+            case COMPLEX_CONTENT:
                 ct.setContentModel(handleComplexContent(schema, el, schemaEl));
-            } else if (el.getLocalName().equals("annotation")) {
+                break;
+            case ANNOTATION:
                 ct.setAnnotation(handleAnnotation(el));
-            } else if (el.getLocalName().equals("anyAttribute")) {
+                break;
+            case ANY_ATTRIBUTE:
                 ct.setAnyAttribute(handleAnyAttribute(schema, el, schemaEl));
+                break;
+            default:
+                break;
             }
             // }
         }
@@ -369,7 +434,7 @@ public class SchemaBuilder {
 
         documentation.setSource(getAttribute(content, "source"));
         documentation.setLanguage(getAttribute(content, "xml:lang"));
-        documentation.setMarkup(new DocumentFragmentNodeList(content));
+        documentation.setMarkup(getMarkup(content));
 
         return documentation;
     }
@@ -515,31 +580,13 @@ public class SchemaBuilder {
         final String uri = schemaImport.namespace;
         schemaImport.schemaLocation = importEl.getAttribute("schemaLocation");
 
-        TargetNamespaceValidator validator = new TargetNamespaceValidator() {
-            public void validate(XmlSchema pSchema) {
-                final boolean valid;
-                if (isEmpty(uri)) {
-                    valid = isEmpty(pSchema.getSyntacticalTargetNamespace());
-                } else {
-                    valid = pSchema.getSyntacticalTargetNamespace().equals(uri);
-                }
-                if (!valid) {
-                    throw new XmlSchemaException("An imported schema was announced to have the namespace "
-                                                 + uri + ", but has the namespace "
-                                                 + pSchema.getSyntacticalTargetNamespace());
-                }
-            }
-
-            private boolean isEmpty(String pValue) {
-                return pValue == null || Constants.NULL_NS_URI.equals(pValue);
-            }
-        };
+        TargetNamespaceValidator validator = newImportValidator(uri);
         if (schema.getSourceURI() != null) {
-            schemaImport.schema =
-                resolveXmlSchema(uri, schemaImport.schemaLocation, schema.getSourceURI(), validator);
+            schemaImport.setSchema(
+                resolveXmlSchema(uri, schemaImport.schemaLocation, schema.getSourceURI(), validator));
         } else {
-            schemaImport.schema =
-                resolveXmlSchema(schemaImport.namespace, schemaImport.schemaLocation, validator);
+            schemaImport.setSchema(
+                resolveXmlSchema(schemaImport.namespace, schemaImport.schemaLocation, validator));
         }
         return schemaImport;
     }
@@ -570,12 +617,12 @@ public class SchemaBuilder {
 
         final TargetNamespaceValidator validator = newIncludeValidator(schema);
         if (schema.getSourceURI() != null) {
-            include.schema =
+            include.setSchema(
                 resolveXmlSchema(schema.getLogicalTargetNamespace(), include.schemaLocation,
-                                 schema.getSourceURI(), validator);
+                                 schema.getSourceURI(), validator));
         } else {
-            include.schema =
-                resolveXmlSchema(schema.getLogicalTargetNamespace(), include.schemaLocation, validator);
+            include.setSchema(
+                resolveXmlSchema(schema.getLogicalTargetNamespace(), include.schemaLocation, validator));
         }
 
         // process extra attributes and elements
@@ -640,6 +687,27 @@ public class SchemaBuilder {
      * @param systemId
      */
     XmlSchema handleXmlSchemaElement(Element schemaEl, String systemId) {
+        // the schemas this one refers to are read into the collection while it is built
+        SchemaPrefetcher prefetcher = null;
+        Executor executor = collection.getPrefetchExecutor();
+        if (executor != null && collection.prefetcher == null) {
+            prefetcher = new SchemaPrefetcher(collection, executor);
+            prefetcher.prefetchReferences(schemaEl, systemId, null);
+            collection.prefetcher = prefetcher;
+        }
+        currentSchema.setBuilding(true);
+        try {
+            return buildXmlSchemaElement(schemaEl, systemId);
+        } finally {
+            currentSchema.setBuilding(false);
+            if (prefetcher != null) {
+                collection.prefetcher = null;
+                prefetcher.finish();
+            }
+        }
+    }
+
+    private XmlSchema buildXmlSchemaElement(Element schemaEl, String systemId) {
         // get all the attributes along with the namespace declns
         currentSchema.setNamespaceContext(NodeNamespaceContext.getNamespaceContext(schemaEl));
         setNamespaceAttributes(currentSchema, schemaEl);
@@ -671,18 +739,74 @@ public class SchemaBuilder {
      * @param targetNamespace
      * @param schemaLocation
      */
-    XmlSchema resolveXmlSchema(String targetNamespace, String schemaLocation, String baseUri,
-                               TargetNamespaceValidator validator) {
+    XmlSchema resolveXmlSchema(final String targetNamespace, final String schemaLocation,
+                               final String baseUri, final TargetNamespaceValidator validator) {
+
+        SchemaCache schemaCache = collection.getSchemaCache();
+        if (schemaCache != null) {
+            SchemaCacheKey key = new SchemaCacheKey(targetNamespace, schemaLocation, baseUri);
+            SchemaLoader loader = new SchemaLoader() {
+                public XmlSchema load() {
+                    return loadXmlSchema(targetNamespace, schemaLocation, baseUri, validator);
+                }
+            };
+            XmlSchema schema = schemaCache.get(key, loader);
+            if (schema != null && schema.isReplaced()) {
+                // cached before the document was read again
+                schemaCache.invalidate(key);
+                schema = schemaCache.get(key, loader);
+            }
+            if (schema != null) {
+                registerSchema(schema);
+            }
+            return schema;
+        }
 
         if (getCachedSchema(targetNamespace, schemaLocation, baseUri) != null) {
             return getCachedSchema(targetNamespace, schemaLocation, baseUri);
         }
+        return loadXmlSchema(targetNamespace, schemaLocation, baseUri, validator);
+    }
+
+    /**
+     * Register a schema that another collection put in the cache, and the schemas it refers to, with this
+     * collection, so that its lookups find them. Their parent is not changed, so that freezing this
+     * collection leaves them to the collection that read them.
+     */
+    private void registerSchema(XmlSchema schema) {
+        if (schema.getParent() == collection) {
+            return;
+        }
+        SchemaKey key = new SchemaKey(schema.getLogicalTargetNamespace(), schema.getSourceURI());
+        if (collection.containsSchema(key)) {
+            return;
+        }
+        collection.addSchema(key, schema);
+        for (XmlSchemaExternal external : schema.getExternals()) {
+            if (external.getSchema() != null) {
+                registerSchema(external.getSchema());
+            }
+        }
+    }
 
+    /**
+     * Resolve a schema without consulting a cache first.
+     */
+    private XmlSchema loadXmlSchema(String targetNamespace, String schemaLocation, String baseUri,
+                                    TargetNamespaceValidator validator) {
         // use the entity resolver provided if the schema location is present
         // null
         if (schemaLocation != null && !"".equals(schemaLocation)) {
-            InputSource source =
-                collection.getSchemaResolver().resolveEntity(targetNamespace, schemaLocation, baseUri);
+            InputSource source = null;
+            SchemaPrefetcher prefetcher = collection.prefetcher;
+            // deduplication reads the stream of the source, which a prefetched source has not
+            if (prefetcher != null && !collection.isDeduplicating()) {
+                source = prefetcher.getResolvedSource(targetNamespace, schemaLocation, baseUri);
+            }
+            if (source == null) {
+                source = collection.getSchemaResolver()
+                    .resolveEntity(targetNamespace, schemaLocation, baseUri);
+            }
 
             // the entity resolver was unable to resolve this!!
             if (source == null) {
@@ -703,7 +827,18 @@ public class SchemaBuilder {
             if (collection.check(key)) {
                 collection.push(key);
                 try {
-                    XmlSchema readSchema = collection.read(source, validator);
+                    String digest = null;
+                    if (collection.isDeduplicating()) {
+                        digest = collection.digest(source);
+                        XmlSchema copy = collection.getDeduplicatedSchema(key, digest);
+                        if (copy != null) {
+                            return copy;
+                        }
+                    }
+                    XmlSchema readSchema = readExternalSchema(source, validator);
+                    if (digest != null) {
+                        collection.putDeduplicatedSchema(key, digest, readSchema);
+                    }
                     putCachedSchema(targetNamespace, schemaLocation, baseUri, readSchema);
                     return readSchema;
                 } finally {
@@ -733,6 +868,17 @@ public class SchemaBuilder {
 
     }
 
+    /**
+     * Read a schema document referenced by an import, include or redefine into the collection.
+     *
+     * @param source the resolved document.
+     * @param validator checks the target namespace of the referenced schema.
+     * @return the schema.
+     */
+    XmlSchema readExternalSchema(InputSource source, TargetNamespaceValidator validator) {
+        return collection.read(source, validator);
+    }
+
     void setNamespaceAttributes(XmlSchema schema, Element schemaEl) {
         // no targetnamespace found !
         if (schemaEl.getAttributeNode("targetNamespace") != null) {
@@ -782,11 +928,29 @@ public class SchemaBuilder {
                 if (softref != null) {
                     resolvedSchema = softref.get();
                 }
+                if (resolvedSchema != null && resolvedSchema.isReplaced()) {
+                    // cached before the document was read again
+                    resolvedSchema = null;
+                }
             }
         }
         return resolvedSchema;
     }
 
+    /**
+     * Keep the children of an appinfo or documentation element as selected by {@link #markupMode}.
+     */
+    private NodeList getMarkup(Element content) {
+        switch (markupMode) {
+        case LAZY:
+            return new LazyDocumentFragmentNodeList(content);
+        case DROP:
+            return null;
+        default:
+            return new DocumentFragmentNodeList(content);
+        }
+    }
+
     private List<Node> getChildren(Element content) {
         List<Node> result = new ArrayList<Node>();
         for (Node n = content.getFirstChild(); n != null; n = n.getNextSibling()) {
@@ -799,7 +963,7 @@ public class SchemaBuilder {
         }
     }
 
-    private QName getRefQName(String pName, NamespaceContext pContext) {
+    QName getRefQName(String pName, NamespaceContext pContext) {
         final int offset = pName.indexOf(':');
         String uri;
         final String localName;
@@ -807,7 +971,7 @@ public class SchemaBuilder {
         if (offset == -1) {
             uri = pContext.getNamespaceURI(Constants.DEFAULT_NS_PREFIX);
             if (Constants.NULL_NS_URI.equals(uri)) {
-                return new QName(Constants.NULL_NS_URI, pName);
+                return collection.getInterner().intern(Constants.NULL_NS_URI, pName);
             }
             localName = pName;
             prefix = Constants.DEFAULT_NS_PREFIX;
@@ -824,11 +988,47 @@ public class SchemaBuilder {
             }
             localName = pName.substring(offset + 1);
         }
-        return new QName(uri, localName, prefix);
+        return collection.getInterner().intern(uri, localName, prefix);
     }
 
     private QName getRefQName(String pName, Node pNode) {
-        return getRefQName(pName, NodeNamespaceContext.getNamespaceContext(pNode));
+        return getRefQName(pName, getNamespaceScope(pNode));
+    }
+
+    /**
+     * Get the namespace declarations in scope at a node of the document being built.
+     */
+    private NamespaceScope getNamespaceScope(Node node) {
+        // find the nearest ancestor whose scope is known
+        int count = 0;
+        Integer depth = null;
+        for (Node n = node; n != null && (depth = scopeDepths.get(n)) == null; n = n.getParentNode()) {
+            if (count == scopePath.length) {
+                scopePath = Arrays.copyOf(scopePath, count * 2);
+            }
+            scopePath[count++] = n;
+        }
+        int keep = depth == null ? 0 : depth + 1;
+        while (scopeDepth > keep) {
+            scopeDepth--;
+            scopeDepths.remove(scopeNodes[scopeDepth]);
+            scopeNodes[scopeDepth] = null;
+            scopes[scopeDepth] = null;
+        }
+        while (count > 0) {
+            Node n = scopePath[--count];
+            scopePath[count] = null;
+            if (scopeDepth == scopeNodes.length) {
+                scopeNodes = Arrays.copyOf(scopeNodes, scopeDepth * 2);
+                scopes = Arrays.copyOf(scopes, scopeDepth * 2);
+            }
+            NamespaceScope enclosing = scopeDepth == 0 ? NamespaceScope.NONE : scopes[scopeDepth - 1];
+            scopeNodes[scopeDepth] = n;
+            scopes[scopeDepth] = NamespaceScope.of(n, enclosing);
+            scopeDepths.put(n, scopeDepth);
+            scopeDepth++;
+        }
+        return scopes[scopeDepth - 1];
     }
 
     private XmlSchemaAll handleAll(XmlSchema schema, Element allEl, Element schemaEl) {
@@ -843,12 +1043,19 @@ public class SchemaBuilder {
              el != null;
              el = XDOMUtil.getNextSiblingElementNS(el, XmlSchema.SCHEMA_NS)) {
 
-            if (el.getLocalName().equals("element")) {
+            switch (SchemaConstruct.forElement(el)) {
+            case ELEMENT: {
                 XmlSchemaElement element = handleElement(schema, el, schemaEl, false);
                 all.getItems().add(element);
-            } else if (el.getLocalName().equals("annotation")) {
+                break;
+            }
+            case ANNOTATION: {
                 XmlSchemaAnnotation annotation = handleAnnotation(el);
                 all.setAnnotation(annotation);
+                break;
+            }
+            default:
+                break;
             }
         }
         return all;
@@ -988,7 +1195,7 @@ public class SchemaBuilder {
 
         NamedNodeMap attrNodes = attrEl.getAttributes();
         Vector<Attr> attrs = new Vector<Attr>();
-        NodeNamespaceContext ctx = null;
+        NamespaceContext ctx = null;
         for (int i = 0; i < attrNodes.getLength(); i++) {
             Attr att = (Attr)attrNodes.item(i);
             String attName = att.getName();
@@ -1001,7 +1208,7 @@ public class SchemaBuilder {
                     // there is a possibility of some namespace mapping
                     String prefix = value.substring(0, value.indexOf(":"));
                     if (ctx == null) {
-                        ctx = NodeNamespaceContext.getNamespaceContext(attrEl);
+                        ctx = getNamespaceScope(attrEl);
                     }
                     String namespace = ctx.getNamespaceURI(prefix);
                     if (!Constants.NULL_NS_URI.equals(namespace)) {
@@ -1037,17 +1244,27 @@ public class SchemaBuilder {
             el != null;
             el = XDOMUtil.getNextSiblingElementNS(el, XmlSchema.SCHEMA_NS)) {
 
-            if (el.getLocalName().equals("attribute")) {
+            switch (SchemaConstruct.forElement(el)) {
+            case ATTRIBUTE: {
                 XmlSchemaAttribute attr = handleAttribute(schema, el, schemaEl);
                 attrGroup.getAttributes().add(attr);
-            } else if (el.getLocalName().equals("attributeGroup")) {
+                break;
+            }
+            case ATTRIBUTE_GROUP: {
                 XmlSchemaAttributeGroupRef attrGroupRef = handleAttributeGroupRef(schema, el);
                 attrGroup.getAttributes().add(attrGroupRef);
-            } else if (el.getLocalName().equals("anyAttribute")) {
+                break;
+            }
+            case ANY_ATTRIBUTE:
                 attrGroup.setAnyAttribute(handleAnyAttribute(schema, el, schemaEl));
-            } else if (el.getLocalName().equals("annotation")) {
+                break;
+            case ANNOTATION: {
                 XmlSchemaAnnotation ann = handleAnnotation(el);
                 attrGroup.setAnnotation(ann);
+                break;
+            }
+            default:
+                break;
             }
         }
         return attrGroup;
@@ -1090,24 +1307,39 @@ public class SchemaBuilder {
              el != null;
              el = XDOMUtil.getNextSiblingElementNS(el, XmlSchema.SCHEMA_NS)) {
 
-            if (el.getLocalName().equals("sequence")) {
+            switch (SchemaConstruct.forElement(el)) {
+            case SEQUENCE: {
                 XmlSchemaSequence seq = handleSequence(schema, el, schemaEl);
                 choice.getItems().add(seq);
-            } else if (el.getLocalName().equals("element")) {
+                break;
+            }
+            case ELEMENT: {
                 XmlSchemaElement element = handleElement(schema, el, schemaEl, false);
                 choice.getItems().add(element);
-            } else if (el.getLocalName().equals("group")) {
+                break;
+            }
+            case GROUP: {
                 XmlSchemaGroupRef group = handleGroupRef(schema, el, schemaEl);
                 choice.getItems().add(group);
-            } else if (el.getLocalName().equals("choice")) {
+                break;
+            }
+            case CHOICE: {
                 XmlSchemaChoice choiceItem = handleChoice(schema, el, schemaEl);
                 choice.getItems().add(choiceItem);
-            } else if (el.getLocalName().equals("any")) {
+                break;
+            }
+            case ANY: {
                 XmlSchemaAny any = handleAny(schema, el, schemaEl);
                 choice.getItems().add(any);
-            } else if (el.getLocalName().equals("annotation")) {
+                break;
+            }
+            case ANNOTATION: {
                 XmlSchemaAnnotation annotation = handleAnnotation(el);
                 choice.setAnnotation(annotation);
+                break;
+            }
+            default:
+                break;
             }
         }
         return choice;
@@ -1122,12 +1354,18 @@ public class SchemaBuilder {
              el != null;
              el = XDOMUtil.getNextSiblingElementNS(el, XmlSchema.SCHEMA_NS)) {
 
-            if (el.getLocalName().equals("restriction")) {
+            switch (SchemaConstruct.forElement(el)) {
+            case RESTRICTION:
                 complexContent.content = handleComplexContentRestriction(schema, el, schemaEl);
-            } else if (el.getLocalName().equals("extension")) {
+                break;
+            case EXTENSION:
                 complexContent.content = handleComplexContentExtension(schema, el, schemaEl);
-            } else if (el.getLocalName().equals("annotation")) {
+                break;
+            case ANNOTATION:
                 complexContent.setAnnotation(handleAnnotation(el));
+                break;
+            default:
+                break;
             }
         }
 
@@ -1157,22 +1395,33 @@ public class SchemaBuilder {
              el != null;
              el = XDOMUtil.getNextSiblingElementNS(el, XmlSchema.SCHEMA_NS)) {
 
-            if (el.getLocalName().equals("sequence")) {
+            switch (SchemaConstruct.forElement(el)) {
+            case SEQUENCE:
                 ext.setParticle(handleSequence(schema, el, schemaEl));
-            } else if (el.getLocalName().equals("choice")) {
+                break;
+            case CHOICE:
                 ext.setParticle(handleChoice(schema, el, schemaEl));
-            } else if (el.getLocalName().equals("all")) {
+                break;
+            case ALL:
                 ext.setParticle(handleAll(schema, el, schemaEl));
-            } else if (el.getLocalName().equals("attribute")) {
+                break;
+            case ATTRIBUTE:
                 ext.getAttributes().add(handleAttribute(schema, el, schemaEl));
-            } else if (el.getLocalName().equals("attributeGroup")) {
+                break;
+            case ATTRIBUTE_GROUP:
                 ext.getAttributes().add(handleAttributeGroupRef(schema, el));
-            } else if (el.getLocalName().equals("group")) {
+                break;
+            case GROUP:
                 ext.setParticle(handleGroupRef(schema, el, schemaEl));
-            } else if (el.getLocalName().equals("anyAttribute")) {
+                break;
+            case ANY_ATTRIBUTE:
                 ext.setAnyAttribute(handleAnyAttribute(schema, el, schemaEl));
-            } else if (el.getLocalName().equals("annotation")) {
+                break;
+            case ANNOTATION:
                 ext.setAnnotation(handleAnnotation(el));
+                break;
+            default:
+                break;
             }
         }
         return ext;
@@ -1192,22 +1441,33 @@ public class SchemaBuilder {
             el != null;
             el = XDOMUtil.getNextSiblingElementNS(el, XmlSchema.SCHEMA_NS)) {
 
-            if (el.getLocalName().equals("sequence")) {
+            switch (SchemaConstruct.forElement(el)) {
+            case SEQUENCE:
                 restriction.setParticle(handleSequence(schema, el, schemaEl));
-            } else if (el.getLocalName().equals("choice")) {
+                break;
+            case CHOICE:
                 restriction.setParticle(handleChoice(schema, el, schemaEl));
-            } else if (el.getLocalName().equals("all")) {
+                break;
+            case ALL:
                 restriction.setParticle(handleAll(schema, el, schemaEl));
-            } else if (el.getLocalName().equals("attribute")) {
+                break;
+            case ATTRIBUTE:
                 restriction.getAttributes().add(handleAttribute(schema, el, schemaEl));
-            } else if (el.getLocalName().equals("attributeGroup")) {
+                break;
+            case ATTRIBUTE_GROUP:
                 restriction.getAttributes().add(handleAttributeGroupRef(schema, el));
-            } else if (el.getLocalName().equals("group")) {
+                break;
+            case GROUP:
                 restriction.setParticle(handleGroupRef(schema, el, schemaEl));
-            } else if (el.getLocalName().equals("anyAttribute")) {
+                break;
+            case ANY_ATTRIBUTE:
                 restriction.setAnyAttribute(handleAnyAttribute(schema, el, schemaEl));
-            } else if (el.getLocalName().equals("annotation")) {
+                break;
+            case ANNOTATION:
                 restriction.setAnnotation(handleAnnotation(el));
+                break;
+            default:
+                break;
             }
         }
         return restriction;
@@ -1235,7 +1495,8 @@ public class SchemaBuilder {
                 // String elPrefix = el.getPrefix() == null ? ""
                 // : el.getPrefix();
                 // if(elPrefix.equals(schema.schema_ns_prefix)) {
-                if (el.getLocalName().equals("selector")) {
+                switch (SchemaConstruct.forElement(el)) {
+                case SELECTOR: {
                     XmlSchemaXPath selectorXPath = new XmlSchemaXPath();
                     selectorXPath.xpath = el.getAttribute("xpath");
 
@@ -1247,7 +1508,9 @@ public class SchemaBuilder {
                         selectorXPath.setAnnotation(annotation);
                     }
                     constraint.setSelector(selectorXPath);
-                } else if (el.getLocalName().equals("field")) {
+                    break;
+                }
+                case FIELD: {
                     XmlSchemaXPath fieldXPath = new XmlSchemaXPath();
                     fieldXPath.xpath = el.getAttribute("xpath");
                     constraint.getFields().add(fieldXPath);
@@ -1260,9 +1523,15 @@ public class SchemaBuilder {
 
                         fieldXPath.setAnnotation(annotation);
                     }
-                } else if (el.getLocalName().equals("annotation")) {
+                    break;
+                }
+                case ANNOTATION: {
                     XmlSchemaAnnotation constraintAnnotation = handleAnnotation(el);
                     constraint.setAnnotation(constraintAnnotation);
+                    break;
+                }
+                default:
+                    break;
                 }
             }
             return constraint;
@@ -1335,15 +1604,23 @@ public class SchemaBuilder {
              el != null;
              el = XDOMUtil.getNextSiblingElementNS(el, XmlSchema.SCHEMA_NS)) {
 
-            if (el.getLocalName().equals("all")) {
+            switch (SchemaConstruct.forElement(el)) {
+            case ALL:
                 group.setParticle(handleAll(schema, el, schemaEl));
-            } else if (el.getLocalName().equals("sequence")) {
+                break;
+            case SEQUENCE:
                 group.setParticle(handleSequence(schema, el, schemaEl));
-            } else if (el.getLocalName().equals("choice")) {
+                break;
+            case CHOICE:
                 group.setParticle(handleChoice(schema, el, schemaEl));
-            } else if (el.getLocalName().equals("annotation")) {
+                break;
+            case ANNOTATION: {
                 XmlSchemaAnnotation groupAnnotation = handleAnnotation(el);
                 group.setAnnotation(groupAnnotation);
+                break;
+            }
+            default:
+                break;
             }
         }
         return group;
@@ -1373,12 +1650,18 @@ public class SchemaBuilder {
              el != null;
              el = XDOMUtil.getNextSiblingElement(el)) {
 
-            if (el.getLocalName().equals("sequence")) {
+            switch (SchemaConstruct.forElement(el)) {
+            case SEQUENCE:
                 group.setParticle(handleSequence(schema, el, schemaEl));
-            } else if (el.getLocalName().equals("all")) {
+                break;
+            case ALL:
                 group.setParticle(handleAll(schema, el, schemaEl));
-            } else if (el.getLocalName().equals("choice")) {
+                break;
+            case CHOICE:
                 group.setParticle(handleChoice(schema, el, schemaEl));
+                break;
+            default:
+                break;
             }
         }
         return group;
@@ -1429,12 +1712,12 @@ public class SchemaBuilder {
         final TargetNamespaceValidator validator = newIncludeValidator(schema);
 
         if (schema.getSourceURI() != null) {
-            redefine.schema =
+            redefine.setSchema(
                 resolveXmlSchema(schema.getLogicalTargetNamespace(), redefine.schemaLocation,
-                                 schema.getSourceURI(), validator);
+                                 schema.getSourceURI(), validator));
         } else {
-            redefine.schema =
-                resolveXmlSchema(schema.getLogicalTargetNamespace(), redefine.schemaLocation, validator);
+            redefine.setSchema(
+                resolveXmlSchema(schema.getLogicalTargetNamespace(), redefine.schemaLocation, validator));
         }
 
         /*
@@ -1449,29 +1732,41 @@ public class SchemaBuilder {
              el != null;
              el = XDOMUtil.getNextSiblingElementNS(el, XmlSchema.SCHEMA_NS)) {
 
-            if (el.getLocalName().equals("simpleType")) {
+            switch (SchemaConstruct.forElement(el)) {
+            case SIMPLE_TYPE: {
                 XmlSchemaType type = handleSimpleType(schema, el, schemaEl, false);
 
                 redefine.getSchemaTypes().put(type.getQName(), type);
                 redefine.getItems().add(type);
-            } else if (el.getLocalName().equals("complexType")) {
-
+                break;
+            }
+            case COMPLEX_TYPE: {
                 XmlSchemaType type = handleComplexType(schema, el, schemaEl, true);
 
                 redefine.getSchemaTypes().put(type.getQName(), type);
                 redefine.getItems().add(type);
-            } else if (el.getLocalName().equals("group")) {
+                break;
+            }
+            case GROUP: {
                 XmlSchemaGroup group = handleGroup(schema, el, schemaEl);
                 redefine.getGroups().put(group.getQName(), group);
                 redefine.getItems().add(group);
-            } else if (el.getLocalName().equals("attributeGroup")) {
+                break;
+            }
+            case ATTRIBUTE_GROUP: {
                 XmlSchemaAttributeGroup group = handleAttributeGroup(schema, el, schemaEl);
 
                 redefine.getAttributeGroups().put(group.getQName(), group);
                 redefine.getItems().add(group);
-            } else if (el.getLocalName().equals("annotation")) {
+                break;
+            }
+            case ANNOTATION: {
                 XmlSchemaAnnotation annotation = handleAnnotation(el);
                 redefine.setAnnotation(annotation);
+                break;
+            }
+            default:
+                break;
             }
             // }
         }
@@ -1501,31 +1796,48 @@ public class SchemaBuilder {
     }
 
     private void handleSchemaElementChild(Element schemaEl, Element el) {
-        if (el.getLocalName().equals("simpleType")) {
+        switch (SchemaConstruct.forElement(el)) {
+        case SIMPLE_TYPE: {
             XmlSchemaType type = handleSimpleType(currentSchema, el, schemaEl, true);
             collection.resolveType(type.getQName(), type);
-        } else if (el.getLocalName().equals("complexType")) {
+            break;
+        }
+        case COMPLEX_TYPE: {
             XmlSchemaType type = handleComplexType(currentSchema, el, schemaEl, true);
             collection.resolveType(type.getQName(), type);
-        } else if (el.getLocalName().equals("element")) {
+            break;
+        }
+        case ELEMENT:
             handleElement(currentSchema, el, schemaEl, true);
-        } else if (el.getLocalName().equals("include")) {
+            break;
+        case INCLUDE:
             handleInclude(currentSchema, el, schemaEl);
-        } else if (el.getLocalName().equals("import")) {
+            break;
+        case IMPORT:
             handleImport(currentSchema, el, schemaEl);
-        } else if (el.getLocalName().equals("group")) {
+            break;
+        case GROUP:
             handleGroup(currentSchema, el, schemaEl);
-        } else if (el.getLocalName().equals("attributeGroup")) {
+            break;
+        case ATTRIBUTE_GROUP:
             handleAttributeGroup(currentSchema, el, schemaEl);
-        } else if (el.getLocalName().equals("attribute")) {
+            break;
+        case ATTRIBUTE:
             handleAttribute(currentSchema, el, schemaEl, true);
-        } else if (el.getLocalName().equals("redefine")) {
+            break;
+        case REDEFINE:
             handleRedefine(currentSchema, el, schemaEl);
-        } else if (el.getLocalName().equals("notation")) {
+            break;
+        case NOTATION:
             handleNotation(currentSchema, el);
-        } else if (el.getLocalName().equals("annotation")) {
+            break;
+        case ANNOTATION: {
             XmlSchemaAnnotation annotation = handleAnnotation(el);
             currentSchema.setAnnotation(annotation);
+            break;
+        }
+        default:
+            break;
         }
     }
 
@@ -1541,24 +1853,39 @@ public class SchemaBuilder {
              el != null;
              el = XDOMUtil.getNextSiblingElementNS(el, XmlSchema.SCHEMA_NS)) {
 
-            if (el.getLocalName().equals("sequence")) {
+            switch (SchemaConstruct.forElement(el)) {
+            case SEQUENCE: {
                 XmlSchemaSequence seq = handleSequence(schema, el, schemaEl);
                 sequence.getItems().add(seq);
-            } else if (el.getLocalName().equals("element")) {
+                break;
+            }
+            case ELEMENT: {
                 XmlSchemaElement element = handleElement(schema, el, schemaEl, false);
                 sequence.getItems().add(element);
-            } else if (el.getLocalName().equals("group")) {
+                break;
+            }
+            case GROUP: {
                 XmlSchemaGroupRef group = handleGroupRef(schema, el, schemaEl);
                 sequence.getItems().add(group);
-            } else if (el.getLocalName().equals("choice")) {
+                break;
+            }
+            case CHOICE: {
                 XmlSchemaChoice choice = handleChoice(schema, el, schemaEl);
                 sequence.getItems().add(choice);
-            } else if (el.getLocalName().equals("any")) {
+                break;
+            }
+            case ANY: {
                 XmlSchemaAny any = handleAny(schema, el, schemaEl);
                 sequence.getItems().add(any);
-            } else if (el.getLocalName().equals("annotation")) {
+                break;
+            }
+            case ANNOTATION: {
                 XmlSchemaAnnotation annotation = handleAnnotation(el);
                 sequence.setAnnotation(annotation);
+                break;
+            }
+            default:
+                break;
             }
         }
         return sequence;
@@ -1572,12 +1899,18 @@ public class SchemaBuilder {
              el != null;
              el = XDOMUtil.getNextSiblingElementNS(el, XmlSchema.SCHEMA_NS)) {
 
-            if (el.getLocalName().equals("restriction")) {
+            switch (SchemaConstruct.forElement(el)) {
+            case RESTRICTION:
                 simpleContent.content = handleSimpleContentRestriction(schema, el, schemaEl);
-            } else if (el.getLocalName().equals("extension")) {
+                break;
+            case EXTENSION:
                 simpleContent.content = handleSimpleContentExtension(schema, el, schemaEl);
-            } else if (el.getLocalName().equals("annotation")) {
+                break;
+            case ANNOTATION:
                 simpleContent.setAnnotation(handleAnnotation(el));
+                break;
+            default:
+                break;
             }
         }
         return simpleContent;
@@ -1597,17 +1930,27 @@ public class SchemaBuilder {
              el != null;
              el = XDOMUtil.getNextSiblingElementNS(el, XmlSchema.SCHEMA_NS)) {
 
-            if (el.getLocalName().equals("attribute")) {
+            switch (SchemaConstruct.forElement(el)) {
+            case ATTRIBUTE: {
                 XmlSchemaAttribute attr = handleAttribute(schema, el, schemaEl);
                 ext.getAttributes().add(attr);
-            } else if (el.getLocalName().equals("attributeGroup")) {
+                break;
+            }
+            case ATTRIBUTE_GROUP: {
                 XmlSchemaAttributeGroupRef attrGroup = handleAttributeGroupRef(schema, el);
                 ext.getAttributes().add(attrGroup);
-            } else if (el.getLocalName().equals("anyAttribute")) {
+                break;
+            }
+            case ANY_ATTRIBUTE:
                 ext.setAnyAttribute(handleAnyAttribute(schema, el, schemaEl));
-            } else if (el.getLocalName().equals("annotation")) {
+                break;
+            case ANNOTATION: {
                 XmlSchemaAnnotation ann = handleAnnotation(el);
                 ext.setAnnotation(ann);
+                break;
+            }
+            default:
+                break;
             }
         }
         return ext;
@@ -1634,19 +1977,27 @@ public class SchemaBuilder {
              el != null;
              el = XDOMUtil.getNextSiblingElementNS(el, XmlSchema.SCHEMA_NS)) {
 
-            if (el.getLocalName().equals("attribute")) {
+            switch (SchemaConstruct.forElement(el)) {
+            case ATTRIBUTE: {
                 XmlSchemaAttribute attr = handleAttribute(schema, el, schemaEl);
                 restriction.getAttributes().add(attr);
-            } else if (el.getLocalName().equals("attributeGroup")) {
+                break;
+            }
+            case ATTRIBUTE_GROUP: {
                 XmlSchemaAttributeGroupRef attrGroup = handleAttributeGroupRef(schema, el);
                 restriction.getAttributes().add(attrGroup);
-            } else if (el.getLocalName().equals("simpleType")) {
+                break;
+            }
+            case SIMPLE_TYPE:
                 restriction.setBaseType(handleSimpleType(schema, el, schemaEl, false));
-            } else if (el.getLocalName().equals("anyAttribute")) {
+                break;
+            case ANY_ATTRIBUTE:
                 restriction.anyAttribute = handleAnyAttribute(schema, el, schemaEl);
-            } else if (el.getLocalName().equals("annotation")) {
+                break;
+            case ANNOTATION:
                 restriction.setAnnotation(handleAnnotation(el));
-            } else {
+                break;
+            default: {
                 XmlSchemaFacet facet = XmlSchemaFacet.construct(el);
                 if (XDOMUtil.anyElementsWithNameNS(el, XmlSchema.SCHEMA_NS, "annotation")) {
                     XmlSchemaAnnotation facetAnnotation = handleAnnotation(el);
@@ -1656,6 +2007,8 @@ public class SchemaBuilder {
                 restriction.getFacets().add(facet);
                 // process extra attributes and elements
                 processExtensibilityComponents(facet, el, true);
+                break;
+            }
             }
         }
         return restriction;
@@ -1719,8 +2072,7 @@ public class SchemaBuilder {
             XDOMUtil.getFirstChildElementNS(restrictionEl, XmlSchema.SCHEMA_NS, "simpleType");
 
         if (restrictionEl.hasAttribute("base")) {
-            NamespaceContext ctx = NodeNamespaceContext.getNamespaceContext(restrictionEl);
-            restriction.setBaseTypeName(getRefQName(restrictionEl.getAttribute("base"), ctx));
+            restriction.setBaseTypeName(getRefQName(restrictionEl.getAttribute("base"), restrictionEl));
         } else if (inlineSimpleType != null) {
 
             restriction.setBaseType(handleSimpleType(schema, inlineSimpleType, schemaEl, false));
@@ -1729,7 +2081,8 @@ public class SchemaBuilder {
              el != null;
              el = XDOMUtil.getNextSiblingElementNS(el, XmlSchema.SCHEMA_NS)) {
 
-            if (!el.getLocalName().equals("annotation") && !el.getLocalName().equals("simpleType")) {
+            SchemaConstruct construct = SchemaConstruct.forElement(el);
+            if (construct != SchemaConstruct.ANNOTATION && construct != SchemaConstruct.SIMPLE_TYPE) {
 
                 XmlSchemaFacet facet = XmlSchemaFacet.construct(el);
                 Element annotation = XDOMUtil.getFirstChildElementNS(el, XmlSchema.SCHEMA_NS, "annotation");
@@ -1797,7 +2150,29 @@ public class SchemaBuilder {
         simpleType.content = union;
     }
 
-    private TargetNamespaceValidator newIncludeValidator(final XmlSchema schema) {
+    TargetNamespaceValidator newImportValidator(final String uri) {
+        return new TargetNamespaceValidator() {
+            public void validate(XmlSchema pSchema) {
+                final boolean valid;
+                if (isEmpty(uri)) {
+                    valid = isEmpty(pSchema.getSyntacticalTargetNamespace());
+                } else {
+                    valid = pSchema.getSyntacticalTargetNamespace().equals(uri);
+                }
+                if (!valid) {
+                    throw new XmlSchemaException("An imported schema was announced to have the namespace "
+                                                 + uri + ", but has the namespace "
+                                                 + pSchema.getSyntacticalTargetNamespace());
+                }
+            }
+
+            private boolean isEmpty(String pValue) {
+                return pValue == null || Constants.NULL_NS_URI.equals(pValue);
+            }
+        };
+    }
+
+    TargetNamespaceValidator newIncludeValidator(final XmlSchema schema) {
         return new TargetNamespaceValidator() {
             public void validate(XmlSchema pSchema) {
                 if (isEmpty(pSchema.getSyntacticalTargetNamespace())) {
@@ -1846,7 +2221,7 @@ public class SchemaBuilder {
                     && (namespaces || !namespaceURI.startsWith(Constants.XMLNS_ATTRIBUTE_NS_URI)) 
                     // does not belong to the schema namespace by any chance!
                     && !Constants.URI_2001_SCHEMA_XSD.equals(namespaceURI)) {
-                    QName qName = new QName(namespaceURI, name);
+                    QName qName = collection.getInterner().intern(namespaceURI, name);
                     extReg.deserializeExtension(schemaObject, qName, attribute);
                 }
             }
@@ -1861,7 +2236,7 @@ public class SchemaBuilder {
 
                     if (namespaceURI != null && !Constants.URI_2001_SCHEMA_XSD.equals(namespaceURI)) {
                         // does not belong to the schema namespace
-                        QName qName = new QName(namespaceURI, name);
+                        QName qName = collection.getInterner().intern(namespaceURI, name);
                         extReg.deserializeExtension(schemaObject, qName, extElement);
                     }
                 }
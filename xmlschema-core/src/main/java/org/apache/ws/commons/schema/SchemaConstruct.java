@@ -0,0 +1,123 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ws.commons.schema;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.w3c.dom.Element;
+
+/**
+ * The elements of the XML Schema language, by local name. The builders look up the construct of each child
+ * element once and switch on it, rather than comparing its local name with every name they handle, and the
+ * serializers take the names of the elements they write from here.
+ */
+enum SchemaConstruct {
+    ALL("all"),
+    ANNOTATION("annotation"),
+    ANY("any"),
+    ANY_ATTRIBUTE("anyAttribute"),
+    APPINFO("appinfo"),
+    ATTRIBUTE("attribute"),
+    ATTRIBUTE_GROUP("attributeGroup"),
+    CHOICE("choice"),
+    COMPLEX_CONTENT("complexContent"),
+    COMPLEX_TYPE("complexType"),
+    DOCUMENTATION("documentation"),
+    ELEMENT("element"),
+    ENUMERATION("enumeration"),
+    EXTENSION("extension"),
+    FIELD("field"),
+    FRACTION_DIGITS("fractionDigits"),
+    GROUP("group"),
+    IMPORT("import"),
+    INCLUDE("include"),
+    KEY("key"),
+    KEYREF("keyref"),
+    LENGTH("length"),
+    LIST("list"),
+    MAX_EXCLUSIVE("maxExclusive"),
+    MAX_INCLUSIVE("maxInclusive"),
+    MAX_LENGTH("maxLength"),
+    MIN_EXCLUSIVE("minExclusive"),
+    MIN_INCLUSIVE("minInclusive"),
+    MIN_LENGTH("minLength"),
+    NOTATION("notation"),
+    PATTERN("pattern"),
+    REDEFINE("redefine"),
+    RESTRICTION("restriction"),
+    SCHEMA("schema"),
+    SELECTOR("selector"),
+    SEQUENCE("sequence"),
+    SIMPLE_CONTENT("simpleContent"),
+    SIMPLE_TYPE("simpleType"),
+    TOTAL_DIGITS("totalDigits"),
+    UNION("union"),
+    UNIQUE("unique"),
+    WHITE_SPACE("whiteSpace"),
+    /**
+     * Any other name.
+     */
+    UNKNOWN(null);
+
+    private static final Map<String, SchemaConstruct> BY_NAME = new HashMap<String, SchemaConstruct>();
+
+    static {
+        for (SchemaConstruct construct : values()) {
+            if (construct.localName != null) {
+                BY_NAME.put(construct.localName, construct);
+            }
+        }
+    }
+
+    private final String localName;
+
+    private SchemaConstruct(String localName) {
+        this.localName = localName;
+    }
+
+    /**
+     * Look up a construct by the local name of its element.
+     *
+     * @param localName the local name.
+     * @return the construct, or {@link #UNKNOWN} if the name is not that of an XML Schema element.
+     */
+    static SchemaConstruct forName(String localName) {
+        SchemaConstruct construct = localName == null ? null : BY_NAME.get(localName);
+        return construct == null ? UNKNOWN : construct;
+    }
+
+    /**
+     * Look up the construct of an element by its local name. The namespace is not checked.
+     *
+     * @param el the element.
+     * @return the construct, or {@link #UNKNOWN} if the element is not an XML Schema element.
+     */
+    static SchemaConstruct forElement(Element el) {
+        return forName(el.getLocalName());
+    }
+
+    /**
+     * @return the local name of the element, or null for {@link #UNKNOWN}.
+     */
+    String getLocalName() {
+        return localName;
+    }
+}
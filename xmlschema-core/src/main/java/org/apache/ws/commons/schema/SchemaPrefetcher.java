@@ -0,0 +1,268 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ws.commons.schema;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.xml.sax.InputSource;
+
+import org.apache.ws.commons.schema.utils.XDOMUtil;
+
+/**
+ * Fetches and parses the documents referenced by the imports, includes and redefines of a schema ahead of
+ * the builder, on the executor of the collection. Each parsed document is searched for references in turn,
+ * so that the whole graph is loaded concurrently. The builder still reads the schemas one at a time and in
+ * the same order as without prefetching; it only takes the parsed documents from here instead of parsing
+ * them itself.
+ * <br/>
+ * A document is prefetched from the system ID the resolver of the collection gives for the reference, and the
+ * builder takes that resolution instead of asking the resolver again. When the builder resolves a reference
+ * to a system ID that was not prefetched, or prefetching it failed, the builder resolves and parses the
+ * document itself, so that errors are reported as they are without prefetching.
+ */
+final class SchemaPrefetcher {
+    private final XmlSchemaCollection collection;
+    private final Executor executor;
+    private final ConcurrentMap<String, Fetch> fetches = new ConcurrentHashMap<String, Fetch>();
+    // the same fetches, by the arguments they were resolved from
+    private final ConcurrentMap<String, Fetch> fetchesByReference = new ConcurrentHashMap<String, Fetch>();
+    // the references that were resolved, even if the resolver gave nothing
+    private final Set<String> references =
+        Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private volatile boolean closed;
+
+    SchemaPrefetcher(XmlSchemaCollection collection, Executor executor) {
+        this.collection = collection;
+        this.executor = executor;
+    }
+
+    /**
+     * Start fetching the documents referenced by a schema.
+     *
+     * @param schemaEl the schema element.
+     * @param systemId the system ID of the schema document, or null.
+     * @param inheritedNamespace the target namespace of the including schema, used when the schema has no
+     *            target namespace of its own.
+     */
+    void prefetchReferences(Element schemaEl, String systemId, String inheritedNamespace) {
+        if (closed) {
+            return;
+        }
+        String baseUri = systemId == null ? collection.baseUri : systemId;
+        String targetNamespace = schemaEl.getAttributeNode("targetNamespace") == null
+            ? inheritedNamespace : schemaEl.getAttribute("targetNamespace");
+        for (Element el = XDOMUtil.getFirstChildElementNS(schemaEl, XmlSchema.SCHEMA_NS);
+            el != null;
+            el = XDOMUtil.getNextSiblingElementNS(el, XmlSchema.SCHEMA_NS)) {
+            String location = el.getAttribute("schemaLocation");
+            if ("".equals(location)) {
+                continue;
+            }
+            String name = el.getLocalName();
+            if ("import".equals(name)) {
+                prefetch(el.getAttribute("namespace"), location, baseUri, null);
+            } else if ("include".equals(name) || "redefine".equals(name)) {
+                prefetch(targetNamespace, location, baseUri, targetNamespace);
+            }
+        }
+    }
+
+    /**
+     * Take the parsed document with the given system ID, waiting for it if it is still being parsed. A
+     * document that no thread of the executor has started on yet is parsed by the calling thread. Each
+     * document is taken once; a schema document that is read again, for example into another namespace, is
+     * parsed again.
+     *
+     * @param systemId the system ID the reference was resolved to.
+     * @return the document, or null if it was not prefetched, was taken already or could not be parsed.
+     */
+    Document take(String systemId) {
+        Fetch fetch = systemId == null ? null : fetches.get(systemId);
+        if (fetch == null || !fetch.taken.compareAndSet(false, true)) {
+            return null;
+        }
+        fetch.run();
+        try {
+            return fetch.get();
+        } catch (ExecutionException e) {
+            return null;
+        } catch (CancellationException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * Give the resolution of a reference that was prefetched, waiting for the document if it is still being
+     * parsed, so that the builder does not call the resolver again.
+     *
+     * @param namespace the namespace the reference is resolved for.
+     * @param location the schema location of the reference.
+     * @param baseUri the base URI of the reference.
+     * @return a source with the system ID, public ID and encoding the resolver gave, but no stream, for
+     *         {@link #take(String)} supplies the parsed document; or null if the reference was not
+     *         prefetched, was taken already or could not be parsed.
+     */
+    InputSource getResolvedSource(String namespace, String location, String baseUri) {
+        Fetch fetch = fetchesByReference.get(referenceKey(namespace, location, baseUri));
+        if (fetch == null || fetch.taken.get()) {
+            return null;
+        }
+        fetch.run();
+        try {
+            fetch.get();
+        } catch (ExecutionException e) {
+            return null;
+        } catch (CancellationException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        InputSource source = new InputSource(fetch.source.getSystemId());
+        source.setPublicId(fetch.source.getPublicId());
+        source.setEncoding(fetch.source.getEncoding());
+        return source;
+    }
+
+    /**
+     * Stop prefetching once the schema is built. The documents that are not being parsed yet are dropped,
+     * and the documents still being parsed do not start fetching the documents they refer to.
+     */
+    void finish() {
+        closed = true;
+        for (Fetch fetch : fetches.values()) {
+            cancel(fetch);
+        }
+    }
+
+    private static void cancel(Fetch fetch) {
+        if (fetch.started.compareAndSet(false, true)) {
+            fetch.cancel(false);
+            close(fetch.source);
+        }
+    }
+
+    private static String referenceKey(String namespace, String location, String baseUri) {
+        return namespace + " " + location + " " + baseUri;
+    }
+
+    private void prefetch(String namespace, String location, String baseUri, String inheritedNamespace) {
+        String referenceKey = referenceKey(namespace, location, baseUri);
+        if (closed || !references.add(referenceKey)) {
+            return;
+        }
+        InputSource source;
+        try {
+            source = collection.getSchemaResolver().resolveEntity(namespace, location, baseUri);
+        } catch (RuntimeException e) {
+            // the builder will report it
+            return;
+        }
+        if (source == null) {
+            return;
+        }
+        // as the builder does
+        String systemId = source.getSystemId() == null ? location : source.getSystemId();
+        source.setSystemId(systemId);
+        Fetch fetch = new Fetch(source, inheritedNamespace);
+        Fetch existing = fetches.putIfAbsent(systemId, fetch);
+        if (existing != null) {
+            close(source);
+            fetchesByReference.putIfAbsent(referenceKey, existing);
+            return;
+        }
+        fetchesByReference.putIfAbsent(referenceKey, fetch);
+        if (closed) {
+            // finish() may have missed it
+            cancel(fetch);
+            return;
+        }
+        try {
+            executor.execute(fetch);
+        } catch (RejectedExecutionException e) {
+            // the builder parses it when it gets there
+        }
+    }
+
+    /**
+     * Close the streams of a source that is not going to be parsed.
+     */
+    static void close(InputSource source) {
+        try {
+            if (source.getByteStream() != null) {
+                source.getByteStream().close();
+            }
+            if (source.getCharacterStream() != null) {
+                source.getCharacterStream().close();
+            }
+        } catch (IOException e) {
+            // nothing was read from it
+        }
+    }
+
+    /**
+     * The parsing of one document.
+     */
+    private final class Fetch extends FutureTask<Document> {
+        private final InputSource source;
+        private final AtomicBoolean started;
+        private final AtomicBoolean taken = new AtomicBoolean();
+
+        Fetch(InputSource source, String inheritedNamespace) {
+            this(source, inheritedNamespace, new AtomicBoolean());
+        }
+
+        private Fetch(final InputSource source, final String inheritedNamespace,
+                      final AtomicBoolean started) {
+            super(new Callable<Document>() {
+                public Document call() throws Exception {
+                    if (!started.compareAndSet(false, true)) {
+                        throw new CancellationException();
+                    }
+                    Document doc = collection.parse(source);
+                    Element schemaEl = doc.getDocumentElement();
+                    if (XmlSchema.SCHEMA_NS.equals(schemaEl.getNamespaceURI())
+                        && "schema".equals(schemaEl.getLocalName())) {
+                        prefetchReferences(schemaEl, source.getSystemId(), inheritedNamespace);
+                    }
+                    return doc;
+                }
+            });
+            this.source = source;
+            this.started = started;
+        }
+    }
+}
@@ -0,0 +1,1868 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ws.commons.schema;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringTokenizer;
+
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.namespace.QName;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.DocumentFragment;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import org.xml.sax.InputSource;
+
+import org.apache.ws.commons.schema.constants.Constants;
+import org.apache.ws.commons.schema.extensions.ExtensionRegistry;
+import org.apache.ws.commons.schema.utils.NodeNamespaceContext;
+import org.apache.ws.commons.schema.utils.TargetNamespaceValidator;
+
+/**
+ * Builds a schema from an {@link XMLStreamReader}, without creating a DOM tree of the schema document. The
+ * object model is the same as the one built by {@link SchemaBuilder} from a DOM document. Only the markup
+ * of appinfo and documentation elements and the extension elements and attributes handed to the
+ * {@link ExtensionRegistry} are converted into DOM nodes, since the object model exposes them as such.
+ * <br/>
+ * The reader must be positioned at the start of the document or at the start tag of the schema element.
+ * When the builder returns, the reader is positioned at the end tag of the schema element. Schemas that are
+ * referenced by imports, includes and redefines are read with a streaming builder as well.
+ */
+final class StaxSchemaBuilder extends SchemaBuilder {
+
+    private static final String OLD_SCHEMA_NS = "http://www.w3.org/1999/XMLSchema";
+
+    private static final Comparator<Attribute> ATTRIBUTE_ORDER = new Comparator<Attribute>() {
+        public int compare(Attribute a1, Attribute a2) {
+            return a1.name.compareTo(a2.name);
+        }
+    };
+
+    private final XMLStreamReader reader;
+
+    /**
+     * The namespace declarations in scope at the current position of the reader.
+     */
+    private NamespaceScope scope;
+
+    /**
+     * Owner of the DOM nodes created for markup and extensions. Created on first use.
+     */
+    private Document nodeFactory;
+
+    StaxSchemaBuilder(XmlSchemaCollection collection, TargetNamespaceValidator validator,
+                      XMLStreamReader reader) {
+        super(collection, validator);
+        this.reader = reader;
+    }
+
+    /**
+     * Build the schema the reader is positioned at.
+     *
+     * @param systemId the system ID of the schema document.
+     * @return the schema.
+     * @throws XMLStreamException if the document cannot be read.
+     */
+    XmlSchema build(String systemId) throws XMLStreamException {
+        while (reader.getEventType() != XMLStreamConstants.START_ELEMENT) {
+            if (!reader.hasNext()) {
+                throw new XmlSchemaException("The document does not contain a schema element.");
+            }
+            reader.next();
+        }
+        scope = new NamespaceScope(null, reader.getNamespaceContext());
+        XmlSchema xmlSchema;
+        currentSchema.setBuilding(true);
+        try {
+            xmlSchema = handleXmlSchemaElement(systemId);
+        } finally {
+            currentSchema.setBuilding(false);
+        }
+        xmlSchema.setInputEncoding(reader.getEncoding());
+        return xmlSchema;
+    }
+
+    @Override
+    XmlSchema readExternalSchema(InputSource source, TargetNamespaceValidator validator) {
+        return collection.readStreaming(source, validator);
+    }
+
+    XmlSchemaAnnotation handleAnnotation() throws XMLStreamException {
+        Frame annotEl = enter();
+        XmlSchemaAnnotation annotation = new XmlSchemaAnnotation();
+        List<XmlSchemaAnnotationItem> content = annotation.getItems();
+        List<XmlSchemaDocumentation> documentation = new ArrayList<XmlSchemaDocumentation>();
+        List<Element> extensions = null;
+
+        // all the appinfo items come before the documentation items, as with the DOM builder.
+        while (nextChild(annotEl)) {
+            switch (getConstruct()) {
+            case APPINFO: {
+                XmlSchemaAppInfo appInfoObj = handleAppInfo();
+                if (appInfoObj != null) {
+                    content.add(appInfoObj);
+                }
+                break;
+            }
+            case DOCUMENTATION: {
+                XmlSchemaDocumentation docsObj = handleDocumentation();
+                if (docsObj != null) {
+                    documentation.add(docsObj);
+                }
+                break;
+            }
+            default:
+                extensions = handleForeignChild(extensions);
+                break;
+            }
+        }
+        content.addAll(documentation);
+
+        // process extra attributes and elements
+        processExtensibilityComponents(annotation, annotEl, extensions, true);
+        return annotation;
+    }
+
+    XmlSchemaAppInfo handleAppInfo() throws XMLStreamException {
+        Frame content = enter();
+        XmlSchemaAppInfo appInfo = new XmlSchemaAppInfo();
+        NodeList markup = null;
+        boolean hasMarkup;
+        if (markupMode == AnnotationMarkupMode.DROP) {
+            hasMarkup = skipContent(content);
+        } else {
+            markup = new DocumentFragmentNodeList(readChildren(content));
+            hasMarkup = markup.getLength() > 0;
+        }
+
+        if (!content.has("source") && !hasMarkup) {
+            return null;
+        }
+
+        appInfo.setSource(content.get("source"));
+        appInfo.setMarkup(markup);
+        return appInfo;
+    }
+
+    XmlSchemaComplexType handleComplexType(XmlSchema schema, boolean topLevel) throws XMLStreamException {
+        Frame complexEl = enter();
+        XmlSchemaComplexType ct = new XmlSchemaComplexType(schema, topLevel);
+        List<Element> extensions = null;
+
+        if (complexEl.has("name")) {
+            ct.setName(complexEl.get("name"));
+        }
+        while (nextChild(complexEl)) {
+            if (!isSchemaElement()) {
+                extensions = handleForeignChild(extensions);
+                continue;
+            }
+            switch (getConstruct()) {
+            case SEQUENCE:
+                ct.setParticle(handleSequence(schema));
+                break;
+            case CHOICE:
+                ct.setParticle(handleChoice(schema));
+                break;
+            case ALL:
+                ct.setParticle(handleAll(schema));
+                break;
+            case ATTRIBUTE:
+                ct.getAttributes().add(handleAttribute(schema, false));
+                break;
+            case ATTRIBUTE_GROUP:
+                ct.getAttributes().add(handleAttributeGroupRef(schema));
+                break;
+            case GROUP: {
+                XmlSchemaGroupRef group = handleGroupRef(schema);
+                if (group.getParticle() == null) {
+                    ct.setParticle(group);
+                } else {
+                    ct.setParticle(group.getParticle());
+                }
+                break;
+            }
+            case SIMPLE_CONTENT:
+                ct.setContentModel(handleSimpleContent(schema));
+                break;
+            case COMPLEX_CONTENT:
+                ct.setContentModel(handleComplexContent(schema));
+                break;
+            case ANNOTATION:
+                ct.setAnnotation(handleAnnotation());
+                break;
+            case ANY_ATTRIBUTE:
+                ct.setAnyAttribute(handleAnyAttribute(schema));
+                break;
+            default:
+                skip();
+                break;
+            }
+        }
+        if (complexEl.has("block")) {
+            ct.setBlock(XmlSchemaDerivationMethod.schemaValueOf(complexEl.get("block")));
+        }
+        if (complexEl.has("final")) {
+            ct.setFinal(XmlSchemaDerivationMethod.schemaValueOf(complexEl.get("final")));
+        }
+        if (complexEl.has("abstract")) {
+            ct.setAbstract(complexEl.get("abstract").equalsIgnoreCase("true"));
+        }
+        if (complexEl.has("mixed")) {
+            ct.setMixed(complexEl.get("mixed").equalsIgnoreCase("true"));
+        }
+
+        // process extra attributes and elements
+        processExtensibilityComponents(ct, complexEl, extensions, true);
+        return ct;
+    }
+
+    XmlSchemaDocumentation handleDocumentation() throws XMLStreamException {
+        Frame content = enter();
+        XmlSchemaDocumentation documentation = new XmlSchemaDocumentation();
+        NodeList markup = null;
+        boolean hasMarkup;
+        if (markupMode == AnnotationMarkupMode.DROP) {
+            hasMarkup = skipContent(content);
+        } else {
+            markup = new DocumentFragmentNodeList(readChildren(content));
+            hasMarkup = markup.getLength() > 0;
+        }
+
+        if (!content.has("source") && !content.has("xml:lang") && !hasMarkup) {
+            return null;
+        }
+
+        documentation.setSource(content.get("source"));
+        documentation.setLanguage(content.get("xml:lang"));
+        documentation.setMarkup(markup);
+        return documentation;
+    }
+
+    XmlSchemaElement handleElement(XmlSchema schema, boolean isGlobal) throws XMLStreamException {
+        Frame el = enter();
+        XmlSchemaElement element = new XmlSchemaElement(schema, isGlobal);
+        List<Element> extensions = null;
+
+        if (el.has("name")) {
+            element.setName(el.get("name"));
+        }
+        if (el.has("form")) {
+            element.setForm(XmlSchemaForm.schemaValueOf(el.get("form")));
+        }
+        handleElementGlobalType(el, element);
+
+        boolean annotationSeen = false;
+        boolean simpleTypeSeen = false;
+        boolean complexTypeSeen = false;
+        List<XmlSchemaIdentityConstraint> keys = new ArrayList<XmlSchemaIdentityConstraint>();
+        List<XmlSchemaIdentityConstraint> keyrefs = new ArrayList<XmlSchemaIdentityConstraint>();
+        List<XmlSchemaIdentityConstraint> uniques = new ArrayList<XmlSchemaIdentityConstraint>();
+        while (nextChild(el)) {
+            if (!isSchemaElement()) {
+                extensions = handleForeignChild(extensions);
+                continue;
+            }
+            switch (getConstruct()) {
+            case ANNOTATION:
+                if (annotationSeen) {
+                    skip();
+                } else {
+                    annotationSeen = true;
+                    element.setAnnotation(handleAnnotation());
+                }
+                break;
+            case SIMPLE_TYPE:
+                if (simpleTypeSeen) {
+                    skip();
+                } else {
+                    simpleTypeSeen = true;
+                    XmlSchemaSimpleType simpleType = handleSimpleType(schema, false);
+                    element.setSchemaType(simpleType);
+                    element.setSchemaTypeName(simpleType.getQName());
+                }
+                break;
+            case COMPLEX_TYPE:
+                if (simpleTypeSeen || complexTypeSeen) {
+                    skip();
+                } else {
+                    complexTypeSeen = true;
+                    element.setSchemaType(handleComplexType(schema, false));
+                }
+                break;
+            case KEY:
+                keys.add(handleConstraint(XmlSchemaKey.class, null));
+                break;
+            case KEYREF:
+                keyrefs.add(handleConstraint(XmlSchemaKeyref.class, el.scope));
+                break;
+            case UNIQUE:
+                uniques.add(handleConstraint(XmlSchemaUnique.class, null));
+                break;
+            default:
+                skip();
+                break;
+            }
+        }
+        element.getConstraints().addAll(keys);
+        element.getConstraints().addAll(keyrefs);
+        element.getConstraints().addAll(uniques);
+
+        if (el.has("abstract")) {
+            element.setAbstractElement(Boolean.valueOf(el.get("abstract")).booleanValue());
+        }
+        if (el.has("block")) {
+            element.setBlock(derivationValueOf(el.get("block")));
+        }
+        if (el.has("default")) {
+            element.setDefaultValue(el.get("default"));
+        }
+        if (el.has("final")) {
+            element.setFinalDerivation(derivationValueOf(el.get("final")));
+        }
+        if (el.has("fixed")) {
+            element.setFixedValue(el.get("fixed"));
+        }
+        if (el.has("id")) {
+            element.setId(el.get("id"));
+        }
+        if (el.has("nillable")) {
+            element.setNillable(Boolean.valueOf(el.get("nillable")).booleanValue());
+        }
+        if (el.has("substitutionGroup")) {
+            element.setSubstitutionGroup(getRefQName(el.get("substitutionGroup"), el.scope));
+        }
+
+        element.setMinOccurs(occursValueOf(el.get("minOccurs")));
+        element.setMaxOccurs(occursValueOf(el.get("maxOccurs")));
+
+        // process extra attributes and elements
+        processExtensibilityComponents(element, el, extensions, true);
+        return element;
+    }
+
+    XmlSchemaImport handleImport(XmlSchema schema) throws XMLStreamException {
+        Frame importEl = enter();
+        XmlSchemaImport schemaImport = new XmlSchemaImport(schema);
+
+        boolean annotationSeen = false;
+        while (nextChild(importEl)) {
+            if (getConstruct() == SchemaConstruct.ANNOTATION && !annotationSeen) {
+                annotationSeen = true;
+                schemaImport.setAnnotation(handleAnnotation());
+            } else {
+                skip();
+            }
+        }
+
+        schemaImport.namespace = importEl.value("namespace");
+        final String uri = schemaImport.namespace;
+        schemaImport.schemaLocation = importEl.value("schemaLocation");
+
+        TargetNamespaceValidator validator = newImportValidator(uri);
+        if (schema.getSourceURI() != null) {
+            schemaImport.setSchema(
+                resolveXmlSchema(uri, schemaImport.schemaLocation, schema.getSourceURI(), validator));
+        } else {
+            schemaImport.setSchema(
+                resolveXmlSchema(schemaImport.namespace, schemaImport.schemaLocation, validator));
+        }
+        return schemaImport;
+    }
+
+    XmlSchemaInclude handleInclude(final XmlSchema schema) throws XMLStreamException {
+        Frame includeEl = enter();
+        XmlSchemaInclude include = new XmlSchemaInclude(schema);
+        List<Element> extensions = null;
+
+        boolean annotationSeen = false;
+        while (nextChild(includeEl)) {
+            if (getConstruct() == SchemaConstruct.ANNOTATION && !annotationSeen) {
+                annotationSeen = true;
+                include.setAnnotation(handleAnnotation());
+            } else if (isSchemaElement()) {
+                skip();
+            } else {
+                extensions = handleForeignChild(extensions);
+            }
+        }
+
+        include.schemaLocation = includeEl.value("schemaLocation");
+
+        final TargetNamespaceValidator validator = newIncludeValidator(schema);
+        if (schema.getSourceURI() != null) {
+            include.setSchema(
+                resolveXmlSchema(schema.getLogicalTargetNamespace(), include.schemaLocation,
+                                 schema.getSourceURI(), validator));
+        } else {
+            include.setSchema(
+                resolveXmlSchema(schema.getLogicalTargetNamespace(), include.schemaLocation, validator));
+        }
+
+        // process extra attributes and elements
+        processExtensibilityComponents(include, includeEl, extensions, true);
+        return include;
+    }
+
+    XmlSchemaSimpleType handleSimpleType(XmlSchema schema, boolean topLevel) throws XMLStreamException {
+        Frame simpleEl = enter();
+        XmlSchemaSimpleType simpleType = new XmlSchemaSimpleType(schema, topLevel);
+        List<Element> extensions = null;
+
+        if (simpleEl.has("name")) {
+            simpleType.setName(simpleEl.get("name"));
+        }
+        if (simpleEl.has("final")) {
+            simpleType.setFinal(XmlSchemaDerivationMethod.schemaValueOf(simpleEl.get("final")));
+        }
+
+        boolean annotationSeen = false;
+        boolean contentSeen = false;
+        while (nextChild(simpleEl)) {
+            if (!isSchemaElement()) {
+                extensions = handleForeignChild(extensions);
+                continue;
+            }
+            SchemaConstruct construct = getConstruct();
+            if (construct == SchemaConstruct.ANNOTATION && !annotationSeen) {
+                annotationSeen = true;
+                simpleType.setAnnotation(handleAnnotation());
+                continue;
+            }
+            switch (contentSeen ? SchemaConstruct.UNKNOWN : construct) {
+            case RESTRICTION:
+                contentSeen = true;
+                handleSimpleTypeRestriction(schema, simpleType);
+                break;
+            case LIST:
+                contentSeen = true;
+                handleSimpleTypeList(schema, simpleType);
+                break;
+            case UNION:
+                contentSeen = true;
+                handleSimpleTypeUnion(schema, simpleType);
+                break;
+            default:
+                skip();
+                break;
+            }
+        }
+
+        // process extra attributes and elements
+        processExtensibilityComponents(simpleType, simpleEl, extensions, true);
+        return simpleType;
+    }
+
+    XmlSchema handleXmlSchemaElement(String systemId) throws XMLStreamException {
+        Frame schemaEl = enter();
+
+        // get all the attributes along with the namespace declns
+        currentSchema.setNamespaceContext(getNamespaceContext());
+        if (schemaEl.has("targetNamespace")) {
+            currentSchema.setTargetNamespace(schemaEl.get("targetNamespace"));
+        }
+        if (currentValidator != null) {
+            currentValidator.validate(currentSchema);
+        }
+
+        XmlSchemaCollection.SchemaKey schemaKey =
+            new XmlSchemaCollection.SchemaKey(currentSchema.getLogicalTargetNamespace(), systemId);
+        handleSchemaElementBasics(schemaEl, systemId, schemaKey);
+
+        boolean schemaChildren = false;
+        boolean oldSchemaChildren = false;
+        List<Element> extensions = null;
+        while (nextChild(schemaEl)) {
+            if (isSchemaElement()) {
+                schemaChildren = true;
+                handleSchemaElementChild();
+            } else {
+                if (OLD_SCHEMA_NS.equals(reader.getNamespaceURI())) {
+                    oldSchemaChildren = true;
+                }
+                extensions = handleForeignChild(extensions);
+            }
+        }
+        if (!schemaChildren && oldSchemaChildren) {
+            throw new XmlSchemaException("Schema defined using \"" + OLD_SCHEMA_NS + "\" "
+                                         + "is not supported. " + "Please update the schema to the \""
+                                         + XmlSchema.SCHEMA_NS + "\" namespace");
+        }
+
+        // add the extensibility components
+        processExtensibilityComponents(currentSchema, schemaEl, extensions, false);
+        return currentSchema;
+    }
+
+    private XmlSchemaAll handleAll(XmlSchema schema) throws XMLStreamException {
+        Frame allEl = enter();
+        XmlSchemaAll all = new XmlSchemaAll();
+
+        // handle min and max occurences
+        all.setMinOccurs(occursValueOf(allEl.get("minOccurs")));
+        all.setMaxOccurs(occursValueOf(allEl.get("maxOccurs")));
+
+        while (nextChild(allEl)) {
+            switch (getConstruct()) {
+            case ELEMENT:
+                all.getItems().add(handleElement(schema, false));
+                break;
+            case ANNOTATION:
+                all.setAnnotation(handleAnnotation());
+                break;
+            default:
+                skip();
+                break;
+            }
+        }
+        return all;
+    }
+
+    private XmlSchemaAny handleAny(XmlSchema schema) throws XMLStreamException {
+        Frame anyEl = enter();
+        XmlSchemaAny any = new XmlSchemaAny();
+
+        any.setTargetNamespace(schema.getLogicalTargetNamespace());
+        if (anyEl.has("namespace")) {
+            any.setNamespace(anyEl.get("namespace"));
+        }
+        if (anyEl.has("processContents")) {
+            String processContent = enumValueOf(anyEl.get("processContents"));
+            any.setProcessContent(XmlSchemaContentProcessing.schemaValueOf(processContent));
+        }
+
+        handleFirstAnnotation(anyEl, any);
+        any.setMinOccurs(occursValueOf(anyEl.get("minOccurs")));
+        any.setMaxOccurs(occursValueOf(anyEl.get("maxOccurs")));
+        return any;
+    }
+
+    private XmlSchemaAnyAttribute handleAnyAttribute(XmlSchema schema) throws XMLStreamException {
+        Frame anyAttrEl = enter();
+        XmlSchemaAnyAttribute anyAttr = new XmlSchemaAnyAttribute();
+
+        if (anyAttrEl.has("namespace")) {
+            anyAttr.namespace = anyAttrEl.get("namespace");
+        }
+        if (anyAttrEl.has("processContents")) {
+            String contentProcessing = enumValueOf(anyAttrEl.get("processContents"));
+            anyAttr.processContent = XmlSchemaContentProcessing.schemaValueOf(contentProcessing);
+        }
+        if (anyAttrEl.has("id")) {
+            anyAttr.setId(anyAttrEl.get("id"));
+        }
+
+        handleFirstAnnotation(anyAttrEl, anyAttr);
+        return anyAttr;
+    }
+
+    private XmlSchemaAttribute handleAttribute(XmlSchema schema, boolean topLevel)
+        throws XMLStreamException {
+        Frame attrEl = enter();
+        XmlSchemaAttribute attr = new XmlSchemaAttribute(schema, topLevel);
+        List<Element> extensions = null;
+
+        if (attrEl.has("name")) {
+            attr.setName(attrEl.get("name"));
+        }
+        if (attrEl.has("type")) {
+            attr.setSchemaTypeName(getRefQName(attrEl.get("type"), attrEl.scope));
+        }
+        if (attrEl.has("default")) {
+            attr.setDefaultValue(attrEl.get("default"));
+        }
+        if (attrEl.has("fixed")) {
+            attr.setFixedValue(attrEl.get("fixed"));
+        }
+        if (attrEl.has("form")) {
+            attr.setForm(XmlSchemaForm.schemaValueOf(enumValueOf(attrEl.get("form"))));
+        }
+        if (attrEl.has("id")) {
+            attr.setId(attrEl.get("id"));
+        }
+        if (attrEl.has("use")) {
+            attr.setUse(XmlSchemaUse.schemaValueOf(enumValueOf(attrEl.get("use"))));
+        }
+        if (attrEl.has("ref")) {
+            attr.getRef().setTargetQName(getRefQName(attrEl.get("ref"), attrEl.scope));
+        }
+
+        boolean simpleTypeSeen = false;
+        boolean annotationSeen = false;
+        while (nextChild(attrEl)) {
+            if (!isSchemaElement()) {
+                extensions = handleForeignChild(extensions);
+                continue;
+            }
+            switch (getConstruct()) {
+            case SIMPLE_TYPE:
+                if (simpleTypeSeen) {
+                    skip();
+                } else {
+                    simpleTypeSeen = true;
+                    attr.setSchemaType(handleSimpleType(schema, false));
+                }
+                break;
+            case ANNOTATION:
+                if (annotationSeen) {
+                    skip();
+                } else {
+                    annotationSeen = true;
+                    attr.setAnnotation(handleAnnotation());
+                }
+                break;
+            default:
+                skip();
+                break;
+            }
+        }
+
+        List<Attr> attrs = new ArrayList<Attr>();
+        for (Attribute att : attrEl.getSortedAttributes()) {
+            if (!RESERVED_ATTRIBUTES.contains(att.name)) {
+                attrs.add(createAttr(att));
+                String value = att.value;
+                if (value.indexOf(":") > -1) {
+                    // there is a possibility of some namespace mapping
+                    String prefix = value.substring(0, value.indexOf(":"));
+                    String namespace = attrEl.scope.getNamespaceURI(prefix);
+                    if (!Constants.NULL_NS_URI.equals(namespace)) {
+                        Attr nsAttr = getNodeFactory().createAttribute("xmlns:" + prefix);
+                        nsAttr.setValue(namespace);
+                        attrs.add(nsAttr);
+                    }
+                }
+            }
+        }
+        if (attrs.size() > 0) {
+            attr.setUnhandledAttributes(attrs.toArray(new Attr[attrs.size()]));
+        }
+
+        // process extra attributes and elements
+        processExtensibilityComponents(attr, attrEl, extensions, true);
+        return attr;
+    }
+
+    private XmlSchemaAttributeGroup handleAttributeGroup(XmlSchema schema) throws XMLStreamException {
+        Frame groupEl = enter();
+        XmlSchemaAttributeGroup attrGroup = new XmlSchemaAttributeGroup(schema);
+
+        if (groupEl.has("name")) {
+            attrGroup.setName(groupEl.get("name"));
+        }
+        if (groupEl.has("id")) {
+            attrGroup.setId(groupEl.get("id"));
+        }
+
+        while (nextChild(groupEl)) {
+            switch (getConstruct()) {
+            case ATTRIBUTE:
+                attrGroup.getAttributes().add(handleAttribute(schema, false));
+                break;
+            case ATTRIBUTE_GROUP:
+                attrGroup.getAttributes().add(handleAttributeGroupRef(schema));
+                break;
+            case ANY_ATTRIBUTE:
+                attrGroup.setAnyAttribute(handleAnyAttribute(schema));
+                break;
+            case ANNOTATION:
+                attrGroup.setAnnotation(handleAnnotation());
+                break;
+            default:
+                skip();
+                break;
+            }
+        }
+        return attrGroup;
+    }
+
+    private XmlSchemaAttributeGroupRef handleAttributeGroupRef(XmlSchema schema) throws XMLStreamException {
+        Frame attrGroupEl = enter();
+        XmlSchemaAttributeGroupRef attrGroup = new XmlSchemaAttributeGroupRef(schema);
+
+        if (attrGroupEl.has("ref")) {
+            attrGroup.getRef().setTargetQName(getRefQName(attrGroupEl.get("ref"), attrGroupEl.scope));
+        }
+        if (attrGroupEl.has("id")) {
+            attrGroup.setId(attrGroupEl.get("id"));
+        }
+
+        handleFirstAnnotation(attrGroupEl, attrGroup);
+        return attrGroup;
+    }
+
+    private XmlSchemaChoice handleChoice(XmlSchema schema) throws XMLStreamException {
+        Frame choiceEl = enter();
+        XmlSchemaChoice choice = new XmlSchemaChoice();
+
+        if (choiceEl.has("id")) {
+            choice.setId(choiceEl.get("id"));
+        }
+        choice.setMinOccurs(occursValueOf(choiceEl.get("minOccurs")));
+        choice.setMaxOccurs(occursValueOf(choiceEl.get("maxOccurs")));
+
+        while (nextChild(choiceEl)) {
+            switch (getConstruct()) {
+            case SEQUENCE:
+                choice.getItems().add(handleSequence(schema));
+                break;
+            case ELEMENT:
+                choice.getItems().add(handleElement(schema, false));
+                break;
+            case GROUP:
+                choice.getItems().add(handleGroupRef(schema));
+                break;
+            case CHOICE:
+                choice.getItems().add(handleChoice(schema));
+                break;
+            case ANY:
+                choice.getItems().add(handleAny(schema));
+                break;
+            case ANNOTATION:
+                choice.setAnnotation(handleAnnotation());
+                break;
+            default:
+                skip();
+                break;
+            }
+        }
+        return choice;
+    }
+
+    private XmlSchemaComplexContent handleComplexContent(XmlSchema schema) throws XMLStreamException {
+        Frame complexEl = enter();
+        XmlSchemaComplexContent complexContent = new XmlSchemaComplexContent();
+
+        while (nextChild(complexEl)) {
+            switch (getConstruct()) {
+            case RESTRICTION:
+                complexContent.content = handleComplexContentRestriction(schema);
+                break;
+            case EXTENSION:
+                complexContent.content = handleComplexContentExtension(schema);
+                break;
+            case ANNOTATION:
+                complexContent.setAnnotation(handleAnnotation());
+                break;
+            default:
+                skip();
+                break;
+            }
+        }
+
+        if (complexEl.has("mixed")) {
+            complexContent.setMixed(complexEl.get("mixed").equalsIgnoreCase("true"));
+        }
+        return complexContent;
+    }
+
+    private XmlSchemaComplexContentExtension handleComplexContentExtension(XmlSchema schema)
+        throws XMLStreamException {
+        Frame extEl = enter();
+        XmlSchemaComplexContentExtension ext = new XmlSchemaComplexContentExtension();
+
+        if (extEl.has("base")) {
+            ext.setBaseTypeName(getRefQName(extEl.get("base"), extEl.scope));
+        }
+
+        while (nextChild(extEl)) {
+            switch (getConstruct()) {
+            case SEQUENCE:
+                ext.setParticle(handleSequence(schema));
+                break;
+            case CHOICE:
+                ext.setParticle(handleChoice(schema));
+                break;
+            case ALL:
+                ext.setParticle(handleAll(schema));
+                break;
+            case ATTRIBUTE:
+                ext.getAttributes().add(handleAttribute(schema, false));
+                break;
+            case ATTRIBUTE_GROUP:
+                ext.getAttributes().add(handleAttributeGroupRef(schema));
+                break;
+            case GROUP:
+                ext.setParticle(handleGroupRef(schema));
+                break;
+            case ANY_ATTRIBUTE:
+                ext.setAnyAttribute(handleAnyAttribute(schema));
+                break;
+            case ANNOTATION:
+                ext.setAnnotation(handleAnnotation());
+                break;
+            default:
+                skip();
+                break;
+            }
+        }
+        return ext;
+    }
+
+    private XmlSchemaComplexContentRestriction handleComplexContentRestriction(XmlSchema schema)
+        throws XMLStreamException {
+        Frame restrictionEl = enter();
+        XmlSchemaComplexContentRestriction restriction = new XmlSchemaComplexContentRestriction();
+
+        if (restrictionEl.has("base")) {
+            restriction.setBaseTypeName(getRefQName(restrictionEl.get("base"), restrictionEl.scope));
+        }
+
+        while (nextChild(restrictionEl)) {
+            switch (getConstruct()) {
+            case SEQUENCE:
+                restriction.setParticle(handleSequence(schema));
+                break;
+            case CHOICE:
+                restriction.setParticle(handleChoice(schema));
+                break;
+            case ALL:
+                restriction.setParticle(handleAll(schema));
+                break;
+            case ATTRIBUTE:
+                restriction.getAttributes().add(handleAttribute(schema, false));
+                break;
+            case ATTRIBUTE_GROUP:
+                restriction.getAttributes().add(handleAttributeGroupRef(schema));
+                break;
+            case GROUP:
+                restriction.setParticle(handleGroupRef(schema));
+                break;
+            case ANY_ATTRIBUTE:
+                restriction.setAnyAttribute(handleAnyAttribute(schema));
+                break;
+            case ANNOTATION:
+                restriction.setAnnotation(handleAnnotation());
+                break;
+            default:
+                skip();
+                break;
+            }
+        }
+        return restriction;
+    }
+
+    /**
+     * Handle key, keyref and unique.
+     *
+     * @param typeClass the class of the constraint.
+     * @param referContext if not null, the context used to resolve the 'refer' attribute of a keyref. The
+     *            DOM builder resolves it against the enclosing element.
+     */
+    private XmlSchemaIdentityConstraint
+    handleConstraint(Class<? extends XmlSchemaIdentityConstraint> typeClass,
+                     NamespaceContext referContext) throws XMLStreamException {
+        Frame constraintEl = enter();
+        XmlSchemaIdentityConstraint constraint;
+        try {
+            constraint = typeClass.getDeclaredConstructor().newInstance();
+        } catch (InstantiationException e) {
+            throw new XmlSchemaException(e.getMessage());
+        } catch (IllegalAccessException e) {
+            throw new XmlSchemaException(e.getMessage());
+        } catch (NoSuchMethodException e) {
+            throw new XmlSchemaException(e.getMessage());
+        } catch (InvocationTargetException e) {
+            throw new XmlSchemaException(e.getMessage(), e.getCause());
+        }
+
+        if (constraintEl.has("name")) {
+            constraint.setName(constraintEl.get("name"));
+        }
+        if (constraintEl.has("refer")) {
+            String name = constraintEl.get("refer");
+            ((XmlSchemaKeyref)constraint).refer = getRefQName(name, constraintEl.scope);
+            if (referContext != null) {
+                ((XmlSchemaKeyref)constraint).refer = getRefQName(name, referContext);
+            }
+        }
+
+        while (nextChild(constraintEl)) {
+            switch (getConstruct()) {
+            case SELECTOR: {
+                Frame el = enter();
+                XmlSchemaXPath selectorXPath = new XmlSchemaXPath();
+                selectorXPath.xpath = el.value("xpath");
+                handleFirstAnnotation(el, selectorXPath);
+                constraint.setSelector(selectorXPath);
+                break;
+            }
+            case FIELD: {
+                Frame el = enter();
+                XmlSchemaXPath fieldXPath = new XmlSchemaXPath();
+                fieldXPath.xpath = el.value("xpath");
+                constraint.getFields().add(fieldXPath);
+                handleFirstAnnotation(el, fieldXPath);
+                break;
+            }
+            case ANNOTATION:
+                constraint.setAnnotation(handleAnnotation());
+                break;
+            default:
+                skip();
+                break;
+            }
+        }
+        return constraint;
+    }
+
+    private void handleElementGlobalType(Frame el, XmlSchemaElement element) {
+        if (el.has("type")) {
+            element.setSchemaTypeName(getRefQName(el.get("type"), el.scope));
+            QName typeQName = element.getSchemaTypeName();
+
+            XmlSchemaType type = collection.getTypeByQName(typeQName);
+            if (type == null) {
+                // Could be a forward reference...
+                collection.addUnresolvedType(typeQName, element);
+            }
+            element.setSchemaType(type);
+        } else if (el.has("ref")) {
+            element.getRef().setTargetQName(getRefQName(el.get("ref"), el.scope));
+        }
+    }
+
+    /**
+     * Handle the children of an element that can only contain an annotation. Only the first annotation is
+     * used, as with the DOM builder.
+     */
+    private void handleFirstAnnotation(Frame el, XmlSchemaAnnotated annotated) throws XMLStreamException {
+        boolean annotationSeen = false;
+        while (nextChild(el)) {
+            if (getConstruct() == SchemaConstruct.ANNOTATION && !annotationSeen) {
+                annotationSeen = true;
+                annotated.setAnnotation(handleAnnotation());
+            } else {
+                skip();
+            }
+        }
+    }
+
+    private XmlSchemaGroup handleGroup(XmlSchema schema) throws XMLStreamException {
+        Frame groupEl = enter();
+        XmlSchemaGroup group = new XmlSchemaGroup(schema);
+        group.setName(groupEl.value("name"));
+
+        while (nextChild(groupEl)) {
+            switch (getConstruct()) {
+            case ALL:
+                group.setParticle(handleAll(schema));
+                break;
+            case SEQUENCE:
+                group.setParticle(handleSequence(schema));
+                break;
+            case CHOICE:
+                group.setParticle(handleChoice(schema));
+                break;
+            case ANNOTATION:
+                group.setAnnotation(handleAnnotation());
+                break;
+            default:
+                skip();
+                break;
+            }
+        }
+        return group;
+    }
+
+    private XmlSchemaGroupRef handleGroupRef(XmlSchema schema) throws XMLStreamException {
+        Frame groupEl = enter();
+        XmlSchemaGroupRef group = new XmlSchemaGroupRef();
+
+        group.setMaxOccurs(occursValueOf(groupEl.get("maxOccurs")));
+        group.setMinOccurs(occursValueOf(groupEl.get("minOccurs")));
+
+        boolean hasRef = groupEl.has("ref");
+        if (hasRef) {
+            group.setRefName(getRefQName(groupEl.get("ref"), groupEl.scope));
+        }
+
+        boolean annotationSeen = false;
+        while (nextChild(groupEl)) {
+            SchemaConstruct construct = getConstruct();
+            if (construct == SchemaConstruct.ANNOTATION && !annotationSeen) {
+                annotationSeen = true;
+                group.setAnnotation(handleAnnotation());
+                continue;
+            }
+            switch (hasRef ? SchemaConstruct.UNKNOWN : construct) {
+            case SEQUENCE:
+                group.setParticle(handleSequence(schema));
+                break;
+            case ALL:
+                group.setParticle(handleAll(schema));
+                break;
+            case CHOICE:
+                group.setParticle(handleChoice(schema));
+                break;
+            default:
+                skip();
+                break;
+            }
+        }
+        return group;
+    }
+
+    private XmlSchemaNotation handleNotation(XmlSchema schema) throws XMLStreamException {
+        Frame notationEl = enter();
+        XmlSchemaNotation notation = new XmlSchemaNotation(schema);
+
+        if (notationEl.has("id")) {
+            notation.setId(notationEl.get("id"));
+        }
+        if (notationEl.has("name")) {
+            notation.setName(notationEl.get("name"));
+        }
+        if (notationEl.has("public")) {
+            notation.setPublicNotation(notationEl.get("public"));
+        }
+        if (notationEl.has("system")) {
+            notation.setSystem(notationEl.get("system"));
+        }
+
+        handleFirstAnnotation(notationEl, notation);
+        return notation;
+    }
+
+    private XmlSchemaRedefine handleRedefine(XmlSchema schema) throws XMLStreamException {
+        Frame redefineEl = enter();
+        XmlSchemaRedefine redefine = new XmlSchemaRedefine(schema);
+        redefine.schemaLocation = redefineEl.value("schemaLocation");
+        final TargetNamespaceValidator validator = newIncludeValidator(schema);
+
+        if (schema.getSourceURI() != null) {
+            redefine.setSchema(
+                resolveXmlSchema(schema.getLogicalTargetNamespace(), redefine.schemaLocation,
+                                 schema.getSourceURI(), validator));
+        } else {
+            redefine.setSchema(
+                resolveXmlSchema(schema.getLogicalTargetNamespace(), redefine.schemaLocation, validator));
+        }
+
+        while (nextChild(redefineEl)) {
+            switch (getConstruct()) {
+            case SIMPLE_TYPE: {
+                XmlSchemaType type = handleSimpleType(schema, false);
+                redefine.getSchemaTypes().put(type.getQName(), type);
+                redefine.getItems().add(type);
+                break;
+            }
+            case COMPLEX_TYPE: {
+                XmlSchemaType type = handleComplexType(schema, true);
+                redefine.getSchemaTypes().put(type.getQName(), type);
+                redefine.getItems().add(type);
+                break;
+            }
+            case GROUP: {
+                XmlSchemaGroup group = handleGroup(schema);
+                redefine.getGroups().put(group.getQName(), group);
+                redefine.getItems().add(group);
+                break;
+            }
+            case ATTRIBUTE_GROUP: {
+                XmlSchemaAttributeGroup group = handleAttributeGroup(schema);
+                redefine.getAttributeGroups().put(group.getQName(), group);
+                redefine.getItems().add(group);
+                break;
+            }
+            case ANNOTATION:
+                redefine.setAnnotation(handleAnnotation());
+                break;
+            default:
+                skip();
+                break;
+            }
+        }
+        return redefine;
+    }
+
+    private void handleSchemaElementBasics(Frame schemaEl, String systemId,
+                                           XmlSchemaCollection.SchemaKey schemaKey) {
+        if (!collection.containsSchema(schemaKey)) {
+            collection.addSchema(schemaKey, currentSchema);
+            currentSchema.setParent(collection); // establish parentage now.
+        } else {
+            throw new XmlSchemaException("Schema name conflict in collection. Namespace: "
+                                         + currentSchema.getLogicalTargetNamespace());
+        }
+
+        currentSchema.setElementFormDefault(formValueOf(schemaEl.get("elementFormDefault")));
+        currentSchema.setAttributeFormDefault(formValueOf(schemaEl.get("attributeFormDefault")));
+        currentSchema.setBlockDefault(derivationValueOf(schemaEl.get("blockDefault")));
+        currentSchema.setFinalDefault(derivationValueOf(schemaEl.get("finalDefault")));
+        /* set id attribute */
+        if (schemaEl.has("id")) {
+            currentSchema.setId(schemaEl.get("id"));
+        }
+
+        currentSchema.setSourceURI(systemId);
+    }
+
+    private void handleSchemaElementChild() throws XMLStreamException {
+        switch (getConstruct()) {
+        case SIMPLE_TYPE: {
+            XmlSchemaType type = handleSimpleType(currentSchema, true);
+            collection.resolveType(type.getQName(), type);
+            break;
+        }
+        case COMPLEX_TYPE: {
+            XmlSchemaType type = handleComplexType(currentSchema, true);
+            collection.resolveType(type.getQName(), type);
+            break;
+        }
+        case ELEMENT:
+            handleElement(currentSchema, true);
+            break;
+        case INCLUDE:
+            handleInclude(currentSchema);
+            break;
+        case IMPORT:
+            handleImport(currentSchema);
+            break;
+        case GROUP:
+            handleGroup(currentSchema);
+            break;
+        case ATTRIBUTE_GROUP:
+            handleAttributeGroup(currentSchema);
+            break;
+        case ATTRIBUTE:
+            handleAttribute(currentSchema, true);
+            break;
+        case REDEFINE:
+            handleRedefine(currentSchema);
+            break;
+        case NOTATION:
+            handleNotation(currentSchema);
+            break;
+        case ANNOTATION:
+            currentSchema.setAnnotation(handleAnnotation());
+            break;
+        default:
+            skip();
+            break;
+        }
+    }
+
+    private XmlSchemaSequence handleSequence(XmlSchema schema) throws XMLStreamException {
+        Frame sequenceEl = enter();
+        XmlSchemaSequence sequence = new XmlSchemaSequence();
+
+        // handle min and max occurences
+        sequence.setMinOccurs(occursValueOf(sequenceEl.get("minOccurs")));
+        sequence.setMaxOccurs(occursValueOf(sequenceEl.get("maxOccurs")));
+
+        while (nextChild(sequenceEl)) {
+            switch (getConstruct()) {
+            case SEQUENCE:
+                sequence.getItems().add(handleSequence(schema));
+                break;
+            case ELEMENT:
+                sequence.getItems().add(handleElement(schema, false));
+                break;
+            case GROUP:
+                sequence.getItems().add(handleGroupRef(schema));
+                break;
+            case CHOICE:
+                sequence.getItems().add(handleChoice(schema));
+                break;
+            case ANY:
+                sequence.getItems().add(handleAny(schema));
+                break;
+            case ANNOTATION:
+                sequence.setAnnotation(handleAnnotation());
+                break;
+            default:
+                skip();
+                break;
+            }
+        }
+        return sequence;
+    }
+
+    private XmlSchemaSimpleContent handleSimpleContent(XmlSchema schema) throws XMLStreamException {
+        Frame simpleEl = enter();
+        XmlSchemaSimpleContent simpleContent = new XmlSchemaSimpleContent();
+
+        while (nextChild(simpleEl)) {
+            switch (getConstruct()) {
+            case RESTRICTION:
+                simpleContent.content = handleSimpleContentRestriction(schema);
+                break;
+            case EXTENSION:
+                simpleContent.content = handleSimpleContentExtension(schema);
+                break;
+            case ANNOTATION:
+                simpleContent.setAnnotation(handleAnnotation());
+                break;
+            default:
+                skip();
+                break;
+            }
+        }
+        return simpleContent;
+    }
+
+    private XmlSchemaSimpleContentExtension handleSimpleContentExtension(XmlSchema schema)
+        throws XMLStreamException {
+        Frame extEl = enter();
+        XmlSchemaSimpleContentExtension ext = new XmlSchemaSimpleContentExtension();
+
+        if (extEl.has("base")) {
+            ext.setBaseTypeName(getRefQName(extEl.get("base"), extEl.scope));
+        }
+
+        while (nextChild(extEl)) {
+            switch (getConstruct()) {
+            case ATTRIBUTE:
+                ext.getAttributes().add(handleAttribute(schema, false));
+                break;
+            case ATTRIBUTE_GROUP:
+                ext.getAttributes().add(handleAttributeGroupRef(schema));
+                break;
+            case ANY_ATTRIBUTE:
+                ext.setAnyAttribute(handleAnyAttribute(schema));
+                break;
+            case ANNOTATION:
+                ext.setAnnotation(handleAnnotation());
+                break;
+            default:
+                skip();
+                break;
+            }
+        }
+        return ext;
+    }
+
+    private XmlSchemaSimpleContentRestriction handleSimpleContentRestriction(XmlSchema schema)
+        throws XMLStreamException {
+        Frame restrictionEl = enter();
+        XmlSchemaSimpleContentRestriction restriction = new XmlSchemaSimpleContentRestriction();
+
+        if (restrictionEl.has("base")) {
+            restriction.setBaseTypeName(getRefQName(restrictionEl.get("base"), restrictionEl.scope));
+        }
+        if (restrictionEl.has("id")) {
+            restriction.setId(restrictionEl.get("id"));
+        }
+
+        // check back simpleContent tag children to add attributes and
+        // simpleType if any occur
+        while (nextChild(restrictionEl)) {
+            if (!isSchemaElement()) {
+                skip();
+                continue;
+            }
+            switch (getConstruct()) {
+            case ATTRIBUTE:
+                restriction.getAttributes().add(handleAttribute(schema, false));
+                break;
+            case ATTRIBUTE_GROUP:
+                restriction.getAttributes().add(handleAttributeGroupRef(schema));
+                break;
+            case SIMPLE_TYPE:
+                restriction.setBaseType(handleSimpleType(schema, false));
+                break;
+            case ANY_ATTRIBUTE:
+                restriction.anyAttribute = handleAnyAttribute(schema);
+                break;
+            case ANNOTATION:
+                restriction.setAnnotation(handleAnnotation());
+                break;
+            default:
+                restriction.getFacets().add(handleSimpleContentFacet());
+                break;
+            }
+        }
+        return restriction;
+    }
+
+    /**
+     * Handle a facet of a simple content restriction. The DOM builder builds the annotation of such a facet
+     * from the facet element itself, rather than from its annotation child; this is preserved here so that
+     * both builders produce the same model.
+     */
+    private XmlSchemaFacet handleSimpleContentFacet() throws XMLStreamException {
+        Frame el = enter();
+        XmlSchemaFacet facet = XmlSchemaFacet.construct(el.localName, el.value("fixed"), el.get("id"),
+                                                        el.value("value"));
+        boolean annotationSeen = false;
+        List<XmlSchemaAnnotationItem> content = new ArrayList<XmlSchemaAnnotationItem>();
+        List<XmlSchemaDocumentation> documentation = new ArrayList<XmlSchemaDocumentation>();
+        List<Element> extensions = null;
+        while (nextChild(el)) {
+            switch (getConstruct()) {
+            case ANNOTATION:
+                annotationSeen = true;
+                skip();
+                break;
+            case APPINFO: {
+                XmlSchemaAppInfo appInfoObj = handleAppInfo();
+                if (appInfoObj != null) {
+                    content.add(appInfoObj);
+                }
+                break;
+            }
+            case DOCUMENTATION: {
+                XmlSchemaDocumentation docsObj = handleDocumentation();
+                if (docsObj != null) {
+                    documentation.add(docsObj);
+                }
+                break;
+            }
+            default:
+                extensions = handleForeignChild(extensions);
+                break;
+            }
+        }
+        if (annotationSeen) {
+            XmlSchemaAnnotation facetAnnotation = new XmlSchemaAnnotation();
+            facetAnnotation.getItems().addAll(content);
+            facetAnnotation.getItems().addAll(documentation);
+            processExtensibilityComponents(facetAnnotation, el, extensions, true);
+            facet.setAnnotation(facetAnnotation);
+        }
+        // process extra attributes and elements
+        processExtensibilityComponents(facet, el, extensions, true);
+        return facet;
+    }
+
+    private void handleSimpleTypeList(XmlSchema schema, XmlSchemaSimpleType simpleType)
+        throws XMLStreamException {
+        Frame listEl = enter();
+        XmlSchemaSimpleTypeList list = new XmlSchemaSimpleTypeList();
+
+        boolean hasItemType = listEl.has("itemType");
+        if (hasItemType) {
+            list.itemTypeName = getRefQName(listEl.get("itemType"), listEl.scope);
+        }
+
+        boolean simpleTypeSeen = false;
+        boolean annotationSeen = false;
+        while (nextChild(listEl)) {
+            switch (getConstruct()) {
+            case SIMPLE_TYPE:
+                if (simpleTypeSeen || hasItemType) {
+                    skip();
+                } else {
+                    list.itemType = handleSimpleType(schema, false);
+                }
+                simpleTypeSeen = true;
+                break;
+            case ANNOTATION:
+                if (annotationSeen) {
+                    skip();
+                } else {
+                    annotationSeen = true;
+                    list.setAnnotation(handleAnnotation());
+                }
+                break;
+            default:
+                skip();
+                break;
+            }
+        }
+        simpleType.content = list;
+    }
+
+    private void handleSimpleTypeRestriction(XmlSchema schema, XmlSchemaSimpleType simpleType)
+        throws XMLStreamException {
+        Frame restrictionEl = enter();
+        XmlSchemaSimpleTypeRestriction restriction = new XmlSchemaSimpleTypeRestriction();
+
+        boolean hasBase = restrictionEl.has("base");
+        if (hasBase) {
+            restriction.setBaseTypeName(getRefQName(restrictionEl.get("base"), restrictionEl.scope));
+        }
+
+        boolean annotationSeen = false;
+        boolean simpleTypeSeen = false;
+        while (nextChild(restrictionEl)) {
+            if (!isSchemaElement()) {
+                skip();
+                continue;
+            }
+            switch (getConstruct()) {
+            case ANNOTATION:
+                if (annotationSeen) {
+                    skip();
+                } else {
+                    annotationSeen = true;
+                    restriction.setAnnotation(handleAnnotation());
+                }
+                break;
+            case SIMPLE_TYPE:
+                if (hasBase || simpleTypeSeen) {
+                    skip();
+                } else {
+                    simpleTypeSeen = true;
+                    restriction.setBaseType(handleSimpleType(schema, false));
+                }
+                break;
+            default:
+                restriction.getFacets().add(handleFacet());
+                break;
+            }
+        }
+        simpleType.content = restriction;
+    }
+
+    private XmlSchemaFacet handleFacet() throws XMLStreamException {
+        Frame el = enter();
+        XmlSchemaFacet facet = XmlSchemaFacet.construct(el.localName, el.value("fixed"), el.get("id"),
+                                                        el.value("value"));
+        List<Element> extensions = null;
+        boolean annotationSeen = false;
+        while (nextChild(el)) {
+            if (getConstruct() == SchemaConstruct.ANNOTATION && !annotationSeen) {
+                annotationSeen = true;
+                facet.setAnnotation(handleAnnotation());
+            } else if (isSchemaElement()) {
+                skip();
+            } else {
+                extensions = handleForeignChild(extensions);
+            }
+        }
+        // process extra attributes and elements
+        processExtensibilityComponents(facet, el, extensions, true);
+        return facet;
+    }
+
+    private void handleSimpleTypeUnion(XmlSchema schema, XmlSchemaSimpleType simpleType)
+        throws XMLStreamException {
+        Frame unionEl = enter();
+        XmlSchemaSimpleTypeUnion union = new XmlSchemaSimpleTypeUnion();
+
+        if (unionEl.has("memberTypes")) {
+            String memberTypes = unionEl.get("memberTypes");
+            union.setMemberTypesSource(memberTypes);
+            List<QName> v = new ArrayList<QName>();
+            StringTokenizer tokenizer = new StringTokenizer(memberTypes, " ");
+            while (tokenizer.hasMoreTokens()) {
+                String member = tokenizer.nextToken();
+                v.add(getRefQName(member, unionEl.scope));
+            }
+            union.setMemberTypesQNames(v.toArray(new QName[v.size()]));
+        }
+
+        boolean annotationSeen = false;
+        while (nextChild(unionEl)) {
+            switch (getConstruct()) {
+            case SIMPLE_TYPE: {
+                XmlSchemaSimpleType unionSimpleType = handleSimpleType(schema, false);
+                union.getBaseTypes().add(unionSimpleType);
+                if (!unionSimpleType.isAnonymous()) {
+                    union.setMemberTypesSource(union.getMemberTypesSource() + " "
+                                               + unionSimpleType.getName());
+                }
+                break;
+            }
+            case ANNOTATION:
+                if (annotationSeen) {
+                    skip();
+                } else {
+                    annotationSeen = true;
+                    union.setAnnotation(handleAnnotation());
+                }
+                break;
+            default:
+                skip();
+                break;
+            }
+        }
+        simpleType.content = union;
+    }
+
+    /**
+     * A generic method to process the extra attributes and the extra elements present within the schema.
+     * What are considered extensions are child elements with non schema namespace and child attributes with
+     * any namespace. The attributes are visited in the order a DOM parser keeps them, i.e. sorted by name.
+     *
+     * @param schemaObject the object that receives the extensions.
+     * @param el the element the object was built from.
+     * @param extensions the foreign child elements, or null if there are none.
+     * @param namespaces whether namespace declarations are passed on as extension attributes.
+     */
+    private void processExtensibilityComponents(XmlSchemaObject schemaObject, Frame el,
+                                                List<Element> extensions, boolean namespaces) {
+        ExtensionRegistry extReg = getExtReg();
+        if (extReg == null) {
+            return;
+        }
+
+        // process attributes
+        for (Attribute attribute : el.getSortedAttributes()) {
+            String namespaceURI = attribute.namespaceURI;
+            if (namespaceURI != null && !"".equals(namespaceURI) // ignore unqualified attributes
+                // ignore namespaces
+                && (namespaces || !namespaceURI.startsWith(Constants.XMLNS_ATTRIBUTE_NS_URI))
+                // does not belong to the schema namespace by any chance!
+                && !Constants.URI_2001_SCHEMA_XSD.equals(namespaceURI)) {
+                QName qName = collection.getInterner().intern(namespaceURI, attribute.localName);
+                extReg.deserializeExtension(schemaObject, qName, createAttr(attribute));
+            }
+        }
+
+        // process elements
+        if (extensions != null) {
+            for (Element extElement : extensions) {
+                QName qName = collection.getInterner().intern(extElement.getNamespaceURI(),
+                                                              extElement.getLocalName());
+                extReg.deserializeExtension(schemaObject, qName, extElement);
+            }
+        }
+    }
+
+    /**
+     * Handle a child element that is not handled by the schema handlers. Elements from a foreign namespace
+     * are kept as DOM elements if there is an extension registry to pass them to; anything else is
+     * skipped.
+     *
+     * @param extensions the foreign elements found so far, or null.
+     * @return the foreign elements, including the current one.
+     */
+    private List<Element> handleForeignChild(List<Element> extensions) throws XMLStreamException {
+        String namespaceURI = reader.getNamespaceURI();
+        if (getExtReg() == null || namespaceURI == null || "".equals(namespaceURI)
+            || Constants.URI_2001_SCHEMA_XSD.equals(namespaceURI)) {
+            skip();
+            return extensions;
+        }
+        if (extensions == null) {
+            extensions = new ArrayList<Element>();
+        }
+        extensions.add(readElement());
+        return extensions;
+    }
+
+    private boolean isSchemaElement() {
+        return XmlSchema.SCHEMA_NS.equals(reader.getNamespaceURI());
+    }
+
+    /**
+     * Look up the construct of the element at the current start tag.
+     *
+     * @return the construct, or {@link SchemaConstruct#UNKNOWN} if the element is not in the XML Schema
+     *         namespace.
+     */
+    private SchemaConstruct getConstruct() {
+        return isSchemaElement() ? SchemaConstruct.forName(reader.getLocalName()) : SchemaConstruct.UNKNOWN;
+    }
+
+    /**
+     * Record the attributes and namespace declarations of the element at the current start tag.
+     */
+    private Frame enter() {
+        int namespaceCount = reader.getNamespaceCount();
+        int attributeCount = reader.getAttributeCount();
+        NamespaceScope enclosing = scope;
+        if (namespaceCount > 0) {
+            scope = new NamespaceScope(enclosing, null);
+            scope.prefixes = new String[namespaceCount];
+            scope.uris = new String[namespaceCount];
+        }
+        Attribute[] attributes = new Attribute[attributeCount + namespaceCount];
+        for (int i = 0; i < attributeCount; i++) {
+            attributes[i] = new Attribute(reader.getAttributeNamespace(i), reader.getAttributePrefix(i),
+                                          reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+        }
+        for (int i = 0; i < namespaceCount; i++) {
+            String prefix = emptyIfNull(reader.getNamespacePrefix(i));
+            String uri = emptyIfNull(reader.getNamespaceURI(i));
+            scope.prefixes[i] = prefix;
+            scope.uris[i] = uri;
+            attributes[attributeCount + i] =
+                "".equals(prefix)
+                    ? new Attribute(Constants.XMLNS_ATTRIBUTE_NS_URI, null, Constants.XMLNS_ATTRIBUTE, uri)
+                    : new Attribute(Constants.XMLNS_ATTRIBUTE_NS_URI, Constants.XMLNS_ATTRIBUTE, prefix, uri);
+        }
+        return new Frame(reader.getLocalName(), enclosing, scope, attributes);
+    }
+
+    /**
+     * Advance to the next child element of the given element.
+     *
+     * @return true if the reader is positioned at the start tag of a child, false if it is positioned at the
+     *         end tag of the given element.
+     */
+    private boolean nextChild(Frame el) throws XMLStreamException {
+        while (true) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                return true;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                scope = el.enclosing;
+                return false;
+            } else if (event == XMLStreamConstants.END_DOCUMENT) {
+                throw new XmlSchemaException("Unexpected end of document.");
+            }
+        }
+    }
+
+    /**
+     * Skip the element at the current start tag, including its content.
+     */
+    private void skip() throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * Convert the content of the given element into DOM nodes.
+     */
+    private DocumentFragment readChildren(Frame el) throws XMLStreamException {
+        DocumentFragment fragment = getNodeFactory().createDocumentFragment();
+        readContent(fragment);
+        scope = el.enclosing;
+        return fragment;
+    }
+
+    /**
+     * Skip the content of the given element, up to its end tag.
+     *
+     * @return true if the element has any content.
+     */
+    private boolean skipContent(Frame el) throws XMLStreamException {
+        boolean hasContent = false;
+        int depth = 1;
+        while (true) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT && --depth == 0) {
+                break;
+            }
+            hasContent = true;
+        }
+        scope = el.enclosing;
+        return hasContent;
+    }
+
+    /**
+     * Convert the element at the current start tag into a DOM element.
+     */
+    private Element readElement() throws XMLStreamException {
+        Element element = createElement();
+        readContent(element);
+        return element;
+    }
+
+    /**
+     * Append DOM nodes for the content of the current element to the given parent, up to the end tag of
+     * the current element.
+     */
+    private void readContent(Node parent) throws XMLStreamException {
+        Document doc = getNodeFactory();
+        Node current = parent;
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            switch (event) {
+            case XMLStreamConstants.START_ELEMENT:
+                current = current.appendChild(createElement());
+                depth++;
+                break;
+            case XMLStreamConstants.END_ELEMENT:
+                current = current.getParentNode();
+                depth--;
+                break;
+            case XMLStreamConstants.CHARACTERS:
+            case XMLStreamConstants.SPACE:
+                Node last = current.getLastChild();
+                if (last != null && last.getNodeType() == Node.TEXT_NODE) {
+                    // a DOM parser does not split text nodes
+                    ((org.w3c.dom.Text)last).appendData(reader.getText());
+                } else {
+                    current.appendChild(doc.createTextNode(reader.getText()));
+                }
+                break;
+            case XMLStreamConstants.CDATA:
+                current.appendChild(doc.createCDATASection(reader.getText()));
+                break;
+            case XMLStreamConstants.COMMENT:
+                current.appendChild(doc.createComment(reader.getText()));
+                break;
+            case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                current.appendChild(doc.createProcessingInstruction(reader.getPITarget(),
+                                                                    reader.getPIData()));
+                break;
+            case XMLStreamConstants.ENTITY_REFERENCE:
+                current.appendChild(doc.createEntityReference(reader.getLocalName()));
+                break;
+            default:
+                break;
+            }
+        }
+    }
+
+    private Element createElement() {
+        Document doc = getNodeFactory();
+        String prefix = emptyIfNull(reader.getPrefix());
+        String localName = reader.getLocalName();
+        Element element = doc.createElementNS(nullIfEmpty(reader.getNamespaceURI()),
+                                              "".equals(prefix) ? localName : prefix + ":" + localName);
+        for (int i = 0; i < reader.getNamespaceCount(); i++) {
+            String nsPrefix = emptyIfNull(reader.getNamespacePrefix(i));
+            element.setAttributeNS(Constants.XMLNS_ATTRIBUTE_NS_URI,
+                                   "".equals(nsPrefix)
+                                       ? Constants.XMLNS_ATTRIBUTE
+                                       : Constants.XMLNS_ATTRIBUTE + ":" + nsPrefix,
+                                   emptyIfNull(reader.getNamespaceURI(i)));
+        }
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            String attrPrefix = emptyIfNull(reader.getAttributePrefix(i));
+            String attrLocalName = reader.getAttributeLocalName(i);
+            element.setAttributeNS(nullIfEmpty(reader.getAttributeNamespace(i)),
+                                   "".equals(attrPrefix) ? attrLocalName : attrPrefix + ":" + attrLocalName,
+                                   reader.getAttributeValue(i));
+        }
+        return element;
+    }
+
+    private Attr createAttr(Attribute attribute) {
+        Attr attr = getNodeFactory().createAttributeNS(nullIfEmpty(attribute.namespaceURI), attribute.name);
+        attr.setValue(attribute.value);
+        return attr;
+    }
+
+    /**
+     * @return the namespace declarations in scope, as they are recorded for the schema.
+     */
+    private NodeNamespaceContext getNamespaceContext() {
+        Map<String, String> declarations = new HashMap<String, String>();
+        List<NamespaceScope> scopes = new ArrayList<NamespaceScope>();
+        for (NamespaceScope s = scope; s != null; s = s.parent) {
+            scopes.add(0, s);
+        }
+        for (NamespaceScope s : scopes) {
+            for (int i = 0; s.prefixes != null && i < s.prefixes.length; i++) {
+                declarations.put(s.prefixes[i], s.uris[i]);
+            }
+        }
+        return NodeNamespaceContext.getNamespaceContext(declarations);
+    }
+
+    private Document getNodeFactory() {
+        if (nodeFactory == null) {
+            try {
+                DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+                factory.setNamespaceAware(true);
+                nodeFactory = factory.newDocumentBuilder().newDocument();
+            } catch (ParserConfigurationException e) {
+                throw new XmlSchemaException(e.getMessage(), e);
+            }
+        }
+        return nodeFactory;
+    }
+
+    private static String emptyIfNull(String value) {
+        return value == null ? "" : value;
+    }
+
+    private static String nullIfEmpty(String value) {
+        return value == null || "".equals(value) ? null : value;
+    }
+
+    /**
+     * An attribute or namespace declaration of an element.
+     */
+    private static final class Attribute {
+        private final String namespaceURI;
+        private final String localName;
+        private final String name;
+        private final String value;
+
+        Attribute(String namespaceURI, String prefix, String localName, String value) {
+            this.namespaceURI = namespaceURI;
+            this.localName = localName;
+            this.name = prefix == null || "".equals(prefix) ? localName : prefix + ":" + localName;
+            this.value = value;
+        }
+    }
+
+    /**
+     * The attributes of an element whose start tag has been read.
+     */
+    private static final class Frame {
+        private final String localName;
+        private final NamespaceScope enclosing;
+        private final NamespaceScope scope;
+        private final Attribute[] attributes;
+
+        Frame(String localName, NamespaceScope enclosing, NamespaceScope scope, Attribute[] attributes) {
+            this.localName = localName;
+            this.enclosing = enclosing;
+            this.scope = scope;
+            this.attributes = attributes;
+        }
+
+        boolean has(String name) {
+            return get(name) != null;
+        }
+
+        /**
+         * @return the value of the attribute with the given qualified name, or null.
+         */
+        String get(String name) {
+            for (Attribute attribute : attributes) {
+                if (attribute.name.equals(name)) {
+                    return attribute.value;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @return the value of the attribute with the given qualified name, or "" like
+         *         {@link Element#getAttribute(String)}.
+         */
+        String value(String name) {
+            String value = get(name);
+            return value == null ? "" : value;
+        }
+
+        Attribute[] getSortedAttributes() {
+            Attribute[] sorted = attributes.clone();
+            Arrays.sort(sorted, ATTRIBUTE_ORDER);
+            return sorted;
+        }
+    }
+}
@@ -25,14 +25,22 @@ import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.Stack;
+import java.util.WeakHashMap;
 
 import javax.xml.XMLConstants;
 import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Result;
 import javax.xml.transform.Source;
@@ -48,16 +56,37 @@ import org.apache.ws.commons.schema.XmlSchemaSerializer.XmlSchemaSerializerExcep
 import org.apache.ws.commons.schema.utils.CollectionFactory;
 import org.apache.ws.commons.schema.utils.NamespaceContextOwner;
 import org.apache.ws.commons.schema.utils.NamespacePrefixList;
+import org.apache.ws.commons.schema.utils.XmlSchemaRef;
 
 /**
  * Contains the definition of a schema. All XML Schema definition language (XSD) elements are children of the
  * schema element.
  */
 public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwner {
+    private static final long serialVersionUID = 1L;
+
     static final String SCHEMA_NS = XMLConstants.W3C_XML_SCHEMA_NS_URI;
 
     private static final String UTF_8_ENCODING = "UTF-8";
 
+    /**
+     * Looking up a transformer factory is costly, and a factory may not be shared between threads.
+     */
+    private static final ThreadLocal<TransformerFactory> TRANSFORMER_FACTORY =
+        new ThreadLocal<TransformerFactory>() {
+            @Override
+            protected TransformerFactory initialValue() {
+                TransformerFactory trFac = TransformerFactory.newInstance();
+                try {
+                    trFac.setAttribute("indent-number", "4");
+                } catch (IllegalArgumentException e) {
+                    // do nothing - we'll just silently let this pass if it
+                    // was not compatible
+                }
+                return trFac;
+            }
+        };
+
     // This has be ordered so that things come out in the order we parse them.
     private List<XmlSchemaObject> items;
 
@@ -82,6 +111,23 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
     // keep the encoding of the input
     private String inputEncoding;
 
+    // the references created in this schema, until freeze() resolves them; weak, since copies of
+    // elements and attributes made while walking the schema are dropped
+    private transient Set<XmlSchemaRef<?>> refs =
+        Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<XmlSchemaRef<?>, Boolean>()));
+    private volatile boolean frozen;
+    // set when the collection reads the document of this schema again
+    private volatile boolean replaced;
+
+    // change counters that tell when the external components index has to be rebuilt
+    private volatile int componentsModCount;
+    private volatile int externalsModCount;
+    // set while a builder reads the document of this schema
+    private transient volatile boolean building;
+    private transient volatile ExternalComponents externalComponents;
+    // default access for unit tests
+    transient int indexBuilds;
+
     /**
      * Create a schema that is not a member of a collection and has no target namespace or system ID.
      */
@@ -104,13 +150,13 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
         blockDefault = XmlSchemaDerivationMethod.NONE;
         finalDefault = XmlSchemaDerivationMethod.NONE;
         items = new ArrayList<XmlSchemaObject>();
-        externals = new ArrayList<XmlSchemaExternal>();
-        elements = new HashMap<QName, XmlSchemaElement>();
-        attributeGroups = new HashMap<QName, XmlSchemaAttributeGroup>();
-        attributes = new HashMap<QName, XmlSchemaAttribute>();
-        groups = new HashMap<QName, XmlSchemaGroup>();
-        notations = new HashMap<QName, XmlSchemaNotation>();
-        schemaTypes = new HashMap<QName, XmlSchemaType>();
+        externals = new ExternalList();
+        elements = new ComponentMap<XmlSchemaElement>();
+        attributeGroups = new ComponentMap<XmlSchemaAttributeGroup>();
+        attributes = new ComponentMap<XmlSchemaAttribute>();
+        groups = new ComponentMap<XmlSchemaGroup>();
+        notations = new ComponentMap<XmlSchemaNotation>();
+        schemaTypes = new ComponentMap<XmlSchemaType>();
 
         logicalTargetNamespace = namespace;
         syntacticalTargetNamespace = namespace;
@@ -209,7 +255,7 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
      * @return the map of attribute groups.
      */
     public Map<QName, XmlSchemaAttributeGroup> getAttributeGroups() {
-        return CollectionFactory.getProtectedMap(attributeGroups);
+        return protect(attributeGroups);
     }
 
     /**
@@ -223,7 +269,7 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
      * @return the map of attributes.
      */
     public Map<QName, XmlSchemaAttribute> getAttributes() {
-        return CollectionFactory.getProtectedMap(attributes);
+        return protect(attributes);
     }
 
     /**
@@ -274,7 +320,7 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
      * @return the map of elements.
      */
     public Map<QName, XmlSchemaElement> getElements() {
-        return CollectionFactory.getProtectedMap(elements);
+        return protect(elements);
     }
 
     /**
@@ -286,7 +332,7 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
      * @return a list of the objects representing includes, imports, and redefines.
      */
     public List<XmlSchemaExternal> getExternals() {
-        return CollectionFactory.getProtectedList(externals);
+        return protect(externals);
     }
 
     /**
@@ -316,7 +362,7 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
      * @return the map of groups.
      */
     public Map<QName, XmlSchemaGroup> getGroups() {
-        return CollectionFactory.getProtectedMap(groups);
+        return protect(groups);
     }
 
     /**
@@ -337,7 +383,7 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
      *
      */
     public List<XmlSchemaObject> getItems() {
-        return CollectionFactory.getProtectedList(items);
+        return protect(items);
     }
 
     /**
@@ -379,7 +425,7 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
      * @return the map of notations.
      */
     public Map<QName, XmlSchemaNotation> getNotations() {
-        return CollectionFactory.getProtectedMap(notations);
+        return protect(notations);
     }
 
     /**
@@ -419,7 +465,7 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
      * @return the map of types.
      */
     public Map<QName, XmlSchemaType> getSchemaTypes() {
-        return schemaTypes;
+        return frozen ? Collections.unmodifiableMap(schemaTypes) : schemaTypes;
     }
 
     /**
@@ -468,6 +514,7 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
      * @param value the form. This may not be null.
      */
     public void setAttributeFormDefault(XmlSchemaForm value) {
+        checkNotFrozen();
         attributeFormDefault = value;
     }
 
@@ -477,6 +524,7 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
      * @param blockDefault the new block value.
      */
     public void setBlockDefault(XmlSchemaDerivationMethod blockDefault) {
+        checkNotFrozen();
         this.blockDefault = blockDefault;
     }
 
@@ -486,6 +534,7 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
      * @param elementFormDefault the element form. This may not be null.
      */
     public void setElementFormDefault(XmlSchemaForm elementFormDefault) {
+        checkNotFrozen();
         this.elementFormDefault = elementFormDefault;
     }
 
@@ -495,6 +544,7 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
      * @param finalDefault the new final value.
      */
     public void setFinalDefault(XmlSchemaDerivationMethod finalDefault) {
+        checkNotFrozen();
         this.finalDefault = finalDefault;
     }
 
@@ -505,6 +555,7 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
      * @param encoding Character encoding name.
      */
     public void setInputEncoding(String encoding) {
+        checkNotFrozen();
         this.inputEncoding = encoding;
     }
 
@@ -513,6 +564,7 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
      * mechanism was found.
      */
     public void setNamespaceContext(NamespacePrefixList namespaceContext) {
+        checkNotFrozen();
         this.namespaceContext = namespaceContext;
     }
 
@@ -522,6 +574,7 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
      * @param schemaNamespacePrefix
      */
     public void setSchemaNamespacePrefix(String schemaNamespacePrefix) {
+        checkNotFrozen();
         this.schemaNamespacePrefix = schemaNamespacePrefix;
     }
 
@@ -531,6 +584,7 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
      * @param targetNamespace the new target namespace URI. A value of "" is ignored.
      */
     public void setTargetNamespace(String targetNamespace) {
+        checkNotFrozen();
         if (!"".equals(targetNamespace)) {
             logicalTargetNamespace = targetNamespace;
             syntacticalTargetNamespace = targetNamespace;
@@ -593,40 +647,35 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
         serializeInternal(writer, options);
     }
 
+    /**
+     * Serialize the schema element to a StAX writer, without building a DOM document. Only the schema
+     * element is written, so that it may be embedded in another document such as a WSDL description.
+     * {@link XmlSchemaStreamSerializer} also writes complete documents with the options of
+     * {@link #write(Writer, Map)}.
+     *
+     * @param writer - the writer to write this
+     * @throws XMLStreamException if the writer fails.
+     */
+    public void write(XMLStreamWriter writer) throws XMLStreamException {
+        XmlSchemaStreamSerializer serializer = new XmlSchemaStreamSerializer();
+        serializer.setExtReg(this.parent.getExtReg());
+        try {
+            serializer.serialize(this, writer);
+        } catch (XmlSchemaSerializer.XmlSchemaSerializerException e) {
+            throw new XmlSchemaException(e.getMessage());
+        }
+    }
+
     protected XmlSchemaAttribute getAttributeByName(QName name, boolean deep, Stack<XmlSchema> schemaStack) {
         if (schemaStack != null && schemaStack.contains(this)) {
             // recursive schema - just return null
             return null;
         }
-        XmlSchemaAttribute attribute = (XmlSchemaAttribute)attributes.get(name);
-        if (deep) {
-            if (attribute == null) {
-                // search the imports
-                for (XmlSchemaExternal item : externals) {
-
-                    XmlSchema schema = getSchema(item);
-
-                    if (schema != null) {
-                        // create an empty stack - push the current parent in
-                        // and
-                        // use the protected method to process the schema
-                        if (schemaStack == null) {
-                            schemaStack = new Stack<XmlSchema>();
-                        }
-                        schemaStack.push(this);
-                        attribute = schema.getAttributeByName(name, deep, schemaStack);
-                        if (attribute != null) {
-                            return attribute;
-                        }
-                    }
-                }
-            } else {
-                return attribute;
-            }
+        XmlSchemaAttribute attribute = attributes.get(name);
+        if (attribute == null && deep) {
+            attribute = (XmlSchemaAttribute)getExternalComponents().get(ComponentKind.ATTRIBUTE, name);
         }
-
         return attribute;
-
     }
 
     protected XmlSchemaAttributeGroup getAttributeGroupByName(QName name, boolean deep,
@@ -635,32 +684,10 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
             // recursive schema - just return null
             return null;
         }
-
         XmlSchemaAttributeGroup group = attributeGroups.get(name);
-        if (deep) {
-            if (group == null) {
-                // search the imports
-                for (XmlSchemaExternal item : externals) {
-
-                    XmlSchema schema = getSchema(item);
-
-                    if (schema != null) {
-                        // create an empty stack - push the current parent in
-                        // and
-                        // use the protected method to process the schema
-                        if (schemaStack == null) {
-                            schemaStack = new Stack<XmlSchema>();
-                        }
-                        schemaStack.push(this);
-                        group = schema.getAttributeGroupByName(name, deep, schemaStack);
-                        if (group != null) {
-                            return group;
-                        }
-                    }
-                }
-            } else {
-                return group;
-            }
+        if (group == null && deep) {
+            group = (XmlSchemaAttributeGroup)getExternalComponents()
+                .get(ComponentKind.ATTRIBUTE_GROUP, name);
         }
         return group;
     }
@@ -670,32 +697,9 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
             // recursive schema - just return null
             return null;
         }
-
         XmlSchemaElement element = elements.get(name);
-        if (deep) {
-            if (element == null) {
-                // search the imports
-                for (XmlSchemaExternal item : externals) {
-
-                    XmlSchema schema = getSchema(item);
-
-                    if (schema != null) {
-                        // create an empty stack - push the current parent in
-                        // and
-                        // use the protected method to process the schema
-                        if (schemaStack == null) {
-                            schemaStack = new Stack<XmlSchema>();
-                        }
-                        schemaStack.push(this);
-                        element = schema.getElementByName(name, deep, schemaStack);
-                        if (element != null) {
-                            return element;
-                        }
-                    }
-                }
-            } else {
-                return element;
-            }
+        if (element == null && deep) {
+            element = (XmlSchemaElement)getExternalComponents().get(ComponentKind.ELEMENT, name);
         }
         return element;
     }
@@ -706,34 +710,10 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
             return null;
         }
         XmlSchemaGroup group = groups.get(name);
-        if (deep) {
-            if (group == null) {
-                // search the imports
-                for (XmlSchemaExternal item : externals) {
-
-                    XmlSchema schema = getSchema(item);
-
-                    if (schema != null) {
-                        // create an empty stack - push the current parent in
-                        // and
-                        // use the protected method to process the schema
-                        if (schemaStack == null) {
-                            schemaStack = new Stack<XmlSchema>();
-                        }
-                        schemaStack.push(this);
-                        group = schema.getGroupByName(name, deep, schemaStack);
-                        if (group != null) {
-                            return group;
-                        }
-                    }
-                }
-            } else {
-                return group;
-            }
+        if (group == null && deep) {
+            group = (XmlSchemaGroup)getExternalComponents().get(ComponentKind.GROUP, name);
         }
-
         return group;
-
     }
 
     protected XmlSchemaNotation getNotationByName(QName name, boolean deep, Stack<XmlSchema> schemaStack) {
@@ -742,38 +722,16 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
             return null;
         }
         XmlSchemaNotation notation = notations.get(name);
-        if (deep) {
-            if (notation == null) {
-                // search the imports
-                for (XmlSchemaExternal item : externals) {
-
-                    XmlSchema schema = getSchema(item);
-
-                    if (schema != null) {
-                        // create an empty stack - push the current parent in
-                        // and
-                        // use the protected method to process the schema
-                        if (schemaStack == null) {
-                            schemaStack = new Stack<XmlSchema>();
-                        }
-                        schemaStack.push(this);
-                        notation = schema.getNotationByName(name, deep, schemaStack);
-                        if (notation != null) {
-                            return notation;
-                        }
-                    }
-                }
-            } else {
-                return notation;
-            }
+        if (notation == null && deep) {
+            notation = (XmlSchemaNotation)getExternalComponents().get(ComponentKind.NOTATION, name);
         }
-
         return notation;
-
     }
 
     /**
      * Protected method that allows safe (non-recursive schema loading). It looks for a type with constraints.
+     * A deep search that misses this schema's own types is answered from the index of the types visible
+     * through its includes and imports, see {@link ExternalComponents}.
      *
      * @param name
      * @param deep
@@ -786,33 +744,110 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
             return null;
         }
         XmlSchemaType type = schemaTypes.get(name);
+        if (type == null && deep) {
+            type = (XmlSchemaType)getExternalComponents().get(ComponentKind.TYPE, name);
+        }
+        return type;
+    }
 
-        if (deep) {
-            if (type == null) {
-                // search the imports
-                for (XmlSchemaExternal item : externals) {
+    /**
+     * Tell if this schema is frozen, see {@link XmlSchemaCollection#freeze()}.
+     *
+     * @return true if the schema can no longer be modified.
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
 
-                    XmlSchema schema = getSchema(item);
+    /**
+     * Tell if this schema was replaced in its collection by {@link XmlSchemaCollection#reload(String)},
+     * because its document or a document that it refers to has changed. A replaced schema is no longer in
+     * the collection, and references to its components are resolved again.
+     *
+     * @return true if the schema was replaced.
+     */
+    public boolean isReplaced() {
+        return replaced;
+    }
 
-                    if (schema != null) {
-                        // create an empty stack - push the current parent
-                        // use the protected method to process the schema
-                        if (schemaStack == null) {
-                            schemaStack = new Stack<XmlSchema>();
-                        }
-                        schemaStack.push(this);
-                        type = schema.getTypeByName(name, deep, schemaStack);
-                        if (type != null) {
-                            return type;
-                        }
-                    }
+    void setReplaced(boolean replaced) {
+        this.replaced = replaced;
+    }
+
+    /**
+     * Register a reference created in this schema, so that {@link #resolveReferences()} resolves it.
+     */
+    void addRef(XmlSchemaRef<?> ref) {
+        if (refs != null && !frozen) {
+            refs.add(ref);
+        }
+    }
+
+    /**
+     * Resolve the target of every reference created in this schema.
+     */
+    void resolveReferences() {
+        if (refs != null) {
+            List<XmlSchemaRef<?>> created;
+            synchronized (refs) {
+                created = new ArrayList<XmlSchemaRef<?>>(refs);
+            }
+            for (XmlSchemaRef<?> ref : created) {
+                if (ref.getTargetQName() != null) {
+                    ref.getTarget();
                 }
-            } else {
-                return type;
             }
         }
+    }
 
-        return type;
+    /**
+     * Compute the state that lookups would otherwise compute on first use, and make this schema
+     * unmodifiable. The references must have been resolved first.
+     */
+    void freeze() {
+        if (frozen) {
+            return;
+        }
+        if (namespaceContext != null) {
+            namespaceContext.getDeclaredPrefixes();
+        }
+        // the serializer would set it
+        schemaNamespacePrefix = XmlSchemaSerializer.getSchemaNamespacePrefix(namespaceContext);
+        getExternalComponents();
+        refs = null;
+        frozen = true;
+    }
+
+    /**
+     * Record a change to the global components of this schema. While the schema is being built, its
+     * components are looked up directly by the indexes of the other schemas, so the collection does not
+     * record the change.
+     */
+    void componentsModified() {
+        componentsModCount++;
+        XmlSchemaCollection collection = parent;
+        if (collection != null && !building) {
+            collection.epoch++;
+        }
+    }
+
+    /**
+     * Record a change to the includes and imports of this schema, including a change of the schema that one
+     * of them refers to.
+     */
+    void externalsModified() {
+        externalsModCount++;
+        XmlSchemaCollection collection = parent;
+        if (collection != null) {
+            collection.epoch++;
+        }
+    }
+
+    /**
+     * Tell that a builder starts or stops reading the document of this schema.
+     */
+    void setBuilding(boolean building) {
+        this.building = building;
     }
 
     String getSyntacticalTargetNamespace() {
@@ -820,18 +855,22 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
     }
 
     void setLogicalTargetNamespace(String logicalTargetNamespace) {
+        checkNotFrozen();
         this.logicalTargetNamespace = logicalTargetNamespace;
     }
 
     void setParent(XmlSchemaCollection parent) {
+        checkNotFrozen();
         this.parent = parent;
     }
 
     void setSyntacticalTargetNamespace(String syntacticalTargetNamespace) {
+        checkNotFrozen();
         this.syntacticalTargetNamespace = syntacticalTargetNamespace;
     }
 
     void setVersion(String version) {
+        checkNotFrozen();
         this.version = version;
     }
 
@@ -841,7 +880,7 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
      * @param includeOrImport
      * @return return the schema object.
      */
-    private XmlSchema getSchema(Object includeOrImport) {
+    private static XmlSchema getSchema(Object includeOrImport) {
         XmlSchema schema;
         if (includeOrImport instanceof XmlSchemaImport) {
             schema = ((XmlSchemaImport)includeOrImport).getSchema();
@@ -855,6 +894,53 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
         return schema;
     }
 
+    /**
+     * Return the index of the components visible through the includes and imports of this schema,
+     * rebuilding it if this schema or any of the schemas it reaches changed since it was built.
+     *
+     * @return the index.
+     */
+    private ExternalComponents getExternalComponents() {
+        ExternalComponents index = externalComponents;
+        if (index == null || !index.isValid(this)) {
+            indexBuilds++;
+            index = new ExternalComponents(this);
+            externalComponents = index;
+        }
+        return index;
+    }
+
+    private Map<QName, ?> getComponents(ComponentKind kind) {
+        switch (kind) {
+        case ATTRIBUTE:
+            return attributes;
+        case ATTRIBUTE_GROUP:
+            return attributeGroups;
+        case ELEMENT:
+            return elements;
+        case GROUP:
+            return groups;
+        case NOTATION:
+            return notations;
+        default:
+            return schemaTypes;
+        }
+    }
+
+    private void checkNotFrozen() {
+        if (frozen) {
+            throw new UnsupportedOperationException("Schema " + logicalTargetNamespace + " is frozen");
+        }
+    }
+
+    private <K, V> Map<K, V> protect(Map<K, V> map) {
+        return frozen ? Collections.unmodifiableMap(map) : CollectionFactory.getProtectedMap(map);
+    }
+
+    private <T> List<T> protect(List<T> list) {
+        return frozen ? Collections.unmodifiableList(list) : CollectionFactory.getProtectedList(list);
+    }
+
     /**
      * Load the default options
      *
@@ -877,14 +963,7 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
             XmlSchemaSerializer xser = new XmlSchemaSerializer();
             xser.setExtReg(this.parent.getExtReg());
             Document[] serializedSchemas = xser.serializeSchema(this, false);
-            TransformerFactory trFac = TransformerFactory.newInstance();
-
-            try {
-                trFac.setAttribute("indent-number", "4");
-            } catch (IllegalArgumentException e) {
-                // do nothing - we'll just silently let this pass if it
-                // was not compatible
-            }
+            TransformerFactory trFac = TRANSFORMER_FACTORY.get();
 
             Source source = new DOMSource(serializedSchemas[0]);
             Result result = new StreamResult(out);
@@ -921,4 +1000,263 @@ public class XmlSchema extends XmlSchemaAnnotated implements NamespaceContextOwn
             throw new XmlSchemaException(e.getMessage());
         }
     }
+
+    /**
+     * Map of the global components of a schema that records its modifications. Changes made through the
+     * key, value or entry views are not recorded.
+     */
+    private final class ComponentMap<V> extends HashMap<QName, V> {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public V put(QName key, V value) {
+            checkNotFrozen();
+            V result = super.put(key, value);
+            componentsModified();
+            return result;
+        }
+
+        @Override
+        public void putAll(Map<? extends QName, ? extends V> m) {
+            checkNotFrozen();
+            super.putAll(m);
+            componentsModified();
+        }
+
+        @Override
+        public V remove(Object key) {
+            checkNotFrozen();
+            V result = super.remove(key);
+            componentsModified();
+            return result;
+        }
+
+        @Override
+        public void clear() {
+            checkNotFrozen();
+            super.clear();
+            componentsModified();
+        }
+    }
+
+    /**
+     * List of the externals of a schema that records its modifications.
+     */
+    private final class ExternalList extends ArrayList<XmlSchemaExternal> {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public boolean add(XmlSchemaExternal e) {
+            checkNotFrozen();
+            boolean result = super.add(e);
+            externalsModified();
+            return result;
+        }
+
+        @Override
+        public void add(int index, XmlSchemaExternal element) {
+            checkNotFrozen();
+            super.add(index, element);
+            externalsModified();
+        }
+
+        @Override
+        public boolean addAll(Collection<? extends XmlSchemaExternal> c) {
+            checkNotFrozen();
+            boolean result = super.addAll(c);
+            externalsModified();
+            return result;
+        }
+
+        @Override
+        public boolean addAll(int index, Collection<? extends XmlSchemaExternal> c) {
+            checkNotFrozen();
+            boolean result = super.addAll(index, c);
+            externalsModified();
+            return result;
+        }
+
+        @Override
+        public XmlSchemaExternal set(int index, XmlSchemaExternal element) {
+            checkNotFrozen();
+            XmlSchemaExternal result = super.set(index, element);
+            externalsModified();
+            return result;
+        }
+
+        @Override
+        public XmlSchemaExternal remove(int index) {
+            checkNotFrozen();
+            XmlSchemaExternal result = super.remove(index);
+            externalsModified();
+            return result;
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            checkNotFrozen();
+            boolean result = super.remove(o);
+            externalsModified();
+            return result;
+        }
+
+        @Override
+        public boolean removeAll(Collection<?> c) {
+            checkNotFrozen();
+            boolean result = super.removeAll(c);
+            externalsModified();
+            return result;
+        }
+
+        @Override
+        public boolean retainAll(Collection<?> c) {
+            checkNotFrozen();
+            boolean result = super.retainAll(c);
+            externalsModified();
+            return result;
+        }
+
+        @Override
+        public void clear() {
+            checkNotFrozen();
+            super.clear();
+            externalsModified();
+        }
+    }
+
+    /**
+     * The kinds of global components that deep lookups search.
+     */
+    private enum ComponentKind {
+        ATTRIBUTE, ATTRIBUTE_GROUP, ELEMENT, GROUP, NOTATION, TYPE
+    }
+
+    /**
+     * Index of the global components of all the schemas that a schema reaches through its includes and
+     * imports, transitively. Where several of these schemas define the same name, the index holds the
+     * component that a depth-first search of the externals, in document order, finds first. The components
+     * of the indexed schema itself are not part of the index, so that building that schema does not
+     * invalidate it. Neither are the components of the schemas that were still being built, as happens
+     * with circular includes: these schemas are searched directly, before the index.
+     * <br/>
+     * The index is immutable once built. It remembers the modification counts of the collections of the
+     * schemas it was built from, so that an unchanged index is recognized with one comparison per
+     * collection. When a collection changed, the counts of the schemas themselves are compared, and the
+     * index is replaced if one of these schemas changed.
+     */
+    private static final class ExternalComponents {
+        private final Map<ComponentKind, Map<QName, Object>> components =
+            new EnumMap<ComponentKind, Map<QName, Object>>(ComponentKind.class);
+        private final List<XmlSchema> building = new ArrayList<XmlSchema>();
+
+        private final int externalsModCount;
+        private final List<XmlSchema> schemas = new ArrayList<XmlSchema>();
+        private final List<Integer> modCounts = new ArrayList<Integer>();
+        private final List<XmlSchemaCollection> collections = new ArrayList<XmlSchemaCollection>();
+        // whether a schema without a collection is reached, whose changes no collection counts
+        private boolean detached;
+        private volatile int[] epochs;
+
+        ExternalComponents(XmlSchema schema) {
+            for (ComponentKind kind : ComponentKind.values()) {
+                components.put(kind, new HashMap<QName, Object>());
+            }
+            externalsModCount = schema.externalsModCount;
+            Map<XmlSchema, Boolean> visited = new IdentityHashMap<XmlSchema, Boolean>();
+            visited.put(schema, Boolean.TRUE);
+            addExternals(schema, visited);
+            epochs = getEpochs();
+        }
+
+        /**
+         * Look up a component in the schemas that were being built, then in the index.
+         *
+         * @param kind the kind of component.
+         * @param name the name of the component.
+         * @return the component, or null if there is none.
+         */
+        Object get(ComponentKind kind, QName name) {
+            for (XmlSchema schema : building) {
+                Object component = schema.getComponents(kind).get(name);
+                if (component != null) {
+                    return component;
+                }
+            }
+            return components.get(kind).get(name);
+        }
+
+        /**
+         * Tell if the index still reflects the given schema and the schemas it reaches.
+         *
+         * @param schema the schema this index was built for.
+         * @return true if the index is still valid.
+         */
+        boolean isValid(XmlSchema schema) {
+            if (schema.externalsModCount != externalsModCount) {
+                return false;
+            }
+            int[] recorded = epochs;
+            boolean unchanged = !detached;
+            for (int i = 0; unchanged && i < recorded.length; i++) {
+                unchanged = collections.get(i).epoch == recorded[i];
+            }
+            if (unchanged) {
+                return true;
+            }
+            int[] current = getEpochs();
+            for (int i = 0; i < schemas.size(); i++) {
+                if (modCount(schemas.get(i)) != modCounts.get(i)) {
+                    return false;
+                }
+            }
+            // the changes were made to other schemas
+            epochs = current;
+            return true;
+        }
+
+        private void addExternals(XmlSchema schema, Map<XmlSchema, Boolean> visited) {
+            for (XmlSchemaExternal item : schema.externals) {
+                XmlSchema external = getSchema(item);
+                if (external != null && visited.put(external, Boolean.TRUE) == null) {
+                    if (external.parent == null) {
+                        detached = true;
+                    } else if (!collections.contains(external.parent)) {
+                        collections.add(external.parent);
+                    }
+                    schemas.add(external);
+                    modCounts.add(modCount(external));
+                    if (external.building) {
+                        building.add(external);
+                    } else {
+                        for (ComponentKind kind : ComponentKind.values()) {
+                            addAbsent(components.get(kind), external.getComponents(kind));
+                        }
+                    }
+                    addExternals(external, visited);
+                }
+            }
+        }
+
+        private int[] getEpochs() {
+            int[] current = new int[collections.size()];
+            for (int i = 0; i < current.length; i++) {
+                current[i] = collections.get(i).epoch;
+            }
+            return current;
+        }
+
+        // the components of a schema that is being built are not indexed, so only its externals count
+        private int modCount(XmlSchema schema) {
+            return building.contains(schema) || schema.building
+                ? schema.externalsModCount : schema.componentsModCount + schema.externalsModCount;
+        }
+
+        private static void addAbsent(Map<QName, Object> index, Map<QName, ?> components) {
+            for (Map.Entry<QName, ?> entry : components.entrySet()) {
+                if (!index.containsKey(entry.getKey())) {
+                    index.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+    }
 }
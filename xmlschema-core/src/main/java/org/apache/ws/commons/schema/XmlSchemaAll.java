@@ -27,6 +27,8 @@ import java.util.List;
  * Represents the World Wide Web Consortium (W3C) all element (compositor).
  */
 public class XmlSchemaAll extends XmlSchemaGroupParticle {
+
+    private static final long serialVersionUID = 1L;
     
     private List<XmlSchemaAllMember> items;
 
@@ -28,6 +28,8 @@ import org.w3c.dom.Attr;
  */
 
 public abstract class XmlSchemaAnnotated extends XmlSchemaObject {
+
+    private static final long serialVersionUID = 1L;
     
     private XmlSchemaAnnotation annotation;
     private String id;
@@ -27,6 +27,8 @@ import java.util.List;
  */
 
 public class XmlSchemaAnnotation extends XmlSchemaObject {
+    private static final long serialVersionUID = 1L;
+
     private List<XmlSchemaAnnotationItem> items;
 
     /**
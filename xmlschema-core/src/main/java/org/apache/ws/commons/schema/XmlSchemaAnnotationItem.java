@@ -24,4 +24,6 @@ package org.apache.ws.commons.schema;
  */
 public abstract class XmlSchemaAnnotationItem
     extends XmlSchemaObject {
+    private static final long serialVersionUID = 1L;
+
 }
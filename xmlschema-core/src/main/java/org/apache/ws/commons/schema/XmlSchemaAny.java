@@ -27,6 +27,8 @@ package org.apache.ws.commons.schema;
 public class XmlSchemaAny extends XmlSchemaParticle 
     implements XmlSchemaChoiceMember, XmlSchemaSequenceMember, XmlSchemaAllMember {
 
+    private static final long serialVersionUID = 1L;
+
     /**
      * Namespaces containing the elements that can be used.
      */
@@ -24,6 +24,8 @@ package org.apache.ws.commons.schema;
  * element. Represents the World Wide Web Consortium (W3C) anyAttribute element.
  */
 public class XmlSchemaAnyAttribute extends XmlSchemaAnnotated {
+    private static final long serialVersionUID = 1L;
+
     String namespace;
     XmlSchemaContentProcessing processContent;
 
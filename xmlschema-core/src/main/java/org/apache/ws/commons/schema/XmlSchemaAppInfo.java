@@ -30,6 +30,8 @@ import org.w3c.dom.NodeList;
 
 public class XmlSchemaAppInfo extends XmlSchemaAnnotationItem {
 
+    private static final long serialVersionUID = 1L;
+
     /**
      * Provides the source of the application information.
      */
@@ -35,6 +35,8 @@ import org.apache.ws.commons.schema.utils.XmlSchemaRefBase;
 public class XmlSchemaAttribute extends XmlSchemaAttributeOrGroupRef implements XmlSchemaNamedWithForm,
     XmlSchemaAttributeGroupMember, XmlSchemaItemWithRef<XmlSchemaAttribute> {
 
+    private static final long serialVersionUID = 1L;
+
     private String defaultValue;
     private String fixedValue;
     private XmlSchemaSimpleType schemaType;
@@ -51,6 +53,7 @@ public class XmlSchemaAttribute extends XmlSchemaAttributeOrGroupRef implements
     public XmlSchemaAttribute(XmlSchema schema, boolean topLevel) {
         namedDelegate = new XmlSchemaNamedWithFormImpl(schema, topLevel, false);
         ref = new XmlSchemaRef<XmlSchemaAttribute>(schema, XmlSchemaAttribute.class);
+        schema.addRef(ref);
         namedDelegate.setRefObject(ref);
         ref.setNamedObject(namedDelegate);
         use = XmlSchemaUse.NONE;
@@ -37,6 +37,8 @@ import org.apache.ws.commons.schema.utils.XmlSchemaNamedImpl;
 
 public class XmlSchemaAttributeGroup extends XmlSchemaAnnotated implements XmlSchemaNamed,
     XmlSchemaAttributeGroupMember {
+    private static final long serialVersionUID = 1L;
+
     private XmlSchemaAnyAttribute anyAttribute;
     private List<XmlSchemaAttributeGroupMember> attributes;
     private XmlSchemaNamedImpl namedDelegate;
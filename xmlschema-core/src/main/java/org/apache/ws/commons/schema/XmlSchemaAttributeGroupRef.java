@@ -32,6 +32,8 @@ import org.apache.ws.commons.schema.utils.XmlSchemaRefBase;
 public class XmlSchemaAttributeGroupRef extends XmlSchemaAttributeOrGroupRef
     implements XmlSchemaAttributeGroupMember,
     XmlSchemaItemWithRef<XmlSchemaAttributeGroup> {
+    private static final long serialVersionUID = 1L;
+
     private XmlSchemaRef<XmlSchemaAttributeGroup> ref;
 
     /**
@@ -40,6 +42,7 @@ public class XmlSchemaAttributeGroupRef extends XmlSchemaAttributeOrGroupRef
      */
     public XmlSchemaAttributeGroupRef(XmlSchema parent) {
         ref = new XmlSchemaRef<XmlSchemaAttributeGroup>(parent, XmlSchemaAttributeGroup.class);
+        parent.addRef(ref);
     }
 
     /**
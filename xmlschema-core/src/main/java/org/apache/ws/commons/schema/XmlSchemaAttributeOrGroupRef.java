@@ -26,4 +26,6 @@ package org.apache.ws.commons.schema;
  */
 public class XmlSchemaAttributeOrGroupRef
     extends XmlSchemaAnnotated {
+    private static final long serialVersionUID = 1L;
+
 }
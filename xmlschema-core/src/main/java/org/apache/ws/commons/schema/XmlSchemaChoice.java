@@ -30,6 +30,8 @@ import java.util.List;
  */
 public class XmlSchemaChoice extends XmlSchemaGroupParticle implements XmlSchemaChoiceMember,
     XmlSchemaSequenceMember {
+    private static final long serialVersionUID = 1L;
+
     private List<XmlSchemaChoiceMember> items;
 
     /**
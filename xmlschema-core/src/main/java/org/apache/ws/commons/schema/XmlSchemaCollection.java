@@ -19,24 +19,46 @@
 
 package org.apache.ws.commons.schema;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
 import java.io.Reader;
+import java.io.Serializable;
+import java.io.StringReader;
 import java.math.BigInteger;
+import java.net.URL;
 import java.security.AccessController;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.PrivilegedAction;
 import java.security.PrivilegedActionException;
 import java.security.PrivilegedExceptionAction;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import javax.xml.namespace.QName;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.transform.Source;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.sax.SAXSource;
@@ -49,19 +71,27 @@ import org.w3c.dom.Node;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
+import org.apache.ws.commons.schema.cache.SchemaCache;
 import org.apache.ws.commons.schema.constants.Constants;
 import org.apache.ws.commons.schema.extensions.ExtensionRegistry;
 import org.apache.ws.commons.schema.resolver.CollectionURIResolver;
 import org.apache.ws.commons.schema.resolver.DefaultURIResolver;
 import org.apache.ws.commons.schema.resolver.URIResolver;
 import org.apache.ws.commons.schema.utils.DOMUtil;
+import org.apache.ws.commons.schema.utils.DocumentBuilderPool;
 import org.apache.ws.commons.schema.utils.NamespacePrefixList;
+import org.apache.ws.commons.schema.utils.QNameInterner;
 import org.apache.ws.commons.schema.utils.TargetNamespaceValidator;
 
 /**
  * Contains a cache of XML Schema definition language (XSD).
  */
-public final class XmlSchemaCollection {
+public final class XmlSchemaCollection implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    // the extension registry classes named by the system property, by name
+    private static final ConcurrentMap<String, Class<?>> EXTENSION_REGISTRY_CLASSES =
+        new ConcurrentHashMap<String, Class<?>>();
 
     /**
      * base URI is used as the base for loading the imports
@@ -71,7 +101,8 @@ public final class XmlSchemaCollection {
     /**
      * Key that identifies a schema in a collection, composed of a targetNamespace and a system ID.
      */
-    public static class SchemaKey {
+    public static class SchemaKey implements Serializable {
+        private static final long serialVersionUID = 1L;
         private final String namespace;
         private final String systemId;
 
@@ -136,11 +167,11 @@ public final class XmlSchemaCollection {
     /**
      * stack to track imports (to prevent recursion)
      */
-    Stack<SchemaKey> stack;
-    Map<QName, List<TypeReceiver>> unresolvedTypes;
+    transient Stack<SchemaKey> stack;
+    transient Map<QName, List<TypeReceiver>> unresolvedTypes;
     XmlSchema xsd;
     // the default extension registry
-    private ExtensionRegistry extReg;
+    private transient ExtensionRegistry extReg;
 
     /**
      * This map contains a list of Schema objects keyed in by their namespaces.
@@ -156,126 +187,97 @@ public final class XmlSchemaCollection {
     /**
      * Resolver to find included schemas.
      */
-    private URIResolver schemaResolver;
+    private transient URIResolver schemaResolver;
+
     /**
-     * Map of included schemas.
+     * Cache of the schemas resolved for includes, imports and redefines, possibly shared with other
+     * collections.
      */
-    private Map<SchemaKey, XmlSchema> schemas;
-
+    private transient SchemaCache schemaCache;
     /**
-     * Creates new XmlSchemaCollection
+     * How the builders keep the markup of annotations.
      */
-    public XmlSchemaCollection() {
-        init();
-    }
-
+    private AnnotationMarkupMode annotationMarkupMode = AnnotationMarkupMode.EAGER;
     /**
-     * Return an indication of whether a particular schema is in the working stack of schemas. This function,
-     * while public, is probably not useful outside of the implementation.
-     * 
-     * @param pKey schema key
-     * @return true if the schema is in the stack.
+     * Shares the names and namespaces of the schemas in this collection.
      */
-    public boolean check(SchemaKey pKey) {
-        return stack.indexOf(pKey) == -1;
-    }
-
-    public ExtensionRegistry getExtReg() {
-        return extReg;
-    }
-
+    private transient QNameInterner interner = new QNameInterner();
     /**
-     * get the namespace map
-     * 
-     * @return a map of previously known XMLSchema objects keyed by their namespace (String)
+     * Runs the prefetching of referenced documents, or null to read them one after the other.
      */
-    public Map<String, XmlSchema> getKnownNamespaceMap() {
-        return knownNamespaceMap;
-    }
-
+    private transient Executor executor;
     /**
-     * Retrieve the namespace context.
-     * 
-     * @return the namespace context.
+     * Serializes the reads into this collection, since they share the working stack and the unresolved
+     * types.
      */
-    public NamespacePrefixList getNamespaceContext() {
-        return namespaceContext;
-    }
-
+    private transient Object readLock = new Object();
     /**
-     * Retrieve the custom URI resolver, if any.
-     * 
-     * @return the current resolver.
+     * Counts the changes to the components and the externals of the schemas of this collection, so that
+     * the index of the external components of a schema can tell at once that nothing changed.
      */
-    public URIResolver getSchemaResolver() {
-        return schemaResolver;
-    }
-
+    transient int epoch;
     /**
-     * Retrieve a global type from the schema collection.
-     * 
-     * @param schemaTypeName the QName of the type.
-     * @return the type object, or null.
+     * The executor of the asynchronous read in progress, which prefetches when the collection has none.
      */
-    public XmlSchemaType getTypeByQName(QName schemaTypeName) {
-        String uri = schemaTypeName.getNamespaceURI();
-        for (Map.Entry<SchemaKey, XmlSchema> entry : schemas.entrySet()) {
-            if (entry.getKey().getNamespace().equals(uri)) {
-                XmlSchemaType type = entry.getValue().getTypeByName(schemaTypeName);
-                if (type != null) {
-                    return type;
-                }
-            }
-        }
-        return null;
-    }
-
+    private transient Executor asyncReadExecutor;
     /**
-     * Retrieve a set containing the XmlSchema instances with the given system ID. In general, this will
-     * return a single instance, or none. However, if the schema has no targetNamespace attribute and was
-     * included from schemata with different target namespaces, then it may occur, that multiple schema
-     * instances with different logical target namespaces may be returned.
-     * 
-     * @param systemId the system id for this schema
-     * @return array of XmlSchema objects
+     * Whether referenced documents with the same content as a document read before are not read again.
      */
-    public XmlSchema[] getXmlSchema(String systemId) {
-        if (systemId == null) {
-            systemId = "";
-        }
-        final List<XmlSchema> result = new ArrayList<XmlSchema>();
-        for (Map.Entry<SchemaKey, XmlSchema> entry : schemas.entrySet()) {
-            if (((SchemaKey)entry.getKey()).getSystemId().equals(systemId)) {
-                result.add(entry.getValue());
-            }
-        }
-        return result.toArray(new XmlSchema[result.size()]);
-    }
+    private boolean deduplicating;
+    /**
+     * The schemas read from referenced documents when deduplicating, by namespace and content digest.
+     */
+    private transient Map<String, XmlSchema> schemasByDigest;
+    /**
+     * The schemas that stand in for documents that were not read, by the key they would have had.
+     */
+    private transient Map<SchemaKey, XmlSchema> deduplicatedSchemas;
+    private transient int deduplicatedCount;
+    /**
+     * Parses the schema documents, created on first use.
+     */
+    private transient DocumentBuilderPool documentBuilderPool;
+    /**
+     * Prefetches the documents referenced by the schema being read, if any.
+     */
+    transient SchemaPrefetcher prefetcher;
+    /**
+     * Map of included schemas.
+     */
+    private Map<SchemaKey, XmlSchema> schemas;
+    /**
+     * The schemas of {@link #schemas}, indexed by target namespace in the order they were added.
+     */
+    private Map<String, List<XmlSchema>> schemasByNamespace;
+    /**
+     * The schemas of {@link #schemas}, indexed by system ID in the order they were added.
+     */
+    private Map<String, List<XmlSchema>> schemasBySystemId;
+    /**
+     * Factory for the readers used to stream schema documents, created on first use.
+     */
+    private transient XMLInputFactory inputFactory;
+    /**
+     * Set by {@link #freeze()}.
+     */
+    private volatile boolean frozen;
 
     /**
-     * Returns an array of all the XmlSchemas in this collection.
-     * 
-     * @return the list of XmlSchema objects
+     * Creates new XmlSchemaCollection
      */
-    public XmlSchema[] getXmlSchemas() {
-        Collection<XmlSchema> c = schemas.values();
-        return c.toArray(new XmlSchema[c.size()]);
+    public XmlSchemaCollection() {
+        init();
     }
 
     /**
-     * This section should comply to the XMLSchema specification; see <a
+     * Creates the collection of the built-in schema, which is shared by all the other collections. This
+     * section should comply to the XMLSchema specification; see <a
      * href="http://www.w3.org/TR/2004/PER-xmlschema-2-20040318/datatypes.html#built-in-datatypes">
      * http://www.w3.org/TR/2004/PER-xmlschema-2-20040318/datatypes.html#built-in-datatypes</a>. This needs to
      * be inspected by another pair of eyes
      */
-    public void init() {
-        
-        stack = new Stack<SchemaKey>();
-        unresolvedTypes = new HashMap<QName, List<TypeReceiver>>();
-        extReg = new ExtensionRegistry();
-        knownNamespaceMap = new HashMap<String, XmlSchema>();
-        schemaResolver = new DefaultURIResolver();
-        schemas = new HashMap<SchemaKey, XmlSchema>();
+    private XmlSchemaCollection(boolean builtins) {
+        initState();
         // LAST, since the ctor for XmlSchema will reach back into here. 
         xsd = new XmlSchema(XmlSchema.SCHEMA_NS, this);
         /*
@@ -348,9 +350,176 @@ public final class XmlSchemaCollection {
 
         // 2.5.3 setup built-in datatype hierarchy 
         setupBuiltinDatatypeHierarchy(xsd);
+        freeze();
+    }
+
+    /**
+     * Return an indication of whether a particular schema is in the working stack of schemas. This function,
+     * while public, is probably not useful outside of the implementation.
+     * 
+     * @param pKey schema key
+     * @return true if the schema is in the stack.
+     */
+    public boolean check(SchemaKey pKey) {
+        return stack.indexOf(pKey) == -1;
+    }
+
+    public ExtensionRegistry getExtReg() {
+        return extReg;
+    }
+
+    /**
+     * get the namespace map
+     * 
+     * @return a map of previously known XMLSchema objects keyed by their namespace (String)
+     */
+    public Map<String, XmlSchema> getKnownNamespaceMap() {
+        return frozen ? Collections.unmodifiableMap(knownNamespaceMap) : knownNamespaceMap;
+    }
+
+    /**
+     * Tell if this collection is frozen.
+     *
+     * @return true if {@link #freeze()} was called.
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    /**
+     * Retrieve the namespace context.
+     * 
+     * @return the namespace context.
+     */
+    public NamespacePrefixList getNamespaceContext() {
+        return namespaceContext;
+    }
+
+    /**
+     * Retrieve how the markup of annotations is kept when schemas are read.
+     *
+     * @return the mode.
+     */
+    public AnnotationMarkupMode getAnnotationMarkupMode() {
+        return annotationMarkupMode;
+    }
+
+    /**
+     * Retrieve the executor that loads referenced schema documents concurrently, if any.
+     *
+     * @return the executor, or null.
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
 
-        // SchemaKey key = new SchemaKey(XmlSchema.SCHEMA_NS, null);
-        // addSchema(key, xsd);
+    /**
+     * @return the executor that prefetches the documents referenced by the schema being read, or null.
+     */
+    Executor getPrefetchExecutor() {
+        return executor == null ? asyncReadExecutor : executor;
+    }
+
+    /**
+     * Retrieve the pool of document builders that parse the schema documents read from input sources. A
+     * default pool is created on first use; its features can be set before the first schema is read.
+     *
+     * @return the pool.
+     */
+    public synchronized DocumentBuilderPool getDocumentBuilderPool() {
+        if (documentBuilderPool == null) {
+            documentBuilderPool = new DocumentBuilderPool();
+        }
+        return documentBuilderPool;
+    }
+
+    /**
+     * Retrieve the interner that shares equal names and namespace strings among the schemas of this
+     * collection. It keeps every value for as long as the collection lives, so it should only be given names
+     * that the object model holds, not transient strings such as serialized references.
+     *
+     * @return the interner.
+     */
+    public QNameInterner getInterner() {
+        return interner;
+    }
+
+    /**
+     * Retrieve the cache of resolved schemas, if any.
+     *
+     * @return the cache.
+     */
+    public SchemaCache getSchemaCache() {
+        return schemaCache;
+    }
+
+    /**
+     * Retrieve the custom URI resolver, if any.
+     * 
+     * @return the current resolver.
+     */
+    public URIResolver getSchemaResolver() {
+        return schemaResolver;
+    }
+
+    /**
+     * Retrieve a global type from the schema collection.
+     * 
+     * @param schemaTypeName the QName of the type.
+     * @return the type object, or null.
+     */
+    public XmlSchemaType getTypeByQName(QName schemaTypeName) {
+        for (XmlSchema schema : getSchemasByNamespace(schemaTypeName.getNamespaceURI())) {
+            XmlSchemaType type = schema.getTypeByName(schemaTypeName);
+            if (type != null) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Retrieve a set containing the XmlSchema instances with the given system ID. In general, this will
+     * return a single instance, or none. However, if the schema has no targetNamespace attribute and was
+     * included from schemata with different target namespaces, then it may occur, that multiple schema
+     * instances with different logical target namespaces may be returned.
+     * 
+     * @param systemId the system id for this schema
+     * @return array of XmlSchema objects
+     */
+    public XmlSchema[] getXmlSchema(String systemId) {
+        if (systemId == null) {
+            systemId = "";
+        }
+        List<XmlSchema> result = schemasBySystemId.get(systemId);
+        if (result == null) {
+            return new XmlSchema[0];
+        }
+        return result.toArray(new XmlSchema[result.size()]);
+    }
+
+    /**
+     * Returns an array of all the XmlSchemas in this collection.
+     * 
+     * @return the list of XmlSchema objects
+     */
+    public XmlSchema[] getXmlSchemas() {
+        Collection<XmlSchema> c = schemas.values();
+        return c.toArray(new XmlSchema[c.size()]);
+    }
+
+    /**
+     * Reset the collection so that it only contains the schema of the built-in datatypes. That schema is
+     * built once, frozen and shared by all collections, so it cannot be modified, and its
+     * {@link XmlSchema#getParent()} is a hidden collection of its own rather than this one.
+     */
+    public void init() {
+        checkNotFrozen();
+        
+        initState();
+        // the built-in schema is frozen, so all collections share it
+        xsd = BuiltinSchema.XSD;
+        addSchema(new SchemaKey(XmlSchema.SCHEMA_NS, null), xsd);
 
         // look for a system property to see whether we have a registered
         // extension registry class. if so we'll instantiate a new one
@@ -359,8 +528,7 @@ public final class XmlSchemaCollection {
         String extRegProp = getSystemProperty(Constants.SystemConstants.EXTENSION_REGISTRY_KEY);
         if (extRegProp != null) {
             try {
-                Class<?> clazz = Class.forName(extRegProp);
-                this.extReg = (ExtensionRegistry)clazz.newInstance();
+                this.extReg = (ExtensionRegistry)getExtensionRegistryClass(extRegProp).newInstance();
             } catch (ClassNotFoundException e) {
                 System.err.println("The specified extension registry class cannot be found!");
             } catch (InstantiationException e) {
@@ -370,8 +538,47 @@ public final class XmlSchemaCollection {
             }
         }
     }
-    
-    private String getSystemProperty(final String s) {
+
+    /**
+     * The schema of the built-in datatypes, shared by all collections. Its parent is a collection of its
+     * own, which only holds it, and not any of the collections that contain it.
+     */
+    static XmlSchema getBuiltinSchema() {
+        return BuiltinSchema.XSD;
+    }
+
+    /**
+     * Holds the schema of the built-in datatypes, which is built on first use.
+     */
+    private static final class BuiltinSchema {
+        static final XmlSchema XSD = new XmlSchemaCollection(true).xsd;
+    }
+
+    /**
+     * Look up an extension registry class by name. The property may change at any time, so the classes are
+     * cached by name rather than once.
+     */
+    private static Class<?> getExtensionRegistryClass(String name) throws ClassNotFoundException {
+        Class<?> clazz = EXTENSION_REGISTRY_CLASSES.get(name);
+        if (clazz == null) {
+            clazz = Class.forName(name);
+            EXTENSION_REGISTRY_CLASSES.putIfAbsent(name, clazz);
+        }
+        return clazz;
+    }
+
+    private void initState() {
+        stack = new Stack<SchemaKey>();
+        unresolvedTypes = new HashMap<QName, List<TypeReceiver>>();
+        extReg = new ExtensionRegistry();
+        knownNamespaceMap = new HashMap<String, XmlSchema>();
+        schemaResolver = new DefaultURIResolver();
+        schemas = new HashMap<SchemaKey, XmlSchema>();
+        schemasByNamespace = new HashMap<String, List<XmlSchema>>();
+        schemasBySystemId = new HashMap<String, List<XmlSchema>>();
+    }
+
+    private static String getSystemProperty(final String s) {
         try {
             return AccessController.doPrivileged(new PrivilegedAction<String>() {
                 public String run() {
@@ -464,11 +671,51 @@ public final class XmlSchemaCollection {
         simple.setContent(restriction);
     }
 
+    /**
+     * Make this collection and its schemas unmodifiable, so that any number of threads can read them without
+     * synchronization. Every reference (ref='...') is resolved, and the state that lookups would otherwise
+     * compute on first use is computed now. Afterwards, reading schemas into the collection or calling its
+     * setters throws an {@link UnsupportedOperationException}. So do the setters of the schemas and their
+     * collections of items, externals and global components.
+     * <br/>
+     * The setters of the other objects of the schema model are not checked; they must not be called once the
+     * collection is frozen. Freezing an already frozen collection does nothing.
+     * <br/>
+     * Schemas that this collection got from a shared {@link SchemaCache} but that another collection read are
+     * left as they are, since that collection may still change them. They are frozen with their own
+     * collection.
+     */
+    public synchronized void freeze() {
+        if (frozen) {
+            return;
+        }
+        for (XmlSchema schema : schemas.values()) {
+            if (isOwn(schema)) {
+                schema.resolveReferences();
+            }
+        }
+        for (XmlSchema schema : schemas.values()) {
+            if (isOwn(schema)) {
+                schema.freeze();
+            }
+        }
+        if (namespaceContext != null) {
+            namespaceContext.getDeclaredPrefixes();
+        }
+        frozen = true;
+    }
+
+    // the built-in schema is frozen already, and schemas shared through the cache belong to their reader
+    private boolean isOwn(XmlSchema schema) {
+        return schema.getParent() == this;
+    }
+
     /**
      * Pop the stack of schemas. This function, while public, is probably not useful outside of the
      * implementation.
      */
     public void pop() {
+        checkNotFrozen();
         stack.pop();
     }
 
@@ -479,6 +726,7 @@ public final class XmlSchemaCollection {
      * @param pKey the schema key.
      */
     public void push(SchemaKey pKey) {
+        checkNotFrozen();
         stack.push(pKey);
     }
 
@@ -504,10 +752,12 @@ public final class XmlSchemaCollection {
      * @return the schema object.
      */
     public XmlSchema read(Document doc, String systemId, TargetNamespaceValidator validator) {
-        SchemaBuilder builder = new SchemaBuilder(this, validator);
-        XmlSchema schema = builder.build(doc, systemId);
-        schema.setInputEncoding(DOMUtil.getInputEncoding(doc));
-        return schema;
+        synchronized (readLock) {
+            SchemaBuilder builder = new SchemaBuilder(this, validator);
+            XmlSchema schema = builder.build(doc, systemId);
+            schema.setInputEncoding(DOMUtil.getInputEncoding(doc));
+            return schema;
+        }
     }
 
     /**
@@ -520,8 +770,10 @@ public final class XmlSchemaCollection {
      * @return the XML schema object.
      */
     public XmlSchema read(Document doc) {
-        SchemaBuilder builder = new SchemaBuilder(this, null);
-        return builder.build(doc, null);
+        synchronized (readLock) {
+            SchemaBuilder builder = new SchemaBuilder(this, null);
+            return builder.build(doc, null);
+        }
     }
 
     /**
@@ -532,10 +784,12 @@ public final class XmlSchemaCollection {
      * @return the XmlSchema
      */
     public XmlSchema read(Element elem) {
-        SchemaBuilder builder = new SchemaBuilder(this, null);
-        XmlSchema xmlSchema = builder.handleXmlSchemaElement(elem, null);
-        xmlSchema.setInputEncoding(DOMUtil.getXmlEncoding(elem.getOwnerDocument()));
-        return xmlSchema;
+        synchronized (readLock) {
+            SchemaBuilder builder = new SchemaBuilder(this, null);
+            XmlSchema xmlSchema = builder.handleXmlSchemaElement(elem, null);
+            xmlSchema.setInputEncoding(DOMUtil.getXmlEncoding(elem.getOwnerDocument()));
+            return xmlSchema;
+        }
     }
 
     /**
@@ -547,10 +801,12 @@ public final class XmlSchemaCollection {
      * @return the schema object.
      */
     public XmlSchema read(Element elem, String systemId) {
-        SchemaBuilder builder = new SchemaBuilder(this, null);
-        XmlSchema xmlSchema = builder.handleXmlSchemaElement(elem, systemId);
-        xmlSchema.setInputEncoding(DOMUtil.getInputEncoding(elem.getOwnerDocument()));
-        return xmlSchema;
+        synchronized (readLock) {
+            SchemaBuilder builder = new SchemaBuilder(this, null);
+            XmlSchema xmlSchema = builder.handleXmlSchemaElement(elem, systemId);
+            xmlSchema.setInputEncoding(DOMUtil.getInputEncoding(elem.getOwnerDocument()));
+            return xmlSchema;
+        }
     }
 
     /**
@@ -569,6 +825,24 @@ public final class XmlSchemaCollection {
         return read(new InputSource(r));
     }
 
+    /**
+     * Read an XML schema into the collection from a StAX reader, without building a DOM tree of the schema
+     * document. The resulting schema is the same as the one read from a DOM document. Schemas that are
+     * referenced by imports, includes and redefines are streamed as well. Schemas in a collection must be
+     * unique in the concatenation of system ID and targetNamespace. In this API, the system ID is taken from
+     * the location of the reader.
+     * <br/>
+     * The reader must be positioned at the start of the document or at the start tag of the schema element,
+     * and it is left positioned at the end tag of the schema element. The reader is not closed.
+     *
+     * @param reader the reader of the XSD document.
+     * @return the XML schema object.
+     */
+    public XmlSchema read(XMLStreamReader reader) {
+        Location location = reader.getLocation();
+        return read(reader, location == null ? null : location.getSystemId(), null);
+    }
+
     /**
      * Read an XML schema into the collection from a TRaX source. Schemas in a collection must be unique in
      * the concatenation of system ID and targetNamespace. In this API, the systemID is taken from the Source.
@@ -599,6 +873,226 @@ public final class XmlSchemaCollection {
         }
     }
 
+    /**
+     * Read an XML schema into the collection from a SAX InputSource on the given executor, as
+     * {@link #read(InputSource)} does. The reads into a collection share its working state, so they are
+     * serialized: a read waits for the reads into the same collection that started before it, whether these
+     * are asynchronous or not. When the collection has no executor of its own, the documents referenced by
+     * the schema are fetched and parsed on the given executor while the schema is built, and the schema
+     * resolver of the collection is called from its threads, as with {@link #setExecutor(Executor)}.
+     * <br/>
+     * A failed read completes the future with an {@link java.util.concurrent.ExecutionException} that
+     * wraps the {@link XmlSchemaException}.
+     *
+     * @param inputSource the XSD document.
+     * @param readExecutor the executor that runs the read.
+     * @return the future of the XML schema object.
+     */
+    public Future<XmlSchema> readAsync(final InputSource inputSource, Executor readExecutor) {
+        return readAsync(new Callable<XmlSchema>() {
+            public XmlSchema call() {
+                return read(inputSource);
+            }
+        }, readExecutor);
+    }
+
+    /**
+     * Read an XML schema into the collection from a TRaX source on the given executor, as
+     * {@link #read(Source)} does. See {@link #readAsync(InputSource, Executor)}.
+     *
+     * @param source the XSD document.
+     * @param readExecutor the executor that runs the read.
+     * @return the future of the XML schema object.
+     */
+    public Future<XmlSchema> readAsync(final Source source, Executor readExecutor) {
+        return readAsync(new Callable<XmlSchema>() {
+            public XmlSchema call() {
+                return read(source);
+            }
+        }, readExecutor);
+    }
+
+    private Future<XmlSchema> readAsync(final Callable<XmlSchema> read, final Executor asyncExecutor) {
+        if (asyncExecutor == null) {
+            throw new IllegalArgumentException("The executor cannot be null");
+        }
+        FutureTask<XmlSchema> task = new FutureTask<XmlSchema>(new Callable<XmlSchema>() {
+            public XmlSchema call() throws Exception {
+                synchronized (readLock) {
+                    Executor previous = asyncReadExecutor;
+                    asyncReadExecutor = asyncExecutor;
+                    try {
+                        return read.call();
+                    } finally {
+                        asyncReadExecutor = previous;
+                    }
+                }
+            }
+        });
+        asyncExecutor.execute(task);
+        return task;
+    }
+
+    /**
+     * Read a changed schema document into the collection again, together with the schemas that refer to it
+     * through imports, includes and redefines, directly or not. The other schemas of the collection are kept,
+     * and the schemas that are read again link to them, so the result is the same as reading all the
+     * documents into a new collection, for a fraction of the cost. Schemas that the changed document no
+     * longer refers to are kept as well.
+     * <br/>
+     * The replaced schemas are removed from the collection and report {@link XmlSchema#isReplaced()}; the
+     * references to their components are resolved again when they are next used. The documents are read
+     * again from their system IDs through the schema resolver of the collection, without a target namespace
+     * validator. If a document cannot be read, the collection is left as it was before the reload.
+     *
+     * @param systemId the system ID of the changed document.
+     * @return the schemas that replace the schemas of the changed document and of the documents that refer
+     *         to it, or an empty array if no schema of the collection was read from the document.
+     */
+    public XmlSchema[] reload(String systemId) {
+        synchronized (readLock) {
+            checkNotFrozen();
+            Map<XmlSchema, List<XmlSchema>> referrers = getReferrers();
+            List<XmlSchema> affected = getDependents(systemId, referrers);
+            Map<XmlSchema, SchemaKey> keys = new IdentityHashMap<XmlSchema, SchemaKey>();
+            for (Map.Entry<SchemaKey, XmlSchema> entry : schemas.entrySet()) {
+                keys.put(entry.getValue(), entry.getKey());
+            }
+            for (XmlSchema schema : affected) {
+                if ("".equals(keys.get(schema).getSystemId())) {
+                    throw new XmlSchemaException("The schema " + keys.get(schema)
+                                                 + " was not read from a system ID and cannot be read again");
+                }
+            }
+            for (XmlSchema schema : affected) {
+                removeSchema(keys.get(schema), schema);
+            }
+            Set<SchemaKey> kept = new HashSet<SchemaKey>(schemas.keySet());
+            try {
+                // the schemas that nothing refers to read the others again, unless they refer to each other
+                for (XmlSchema schema : affected) {
+                    if (referrers.get(schema) == null) {
+                        readAgain(keys.get(schema));
+                    }
+                }
+                for (XmlSchema schema : affected) {
+                    if (!schemas.containsKey(keys.get(schema))) {
+                        readAgain(keys.get(schema));
+                    }
+                }
+            } catch (RuntimeException e) {
+                for (SchemaKey key : new ArrayList<SchemaKey>(schemas.keySet())) {
+                    if (!kept.contains(key)) {
+                        XmlSchema schema = schemas.get(key);
+                        removeSchema(key, schema);
+                    }
+                }
+                for (XmlSchema schema : affected) {
+                    schema.setReplaced(false);
+                    addSchema(keys.get(schema), schema);
+                }
+                throw e;
+            }
+            List<XmlSchema> reloaded = new ArrayList<XmlSchema>(affected.size());
+            for (XmlSchema schema : affected) {
+                XmlSchema replacement = schemas.get(keys.get(schema));
+                if (replacement != null) {
+                    reloaded.add(replacement);
+                }
+            }
+            return reloaded.toArray(new XmlSchema[reloaded.size()]);
+        }
+    }
+
+    /**
+     * @return the schemas read from a document and the schemas that refer to them, directly or not, with
+     *         the schemas of the document first.
+     */
+    private List<XmlSchema> getDependents(String systemId, Map<XmlSchema, List<XmlSchema>> referrers) {
+        List<XmlSchema> dependents = new ArrayList<XmlSchema>();
+        if (systemId == null || "".equals(systemId)) {
+            return dependents;
+        }
+        Map<XmlSchema, Boolean> found = new IdentityHashMap<XmlSchema, Boolean>();
+        List<XmlSchema> read = schemasBySystemId.get(systemId);
+        if (read != null) {
+            for (XmlSchema schema : read) {
+                if (found.put(schema, Boolean.TRUE) == null) {
+                    dependents.add(schema);
+                }
+            }
+        }
+        if (deduplicatedSchemas != null) {
+            // the document was not read, another schema with the same content stands in for it
+            for (Map.Entry<SchemaKey, XmlSchema> entry : deduplicatedSchemas.entrySet()) {
+                if (systemId.equals(entry.getKey().getSystemId())
+                    && found.put(entry.getValue(), Boolean.TRUE) == null) {
+                    dependents.add(entry.getValue());
+                }
+            }
+        }
+        for (int i = 0; i < dependents.size(); i++) {
+            List<XmlSchema> schemaReferrers = referrers.get(dependents.get(i));
+            if (schemaReferrers != null) {
+                for (XmlSchema referrer : schemaReferrers) {
+                    if (found.put(referrer, Boolean.TRUE) == null) {
+                        dependents.add(referrer);
+                    }
+                }
+            }
+        }
+        return dependents;
+    }
+
+    /**
+     * @return the schemas of the collection that refer to each schema through their imports, includes and
+     *         redefines.
+     */
+    private Map<XmlSchema, List<XmlSchema>> getReferrers() {
+        Map<XmlSchema, List<XmlSchema>> referrers = new IdentityHashMap<XmlSchema, List<XmlSchema>>();
+        for (XmlSchema schema : schemas.values()) {
+            for (XmlSchemaExternal external : schema.getExternals()) {
+                XmlSchema target = external.getSchema();
+                if (target != null && target != schema) {
+                    List<XmlSchema> schemaReferrers = referrers.get(target);
+                    if (schemaReferrers == null) {
+                        schemaReferrers = new ArrayList<XmlSchema>(1);
+                        referrers.put(target, schemaReferrers);
+                    }
+                    schemaReferrers.add(schema);
+                }
+            }
+        }
+        return referrers;
+    }
+
+    private void readAgain(SchemaKey key) {
+        InputSource source = schemaResolver.resolveEntity(key.getNamespace(), key.getSystemId(), null);
+        if (source == null) {
+            source = new InputSource(key.getSystemId());
+        } else if (source.getSystemId() == null) {
+            source.setSystemId(key.getSystemId());
+        }
+        read(source, null);
+    }
+
+    /**
+     * Remove a schema that is read again from the collection and from the schemas that stand in for
+     * documents with the same content.
+     */
+    private void removeSchema(SchemaKey key, XmlSchema schema) {
+        schemas.remove(key);
+        removeFromIndex(schemasByNamespace, key.getNamespace(), schema);
+        removeFromIndex(schemasBySystemId, key.getSystemId(), schema);
+        if (deduplicatedSchemas != null) {
+            deduplicatedSchemas.values().removeAll(Collections.singleton(schema));
+        }
+        if (schemasByDigest != null) {
+            schemasByDigest.values().removeAll(Collections.singleton(schema));
+        }
+        schema.setReplaced(true);
+    }
+
     /**
      * Return the schema from this collection for a particular targetNamespace.
      * 
@@ -606,12 +1100,8 @@ public final class XmlSchemaCollection {
      * @return the schema.
      */
     public XmlSchema schemaForNamespace(String uri) {
-        for (Map.Entry<SchemaKey, XmlSchema> entry : schemas.entrySet()) {
-            if (entry.getKey().getNamespace().equals(uri)) {
-                return entry.getValue();
-            }
-        }
-        return null;
+        List<XmlSchema> namespaceSchemas = schemasByNamespace.get(uri);
+        return namespaceSchemas == null ? null : namespaceSchemas.get(0);
     }
 
     /**
@@ -620,6 +1110,7 @@ public final class XmlSchemaCollection {
      * @param baseUri baseUri for this collection.
      */
     public void setBaseUri(String baseUri) {
+        checkNotFrozen();
         this.baseUri = baseUri;
         if (schemaResolver instanceof CollectionURIResolver) {
             CollectionURIResolver resolverWithBase = (CollectionURIResolver)schemaResolver;
@@ -628,6 +1119,7 @@ public final class XmlSchemaCollection {
     }
 
     public void setExtReg(ExtensionRegistry extReg) {
+        checkNotFrozen();
         this.extReg = extReg;
     }
 
@@ -637,6 +1129,7 @@ public final class XmlSchemaCollection {
      * @param knownNamespaceMap a map of previously known XMLSchema objects keyed by their namespace (String)
      */
     public void setKnownNamespaceMap(Map<String, XmlSchema> knownNamespaceMap) {
+        checkNotFrozen();
         this.knownNamespaceMap = knownNamespaceMap;
     }
 
@@ -647,6 +1140,7 @@ public final class XmlSchemaCollection {
      * @param namespaceContext the context.
      */
     public void setNamespaceContext(NamespacePrefixList namespaceContext) {
+        checkNotFrozen();
         this.namespaceContext = namespaceContext;
     }
 
@@ -656,14 +1150,100 @@ public final class XmlSchemaCollection {
      * @param schemaResolver resolver
      */
     public void setSchemaResolver(URIResolver schemaResolver) {
+        checkNotFrozen();
         this.schemaResolver = schemaResolver;
     }
 
+    /**
+     * Set how the markup of appinfo and documentation elements is kept when schemas are read. Schemas that
+     * were already read are not affected. The default is {@link AnnotationMarkupMode#EAGER}.
+     *
+     * @param annotationMarkupMode the mode.
+     */
+    public void setAnnotationMarkupMode(AnnotationMarkupMode annotationMarkupMode) {
+        checkNotFrozen();
+        if (annotationMarkupMode == null) {
+            throw new IllegalArgumentException("The annotation markup mode cannot be null");
+        }
+        this.annotationMarkupMode = annotationMarkupMode;
+    }
+
+    /**
+     * Set an executor to fetch and parse the documents referenced by imports, includes and redefines
+     * concurrently when a schema is read from a DOM document or an input source. The graph of references is
+     * discovered as the documents are parsed. The schemas are still built and linked one at a time, in the
+     * same order as without an executor, so the collection is the same; only the fetching and parsing
+     * overlap. The schema resolver of the collection is called from the threads of the executor, so it must
+     * be thread-safe. The default is no executor, which reads the documents one after the other.
+     *
+     * @param executor the executor, or null.
+     */
+    public void setExecutor(Executor executor) {
+        checkNotFrozen();
+        this.executor = executor;
+    }
+
+    /**
+     * Set the pool of document builders that parse the schema documents read from input sources, for
+     * example to share one configured pool among several collections.
+     *
+     * @param documentBuilderPool the pool, or null for a default pool.
+     */
+    public synchronized void setDocumentBuilderPool(DocumentBuilderPool documentBuilderPool) {
+        checkNotFrozen();
+        this.documentBuilderPool = documentBuilderPool;
+    }
+
+    /**
+     * Set whether a referenced document whose content is the same as that of a document referenced before
+     * with the same target namespace is not read again. The schema read from the first document is used for
+     * the reference instead, and no schema is added to the collection for the copy. This helps with sets of
+     * schemas that refer to copies of the same document at different locations. It assumes that the copies
+     * mean the same, so the relative references of the copies must lead to the same documents. The content
+     * is compared by its SHA-256 digest, and must be read in full before it is parsed. The default is false.
+     *
+     * @param deduplicating whether to deduplicate.
+     */
+    public void setDeduplicating(boolean deduplicating) {
+        checkNotFrozen();
+        this.deduplicating = deduplicating;
+    }
+
+    /**
+     * @return whether referenced documents are deduplicated, see {@link #setDeduplicating(boolean)}.
+     */
+    public boolean isDeduplicating() {
+        return deduplicating;
+    }
+
+    /**
+     * Get the number of referenced documents that were not parsed because a document with the same content
+     * and target namespace was read before, see {@link #setDeduplicating(boolean)}.
+     *
+     * @return the number of parses avoided.
+     */
+    public int getDeduplicatedCount() {
+        return deduplicatedCount;
+    }
+
+    /**
+     * Register a cache of resolved schemas. The same cache may be registered with any number of
+     * collections, which then share the schemas they resolve for includes, imports and redefines. The
+     * default is no cache.
+     *
+     * @param schemaCache the cache, or null for none.
+     */
+    public void setSchemaCache(SchemaCache schemaCache) {
+        checkNotFrozen();
+        this.schemaCache = schemaCache;
+    }
+
     public String toString() {
         return super.toString() + "[" + schemas.toString() + "]";
     }
 
     void addSchema(SchemaKey pKey, XmlSchema pSchema) {
+        checkNotFrozen();
         if (schemas.containsKey(pKey)) {
             throw 
                 new IllegalStateException("A schema with target namespace " 
@@ -672,9 +1252,12 @@ public final class XmlSchemaCollection {
                                           + pKey.getSystemId() + " is already present.");
         }
         schemas.put(pKey, pSchema);
+        addToIndex(schemasByNamespace, pKey.getNamespace(), pSchema);
+        addToIndex(schemasBySystemId, pKey.getSystemId(), pSchema);
     }
 
     void addUnresolvedType(QName type, TypeReceiver receiver) {
+        checkNotFrozen();
         List<TypeReceiver> receivers = unresolvedTypes.get(type);
         if (receivers == null) {
             receivers = new ArrayList<TypeReceiver>();
@@ -683,6 +1266,12 @@ public final class XmlSchemaCollection {
         receivers.add(receiver);
     }
 
+    void checkNotFrozen() {
+        if (frozen) {
+            throw new UnsupportedOperationException("The schema collection is frozen");
+        }
+    }
+
     boolean containsSchema(SchemaKey pKey) {
         return schemas.containsKey(pKey);
     }
@@ -704,17 +1293,100 @@ public final class XmlSchemaCollection {
      * @return
      */
     XmlSchema getSchema(SchemaKey pKey) {
-        return schemas.get(pKey);
+        XmlSchema schema = schemas.get(pKey);
+        if (schema == null && deduplicatedSchemas != null) {
+            schema = deduplicatedSchemas.get(pKey);
+        }
+        return schema;
+    }
+
+    /**
+     * Find the schema read from a referenced document with the given content, and if there is one, use it
+     * for the document with the given key.
+     *
+     * @return the schema, or null if no document with the content was read.
+     */
+    XmlSchema getDeduplicatedSchema(SchemaKey pKey, String digest) {
+        XmlSchema schema =
+            schemasByDigest == null ? null : schemasByDigest.get(pKey.getNamespace() + " " + digest);
+        if (schema != null) {
+            if (deduplicatedSchemas == null) {
+                deduplicatedSchemas = new HashMap<SchemaKey, XmlSchema>();
+            }
+            deduplicatedSchemas.put(pKey, schema);
+            deduplicatedCount++;
+        }
+        return schema;
+    }
+
+    void putDeduplicatedSchema(SchemaKey pKey, String digest, XmlSchema schema) {
+        if (schemasByDigest == null) {
+            schemasByDigest = new HashMap<String, XmlSchema>();
+        }
+        schemasByDigest.put(pKey.getNamespace() + " " + digest, schema);
+    }
+
+    /**
+     * Read the content of an input source in full and compute its digest. The source is given the content
+     * back, so that it can still be parsed.
+     *
+     * @return the digest as a hexadecimal string.
+     */
+    String digest(InputSource inputSource) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new XmlSchemaException(e.getMessage(), e);
+        }
+        try {
+            Reader reader = inputSource.getCharacterStream();
+            if (reader != null) {
+                StringBuilder content = new StringBuilder();
+                char[] buffer = new char[4096];
+                for (int n = reader.read(buffer); n != -1; n = reader.read(buffer)) {
+                    content.append(buffer, 0, n);
+                }
+                reader.close();
+                digest.update(content.toString().getBytes("UTF-8"));
+                inputSource.setCharacterStream(new StringReader(content.toString()));
+            } else {
+                InputStream in = inputSource.getByteStream();
+                if (in == null) {
+                    in = openDoPriv(inputSource.getSystemId());
+                }
+                ByteArrayOutputStream content = new ByteArrayOutputStream();
+                try {
+                    byte[] buffer = new byte[4096];
+                    for (int n = in.read(buffer); n != -1; n = in.read(buffer)) {
+                        content.write(buffer, 0, n);
+                    }
+                } finally {
+                    in.close();
+                }
+                byte[] bytes = content.toByteArray();
+                digest.update(bytes);
+                inputSource.setByteStream(new ByteArrayInputStream(bytes));
+            }
+        } catch (IOException e) {
+            throw new XmlSchemaException(e.getMessage(), e);
+        }
+        return new BigInteger(1, digest.digest()).toString(16);
     }
 
     XmlSchema read(InputSource inputSource, TargetNamespaceValidator namespaceValidator) {
         try {
-            DocumentBuilderFactory docFac = DocumentBuilderFactory.newInstance();
-            docFac.setNamespaceAware(true);
-            final DocumentBuilder builder = docFac.newDocumentBuilder();
-            Document doc = null;
-            doc = parseDoPriv(inputSource, builder, doc);
-            return read(doc, inputSource.getSystemId(), namespaceValidator);
+            synchronized (readLock) {
+                SchemaPrefetcher currentPrefetcher = prefetcher;
+                Document doc = currentPrefetcher == null
+                    ? null : currentPrefetcher.take(inputSource.getSystemId());
+                if (doc == null) {
+                    doc = parse(inputSource);
+                } else {
+                    SchemaPrefetcher.close(inputSource);
+                }
+                return read(doc, inputSource.getSystemId(), namespaceValidator);
+            }
         } catch (ParserConfigurationException e) {
             throw new XmlSchemaException(e.getMessage(), e);
         } catch (IOException e) {
@@ -724,7 +1396,59 @@ public final class XmlSchemaCollection {
         }
     }
 
+    XmlSchema read(XMLStreamReader reader, String systemId, TargetNamespaceValidator namespaceValidator) {
+        try {
+            synchronized (readLock) {
+                StaxSchemaBuilder builder = new StaxSchemaBuilder(this, namespaceValidator, reader);
+                return builder.build(systemId);
+            }
+        } catch (XMLStreamException e) {
+            throw new XmlSchemaException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Read a schema document with a StAX reader. This is the streaming counterpart of
+     * {@link #read(InputSource, TargetNamespaceValidator)}.
+     */
+    XmlSchema readStreaming(final InputSource inputSource, TargetNamespaceValidator namespaceValidator) {
+        final String systemId = inputSource.getSystemId();
+        InputStream opened = null;
+        try {
+            XMLInputFactory factory = getInputFactory();
+            XMLStreamReader reader;
+            if (inputSource.getCharacterStream() != null) {
+                reader = factory.createXMLStreamReader(systemId, inputSource.getCharacterStream());
+            } else if (inputSource.getByteStream() != null) {
+                reader = inputSource.getEncoding() == null
+                    ? factory.createXMLStreamReader(systemId, inputSource.getByteStream())
+                    : factory.createXMLStreamReader(inputSource.getByteStream(), inputSource.getEncoding());
+            } else {
+                opened = openDoPriv(systemId);
+                reader = factory.createXMLStreamReader(systemId, opened);
+            }
+            try {
+                return read(reader, systemId, namespaceValidator);
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            throw new XmlSchemaException(e.getMessage(), e);
+        } catch (XMLStreamException e) {
+            throw new XmlSchemaException(e.getMessage(), e);
+        } finally {
+            if (opened != null) {
+                try {
+                    opened.close();
+                } catch (IOException e) {
+                    // ignore, the schema has been read or the read has failed already.
+                }
+            }
+        }
+    }
+
     void resolveType(QName typeName, XmlSchemaType type) {
+        checkNotFrozen();
         List<TypeReceiver> receivers = unresolvedTypes.get(typeName);
         if (receivers == null) {
             return;
@@ -735,30 +1459,113 @@ public final class XmlSchemaCollection {
         unresolvedTypes.remove(typeName);
     }
 
+    private static void addToIndex(Map<String, List<XmlSchema>> index, String key, XmlSchema schema) {
+        List<XmlSchema> indexed = index.get(key);
+        if (indexed == null) {
+            indexed = new ArrayList<XmlSchema>(1);
+            index.put(key, indexed);
+        }
+        indexed.add(schema);
+    }
+
+    private static void removeFromIndex(Map<String, List<XmlSchema>> index, String key, XmlSchema schema) {
+        List<XmlSchema> indexed = index.get(key);
+        if (indexed != null) {
+            for (Iterator<XmlSchema> it = indexed.iterator(); it.hasNext();) {
+                if (it.next() == schema) {
+                    it.remove();
+                }
+            }
+            if (indexed.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
     private void addSimpleType(XmlSchema schema, String typeName) {
         XmlSchemaSimpleType type;
         type = new XmlSchemaSimpleType(schema, true);
         type.setName(typeName);
     }
 
-    private Document parseDoPriv(final InputSource inputSource, final DocumentBuilder builder, Document doc)
-        throws IOException, SAXException {
+    /**
+     * Restore the state that is not serialized with the collection: the extension registry and the URI
+     * resolver are reset to their defaults, and no schema cache is registered.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        stack = new Stack<SchemaKey>();
+        unresolvedTypes = new HashMap<QName, List<TypeReceiver>>();
+        extReg = new ExtensionRegistry();
+        schemaResolver = new DefaultURIResolver();
+        interner = new QNameInterner();
+        readLock = new Object();
+    }
+
+    /**
+     * @return the schemas with the given target namespace, in the order they were added.
+     */
+    private List<XmlSchema> getSchemasByNamespace(String uri) {
+        List<XmlSchema> namespaceSchemas = schemasByNamespace.get(uri);
+        if (namespaceSchemas == null) {
+            return Collections.emptyList();
+        }
+        return namespaceSchemas;
+    }
+
+    private synchronized XMLInputFactory getInputFactory() {
+        if (inputFactory == null) {
+            inputFactory = XMLInputFactory.newInstance();
+            inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+            // DOM parsers keep CDATA sections, so the markup of annotations must keep them too.
+            String reportCdata = "http://java.sun.com/xml/stream/properties/report-cdata-event";
+            if (inputFactory.isPropertySupported(reportCdata)) {
+                inputFactory.setProperty(reportCdata, Boolean.TRUE);
+            }
+        }
+        return inputFactory;
+    }
+
+    private InputStream openDoPriv(final String systemId) throws IOException {
+        if (systemId == null) {
+            throw new XmlSchemaException("The input source has neither a stream nor a system ID.");
+        }
+        try {
+            return AccessController.doPrivileged(new PrivilegedExceptionAction<InputStream>() {
+                public InputStream run() throws IOException {
+                    return new URL(systemId).openStream();
+                }
+            });
+        } catch (PrivilegedActionException e) {
+            throw (IOException)e.getException();
+        }
+    }
+
+    /**
+     * Parse a schema document.
+     */
+    Document parse(InputSource inputSource) throws ParserConfigurationException, IOException, SAXException {
+        return parseDoPriv(inputSource, getDocumentBuilderPool());
+    }
+
+    private Document parseDoPriv(final InputSource inputSource, final DocumentBuilderPool pool)
+        throws ParserConfigurationException, IOException, SAXException {
         try {
-            doc = java.security.AccessController.doPrivileged(new PrivilegedExceptionAction<Document>() {
-                public Document run() throws IOException, SAXException {
-                    return builder.parse(inputSource);
+            return java.security.AccessController.doPrivileged(new PrivilegedExceptionAction<Document>() {
+                public Document run() throws ParserConfigurationException, IOException, SAXException {
+                    return pool.parse(inputSource);
                 }
             });
         } catch (PrivilegedActionException e) {
             Exception exception = e.getException();
+            if (exception instanceof ParserConfigurationException) {
+                throw (ParserConfigurationException)exception;
+            }
             if (exception instanceof IOException) {
                 throw (IOException)exception;
             }
-            if (exception instanceof SAXException) {
-                throw (SAXException)exception;
-            }
+            throw (SAXException)exception;
         }
-        return doc;
     }
     
     /**
@@ -768,14 +1575,10 @@ public final class XmlSchemaCollection {
      * @return the attribute or null.
      */
     public XmlSchemaAttribute getAttributeByQName(QName schemaAttributeName) {
-        String uri = schemaAttributeName.getNamespaceURI();
-        for (Map.Entry<SchemaKey, XmlSchema> entry : schemas.entrySet()) {
-            if (entry.getKey().getNamespace().equals(uri)) {
-                XmlSchemaAttribute attribute = entry.getValue()
-                    .getAttributeByName(schemaAttributeName);
-                if (attribute != null) {
-                    return attribute;
-                }
+        for (XmlSchema schema : getSchemasByNamespace(schemaAttributeName.getNamespaceURI())) {
+            XmlSchemaAttribute attribute = schema.getAttributeByName(schemaAttributeName);
+            if (attribute != null) {
+                return attribute;
             }
         }
         return null;
@@ -788,13 +1591,10 @@ public final class XmlSchemaCollection {
      * @return the element object, or null.
      */
     public XmlSchemaElement getElementByQName(QName qname) {
-        String uri = qname.getNamespaceURI();
-        for (Map.Entry<SchemaKey, XmlSchema> entry : schemas.entrySet()) {
-            if (entry.getKey().getNamespace().equals(uri)) {
-                XmlSchemaElement element = entry.getValue().getElementByName(qname);
-                if (element != null) {
-                    return element;
-                }
+        for (XmlSchema schema : getSchemasByNamespace(qname.getNamespaceURI())) {
+            XmlSchemaElement element = schema.getElementByName(qname);
+            if (element != null) {
+                return element;
             }
         }
         return null;
@@ -802,42 +1602,30 @@ public final class XmlSchemaCollection {
 
     
     public XmlSchemaAttributeGroup getAttributeGroupByQName(QName name) {
-        String uri = name.getNamespaceURI();
-        for (Map.Entry<SchemaKey, XmlSchema> entry : schemas.entrySet()) {
-            if (entry.getKey().getNamespace().equals(uri)) {
-                XmlSchemaAttributeGroup group = entry.getValue()
-                    .getAttributeGroupByName(name);
-                if (group != null) {
-                    return group;
-                }
+        for (XmlSchema schema : getSchemasByNamespace(name.getNamespaceURI())) {
+            XmlSchemaAttributeGroup group = schema.getAttributeGroupByName(name);
+            if (group != null) {
+                return group;
             }
         }
         return null;
     }
     
     public XmlSchemaGroup getGroupByQName(QName name) {
-        String uri = name.getNamespaceURI();
-        for (Map.Entry<SchemaKey, XmlSchema> entry : schemas.entrySet()) {
-            if (entry.getKey().getNamespace().equals(uri)) {
-                XmlSchemaGroup group = entry.getValue()
-                    .getGroupByName(name);
-                if (group != null) {
-                    return group;
-                }
+        for (XmlSchema schema : getSchemasByNamespace(name.getNamespaceURI())) {
+            XmlSchemaGroup group = schema.getGroupByName(name);
+            if (group != null) {
+                return group;
             }
         }
         return null;
     }
     
     public XmlSchemaNotation getNotationByQName(QName name) {
-        String uri = name.getNamespaceURI();
-        for (Map.Entry<SchemaKey, XmlSchema> entry : schemas.entrySet()) {
-            if (entry.getKey().getNamespace().equals(uri)) {
-                XmlSchemaNotation notation = entry.getValue()
-                    .getNotationByName(name);
-                if (notation != null) {
-                    return notation;
-                }
+        for (XmlSchema schema : getSchemasByNamespace(name.getNamespaceURI())) {
+            XmlSchemaNotation notation = schema.getNotationByName(name);
+            if (notation != null) {
+                return notation;
             }
         }
         return null;
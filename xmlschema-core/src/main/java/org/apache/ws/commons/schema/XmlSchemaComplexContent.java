@@ -25,6 +25,8 @@ package org.apache.ws.commons.schema;
  * complexContent element.
  */
 public class XmlSchemaComplexContent extends XmlSchemaContentModel {
+    private static final long serialVersionUID = 1L;
+
     /*
      * One of either the XmlSchemaComplexContentRestriction or XmlSchemaComplexContentExtension classes.
      */
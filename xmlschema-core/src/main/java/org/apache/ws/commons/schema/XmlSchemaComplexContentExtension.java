@@ -33,6 +33,8 @@ import javax.xml.namespace.QName;
 
 public class XmlSchemaComplexContentExtension extends XmlSchemaContent {
 
+    private static final long serialVersionUID = 1L;
+
     /* Allows an XmlSchemaAnyAttribute to be used for the attribute value. */
     private XmlSchemaAnyAttribute anyAttribute;
     /*
@@ -32,6 +32,8 @@ import javax.xml.namespace.QName;
  */
 
 public class XmlSchemaComplexContentRestriction extends XmlSchemaContent {
+    private static final long serialVersionUID = 1L;
+
     /* Allows an XmlSchemaAnyAttribute to be used for the attribute value. */
     private XmlSchemaAnyAttribute anyAttribute;
     /*
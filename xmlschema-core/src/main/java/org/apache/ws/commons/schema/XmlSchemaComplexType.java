@@ -31,6 +31,8 @@ import javax.xml.namespace.QName;
  */
 
 public class XmlSchemaComplexType extends XmlSchemaType {
+    private static final long serialVersionUID = 1L;
+
     private XmlSchemaAnyAttribute anyAttribute;
     private XmlSchemaAnyAttribute attributeWildcard;
     private List<XmlSchemaAttributeOrGroupRef> attributes;
@@ -25,6 +25,8 @@ package org.apache.ws.commons.schema;
 
 public abstract class XmlSchemaContent extends XmlSchemaAnnotated {
 
+    private static final long serialVersionUID = 1L;
+
     /**
      * Creates new XmlSchemaContent
      */
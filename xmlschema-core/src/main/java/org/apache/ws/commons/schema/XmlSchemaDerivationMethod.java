@@ -19,12 +19,15 @@
 
 package org.apache.ws.commons.schema;
 
+import java.io.Serializable;
 
 /**
  * Values for block and final attributes. Generally, either no value {@link #isNone()} returns true),
  * {@link #isAll()} returns true, or any number of the other booleans return true. 
  */
-public class XmlSchemaDerivationMethod {
+public class XmlSchemaDerivationMethod implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     public static final XmlSchemaDerivationMethod NONE = new XmlSchemaDerivationMethod();
     
     private boolean all;
@@ -178,4 +181,19 @@ public class XmlSchemaDerivationMethod {
     public void setUnion(boolean union) {
         this.union = union;
     }
+
+    /**
+     * Serialize {@link #NONE} as a token, so that it is restored as the same instance.
+     */
+    private Object writeReplace() {
+        return this == NONE ? new NoneToken() : this;
+    }
+
+    private static final class NoneToken implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private Object readResolve() {
+            return NONE;
+        }
+    }
 }
@@ -28,6 +28,8 @@ import org.w3c.dom.NodeList;
 
 public class XmlSchemaDocumentation extends XmlSchemaAnnotationItem {
 
+    private static final long serialVersionUID = 1L;
+
 
     /**
      * Provides the source of the application information.
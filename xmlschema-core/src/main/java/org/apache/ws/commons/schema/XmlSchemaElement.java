@@ -44,6 +44,8 @@ public class XmlSchemaElement extends XmlSchemaParticle implements TypeReceiver,
     XmlSchemaChoiceMember, XmlSchemaSequenceMember, XmlSchemaAllMember,
     XmlSchemaItemWithRef<XmlSchemaElement> {
 
+    private static final long serialVersionUID = 1L;
+
     /**
      * Attribute used to block a type derivation.
      */
@@ -88,6 +90,7 @@ public class XmlSchemaElement extends XmlSchemaParticle implements TypeReceiver,
     public XmlSchemaElement(XmlSchema parentSchema, boolean topLevel) {
         namedDelegate = new XmlSchemaNamedWithFormImpl(parentSchema, topLevel, true);
         ref = new XmlSchemaRef<XmlSchemaElement>(parentSchema, XmlSchemaElement.class);
+        parentSchema.addRef(ref);
         namedDelegate.setRefObject(ref);
         ref.setNamedObject(namedDelegate);
 
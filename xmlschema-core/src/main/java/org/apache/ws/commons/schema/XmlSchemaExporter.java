@@ -0,0 +1,359 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ws.commons.schema;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes a set of schemas as documents to a directory or a zip stream, for example a whole collection, or a
+ * schema with the schemas that it includes and imports. With an {@link Executor}, the documents are rendered
+ * concurrently; the output is the same as without one, since the name of each document is chosen before
+ * anything is rendered and the entries of a zip stream are written in the order of the schemas.
+ * <br/>
+ * Each document is named after the last segment of the source URI of its schema, made unique within the
+ * export by a numeric suffix. Since all the documents are written side by side, an include, import or
+ * redefine of an exported schema refers to the name of its document instead of the location it was read
+ * from. A reference to a schema that is not exported keeps its original location.
+ */
+public class XmlSchemaExporter {
+    // the earliest time a zip entry can record, so that zip streams do not depend on the clock
+    private static final long ENTRY_TIME = new java.util.GregorianCalendar(1980, 0, 1).getTimeInMillis();
+
+    private final XmlSchemaSerializerService service;
+    private Executor executor;
+    private Map<String, String> options;
+
+    /**
+     * Create an exporter that renders the schemas with a new {@link XmlSchemaSerializerService}.
+     */
+    public XmlSchemaExporter() {
+        this(new XmlSchemaSerializerService());
+    }
+
+    /**
+     * Create an exporter that renders the schemas with the given service, which may cache the renderings.
+     *
+     * @param service the service.
+     */
+    public XmlSchemaExporter(XmlSchemaSerializerService service) {
+        this.service = service;
+    }
+
+    /**
+     * Get the executor that renders the documents.
+     *
+     * @return the executor, or null if the documents are rendered by the calling thread.
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Set the executor that renders the documents concurrently. The calling thread waits for all of them.
+     *
+     * @param executor the executor, or null to render the documents in the calling thread.
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Get the output properties of the documents.
+     *
+     * @return the options, or null for the defaults of {@link XmlSchema#write(OutputStream)}.
+     */
+    public Map<String, String> getOptions() {
+        return options;
+    }
+
+    /**
+     * Set the output properties of the documents, as understood by
+     * {@link XmlSchemaStreamSerializer#serialize(XmlSchema, OutputStream, Map)}.
+     *
+     * @param options the options, or null for the defaults of {@link XmlSchema#write(OutputStream)}.
+     */
+    public void setOptions(Map<String, String> options) {
+        this.options = options == null ? null : new LinkedHashMap<String, String>(options);
+    }
+
+    /**
+     * List a schema and the schemas that it reaches through its includes, imports and redefines, each one
+     * once, in the depth-first order of the document.
+     *
+     * @param schema the schema.
+     * @return the schemas, starting with the given one.
+     */
+    public static List<XmlSchema> getReachableSchemas(XmlSchema schema) {
+        List<XmlSchema> schemas = new ArrayList<XmlSchema>();
+        addReachableSchemas(schema, schemas, new IdentityHashMap<XmlSchema, Boolean>());
+        return schemas;
+    }
+
+    private static void addReachableSchemas(XmlSchema schema, List<XmlSchema> schemas,
+                                            Map<XmlSchema, Boolean> visited) {
+        if (visited.put(schema, Boolean.TRUE) != null) {
+            return;
+        }
+        schemas.add(schema);
+        for (XmlSchemaExternal external : schema.getExternals()) {
+            if (external.getSchema() != null) {
+                addReachableSchemas(external.getSchema(), schemas, visited);
+            }
+        }
+    }
+
+    /**
+     * List the schemas of a collection, other than the built-in XML Schema schema, ordered by source URI
+     * and target namespace.
+     *
+     * @param collection the collection.
+     * @return the schemas.
+     */
+    public static List<XmlSchema> getSchemas(XmlSchemaCollection collection) {
+        List<XmlSchema> schemas = new ArrayList<XmlSchema>(Arrays.asList(collection.getXmlSchemas()));
+        schemas.remove(collection.xsd);
+        Collections.sort(schemas, new Comparator<XmlSchema>() {
+            public int compare(XmlSchema o1, XmlSchema o2) {
+                int result = compareStrings(o1.getSourceURI(), o2.getSourceURI());
+                if (result == 0) {
+                    result = compareStrings(o1.getTargetNamespace(), o2.getTargetNamespace());
+                }
+                return result;
+            }
+        });
+        return schemas;
+    }
+
+    private static int compareStrings(String s1, String s2) {
+        if (s1 == null) {
+            return s2 == null ? 0 : -1;
+        }
+        return s2 == null ? 1 : s1.compareTo(s2);
+    }
+
+    /**
+     * Choose the names of the documents of the schemas. The names are unique even where file names are not
+     * case sensitive.
+     *
+     * @param schemas the schemas.
+     * @return the schemas by document name, in the order of the list.
+     */
+    public static Map<String, XmlSchema> getDocumentNames(List<XmlSchema> schemas) {
+        Map<String, XmlSchema> names = new LinkedHashMap<String, XmlSchema>();
+        Set<String> used = new HashSet<String>();
+        for (XmlSchema schema : schemas) {
+            String name = getBaseName(schema.getSourceURI());
+            int dot = name.lastIndexOf('.');
+            String stem = dot > 0 ? name.substring(0, dot) : name;
+            String extension = dot > 0 ? name.substring(dot) : ".xsd";
+            name = stem + extension;
+            for (int count = 1; !used.add(name.toLowerCase(java.util.Locale.ENGLISH)); count++) {
+                name = stem + "_" + count + extension;
+            }
+            names.put(name, schema);
+        }
+        return names;
+    }
+
+    private static String getBaseName(String uri) {
+        String name = uri == null ? "" : uri;
+        int end = name.length();
+        for (char c : new char[] {'?', '#'}) {
+            int index = name.indexOf(c);
+            if (index >= 0 && index < end) {
+                end = index;
+            }
+        }
+        name = name.substring(0, end);
+        name = name.substring(Math.max(name.lastIndexOf('/'), name.lastIndexOf('\\')) + 1);
+        StringBuilder safe = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            boolean valid = c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9'
+                || c == '.' || c == '-' || c == '_';
+            safe.append(valid ? c : '_');
+        }
+        return safe.length() == 0 || safe.charAt(0) == '.' ? "schema" + safe : safe.toString();
+    }
+
+    /**
+     * Write the documents of the schemas to a directory, which is created if needed. Existing files of the
+     * same names are replaced.
+     *
+     * @param schemas the schemas.
+     * @param directory the directory.
+     * @return the schemas by document name, as {@link #getDocumentNames(List)} chooses them.
+     * @throws IOException if a document cannot be written.
+     */
+    public Map<String, XmlSchema> export(List<XmlSchema> schemas, final File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create directory " + directory);
+        }
+        Map<String, XmlSchema> names = getDocumentNames(schemas);
+        Map<XmlSchema, String> locations = getLocations(names);
+        List<FutureTask<byte[]>> tasks = new ArrayList<FutureTask<byte[]>>(names.size());
+        for (Map.Entry<String, XmlSchema> entry : names.entrySet()) {
+            final String name = entry.getKey();
+            final XmlSchema schema = entry.getValue();
+            final Map<XmlSchema, String> relocated = getRelocated(schema, locations);
+            tasks.add(new FutureTask<byte[]>(new Callable<byte[]>() {
+                public byte[] call() throws IOException {
+                    OutputStream out = new FileOutputStream(new File(directory, name));
+                    try {
+                        if (relocated == null) {
+                            service.write(schema, out, options);
+                        } else {
+                            out.write(service.render(schema, options, relocated));
+                        }
+                    } finally {
+                        out.close();
+                    }
+                    return null;
+                }
+            }));
+        }
+        start(tasks);
+        for (FutureTask<byte[]> task : tasks) {
+            get(task, tasks);
+        }
+        return names;
+    }
+
+    /**
+     * Write the documents of the schemas as entries of a zip stream, in the order of the schemas. The stream
+     * is neither finished nor closed.
+     *
+     * @param schemas the schemas.
+     * @param zip the zip stream.
+     * @return the schemas by entry name, as {@link #getDocumentNames(List)} chooses them.
+     * @throws IOException if the stream fails.
+     */
+    public Map<String, XmlSchema> export(List<XmlSchema> schemas, ZipOutputStream zip) throws IOException {
+        Map<String, XmlSchema> names = getDocumentNames(schemas);
+        Map<XmlSchema, String> locations = getLocations(names);
+        List<FutureTask<byte[]>> tasks = new ArrayList<FutureTask<byte[]>>(names.size());
+        for (final XmlSchema schema : names.values()) {
+            final Map<XmlSchema, String> relocated = getRelocated(schema, locations);
+            tasks.add(new FutureTask<byte[]>(new Callable<byte[]>() {
+                public byte[] call() {
+                    return service.render(schema, options, relocated);
+                }
+            }));
+        }
+        start(tasks);
+        int i = 0;
+        for (String name : names.keySet()) {
+            FutureTask<byte[]> task = tasks.get(i);
+            byte[] bytes = get(task, tasks);
+            // let the rendered document be collected once it is written
+            tasks.set(i++, null);
+            ZipEntry entry = new ZipEntry(name);
+            entry.setTime(ENTRY_TIME);
+            zip.putNextEntry(entry);
+            zip.write(bytes);
+            zip.closeEntry();
+        }
+        return names;
+    }
+
+    private static Map<XmlSchema, String> getLocations(Map<String, XmlSchema> names) {
+        Map<XmlSchema, String> locations = new IdentityHashMap<XmlSchema, String>();
+        for (Map.Entry<String, XmlSchema> entry : names.entrySet()) {
+            locations.put(entry.getValue(), entry.getKey());
+        }
+        return locations;
+    }
+
+    // the locations to write for the externals of the schema, or null if none of them changes, so that the
+    // rendering of the service may be cached
+    private static Map<XmlSchema, String> getRelocated(XmlSchema schema, Map<XmlSchema, String> locations) {
+        for (XmlSchemaExternal external : schema.getExternals()) {
+            String location = locations.get(external.getSchema());
+            if (location != null && !location.equals(external.getSchemaLocation())) {
+                return locations;
+            }
+        }
+        return null;
+    }
+
+    private void start(List<FutureTask<byte[]>> tasks) {
+        if (executor != null) {
+            for (FutureTask<byte[]> task : tasks) {
+                executor.execute(task);
+            }
+        }
+    }
+
+    private byte[] get(FutureTask<byte[]> task, List<FutureTask<byte[]>> tasks) throws IOException {
+        if (executor == null) {
+            task.run();
+        }
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            cancel(tasks);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while exporting schemas");
+        } catch (CancellationException e) {
+            cancel(tasks);
+            throw new XmlSchemaException("Export cancelled", e);
+        } catch (ExecutionException e) {
+            cancel(tasks);
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException)cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            } else if (cause instanceof Error) {
+                throw (Error)cause;
+            }
+            throw new XmlSchemaException(cause.getMessage(), cause);
+        }
+    }
+
+    private static void cancel(List<FutureTask<byte[]>> tasks) {
+        for (FutureTask<byte[]> task : tasks) {
+            if (task != null) {
+                task.cancel(false);
+            }
+        }
+    }
+}
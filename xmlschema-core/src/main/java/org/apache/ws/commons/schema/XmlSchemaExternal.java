@@ -28,13 +28,18 @@ import org.apache.ws.commons.schema.utils.CollectionFactory;
  */
 public abstract class XmlSchemaExternal extends XmlSchemaAnnotated {
 
+    private static final long serialVersionUID = 1L;
+
     XmlSchema schema;
     String schemaLocation;
 
+    private final XmlSchema parent;
+
     /**
      * Creates new XmlSchemaExternal
      */
     protected XmlSchemaExternal(XmlSchema parent) {
+        this.parent = parent;
         final XmlSchema fParent = parent;
         CollectionFactory.withSchemaModifiable(new Runnable() {
 
@@ -56,7 +61,12 @@ public abstract class XmlSchemaExternal extends XmlSchemaAnnotated {
      * @param sc schema reference
      */
     public void setSchema(XmlSchema sc) {
+        if (parent.isFrozen()) {
+            throw new UnsupportedOperationException("Schema " + parent.getLogicalTargetNamespace()
+                                                    + " is frozen");
+        }
         schema = sc;
+        parent.externalsModified();
     }
 
     public String getSchemaLocation() {
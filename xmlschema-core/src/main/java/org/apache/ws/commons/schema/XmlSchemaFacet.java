@@ -27,6 +27,8 @@ import org.w3c.dom.Element;
 
 public abstract class XmlSchemaFacet extends XmlSchemaAnnotated {
 
+    private static final long serialVersionUID = 1L;
+
     boolean fixed;
 
     Object value;
@@ -44,44 +46,71 @@ public abstract class XmlSchemaFacet extends XmlSchemaAnnotated {
     }
 
     public static XmlSchemaFacet construct(Element el) {
-        String name = el.getLocalName();
+        String id = el.hasAttribute("id") ? el.getAttribute("id") : null;
+        return construct(el.getLocalName(), el.getAttribute("fixed"), id, el.getAttribute("value"));
+    }
+
+    /**
+     * Create a facet from the local name and attribute values of a facet element. This is used by
+     * builders that do not have a DOM element at hand.
+     *
+     * @param name the local name of the facet element.
+     * @param fixedAttr the value of the 'fixed' attribute, or "" if absent.
+     * @param id the value of the 'id' attribute, or null if absent.
+     * @param valueAttr the value of the 'value' attribute, or "" if absent.
+     * @return the facet.
+     */
+    static XmlSchemaFacet construct(String name, String fixedAttr, String id, String valueAttr) {
         boolean fixed = false;
-        if (el.getAttribute("fixed").equals("true")) {
+        if ("true".equals(fixedAttr)) {
             fixed = true;
         }
         XmlSchemaFacet facet;
-        if ("enumeration".equals(name)) {
+        switch (SchemaConstruct.forName(name)) {
+        case ENUMERATION:
             facet = new XmlSchemaEnumerationFacet();
-        } else if ("fractionDigits".equals(name)) {
+            break;
+        case FRACTION_DIGITS:
             facet = new XmlSchemaFractionDigitsFacet();
-        } else if ("length".equals(name)) {
+            break;
+        case LENGTH:
             facet = new XmlSchemaLengthFacet();
-        } else if ("maxExclusive".equals(name)) {
+            break;
+        case MAX_EXCLUSIVE:
             facet = new XmlSchemaMaxExclusiveFacet();
-        } else if ("maxInclusive".equals(name)) {
+            break;
+        case MAX_INCLUSIVE:
             facet = new XmlSchemaMaxInclusiveFacet();
-        } else if ("maxLength".equals(name)) {
+            break;
+        case MAX_LENGTH:
             facet = new XmlSchemaMaxLengthFacet();
-        } else if ("minLength".equals(name)) {
+            break;
+        case MIN_LENGTH:
             facet = new XmlSchemaMinLengthFacet();
-        } else if ("minExclusive".equals(name)) {
+            break;
+        case MIN_EXCLUSIVE:
             facet = new XmlSchemaMinExclusiveFacet();
-        } else if ("minInclusive".equals(name)) {
+            break;
+        case MIN_INCLUSIVE:
             facet = new XmlSchemaMinInclusiveFacet();
-        } else if ("pattern".equals(name)) {
+            break;
+        case PATTERN:
             facet = new XmlSchemaPatternFacet();
-        } else if ("totalDigits".equals(name)) {
+            break;
+        case TOTAL_DIGITS:
             facet = new XmlSchemaTotalDigitsFacet();
-        } else if ("whiteSpace".equals(name)) {
+            break;
+        case WHITE_SPACE:
             facet = new XmlSchemaWhiteSpaceFacet();
-        } else {
+            break;
+        default:
             throw new XmlSchemaException("Incorrect facet with name \"" + name + "\" found.");
         }
-        if (el.hasAttribute("id")) {
-            facet.setId(el.getAttribute("id"));
+        if (id != null) {
+            facet.setId(id);
         }
         facet.setFixed(fixed);
-        facet.setValue(el.getAttribute("value"));
+        facet.setValue(valueAttr);
         return facet;
     }
 
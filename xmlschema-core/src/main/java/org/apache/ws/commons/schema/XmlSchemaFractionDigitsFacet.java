@@ -26,6 +26,8 @@ package org.apache.ws.commons.schema;
 
 public class XmlSchemaFractionDigitsFacet extends XmlSchemaNumericFacet {
 
+    private static final long serialVersionUID = 1L;
+
     /**
      * Creates new XmlSchemaFractionDigitsFacet
      */
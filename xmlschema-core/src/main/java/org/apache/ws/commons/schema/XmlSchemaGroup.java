@@ -38,6 +38,8 @@ import java.util.Arrays;
 public class XmlSchemaGroup extends XmlSchemaAnnotated implements XmlSchemaNamed,
     XmlSchemaChoiceMember, XmlSchemaSequenceMember, XmlSchemaAllMember {
 
+    private static final long serialVersionUID = 1L;
+
     private XmlSchemaGroupParticle particle;
     private XmlSchemaNamedImpl namedDelegate;
 
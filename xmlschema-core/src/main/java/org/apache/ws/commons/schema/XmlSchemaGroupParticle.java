@@ -24,4 +24,6 @@ package org.apache.ws.commons.schema;
  */
 public abstract class XmlSchemaGroupParticle extends XmlSchemaParticle {
 
+    private static final long serialVersionUID = 1L;
+
 }
@@ -28,6 +28,8 @@ import javax.xml.namespace.QName;
 public class XmlSchemaGroupRef extends XmlSchemaParticle 
     implements XmlSchemaSequenceMember, XmlSchemaChoiceMember, XmlSchemaAllMember {
 
+    private static final long serialVersionUID = 1L;
+
     private XmlSchemaGroupParticle particle;
 
     private QName refName;
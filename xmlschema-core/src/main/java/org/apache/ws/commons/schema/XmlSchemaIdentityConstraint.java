@@ -29,6 +29,8 @@ import java.util.List;
 
 public class XmlSchemaIdentityConstraint extends XmlSchemaAnnotated {
 
+    private static final long serialVersionUID = 1L;
+
     private List<XmlSchemaXPath> fields;
 
     private String name;
@@ -26,6 +26,8 @@ package org.apache.ws.commons.schema;
 
 public class XmlSchemaImport extends XmlSchemaExternal {
 
+    private static final long serialVersionUID = 1L;
+
     String namespace;
 
     /**
@@ -26,6 +26,8 @@ package org.apache.ws.commons.schema;
 
 public class XmlSchemaInclude extends XmlSchemaExternal {
 
+    private static final long serialVersionUID = 1L;
+
     /**
      * Creates new XmlSchemaInclude
      */
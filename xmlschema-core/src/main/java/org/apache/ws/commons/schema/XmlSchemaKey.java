@@ -25,6 +25,8 @@ package org.apache.ws.commons.schema;
 
 public class XmlSchemaKey extends XmlSchemaIdentityConstraint {
 
+    private static final long serialVersionUID = 1L;
+
     /**
      * Creates new XmlSchemaKey
      */
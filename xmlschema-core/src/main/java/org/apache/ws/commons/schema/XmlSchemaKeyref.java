@@ -27,6 +27,8 @@ import javax.xml.namespace.QName;
 
 public class XmlSchemaKeyref extends XmlSchemaIdentityConstraint {
 
+    private static final long serialVersionUID = 1L;
+
     QName refer;
 
     /**
@@ -25,6 +25,8 @@ package org.apache.ws.commons.schema;
 
 public class XmlSchemaMaxInclusiveFacet extends XmlSchemaFacet {
 
+    private static final long serialVersionUID = 1L;
+
     /**
      * Creates new XmlSchemaMaxInclusiveFacet
      */
@@ -33,6 +33,8 @@ import org.apache.ws.commons.schema.utils.XmlSchemaNamedImpl;
 
 public class XmlSchemaNotation extends XmlSchemaAnnotated implements XmlSchemaNamed {
 
+    private static final long serialVersionUID = 1L;
+
     private String system;
     private String publicNotation;
     private XmlSchemaNamedImpl namedDelegate;
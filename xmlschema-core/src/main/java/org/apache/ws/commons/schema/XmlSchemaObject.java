@@ -19,12 +19,19 @@
 
 package org.apache.ws.commons.schema;
 
+import java.io.Serializable;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
 import org.apache.ws.commons.schema.utils.XmlSchemaObjectBase;
 
-public abstract class XmlSchemaObject implements XmlSchemaObjectBase {
+/**
+ * Base class of the schema object model. The model is {@link Serializable} so that a whole collection can be
+ * saved and restored, see {@link XmlSchemaSnapshot}.
+ */
+public abstract class XmlSchemaObject implements XmlSchemaObjectBase, Serializable {
+    private static final long serialVersionUID = 1L;
+
     int lineNumber;
     int linePosition;
     String sourceURI;
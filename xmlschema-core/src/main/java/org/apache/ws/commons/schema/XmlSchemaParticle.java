@@ -25,6 +25,8 @@ package org.apache.ws.commons.schema;
  * to a named content model group (group), or an element wildcard (any).
  */
 public abstract class XmlSchemaParticle extends XmlSchemaAnnotated {
+    private static final long serialVersionUID = 1L;
+
     public static final int DEFAULT_MAX_OCCURS = 1;
     public static final int DEFAULT_MIN_OCCURS = 1;
 
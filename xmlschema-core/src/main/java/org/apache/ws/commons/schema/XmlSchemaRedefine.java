@@ -35,6 +35,8 @@ import javax.xml.namespace.QName;
 
 public class XmlSchemaRedefine extends XmlSchemaExternal {
 
+    private static final long serialVersionUID = 1L;
+
     private Map<QName, XmlSchemaAttributeGroup> attributeGroups;
     private Map<QName, XmlSchemaGroup> groups;
     private Map<QName, XmlSchemaType> schemaTypes;
@@ -31,6 +31,8 @@ import java.util.List;
 
 public class XmlSchemaSequence extends XmlSchemaGroupParticle implements XmlSchemaChoiceMember,
     XmlSchemaSequenceMember {
+
+    private static final long serialVersionUID = 1L;
     
     private List<XmlSchemaSequenceMember> items;
 
@@ -151,7 +151,8 @@ public class XmlSchemaSerializer {
      */
     Element serializeAll(Document doc, XmlSchemaAll allObj, XmlSchema schema)
         throws XmlSchemaSerializerException {
-        Element allEl = createNewElement(doc, "all", schema.getSchemaNamespacePrefix(), XmlSchema.SCHEMA_NS);
+        Element allEl = createNewElement(doc, SchemaConstruct.ALL,
+                                         schema.getSchemaNamespacePrefix(), XmlSchema.SCHEMA_NS);
 
         serializeMaxMinOccurs(allObj, allEl);
 
@@ -205,8 +206,8 @@ public class XmlSchemaSerializer {
      */
     Element serializeAnnotation(Document doc, XmlSchemaAnnotation annotationObj, XmlSchema schema) {
 
-        Element annotation = createNewElement(doc, "annotation", schema.getSchemaNamespacePrefix(),
-                                              XmlSchema.SCHEMA_NS);
+        Element annotation = createNewElement(doc, SchemaConstruct.ANNOTATION,
+                                              schema.getSchemaNamespacePrefix(), XmlSchema.SCHEMA_NS);
 
         List<XmlSchemaAnnotationItem> contents = annotationObj.getItems();
         int contentLength = contents.size();
@@ -247,7 +248,8 @@ public class XmlSchemaSerializer {
      * **********************************************************************
      */
     Element serializeAny(Document doc, XmlSchemaAny anyObj, XmlSchema schema) {
-        Element anyEl = createNewElement(doc, "any", schema.getSchemaNamespacePrefix(), XmlSchema.SCHEMA_NS);
+        Element anyEl = createNewElement(doc, SchemaConstruct.ANY,
+                                         schema.getSchemaNamespacePrefix(), XmlSchema.SCHEMA_NS);
         if (anyObj.getId() != null && anyObj.getId().length() > 0) {
             anyEl.setAttributeNS(null, "id", anyObj.getId());
         }
@@ -289,8 +291,8 @@ public class XmlSchemaSerializer {
      */
     Element serializeAnyAttribute(Document doc, XmlSchemaAnyAttribute anyAttributeObj, XmlSchema schema) {
 
-        Element anyAttribute = createNewElement(doc, "anyAttribute", schema.getSchemaNamespacePrefix(),
-                                                XmlSchema.SCHEMA_NS);
+        Element anyAttribute = createNewElement(doc, SchemaConstruct.ANY_ATTRIBUTE,
+                                                schema.getSchemaNamespacePrefix(), XmlSchema.SCHEMA_NS);
 
         if (anyAttributeObj.namespace != null) {
             anyAttribute.setAttributeNS(null, "namespace", anyAttributeObj.namespace);
@@ -331,7 +333,7 @@ public class XmlSchemaSerializer {
      */
     Element serializeAppInfo(Document doc, XmlSchemaAppInfo appInfoObj, XmlSchema schema) {
 
-        Element appInfoEl = createNewElement(doc, "appinfo", schema.getSchemaNamespacePrefix(),
+        Element appInfoEl = createNewElement(doc, SchemaConstruct.APPINFO, schema.getSchemaNamespacePrefix(),
                                              XmlSchema.SCHEMA_NS);
         if (appInfoObj.source != null) {
             appInfoEl.setAttributeNS(null, "source", appInfoObj.source);
@@ -369,8 +371,8 @@ public class XmlSchemaSerializer {
 
         boolean refPresent = attributeObj.getRef().getTargetQName() != null;
 
-        Element attribute = createNewElement(doc, "attribute", schema.getSchemaNamespacePrefix(),
-                                             XmlSchema.SCHEMA_NS);
+        Element attribute = createNewElement(doc, SchemaConstruct.ATTRIBUTE,
+                                             schema.getSchemaNamespacePrefix(), XmlSchema.SCHEMA_NS);
         if (refPresent) {
             String refName = resolveQName(attributeObj.getRef().getTargetQName(), schema);
             attribute.setAttributeNS(null, "ref", refName);
@@ -501,8 +503,8 @@ public class XmlSchemaSerializer {
     Element serializeAttributeGroup(Document doc, XmlSchemaAttributeGroup attributeGroupObj, XmlSchema schema)
         throws XmlSchemaSerializerException {
 
-        Element attributeGroup = createNewElement(doc, "attributeGroup", schema.getSchemaNamespacePrefix(),
-                                                  XmlSchema.SCHEMA_NS);
+        Element attributeGroup = createNewElement(doc, SchemaConstruct.ATTRIBUTE_GROUP,
+                                                  schema.getSchemaNamespacePrefix(), XmlSchema.SCHEMA_NS);
 
         if (!attributeGroupObj.isAnonymous()) {
             String attGroupName = attributeGroupObj.getName();
@@ -559,8 +561,8 @@ public class XmlSchemaSerializer {
     Element serializeAttributeGroupRef(Document doc, XmlSchemaAttributeGroupRef attributeGroupObj,
                                        XmlSchema schema) throws XmlSchemaSerializerException {
 
-        Element attributeGroupRef = createNewElement(doc, "attributeGroup", schema.getSchemaNamespacePrefix(),
-                                                     XmlSchema.SCHEMA_NS);
+        Element attributeGroupRef = createNewElement(doc, SchemaConstruct.ATTRIBUTE_GROUP,
+                                                     schema.getSchemaNamespacePrefix(), XmlSchema.SCHEMA_NS);
         if (attributeGroupObj.getRef().getTarget() != null) {
             String refName = resolveQName(attributeGroupObj.getRef().getTargetQName(), schema);
             attributeGroupRef.setAttributeNS(null, "ref", refName);
@@ -600,7 +602,7 @@ public class XmlSchemaSerializer {
         throws XmlSchemaSerializerException {
         // todo: handle any non schema attri ?
 
-        Element choice = createNewElement(doc, "choice", schema.getSchemaNamespacePrefix(),
+        Element choice = createNewElement(doc, SchemaConstruct.CHOICE, schema.getSchemaNamespacePrefix(),
                                           XmlSchema.SCHEMA_NS);
         if (choiceObj.getId() != null && choiceObj.getId().length() > 0) {
             choice.setAttributeNS(null, "id", choiceObj.getId());
@@ -668,8 +670,8 @@ public class XmlSchemaSerializer {
     Element serializeComplexContent(Document doc, XmlSchemaComplexContent complexContentObj, XmlSchema schema)
         throws XmlSchemaSerializerException {
 
-        Element complexContent = createNewElement(doc, "complexContent", schema.getSchemaNamespacePrefix(),
-                                                  XmlSchema.SCHEMA_NS);
+        Element complexContent = createNewElement(doc, SchemaConstruct.COMPLEX_CONTENT,
+                                                  schema.getSchemaNamespacePrefix(), XmlSchema.SCHEMA_NS);
 
         if (complexContentObj.getAnnotation() != null) {
             Element annotation = serializeAnnotation(doc, complexContentObj.getAnnotation(), schema);
@@ -726,8 +728,8 @@ public class XmlSchemaSerializer {
     Element serializeComplexContentExtension(Document doc, XmlSchemaComplexContentExtension extensionObj,
                                              XmlSchema schema) throws XmlSchemaSerializerException {
 
-        Element extension = createNewElement(doc, "extension", schema.getSchemaNamespacePrefix(),
-                                             XmlSchema.SCHEMA_NS);
+        Element extension = createNewElement(doc, SchemaConstruct.EXTENSION,
+                                             schema.getSchemaNamespacePrefix(), XmlSchema.SCHEMA_NS);
         if (extensionObj.getBaseTypeName() != null) {
             String baseType = resolveQName(extensionObj.getBaseTypeName(), schema);
             extension.setAttributeNS(null, "base", baseType);
@@ -796,8 +798,8 @@ public class XmlSchemaSerializer {
                                                XmlSchemaComplexContentRestriction restrictionObj,
                                                XmlSchema schema) throws XmlSchemaSerializerException {
 
-        Element restriction = createNewElement(doc, "restriction", schema.getSchemaNamespacePrefix(),
-                                               XmlSchema.SCHEMA_NS);
+        Element restriction = createNewElement(doc, SchemaConstruct.RESTRICTION,
+                                               schema.getSchemaNamespacePrefix(), XmlSchema.SCHEMA_NS);
 
         if (restrictionObj.getBaseTypeName() != null) {
             String baseTypeName = resolveQName(restrictionObj.getBaseTypeName(), schema);
@@ -870,7 +872,7 @@ public class XmlSchemaSerializer {
     Element serializeComplexType(Document doc, XmlSchemaComplexType complexTypeObj, XmlSchema schema)
         throws XmlSchemaSerializerException {
 
-        Element serializedComplexType = createNewElement(doc, "complexType",
+        Element serializedComplexType = createNewElement(doc, SchemaConstruct.COMPLEX_TYPE,
                                                          schema.getSchemaNamespacePrefix(),
                                                          XmlSchema.SCHEMA_NS);
 
@@ -971,8 +973,8 @@ public class XmlSchemaSerializer {
      */
     Element serializeDocumentation(Document doc, XmlSchemaDocumentation documentationObj, XmlSchema schema) {
 
-        Element documentationEl = createNewElement(doc, "documentation", schema.getSchemaNamespacePrefix(),
-                                                   XmlSchema.SCHEMA_NS);
+        Element documentationEl = createNewElement(doc, SchemaConstruct.DOCUMENTATION,
+                                                   schema.getSchemaNamespacePrefix(), XmlSchema.SCHEMA_NS);
         if (documentationObj.source != null) {
             documentationEl.setAttributeNS(null, "source", documentationObj.source);
         }
@@ -1028,8 +1030,8 @@ public class XmlSchemaSerializer {
      */
     Element serializeElement(Document doc, XmlSchemaElement elementObj, XmlSchema schema)
         throws XmlSchemaSerializerException {
-        Element serializedEl = createNewElement(doc, "element", schema.getSchemaNamespacePrefix(),
-                                                XmlSchema.SCHEMA_NS);
+        Element serializedEl = createNewElement(doc, SchemaConstruct.ELEMENT,
+                                                schema.getSchemaNamespacePrefix(), XmlSchema.SCHEMA_NS);
 
         if (elementObj.getRef().getTargetQName() != null) {
 
@@ -1132,29 +1134,29 @@ public class XmlSchemaSerializer {
         Element serializedFacet;
 
         if (facetObj instanceof XmlSchemaMinExclusiveFacet) {
-            serializedFacet = constructFacet(facetObj, doc, schema, "minExclusive");
+            serializedFacet = constructFacet(facetObj, doc, schema, SchemaConstruct.MIN_EXCLUSIVE);
         } else if (facetObj instanceof XmlSchemaMinInclusiveFacet) {
-            serializedFacet = constructFacet(facetObj, doc, schema, "minInclusive");
+            serializedFacet = constructFacet(facetObj, doc, schema, SchemaConstruct.MIN_INCLUSIVE);
         } else if (facetObj instanceof XmlSchemaMaxExclusiveFacet) {
-            serializedFacet = constructFacet(facetObj, doc, schema, "maxExclusive");
+            serializedFacet = constructFacet(facetObj, doc, schema, SchemaConstruct.MAX_EXCLUSIVE);
         } else if (facetObj instanceof XmlSchemaMaxInclusiveFacet) {
-            serializedFacet = constructFacet(facetObj, doc, schema, "maxInclusive");
+            serializedFacet = constructFacet(facetObj, doc, schema, SchemaConstruct.MAX_INCLUSIVE);
         } else if (facetObj instanceof XmlSchemaTotalDigitsFacet) {
-            serializedFacet = constructFacet(facetObj, doc, schema, "totalDigits");
+            serializedFacet = constructFacet(facetObj, doc, schema, SchemaConstruct.TOTAL_DIGITS);
         } else if (facetObj instanceof XmlSchemaFractionDigitsFacet) {
-            serializedFacet = constructFacet(facetObj, doc, schema, "fractionDigits");
+            serializedFacet = constructFacet(facetObj, doc, schema, SchemaConstruct.FRACTION_DIGITS);
         } else if (facetObj instanceof XmlSchemaLengthFacet) {
-            serializedFacet = constructFacet(facetObj, doc, schema, "length");
+            serializedFacet = constructFacet(facetObj, doc, schema, SchemaConstruct.LENGTH);
         } else if (facetObj instanceof XmlSchemaMinLengthFacet) {
-            serializedFacet = constructFacet(facetObj, doc, schema, "minLength");
+            serializedFacet = constructFacet(facetObj, doc, schema, SchemaConstruct.MIN_LENGTH);
         } else if (facetObj instanceof XmlSchemaMaxLengthFacet) {
-            serializedFacet = constructFacet(facetObj, doc, schema, "maxLength");
+            serializedFacet = constructFacet(facetObj, doc, schema, SchemaConstruct.MAX_LENGTH);
         } else if (facetObj instanceof XmlSchemaEnumerationFacet) {
-            serializedFacet = constructFacet(facetObj, doc, schema, "enumeration");
+            serializedFacet = constructFacet(facetObj, doc, schema, SchemaConstruct.ENUMERATION);
         } else if (facetObj instanceof XmlSchemaWhiteSpaceFacet) {
-            serializedFacet = constructFacet(facetObj, doc, schema, "whiteSpace");
+            serializedFacet = constructFacet(facetObj, doc, schema, SchemaConstruct.WHITE_SPACE);
         } else if (facetObj instanceof XmlSchemaPatternFacet) {
-            serializedFacet = constructFacet(facetObj, doc, schema, "pattern");
+            serializedFacet = constructFacet(facetObj, doc, schema, SchemaConstruct.PATTERN);
         } else {
             throw new XmlSchemaSerializerException("facet not exist " + facetObj.getClass().getName());
         }
@@ -1190,7 +1192,7 @@ public class XmlSchemaSerializer {
     Element serializeField(Document doc, XmlSchemaXPath fieldObj, XmlSchema schema)
         throws XmlSchemaSerializerException {
 
-        Element field = createNewElement(doc, "field",
+        Element field = createNewElement(doc, SchemaConstruct.FIELD,
                                          schema.getSchemaNamespacePrefix(),
                                          XmlSchema.SCHEMA_NS);
 
@@ -1227,7 +1229,7 @@ public class XmlSchemaSerializer {
     Element serializeGroup(Document doc, XmlSchemaGroup groupObj, XmlSchema schema)
         throws XmlSchemaSerializerException {
 
-        Element group = createNewElement(doc, "group", schema.getSchemaNamespacePrefix(),
+        Element group = createNewElement(doc, SchemaConstruct.GROUP, schema.getSchemaNamespacePrefix(),
                                          XmlSchema.SCHEMA_NS);
 
         if (!groupObj.isAnonymous()) {
@@ -1279,7 +1281,7 @@ public class XmlSchemaSerializer {
     Element serializeGroupRef(Document doc, XmlSchemaGroupRef groupRefObj, XmlSchema schema)
         throws XmlSchemaSerializerException {
 
-        Element groupRef = createNewElement(doc, "group", schema.getSchemaNamespacePrefix(),
+        Element groupRef = createNewElement(doc, SchemaConstruct.GROUP, schema.getSchemaNamespacePrefix(),
                                             XmlSchema.SCHEMA_NS);
 
         if (groupRefObj.getRefName() != null) {
@@ -1335,13 +1337,13 @@ public class XmlSchemaSerializer {
         Element constraint;
 
         if (constraintObj instanceof XmlSchemaUnique) {
-            constraint = createNewElement(doc, "unique", schema.getSchemaNamespacePrefix(),
+            constraint = createNewElement(doc, SchemaConstruct.UNIQUE, schema.getSchemaNamespacePrefix(),
                                           XmlSchema.SCHEMA_NS);
         } else if (constraintObj instanceof XmlSchemaKey) {
-            constraint = createNewElement(doc, "key", schema.getSchemaNamespacePrefix(),
+            constraint = createNewElement(doc, SchemaConstruct.KEY, schema.getSchemaNamespacePrefix(),
                                           XmlSchema.SCHEMA_NS);
         } else if (constraintObj instanceof XmlSchemaKeyref) {
-            constraint = createNewElement(doc, "keyref", schema.getSchemaNamespacePrefix(),
+            constraint = createNewElement(doc, SchemaConstruct.KEYREF, schema.getSchemaNamespacePrefix(),
                                           XmlSchema.SCHEMA_NS);
             XmlSchemaKeyref keyref = (XmlSchemaKeyref)constraintObj;
             if (keyref.refer != null) {
@@ -1395,7 +1397,7 @@ public class XmlSchemaSerializer {
     Element serializeImport(Document doc, XmlSchemaImport importObj, XmlSchema schema,
                             boolean serializeIncluded) throws XmlSchemaSerializerException {
 
-        Element importEl = createNewElement(doc, "import",
+        Element importEl = createNewElement(doc, SchemaConstruct.IMPORT,
                                             schema.getSchemaNamespacePrefix(), XmlSchema.SCHEMA_NS);
 
         if (importObj.namespace != null && !"".equals(importObj.namespace)) {
@@ -1445,7 +1447,7 @@ public class XmlSchemaSerializer {
     Element serializeInclude(Document doc, XmlSchemaInclude includeObj, XmlSchema schema,
                              boolean serializeIncluded) throws XmlSchemaSerializerException {
 
-        Element includeEl = createNewElement(doc, "include", schema.getSchemaNamespacePrefix(),
+        Element includeEl = createNewElement(doc, SchemaConstruct.INCLUDE, schema.getSchemaNamespacePrefix(),
                                              XmlSchema.SCHEMA_NS);
 
         if (includeObj.schemaLocation != null) {
@@ -1493,7 +1495,7 @@ public class XmlSchemaSerializer {
     Element serializeRedefine(Document doc, XmlSchemaRedefine redefineObj, XmlSchema schema)
         throws XmlSchemaSerializerException {
 
-        Element redefine = createNewElement(doc, "redefine", schema.getSchemaNamespacePrefix(),
+        Element redefine = createNewElement(doc, SchemaConstruct.REDEFINE, schema.getSchemaNamespacePrefix(),
                                             XmlSchema.SCHEMA_NS);
 
         if (redefineObj.schemaLocation != null) {
@@ -1697,7 +1699,7 @@ public class XmlSchemaSerializer {
     Element serializeSelector(Document doc, XmlSchemaXPath selectorObj, XmlSchema schema)
         throws XmlSchemaSerializerException {
 
-        Element selector = createNewElement(doc, "selector", schema.getSchemaNamespacePrefix(),
+        Element selector = createNewElement(doc, SchemaConstruct.SELECTOR, schema.getSchemaNamespacePrefix(),
                                             XmlSchema.SCHEMA_NS);
 
         if (selectorObj.xpath != null) {
@@ -1732,7 +1734,7 @@ public class XmlSchemaSerializer {
     Element serializeSequence(Document doc, XmlSchemaSequence sequenceObj, XmlSchema schema)
         throws XmlSchemaSerializerException {
 
-        Element sequence = createNewElement(doc, "sequence", schema.getSchemaNamespacePrefix(),
+        Element sequence = createNewElement(doc, SchemaConstruct.SEQUENCE, schema.getSchemaNamespacePrefix(),
                                             XmlSchema.SCHEMA_NS);
 
         if (sequenceObj.getId() != null) {
@@ -1785,8 +1787,8 @@ public class XmlSchemaSerializer {
      */
     Element serializeSimpleContent(Document doc, XmlSchemaSimpleContent simpleContentObj, XmlSchema schema)
         throws XmlSchemaSerializerException {
-        Element simpleContent = createNewElement(doc, "simpleContent", schema.getSchemaNamespacePrefix(),
-                                                 XmlSchema.SCHEMA_NS);
+        Element simpleContent = createNewElement(doc, SchemaConstruct.SIMPLE_CONTENT,
+                                                 schema.getSchemaNamespacePrefix(), XmlSchema.SCHEMA_NS);
 
         Element content;
         if (simpleContentObj.getAnnotation() != null) {
@@ -1836,8 +1838,8 @@ public class XmlSchemaSerializer {
     Element serializeSimpleContentExtension(Document doc, XmlSchemaSimpleContentExtension extensionObj,
                                             XmlSchema schema) throws XmlSchemaSerializerException {
 
-        Element extension = createNewElement(doc, "extension", schema.getSchemaNamespacePrefix(),
-                                             XmlSchema.SCHEMA_NS);
+        Element extension = createNewElement(doc, SchemaConstruct.EXTENSION,
+                                             schema.getSchemaNamespacePrefix(), XmlSchema.SCHEMA_NS);
 
         if (extensionObj.getBaseTypeName() != null) {
             String baseTypeName = resolveQName(extensionObj.getBaseTypeName(), schema);
@@ -1901,8 +1903,8 @@ public class XmlSchemaSerializer {
     Element serializeSimpleContentRestriction(Document doc, XmlSchemaSimpleContentRestriction restrictionObj,
                                               XmlSchema schema) throws XmlSchemaSerializerException {
 
-        Element restriction = createNewElement(doc, "restriction", schema.getSchemaNamespacePrefix(),
-                                               XmlSchema.SCHEMA_NS);
+        Element restriction = createNewElement(doc, SchemaConstruct.RESTRICTION,
+                                               schema.getSchemaNamespacePrefix(), XmlSchema.SCHEMA_NS);
 
         if (restrictionObj.getBaseTypeName() != null) {
             String baseTypeName = resolveQName(restrictionObj.getBaseTypeName(), schema);
@@ -1969,7 +1971,8 @@ public class XmlSchemaSerializer {
     Element serializeSimpleType(Document doc, XmlSchemaSimpleType simpleTypeObj, XmlSchema schema)
         throws XmlSchemaSerializerException {
 
-        Element serializedSimpleType = createNewElement(doc, "simpleType", schema.getSchemaNamespacePrefix(),
+        Element serializedSimpleType = createNewElement(doc, SchemaConstruct.SIMPLE_TYPE,
+                                                        schema.getSchemaNamespacePrefix(),
                                                         XmlSchema.SCHEMA_NS);
 
         if (simpleTypeObj.getFinalDerivation() != null
@@ -2039,7 +2042,8 @@ public class XmlSchemaSerializer {
     Element serializeSimpleTypeList(Document doc, XmlSchemaSimpleTypeList listObj, XmlSchema schema)
         throws XmlSchemaSerializerException {
 
-        Element list = createNewElement(doc, "list", schema.getSchemaNamespacePrefix(), XmlSchema.SCHEMA_NS);
+        Element list = createNewElement(doc, SchemaConstruct.LIST,
+                                        schema.getSchemaNamespacePrefix(), XmlSchema.SCHEMA_NS);
 
         if (listObj.itemTypeName != null) {
             String listItemType = resolveQName(listObj.itemTypeName, schema);
@@ -2079,7 +2083,7 @@ public class XmlSchemaSerializer {
     Element serializeSimpleTypeRestriction(Document doc, XmlSchemaSimpleTypeRestriction restrictionObj,
                                            XmlSchema schema) throws XmlSchemaSerializerException {
         // todo: need to implement any attribute that related to non schema namespace
-        Element serializedRestriction = createNewElement(doc, "restriction",
+        Element serializedRestriction = createNewElement(doc, SchemaConstruct.RESTRICTION,
                                                          schema.getSchemaNamespacePrefix(),
                                                          XmlSchema.SCHEMA_NS);
 
@@ -2137,7 +2141,7 @@ public class XmlSchemaSerializer {
     Element serializeSimpleTypeUnion(Document doc, XmlSchemaSimpleTypeUnion unionObj, XmlSchema schema)
         throws XmlSchemaSerializerException {
 
-        Element union = createNewElement(doc, "union", schema.getSchemaNamespacePrefix(),
+        Element union = createNewElement(doc, SchemaConstruct.UNION, schema.getSchemaNamespacePrefix(),
                                          XmlSchema.SCHEMA_NS);
         if (unionObj.getId() != null) {
             union.setAttributeNS(null, "id", unionObj.getId());
@@ -2251,9 +2255,10 @@ public class XmlSchemaSerializer {
         }
     }
 
-    private Element constructFacet(XmlSchemaFacet facetObj, Document doc, XmlSchema schema, String tagName) {
+    private Element constructFacet(XmlSchemaFacet facetObj, Document doc, XmlSchema schema,
+                                   SchemaConstruct construct) {
 
-        Element facetEl = createNewElement(doc, tagName, schema.getSchemaNamespacePrefix(),
+        Element facetEl = createNewElement(doc, construct, schema.getSchemaNamespacePrefix(),
                                            XmlSchema.SCHEMA_NS);
 
         facetEl.setAttributeNS(null, "value", facetObj.value.toString());
@@ -2268,6 +2273,11 @@ public class XmlSchemaSerializer {
         return facetEl;
     }
 
+    private Element createNewElement(Document document, SchemaConstruct construct, String prefix,
+                                     String namespace) {
+        return createNewElement(document, construct.getLocalName(), prefix, namespace);
+    }
+
     // Create new element with given local name and namespaces check whether
     // the prefix is there or not.
     private Element createNewElement(Document document, String localName, String prefix, String namespace) {
@@ -2427,27 +2437,14 @@ public class XmlSchemaSerializer {
      */
     private Element setupNamespaces(Document schemaDocs, XmlSchema schemaObj) {
         NamespacePrefixList ctx = schemaObj.getNamespaceContext();
-        if (ctx != null) {
-            xsdPrefix = ctx.getPrefix(XSD_NAMESPACE);
-        } else {
-            xsdPrefix = null;
-        }
-
-        if (xsdPrefix == null) {
-            //find a prefix to use
-            xsdPrefix = "";
-            if (ctx != null && ctx.getNamespaceURI(xsdPrefix).length() > 0) {
-                xsdPrefix = "xsd";
-            }
-            int count = 0;
-            while (ctx != null && ctx.getNamespaceURI(xsdPrefix).length() > 0) {
-                xsdPrefix = "xsd" + ++count;
-            }
+        xsdPrefix = getSchemaNamespacePrefix(ctx);
+        // a frozen schema has the prefix already
+        if (!xsdPrefix.equals(schemaObj.getSchemaNamespacePrefix())) {
+            schemaObj.setSchemaNamespacePrefix(xsdPrefix);
         }
-        schemaObj.setSchemaNamespacePrefix(xsdPrefix);
 
 
-        Element schemaEl = createNewElement(schemaDocs, "schema",
+        Element schemaEl = createNewElement(schemaDocs, SchemaConstruct.SCHEMA,
                                             schemaObj.getSchemaNamespacePrefix(), XmlSchema.SCHEMA_NS);
 
         if (ctx != null) {
@@ -2477,9 +2474,30 @@ public class XmlSchemaSerializer {
                 schemaEl.setAttributeNS(XMLNS_NAMESPACE_URI,
                                         "xmlns:" + xsdPrefix, XSD_NAMESPACE);
             }
-            schemaObj.setSchemaNamespacePrefix(xsdPrefix);
         }
         return schemaEl;
     }
 
+    /**
+     * Choose the prefix of the XML Schema namespace in a serialized schema.
+     *
+     * @param ctx the namespace context of the schema, or null.
+     * @return the prefix, which is the empty string for the default namespace.
+     */
+    static String getSchemaNamespacePrefix(NamespacePrefixList ctx) {
+        String prefix = ctx == null ? null : ctx.getPrefix(XSD_NAMESPACE);
+        if (prefix == null) {
+            //find a prefix to use
+            prefix = "";
+            if (ctx != null && ctx.getNamespaceURI(prefix).length() > 0) {
+                prefix = "xsd";
+            }
+            int count = 0;
+            while (ctx != null && ctx.getNamespaceURI(prefix).length() > 0) {
+                prefix = "xsd" + ++count;
+            }
+        }
+        return prefix;
+    }
+
 }
@@ -0,0 +1,311 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ws.commons.schema;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.apache.ws.commons.schema.extensions.ExtensionRegistry;
+
+/**
+ * Writes schemas for repeated publication, for example to answer the <code>?xsd</code> requests of a
+ * service endpoint. Every thread keeps its own {@link XmlSchemaStreamSerializer}, with its StAX output
+ * factory, and its own output buffer, so that writing a schema allocates little more than the writer.
+ * <p/>
+ * Optionally, the rendered bytes of each frozen schema are cached for each set of options, so that writing
+ * the schema again is a copy of these bytes. A schema that is not frozen may still change anywhere, so it
+ * is rendered every time: freeze the schemas that are published. Schemas are not kept from being garbage
+ * collected by the cache.
+ * <p/>
+ * An instance is thread-safe.
+ */
+public class XmlSchemaSerializerService {
+
+    // larger buffers are not kept by the threads
+    private static final int MAX_RETAINED_BUFFER = 1 << 20;
+
+    private final boolean cacheRendered;
+    private final ThreadLocal<State> states = new ThreadLocal<State>();
+    private final Map<XmlSchema, List<Rendered>> rendered = new WeakHashMap<XmlSchema, List<Rendered>>();
+
+    /**
+     * Create a service that does not cache the rendered schemas.
+     */
+    public XmlSchemaSerializerService() {
+        this(false);
+    }
+
+    /**
+     * Create a service.
+     *
+     * @param cacheRendered whether to cache the rendered bytes of the frozen schemas.
+     */
+    public XmlSchemaSerializerService(boolean cacheRendered) {
+        this.cacheRendered = cacheRendered;
+    }
+
+    /**
+     * Tell if this service caches the rendered bytes of the frozen schemas.
+     *
+     * @return true if it does.
+     */
+    public boolean isCacheRendered() {
+        return cacheRendered;
+    }
+
+    /**
+     * Write a schema document to a byte stream. The options and the encoding are those of
+     * {@link XmlSchemaStreamSerializer#serialize(XmlSchema, OutputStream, Map)}.
+     *
+     * @param schema the schema.
+     * @param out the byte stream. It is flushed but not closed.
+     * @param options the output properties, or null for the defaults of
+     *            {@link XmlSchema#write(OutputStream)}.
+     * @throws IOException if the stream fails.
+     */
+    public void write(XmlSchema schema, OutputStream out, Map<String, String> options) throws IOException {
+        byte[] bytes = getCached(schema, options);
+        if (bytes != null) {
+            out.write(bytes);
+        } else {
+            State state = acquire();
+            try {
+                render(state, schema, options);
+                if (cacheRendered && schema.isFrozen()) {
+                    cache(schema, options, state.buffer.toByteArray());
+                }
+                state.buffer.writeTo(out);
+            } finally {
+                release(state);
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Render a schema document. The options are the same as for
+     * {@link #write(XmlSchema, OutputStream, Map)}.
+     *
+     * @param schema the schema.
+     * @param options the output properties, or null.
+     * @return a new array with the document.
+     */
+    public byte[] render(XmlSchema schema, Map<String, String> options) {
+        byte[] bytes = getCached(schema, options);
+        if (bytes != null) {
+            return bytes.clone();
+        }
+        State state = acquire();
+        try {
+            render(state, schema, options);
+            bytes = state.buffer.toByteArray();
+        } finally {
+            release(state);
+        }
+        if (cacheRendered && schema.isFrozen()) {
+            cache(schema, options, bytes.clone());
+        }
+        return bytes;
+    }
+
+    /**
+     * Render a schema document whose includes, imports and redefines refer to other documents than the
+     * ones the schemas were read from. The cache is only used if no location is replaced.
+     *
+     * @param schema the schema.
+     * @param options the output properties, or null.
+     * @param schemaLocations the locations to write for the included, imported and redefined schemas, as
+     *            for {@link XmlSchemaStreamSerializer#setSchemaLocations(Map)}, or null.
+     * @return a new array with the document.
+     */
+    public byte[] render(XmlSchema schema, Map<String, String> options,
+                         Map<XmlSchema, String> schemaLocations) {
+        if (schemaLocations == null || schemaLocations.isEmpty()) {
+            return render(schema, options);
+        }
+        State state = acquire();
+        try {
+            state.serializer.setSchemaLocations(schemaLocations);
+            render(state, schema, options);
+            return state.buffer.toByteArray();
+        } finally {
+            state.serializer.setSchemaLocations(null);
+            release(state);
+        }
+    }
+
+    /**
+     * Write the schema element to a StAX writer, as {@link XmlSchema#write(XMLStreamWriter)} does. The
+     * cache is not used, since the output depends on the writer.
+     *
+     * @param schema the schema.
+     * @param writer the writer.
+     * @throws XMLStreamException if the writer fails.
+     */
+    public void write(XmlSchema schema, XMLStreamWriter writer) throws XMLStreamException {
+        State state = acquire();
+        try {
+            state.serializer.setExtReg(getExtReg(schema));
+            state.serializer.serialize(schema, writer);
+        } catch (XmlSchemaSerializer.XmlSchemaSerializerException e) {
+            throw new XmlSchemaException(e.getMessage());
+        } finally {
+            release(state);
+        }
+    }
+
+    /**
+     * Forget the cached renderings of a schema.
+     *
+     * @param schema the schema.
+     */
+    public void invalidate(XmlSchema schema) {
+        synchronized (rendered) {
+            List<Rendered> list = rendered.get(schema);
+            if (list != null) {
+                for (Iterator<Rendered> it = list.iterator(); it.hasNext();) {
+                    if (it.next().schema.get() == schema) {
+                        it.remove();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Forget all the cached renderings.
+     */
+    public void clear() {
+        synchronized (rendered) {
+            rendered.clear();
+        }
+    }
+
+    private static void render(State state, XmlSchema schema, Map<String, String> options) {
+        state.buffer.reset();
+        state.serializer.setExtReg(getExtReg(schema));
+        try {
+            state.serializer.serialize(schema, state.buffer, options);
+        } catch (XMLStreamException e) {
+            throw new XmlSchemaException(e.getMessage(), e);
+        } catch (XmlSchemaSerializer.XmlSchemaSerializerException e) {
+            throw new XmlSchemaException(e.getMessage());
+        }
+    }
+
+    private static ExtensionRegistry getExtReg(XmlSchema schema) {
+        return schema.getParent() == null ? null : schema.getParent().getExtReg();
+    }
+
+    private byte[] getCached(XmlSchema schema, Map<String, String> options) {
+        if (!cacheRendered || !schema.isFrozen()) {
+            return null;
+        }
+        synchronized (rendered) {
+            List<Rendered> list = rendered.get(schema);
+            if (list != null) {
+                for (Rendered r : list) {
+                    if (r.schema.get() == schema
+                        && (r.options == null ? options == null : r.options.equals(options))) {
+                        return r.bytes;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private void cache(XmlSchema schema, Map<String, String> options, byte[] bytes) {
+        Rendered entry = new Rendered(schema, options == null ? null : new HashMap<String, String>(options),
+                                      bytes);
+        synchronized (rendered) {
+            List<Rendered> list = rendered.get(schema);
+            if (list == null) {
+                list = new ArrayList<Rendered>(1);
+                rendered.put(schema, list);
+            }
+            for (Iterator<Rendered> it = list.iterator(); it.hasNext();) {
+                Rendered r = it.next();
+                if (r.schema.get() == null
+                    || r.schema.get() == schema
+                    && (r.options == null ? options == null : r.options.equals(options))) {
+                    it.remove();
+                }
+            }
+            list.add(entry);
+        }
+    }
+
+    private State acquire() {
+        State state = states.get();
+        if (state == null) {
+            state = new State();
+            states.set(state);
+        }
+        if (state.busy) {
+            // an extension serializer writes a schema while this thread writes another one
+            state = new State();
+        }
+        state.busy = true;
+        return state;
+    }
+
+    private static void release(State state) {
+        if (state.buffer.size() > MAX_RETAINED_BUFFER) {
+            state.buffer = new ByteArrayOutputStream(8192);
+        }
+        state.busy = false;
+    }
+
+    /**
+     * The serializer and the buffer of a thread.
+     */
+    private static final class State {
+        final XmlSchemaStreamSerializer serializer = new XmlSchemaStreamSerializer();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(8192);
+        boolean busy;
+    }
+
+    /**
+     * The rendering of a schema with a set of options.
+     */
+    private static final class Rendered {
+        final WeakReference<XmlSchema> schema;
+        final Map<String, String> options;
+        final byte[] bytes;
+
+        Rendered(XmlSchema schema, Map<String, String> options, byte[] bytes) {
+            this.schema = new WeakReference<XmlSchema>(schema);
+            this.options = options;
+            this.bytes = bytes;
+        }
+    }
+}
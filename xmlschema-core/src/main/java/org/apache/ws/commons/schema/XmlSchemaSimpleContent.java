@@ -25,6 +25,8 @@ package org.apache.ws.commons.schema;
  */
 
 public class XmlSchemaSimpleContent extends XmlSchemaContentModel {
+    private static final long serialVersionUID = 1L;
+
     /* One of XmlSchemaSimpleContentRestriction or XmlSchemaSimpleContentExtension. */
     XmlSchemaContent content;
 
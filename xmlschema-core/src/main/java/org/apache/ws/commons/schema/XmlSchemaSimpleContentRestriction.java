@@ -32,6 +32,8 @@ import javax.xml.namespace.QName;
  */
 
 public class XmlSchemaSimpleContentRestriction extends XmlSchemaContent {
+    private static final long serialVersionUID = 1L;
+
     XmlSchemaAnyAttribute anyAttribute;
     /*
      * Contains XmlSchemaAttribute and XmlSchemaAttributeGroupRef. Collection of attributes for the simple
@@ -26,6 +26,8 @@ package org.apache.ws.commons.schema;
 
 public class XmlSchemaSimpleType extends XmlSchemaType {
 
+    private static final long serialVersionUID = 1L;
+
     XmlSchemaSimpleTypeContent content;
 
     /**
@@ -26,6 +26,8 @@ import javax.xml.namespace.QName;
  * data type. Represents the World Wide Web Consortium (W3C) list element.
  */
 public class XmlSchemaSimpleTypeList extends XmlSchemaSimpleTypeContent {
+    private static final long serialVersionUID = 1L;
+
     XmlSchemaSimpleType itemType;
     QName itemTypeName;
 
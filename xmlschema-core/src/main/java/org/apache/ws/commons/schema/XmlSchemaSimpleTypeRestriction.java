@@ -31,6 +31,8 @@ import javax.xml.namespace.QName;
  */
 
 public class XmlSchemaSimpleTypeRestriction extends XmlSchemaSimpleTypeContent {
+    private static final long serialVersionUID = 1L;
+
     private XmlSchemaSimpleType baseType;
     private QName baseTypeName;
     private List<XmlSchemaFacet> facets;
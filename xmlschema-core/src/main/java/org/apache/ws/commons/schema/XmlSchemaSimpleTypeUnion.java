@@ -32,6 +32,8 @@ import javax.xml.namespace.QName;
 
 public class XmlSchemaSimpleTypeUnion extends XmlSchemaSimpleTypeContent {
 
+    private static final long serialVersionUID = 1L;
+
     private List<XmlSchemaSimpleType> baseTypes;
     private String memberTypesSource;
     private QName[] memberTypesQNames;
@@ -0,0 +1,498 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ws.commons.schema;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import javax.xml.namespace.QName;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.DocumentFragment;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Saves a schema collection to a compact binary snapshot and restores it, so that an application that reads
+ * the same schema documents on every start can skip parsing them and resolving their references. The
+ * snapshot holds all the schemas of the collection, linked as they are in memory, with every
+ * {@link org.apache.ws.commons.schema.utils.XmlSchemaRef} resolved. DOM nodes kept by the model, such as
+ * annotation markup and extension attributes, are restored into a fresh document.
+ * <br/>
+ * A snapshot starts with a format version and the SHA-256 digest of every schema document the collection was
+ * read from. {@link #read(InputStream, boolean)} can check these digests against the documents, so that a
+ * snapshot is not used once its sources change. A snapshot written by a version of XmlSchema whose object
+ * model differs fails to restore; it should then be written again from the sources.
+ * <br/>
+ * The extension registry and URI resolver of a restored collection are the defaults. Meta information
+ * attached to schema objects is saved if it is serializable and its classes belong to this library, or are
+ * strings, boxed numbers, booleans or the basic collections. Snapshots should only be read from trusted
+ * locations.
+ */
+public final class XmlSchemaSnapshot {
+    /**
+     * The version of the snapshot format written by this class.
+     */
+    public static final int FORMAT_VERSION = 1;
+
+    // "XSDS"
+    private static final int MAGIC = 0x58534453;
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+    private static final String[] TRUSTED_PACKAGES = {
+        "org.apache.ws.commons.schema.",
+        // only for arrays of DOM interfaces, the nodes themselves are saved as SerializedNode
+        "org.w3c.dom."
+    };
+    // the platform classes that the model holds
+    private static final Set<String> TRUSTED_CLASSES = new HashSet<String>(Arrays.asList(
+        "java.lang.Object", "java.lang.String", "java.lang.Enum", "java.lang.Number", "java.lang.Boolean",
+        "java.lang.Byte", "java.lang.Short", "java.lang.Integer", "java.lang.Long", "java.math.BigInteger",
+        "java.math.BigDecimal", "javax.xml.namespace.QName",
+        "java.util.ArrayList", "java.util.HashMap", "java.util.LinkedHashMap", "java.util.HashSet",
+        "java.util.LinkedHashSet", "java.util.IdentityHashMap",
+        "java.util.Collections$EmptyList", "java.util.Collections$SingletonList",
+        "java.util.Collections$SingletonSet", "java.util.Collections$SetFromMap",
+        "java.util.Collections$SynchronizedCollection", "java.util.Collections$SynchronizedList",
+        "java.util.Collections$SynchronizedRandomAccessList", "java.util.Collections$SynchronizedSet",
+        "java.util.Collections$SynchronizedMap", "java.util.Collections$UnmodifiableCollection",
+        "java.util.Collections$UnmodifiableList", "java.util.Collections$UnmodifiableRandomAccessList",
+        "java.util.Collections$UnmodifiableMap"));
+
+    private XmlSchemaSnapshot() {
+    }
+
+    /**
+     * Write a snapshot of a collection.
+     *
+     * @param collection the collection.
+     * @param out the stream to write to. It is not closed.
+     * @throws IOException if the stream fails, or the collection holds objects that cannot be serialized.
+     */
+    public static void write(XmlSchemaCollection collection, OutputStream out) throws IOException {
+        DataOutputStream header = new DataOutputStream(out);
+        header.writeInt(MAGIC);
+        header.writeInt(FORMAT_VERSION);
+        Map<String, byte[]> digests = digestSources(collection);
+        header.writeInt(digests.size());
+        for (Map.Entry<String, byte[]> source : digests.entrySet()) {
+            header.writeUTF(source.getKey());
+            byte[] digest = source.getValue();
+            header.writeInt(digest == null ? -1 : digest.length);
+            if (digest != null) {
+                header.write(digest);
+            }
+        }
+        header.flush();
+
+        DeflaterOutputStream deflater = new DeflaterOutputStream(out);
+        ObjectOutputStream objects = new SnapshotOutputStream(new BufferedOutputStream(deflater));
+        objects.writeObject(collection);
+        objects.flush();
+        deflater.finish();
+        out.flush();
+    }
+
+    /**
+     * Restore a collection from a snapshot without checking it against its sources.
+     *
+     * @param in the stream to read from. It is not closed.
+     * @return the collection.
+     * @throws IOException if the stream fails.
+     * @throws XmlSchemaException if the stream is not a snapshot that this version can read.
+     */
+    public static XmlSchemaCollection read(InputStream in) throws IOException {
+        return read(in, false);
+    }
+
+    /**
+     * Restore a collection from a snapshot.
+     *
+     * @param in the stream to read from. It is not closed.
+     * @param verifySources whether to check that the schema documents the snapshot was written from are
+     *            unchanged. Documents that could not be read when the snapshot was written are not checked.
+     * @return the collection.
+     * @throws IOException if the stream fails.
+     * @throws XmlSchemaException if the stream is not a snapshot that this version can read, or a source has
+     *             changed.
+     */
+    public static XmlSchemaCollection read(InputStream in, boolean verifySources) throws IOException {
+        DataInputStream header = new DataInputStream(in);
+        Map<String, byte[]> digests = readHeader(header);
+        if (verifySources) {
+            for (Map.Entry<String, byte[]> source : digests.entrySet()) {
+                if (source.getValue() != null && !Arrays.equals(source.getValue(), digest(source.getKey()))) {
+                    throw new XmlSchemaException("Schema snapshot is out of date: " + source.getKey()
+                                                 + " has changed");
+                }
+            }
+        }
+
+        ObjectInputStream objects =
+            new SnapshotInputStream(new BufferedInputStream(new InflaterInputStream(in)));
+        try {
+            return (XmlSchemaCollection)objects.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new XmlSchemaException("Schema snapshot refers to an unknown class", e);
+        } catch (InvalidClassException e) {
+            throw new XmlSchemaException("Schema snapshot was written by an incompatible version", e);
+        } catch (ClassCastException e) {
+            throw new XmlSchemaException("Stream is not a schema snapshot", e);
+        }
+    }
+
+    /**
+     * Tell if the schema documents a snapshot was written from are unchanged. Only the header of the
+     * snapshot is read.
+     *
+     * @param in the stream to read from. It is not closed.
+     * @return true if no source has changed.
+     * @throws IOException if the stream fails.
+     * @throws XmlSchemaException if the stream is not a snapshot that this version can read.
+     */
+    public static boolean isCurrent(InputStream in) throws IOException {
+        for (Map.Entry<String, byte[]> source : readHeader(new DataInputStream(in)).entrySet()) {
+            if (source.getValue() != null && !Arrays.equals(source.getValue(), digest(source.getKey()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Map<String, byte[]> readHeader(DataInputStream header) throws IOException {
+        if (header.readInt() != MAGIC) {
+            throw new XmlSchemaException("Stream is not a schema snapshot");
+        }
+        int version = header.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new XmlSchemaException("Unsupported schema snapshot format version " + version);
+        }
+        int count = header.readInt();
+        Map<String, byte[]> digests = new LinkedHashMap<String, byte[]>();
+        for (int i = 0; i < count; i++) {
+            String systemId = header.readUTF();
+            int length = header.readInt();
+            byte[] digest = null;
+            if (length >= 0) {
+                digest = new byte[length];
+                header.readFully(digest);
+            }
+            digests.put(systemId, digest);
+        }
+        return digests;
+    }
+
+    private static Map<String, byte[]> digestSources(XmlSchemaCollection collection) {
+        Map<String, byte[]> digests = new LinkedHashMap<String, byte[]>();
+        for (XmlSchema schema : collection.getXmlSchemas()) {
+            String systemId = schema.getSourceURI();
+            if (systemId != null && !digests.containsKey(systemId)) {
+                digests.put(systemId, digest(systemId));
+            }
+        }
+        return digests;
+    }
+
+    /**
+     * Compute the digest of a schema document.
+     *
+     * @return the digest, or null if the document cannot be read.
+     */
+    private static byte[] digest(String systemId) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new XmlSchemaException(e.getMessage(), e);
+        }
+        try {
+            InputStream in = new URL(systemId).openStream();
+            try {
+                byte[] buffer = new byte[8192];
+                int count;
+                while ((count = in.read(buffer)) != -1) {
+                    digest.update(buffer, 0, count);
+                }
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return digest.digest();
+    }
+
+    /**
+     * Replaces DOM nodes, which are not serializable, with {@link SerializedNode}s, and the shared schema of
+     * the built-in datatypes and its types with {@link BuiltinComponent}s.
+     */
+    private static final class SnapshotOutputStream extends ObjectOutputStream {
+        SnapshotOutputStream(OutputStream out) throws IOException {
+            super(out);
+            enableReplaceObject(true);
+        }
+
+        @Override
+        protected Object replaceObject(Object obj) throws IOException {
+            if (obj instanceof Node) {
+                return new SerializedNode((Node)obj);
+            } else if (obj instanceof NodeList && !(obj instanceof Serializable)) {
+                return new SerializedNode((NodeList)obj);
+            } else if (obj == XmlSchemaCollection.getBuiltinSchema()) {
+                return new BuiltinComponent(null);
+            } else if (obj instanceof XmlSchemaType) {
+                XmlSchemaType type = (XmlSchemaType)obj;
+                if (type.getQName() != null && type.getParent() == XmlSchemaCollection.getBuiltinSchema()) {
+                    return new BuiltinComponent(type.getQName());
+                }
+            }
+            return obj;
+        }
+    }
+
+    /**
+     * Turns {@link SerializedNode}s back into DOM nodes, owned by one document per snapshot, and
+     * {@link BuiltinComponent}s into the shared built-in components, and refuses to load classes outside of
+     * this library and the few platform classes that the model holds.
+     */
+    private static final class SnapshotInputStream extends ObjectInputStream {
+        private Document document;
+
+        SnapshotInputStream(InputStream in) throws IOException {
+            super(in);
+            enableResolveObject(true);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            String name = desc.getName();
+            int start = name.lastIndexOf('[') + 1;
+            int end = name.length();
+            if (start > 0 && name.charAt(start) == 'L') {
+                start++;
+                end--;
+            }
+            if (start == 0 || name.length() > start + 1) {
+                String className = name.substring(start, end);
+                boolean trusted = TRUSTED_CLASSES.contains(className);
+                for (String prefix : TRUSTED_PACKAGES) {
+                    trusted |= className.startsWith(prefix);
+                }
+                if (!trusted) {
+                    throw new InvalidClassException(name, "Class not allowed in a schema snapshot");
+                }
+            }
+            return super.resolveClass(desc);
+        }
+
+        @Override
+        protected Object resolveObject(Object obj) throws IOException {
+            if (obj instanceof SerializedNode) {
+                if (document == null) {
+                    try {
+                        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+                        factory.setNamespaceAware(true);
+                        document = factory.newDocumentBuilder().newDocument();
+                    } catch (ParserConfigurationException e) {
+                        throw new XmlSchemaException(e.getMessage(), e);
+                    }
+                }
+                return ((SerializedNode)obj).toDom(document);
+            } else if (obj instanceof BuiltinComponent) {
+                return ((BuiltinComponent)obj).resolve();
+            }
+            return obj;
+        }
+    }
+
+    /**
+     * Stands for the schema of the built-in datatypes, or one of its types, which all collections share and
+     * a snapshot therefore does not copy.
+     */
+    private static final class BuiltinComponent implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        // null for the schema itself
+        private final QName typeName;
+
+        BuiltinComponent(QName typeName) {
+            this.typeName = typeName;
+        }
+
+        Object resolve() throws IOException {
+            XmlSchema xsd = XmlSchemaCollection.getBuiltinSchema();
+            if (typeName == null) {
+                return xsd;
+            }
+            XmlSchemaType type = xsd.getTypeByName(typeName);
+            if (type == null) {
+                throw new InvalidObjectException("Unknown built-in type " + typeName);
+            }
+            return type;
+        }
+    }
+
+    /**
+     * Serializable copy of a DOM node or node list, which the snapshot streams substitute for the original.
+     */
+    private static final class SerializedNode implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final boolean list;
+        private final List<NodeData> nodes;
+
+        SerializedNode(Node node) throws IOException {
+            list = false;
+            nodes = Collections.singletonList(new NodeData(node));
+        }
+
+        SerializedNode(NodeList nodeList) throws IOException {
+            list = true;
+            nodes = NodeData.copy(nodeList);
+        }
+
+        Object toDom(Document document) {
+            if (list) {
+                DocumentFragment fragment = document.createDocumentFragment();
+                NodeData.append(fragment, nodes, document);
+                return new DocumentFragmentNodeList(fragment);
+            }
+            return nodes.get(0).toNode(document);
+        }
+    }
+
+    /**
+     * The content of a {@link SerializedNode}. It is a separate class, so that the nodes inside a
+     * serialized node are not substituted one by one when the snapshot is read.
+     */
+    private static final class NodeData implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final short type;
+        private final String namespaceURI;
+        private final String name;
+        private final String value;
+        private final List<NodeData> attributes;
+        private final List<NodeData> children;
+
+        NodeData(Node node) throws IOException {
+            type = node.getNodeType();
+            namespaceURI = node.getNamespaceURI();
+            name = node.getNodeName();
+            value = node.getNodeValue();
+            switch (type) {
+            case Node.ELEMENT_NODE:
+                NamedNodeMap map = node.getAttributes();
+                attributes = new ArrayList<NodeData>(map.getLength());
+                for (int i = 0; i < map.getLength(); i++) {
+                    attributes.add(new NodeData(map.item(i)));
+                }
+                children = copy(node.getChildNodes());
+                break;
+            case Node.DOCUMENT_FRAGMENT_NODE:
+                attributes = null;
+                children = copy(node.getChildNodes());
+                break;
+            case Node.ATTRIBUTE_NODE:
+            case Node.TEXT_NODE:
+            case Node.CDATA_SECTION_NODE:
+            case Node.COMMENT_NODE:
+            case Node.PROCESSING_INSTRUCTION_NODE:
+                attributes = null;
+                children = null;
+                break;
+            default:
+                throw new IOException("Cannot save DOM node of type " + type + " in a schema snapshot");
+            }
+        }
+
+        static List<NodeData> copy(NodeList list) throws IOException {
+            List<NodeData> nodes = new ArrayList<NodeData>(list.getLength());
+            for (int i = 0; i < list.getLength(); i++) {
+                nodes.add(new NodeData(list.item(i)));
+            }
+            return nodes;
+        }
+
+        static void append(Node parent, List<NodeData> nodes, Document document) {
+            for (NodeData node : nodes) {
+                parent.appendChild(node.toNode(document));
+            }
+        }
+
+        Node toNode(Document document) {
+            switch (type) {
+            case Node.ELEMENT_NODE:
+                Element element = document.createElementNS(namespaceURI, name);
+                for (NodeData attribute : attributes) {
+                    element.setAttributeNodeNS((Attr)attribute.toNode(document));
+                }
+                append(element, children, document);
+                return element;
+            case Node.DOCUMENT_FRAGMENT_NODE:
+                DocumentFragment fragment = document.createDocumentFragment();
+                append(fragment, children, document);
+                return fragment;
+            case Node.ATTRIBUTE_NODE:
+                Attr attribute = document.createAttributeNS(namespaceURI, name);
+                attribute.setValue(value);
+                return attribute;
+            case Node.TEXT_NODE:
+                return document.createTextNode(value);
+            case Node.CDATA_SECTION_NODE:
+                return document.createCDATASection(value);
+            case Node.COMMENT_NODE:
+                return document.createComment(value);
+            case Node.PROCESSING_INSTRUCTION_NODE:
+                return document.createProcessingInstruction(name, value);
+            default:
+                throw new IllegalStateException("Unexpected node type " + type);
+            }
+        }
+    }
+}
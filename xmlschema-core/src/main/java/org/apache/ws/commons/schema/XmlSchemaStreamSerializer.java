@@ -0,0 +1,1484 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ws.commons.schema;
+
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.namespace.QName;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.transform.OutputKeys;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import org.apache.ws.commons.schema.XmlSchemaSerializer.XmlSchemaSerializerException;
+import org.apache.ws.commons.schema.constants.Constants;
+import org.apache.ws.commons.schema.extensions.ExtensionRegistry;
+import org.apache.ws.commons.schema.utils.NamespacePrefixList;
+
+/**
+ * Writes the XML representation of a schema to a StAX {@link XMLStreamWriter} without building a DOM
+ * document first. The output is equivalent to the one of {@link XmlSchemaSerializer}: it chooses the same
+ * namespace prefixes and declares them on the schema element. Extension elements and attributes are still
+ * produced through the DOM based {@link ExtensionRegistry}, one schema object at a time.
+ * <p/>
+ * The schema is traversed twice: the first pass only collects the namespaces that need a declaration, so
+ * that any {@link XmlSchemaSerializerException} is thrown before anything is written.
+ * <p/>
+ * An instance may be reused, but not by several threads at the same time.
+ */
+public class XmlSchemaStreamSerializer {
+
+    /**
+     * The output property that sets the number of spaces of each indentation level. The JAXP transformer
+     * used by {@link XmlSchema#write(Writer, Map)} knows it too.
+     */
+    public static final String INDENT_AMOUNT = "{http://xml.apache.org/xslt}indent-amount";
+
+    private static final String XSD_NAMESPACE = XmlSchema.SCHEMA_NS;
+    private static final String DEFAULT_ENCODING = "UTF-8";
+    private static final int DEFAULT_INDENT_AMOUNT = 4;
+
+    private ExtensionRegistry extReg;
+    private Map<XmlSchema, String> schemaLocations;
+    private XMLOutputFactory outputFactory;
+    private Document extensionDocument;
+
+    // the state of the schema being written; the writer is null in the first pass
+    private XMLStreamWriter writer;
+    private XmlSchema schema;
+    private String xsdPrefix;
+    private Map<String, String> schemaNamespace;
+    private Map<String, String> declaredNamespaces;
+
+    private int indentAmount;
+    private char[] indentChars = new char[0];
+    private int depth;
+    private boolean[] elementContent = new boolean[16];
+    private boolean[] mixedContent = new boolean[16];
+    private String pendingElement;
+    // namespace, qualified name and value of the attributes of the pending element
+    private final List<String> pendingAttributes = new ArrayList<String>();
+
+    /**
+     * Create a new serializer.
+     */
+    public XmlSchemaStreamSerializer() {
+    }
+
+    /**
+     * Get the registry of extensions for this serializer.
+     *
+     * @return the registry.
+     */
+    public ExtensionRegistry getExtReg() {
+        return extReg;
+    }
+
+    /**
+     * Set the registry of extensions for this serializer.
+     *
+     * @param extReg the registry.
+     */
+    public void setExtReg(ExtensionRegistry extReg) {
+        this.extReg = extReg;
+    }
+
+    /**
+     * Get the locations written for the schemas that are included, imported or redefined.
+     *
+     * @return the locations by schema, or null if the locations of the externals are written.
+     */
+    public Map<XmlSchema, String> getSchemaLocations() {
+        return schemaLocations;
+    }
+
+    /**
+     * Set the locations written for the schemas that are included, imported or redefined, for example
+     * when the documents are published under other names. An include, import or redefine of a schema that
+     * is not in the map is written with its own location.
+     *
+     * @param schemaLocations the locations by schema, or null to write the locations of the externals.
+     */
+    public void setSchemaLocations(Map<XmlSchema, String> schemaLocations) {
+        this.schemaLocations = schemaLocations;
+    }
+
+    /**
+     * Write the schema element to a StAX writer. Nothing else is written, so the schema may be embedded in
+     * a larger document, and the writer is neither flushed nor closed.
+     *
+     * @param schemaObj the schema.
+     * @param out the writer.
+     * @throws XMLStreamException if the writer fails.
+     * @throws XmlSchemaSerializerException if the schema cannot be represented in XML.
+     */
+    public void serialize(XmlSchema schemaObj, XMLStreamWriter out)
+        throws XMLStreamException, XmlSchemaSerializerException {
+        serializeSchema(schemaObj, out, 0);
+    }
+
+    /**
+     * Write a schema document to a character stream. The options are the output properties understood by
+     * {@link XmlSchema#write(Writer, Map)}: {@link OutputKeys#INDENT}, {@link #INDENT_AMOUNT},
+     * {@link OutputKeys#OMIT_XML_DECLARATION} and {@link OutputKeys#ENCODING}, which is only used in the XML
+     * declaration here. Other properties are ignored. As with the transformer, a null map stands for an
+     * indented document without XML declaration.
+     *
+     * @param schemaObj the schema.
+     * @param out the character stream. It is flushed but not closed.
+     * @param options the output properties, or null.
+     * @throws XMLStreamException if the writer fails.
+     * @throws XmlSchemaSerializerException if the schema cannot be represented in XML.
+     */
+    public void serialize(XmlSchema schemaObj, Writer out, Map<String, String> options)
+        throws XMLStreamException, XmlSchemaSerializerException {
+        serializeDocument(schemaObj, getOutputFactory().createXMLStreamWriter(out), options);
+    }
+
+    /**
+     * Write a schema document to a byte stream, in the encoding given by the {@link OutputKeys#ENCODING}
+     * option, or else the input encoding of the schema, or else UTF-8. The options are the same as for
+     * {@link #serialize(XmlSchema, Writer, Map)}.
+     *
+     * @param schemaObj the schema.
+     * @param out the byte stream. It is flushed but not closed.
+     * @param options the output properties, or null.
+     * @throws XMLStreamException if the writer fails.
+     * @throws XmlSchemaSerializerException if the schema cannot be represented in XML.
+     */
+    public void serialize(XmlSchema schemaObj, OutputStream out, Map<String, String> options)
+        throws XMLStreamException, XmlSchemaSerializerException {
+        String encoding = getEncoding(schemaObj, options);
+        serializeDocument(schemaObj, getOutputFactory().createXMLStreamWriter(out, encoding), options);
+    }
+
+    private void serializeDocument(XmlSchema schemaObj, XMLStreamWriter out, Map<String, String> options)
+        throws XMLStreamException, XmlSchemaSerializerException {
+        boolean indent;
+        boolean omitDeclaration;
+        if (options == null) {
+            indent = true;
+            omitDeclaration = true;
+        } else {
+            indent = "yes".equals(options.get(OutputKeys.INDENT));
+            omitDeclaration = "yes".equals(options.get(OutputKeys.OMIT_XML_DECLARATION));
+        }
+        int amount = 0;
+        if (indent) {
+            amount = DEFAULT_INDENT_AMOUNT;
+            String value = options == null ? null : options.get(INDENT_AMOUNT);
+            if (value != null) {
+                try {
+                    amount = Integer.parseInt(value.trim());
+                } catch (NumberFormatException e) {
+                    throw new XmlSchemaException("Invalid " + INDENT_AMOUNT + ": " + value);
+                }
+            }
+        }
+
+        if (!omitDeclaration) {
+            out.writeStartDocument(getEncoding(schemaObj, options), "1.0");
+            if (amount > 0) {
+                out.writeCharacters("\n");
+            }
+        }
+        serializeSchema(schemaObj, out, amount);
+        if (!omitDeclaration) {
+            out.writeEndDocument();
+        }
+        out.flush();
+        out.close();
+    }
+
+    private void serializeSchema(XmlSchema schemaObj, XMLStreamWriter out, int indent)
+        throws XMLStreamException, XmlSchemaSerializerException {
+        schema = schemaObj;
+        schemaNamespace = new HashMap<String, String>();
+        declaredNamespaces = new LinkedHashMap<String, String>();
+        try {
+            setupNamespaces();
+            serializeSchemaElement();
+
+            writer = out;
+            indentAmount = indent;
+            depth = 0;
+            serializeSchemaElement();
+        } finally {
+            writer = null;
+            schema = null;
+            schemaNamespace = null;
+            declaredNamespaces = null;
+            pendingElement = null;
+            pendingAttributes.clear();
+        }
+    }
+
+    // the namespace declarations that XmlSchemaSerializer puts on the schema element before its content
+    private void setupNamespaces() {
+        NamespacePrefixList ctx = schema.getNamespaceContext();
+        xsdPrefix = XmlSchemaSerializer.getSchemaNamespacePrefix(ctx);
+        if (!xsdPrefix.equals(schema.getSchemaNamespacePrefix())) {
+            schema.setSchemaNamespacePrefix(xsdPrefix);
+        }
+
+        if (ctx != null) {
+            String[] prefixes = ctx.getDeclaredPrefixes();
+            for (String prefix : prefixes) {
+                if (prefix != null) {
+                    String uri = ctx.getNamespaceURI(prefix);
+                    if (uri.length() > 0) {
+                        if ("".equals(prefix) || !schemaNamespace.containsKey(uri)) {
+                            schemaNamespace.put(uri, prefix);
+                        }
+                        declaredNamespaces.put(prefix, uri);
+                    }
+                }
+            }
+        }
+        if (schemaNamespace.get(XSD_NAMESPACE) == null) {
+            schemaNamespace.put(XSD_NAMESPACE, xsdPrefix);
+            declaredNamespaces.put(xsdPrefix, XSD_NAMESPACE);
+        }
+
+        String targetNamespace = schema.getSyntacticalTargetNamespace();
+        if (targetNamespace != null && schemaNamespace.get(targetNamespace) == null) {
+            String prefix = null;
+            if (schema.getNamespaceContext() != null) {
+                prefix = schema.getNamespaceContext().getPrefix(targetNamespace);
+            }
+            if (prefix == null && schema.getParent() != null
+                && schema.getParent().getNamespaceContext() != null) {
+                prefix = schema.getParent().getNamespaceContext().getPrefix(targetNamespace);
+            }
+            // check if the chosen prefix is ok
+            if (prefix == null) {
+                if (!declaredNamespaces.containsKey("")) {
+                    prefix = "";
+                }
+            } else if (isDeclared(prefix)) {
+                prefix = null;
+            }
+            if (prefix == null) {
+                int count = 0;
+                prefix = "tns";
+                while (isDeclared(prefix)) {
+                    prefix = "tns" + ++count;
+                }
+            }
+            declaredNamespaces.put(prefix, targetNamespace);
+            schemaNamespace.put(targetNamespace, prefix);
+        }
+    }
+
+    private boolean isDeclared(String prefix) {
+        String uri = declaredNamespaces.get(prefix);
+        return uri != null && uri.length() > 0;
+    }
+
+    private void serializeSchemaElement() throws XMLStreamException, XmlSchemaSerializerException {
+        startElement(SchemaConstruct.SCHEMA);
+        for (Map.Entry<String, String> declaration : declaredNamespaces.entrySet()) {
+            String prefix = declaration.getKey();
+            attribute(XMLConstants.XMLNS_ATTRIBUTE_NS_URI,
+                      prefix.length() > 0 ? "xmlns:" + prefix : "xmlns", declaration.getValue());
+        }
+
+        String targetNamespace = schema.getSyntacticalTargetNamespace();
+        if (targetNamespace != null && !"".equals(targetNamespace)) {
+            attribute("targetNamespace", targetNamespace);
+        }
+        if (schema.getAttributeFormDefault() != null
+            && schema.getAttributeFormDefault() != XmlSchemaForm.NONE) {
+            attribute("attributeFormDefault", schema.getAttributeFormDefault().toString());
+        }
+        if (schema.getElementFormDefault() != null
+            && schema.getElementFormDefault() != XmlSchemaForm.NONE) {
+            attribute("elementFormDefault", schema.getElementFormDefault().toString());
+        }
+        if (schema.getId() != null) {
+            attribute("id", schema.getId());
+        }
+        if (schema.getBlockDefault() != XmlSchemaDerivationMethod.NONE) {
+            attribute("blockDefault", schema.getBlockDefault().toString());
+        }
+        if (schema.getFinalDefault() != XmlSchemaDerivationMethod.NONE) {
+            attribute("finalDefault", schema.getFinalDefault().toString());
+        }
+        if (schema.getVersion() != null) {
+            attribute("version", schema.getVersion());
+        }
+        Element extensions = serializeExtensions(schema);
+
+        serializeAnnotation(schema.getAnnotation());
+
+        // imports and includes come first
+        List<XmlSchemaObject> items = schema.getItems();
+        for (XmlSchemaObject obj : items) {
+            if (obj instanceof XmlSchemaInclude) {
+                serializeInclude((XmlSchemaInclude)obj);
+            } else if (obj instanceof XmlSchemaImport) {
+                serializeImport((XmlSchemaImport)obj);
+            }
+        }
+        for (XmlSchemaObject obj : items) {
+            if (obj instanceof XmlSchemaElement) {
+                serializeElement((XmlSchemaElement)obj);
+            } else if (obj instanceof XmlSchemaSimpleType) {
+                serializeSimpleType((XmlSchemaSimpleType)obj);
+            } else if (obj instanceof XmlSchemaComplexType) {
+                serializeComplexType((XmlSchemaComplexType)obj);
+            } else if (obj instanceof XmlSchemaGroup) {
+                serializeGroup((XmlSchemaGroup)obj);
+            } else if (obj instanceof XmlSchemaAttributeGroup) {
+                serializeAttributeGroup((XmlSchemaAttributeGroup)obj);
+            } else if (obj instanceof XmlSchemaAttribute) {
+                serializeAttribute((XmlSchemaAttribute)obj);
+            } else if (obj instanceof XmlSchemaRedefine) {
+                serializeRedefine((XmlSchemaRedefine)obj);
+            }
+        }
+
+        endElement(extensions);
+    }
+
+    private void serializeAll(XmlSchemaAll allObj) throws XMLStreamException, XmlSchemaSerializerException {
+        startElement(SchemaConstruct.ALL);
+        serializeMaxMinOccurs(allObj);
+        Element extensions = serializeExtensions(allObj);
+
+        serializeAnnotation(allObj.getAnnotation());
+        for (XmlSchemaAllMember obj : allObj.getItems()) {
+            if (obj instanceof XmlSchemaElement) {
+                serializeElement((XmlSchemaElement)obj);
+            } else if (obj instanceof XmlSchemaGroupRef) {
+                serializeGroupRef((XmlSchemaGroupRef)obj);
+            } else if (obj instanceof XmlSchemaAny) {
+                serializeAny((XmlSchemaAny)obj);
+            } else {
+                throw new XmlSchemaSerializerException("Only element allowed as child of all model type");
+            }
+        }
+        endElement(extensions);
+    }
+
+    private void serializeAnnotation(XmlSchemaAnnotation annotationObj) throws XMLStreamException {
+        if (annotationObj == null) {
+            return;
+        }
+        startElement(SchemaConstruct.ANNOTATION);
+        Element extensions = serializeExtensions(annotationObj);
+
+        for (XmlSchemaAnnotationItem obj : annotationObj.getItems()) {
+            if (obj instanceof XmlSchemaAppInfo) {
+                serializeAppInfo((XmlSchemaAppInfo)obj);
+            } else if (obj instanceof XmlSchemaDocumentation) {
+                serializeDocumentation((XmlSchemaDocumentation)obj);
+            }
+        }
+        endElement(extensions);
+    }
+
+    private void serializeAny(XmlSchemaAny anyObj) throws XMLStreamException {
+        startElement(SchemaConstruct.ANY);
+        if (anyObj.getId() != null && anyObj.getId().length() > 0) {
+            attribute("id", anyObj.getId());
+        }
+        serializeMaxMinOccurs(anyObj);
+        if (anyObj.getNamespace() != null) {
+            attribute("namespace", anyObj.getNamespace());
+        }
+        if (anyObj.getProcessContent() != null
+            && anyObj.getProcessContent() != XmlSchemaContentProcessing.NONE) {
+            attribute("processContents", anyObj.getProcessContent().toString());
+        }
+        Element extensions = serializeExtensions(anyObj);
+
+        serializeAnnotation(anyObj.getAnnotation());
+        endElement(extensions);
+    }
+
+    private void serializeAnyAttribute(XmlSchemaAnyAttribute anyAttributeObj) throws XMLStreamException {
+        if (anyAttributeObj == null) {
+            return;
+        }
+        startElement(SchemaConstruct.ANY_ATTRIBUTE);
+        if (anyAttributeObj.namespace != null) {
+            attribute("namespace", anyAttributeObj.namespace);
+        }
+        if (anyAttributeObj.getId() != null) {
+            attribute("id", anyAttributeObj.getId());
+        }
+        if (anyAttributeObj.processContent != null
+            && anyAttributeObj.processContent != XmlSchemaContentProcessing.NONE) {
+            attribute("processContents", anyAttributeObj.processContent.toString());
+        }
+        Element extensions = serializeExtensions(anyAttributeObj);
+
+        serializeAnnotation(anyAttributeObj.getAnnotation());
+        endElement(extensions);
+    }
+
+    private void serializeAppInfo(XmlSchemaAppInfo appInfoObj) throws XMLStreamException {
+        startElement(SchemaConstruct.APPINFO);
+        if (appInfoObj.source != null) {
+            attribute("source", appInfoObj.source);
+        }
+        Element extensions = serializeExtensions(appInfoObj);
+
+        serializeMarkup(appInfoObj.markup);
+        endElement(extensions);
+    }
+
+    private void serializeAttribute(XmlSchemaAttribute attributeObj)
+        throws XMLStreamException, XmlSchemaSerializerException {
+        boolean refPresent = attributeObj.getRef().getTargetQName() != null;
+
+        startElement(SchemaConstruct.ATTRIBUTE);
+        if (refPresent) {
+            attribute("ref", resolveQName(attributeObj.getRef().getTargetQName()));
+        } else if (!attributeObj.isAnonymous()) {
+            attribute("name", attributeObj.getName());
+        }
+        if (attributeObj.getSchemaTypeName() != null && !refPresent) {
+            attribute("type", resolveQName(attributeObj.getSchemaTypeName()));
+        }
+        if (attributeObj.getDefaultValue() != null) {
+            attribute("default", attributeObj.getDefaultValue());
+        }
+        if (attributeObj.getFixedValue() != null) {
+            attribute("fixed", attributeObj.getFixedValue());
+        }
+        if (attributeObj.isFormSpecified() && !refPresent) {
+            attribute("form", attributeObj.getForm().toString());
+        }
+        if (attributeObj.getId() != null) {
+            attribute("id", attributeObj.getId());
+        }
+        if (attributeObj.getUse() != null && attributeObj.getUse() != XmlSchemaUse.NONE) {
+            attribute("use", attributeObj.getUse().toString());
+        }
+        Attr[] unhandled = attributeObj.getUnhandledAttributes();
+        if (unhandled != null) {
+            serializeUnhandledAttributes(unhandled);
+        }
+        Element extensions = serializeExtensions(attributeObj);
+
+        serializeAnnotation(attributeObj.getAnnotation());
+        if (attributeObj.getSchemaType() != null && !refPresent) {
+            serializeSimpleType(attributeObj.getSchemaType());
+        }
+        endElement(extensions);
+    }
+
+    // as XmlSchemaSerializer does, rewrite prefixed values such as wsdl:arrayType for the schema context
+    private void serializeUnhandledAttributes(Attr[] unhandled) {
+        Map<String, String> namespaces = new HashMap<String, String>();
+        for (Attr element : unhandled) {
+            String name = element.getNodeName();
+            String value = element.getNodeValue();
+            if ("xmlns".equals(name)) {
+                namespaces.put("", value);
+            } else if (name.startsWith("xmlns")) {
+                namespaces.put(name.substring(name.indexOf(":") + 1), value);
+            }
+        }
+
+        for (Attr element : unhandled) {
+            String value = element.getNodeValue();
+            String nodeName = element.getNodeName();
+            if (value.indexOf(":") > -1 && !nodeName.startsWith("xmlns")) {
+                String prefix = value.substring(0, value.indexOf(":"));
+                String oldNamespace = namespaces.get(prefix);
+                if (oldNamespace != null) {
+                    value = value.substring(value.indexOf(":") + 1);
+                    NamespacePrefixList ctx = schema.getNamespaceContext();
+                    for (String pref : ctx.getDeclaredPrefixes()) {
+                        String uri = ctx.getNamespaceURI(pref);
+                        if (uri.equals(oldNamespace)) {
+                            value = prefix + ":" + value;
+                        }
+                    }
+                }
+            }
+            attribute(element.getNamespaceURI(), nodeName, value);
+        }
+    }
+
+    private void serializeAttributeGroup(XmlSchemaAttributeGroup attributeGroupObj)
+        throws XMLStreamException, XmlSchemaSerializerException {
+        startElement(SchemaConstruct.ATTRIBUTE_GROUP);
+        if (!attributeGroupObj.isAnonymous()) {
+            attribute("name", attributeGroupObj.getName());
+        } else {
+            throw new XmlSchemaSerializerException("Attribute group must have name");
+        }
+        if (attributeGroupObj.getId() != null) {
+            attribute("id", attributeGroupObj.getId());
+        }
+        Element extensions = serializeExtensions(attributeGroupObj);
+
+        serializeAnnotation(attributeGroupObj.getAnnotation());
+        for (XmlSchemaAttributeGroupMember obj : attributeGroupObj.getAttributes()) {
+            if (obj instanceof XmlSchemaAttribute) {
+                serializeAttribute((XmlSchemaAttribute)obj);
+            } else if (obj instanceof XmlSchemaAttributeGroupRef) {
+                serializeAttributeGroupRef((XmlSchemaAttributeGroupRef)obj);
+            }
+        }
+        serializeAnyAttribute(attributeGroupObj.getAnyAttribute());
+        endElement(extensions);
+    }
+
+    private void serializeAttributeGroupRef(XmlSchemaAttributeGroupRef attributeGroupObj)
+        throws XMLStreamException, XmlSchemaSerializerException {
+        startElement(SchemaConstruct.ATTRIBUTE_GROUP);
+        if (attributeGroupObj.getRef().getTarget() != null) {
+            attribute("ref", resolveQName(attributeGroupObj.getRef().getTargetQName()));
+        } else {
+            throw new XmlSchemaSerializerException("Attribute group must have ref name set");
+        }
+        if (attributeGroupObj.getId() != null) {
+            attribute("id", attributeGroupObj.getId());
+        }
+        Element extensions = serializeExtensions(attributeGroupObj);
+
+        serializeAnnotation(attributeGroupObj.getAnnotation());
+        endElement(extensions);
+    }
+
+    private void serializeAttributes(List<? extends XmlSchemaObject> attributes,
+                                     XmlSchemaAnyAttribute anyAttribute)
+        throws XMLStreamException, XmlSchemaSerializerException {
+        for (XmlSchemaObject obj : attributes) {
+            if (obj instanceof XmlSchemaAttribute) {
+                serializeAttribute((XmlSchemaAttribute)obj);
+            } else if (obj instanceof XmlSchemaAttributeGroupRef) {
+                serializeAttributeGroupRef((XmlSchemaAttributeGroupRef)obj);
+            }
+        }
+        // anyAttribute must come after any other attributes
+        serializeAnyAttribute(anyAttribute);
+    }
+
+    private void serializeChoice(XmlSchemaChoice choiceObj)
+        throws XMLStreamException, XmlSchemaSerializerException {
+        startElement(SchemaConstruct.CHOICE);
+        if (choiceObj.getId() != null && choiceObj.getId().length() > 0) {
+            attribute("id", choiceObj.getId());
+        }
+        serializeMaxMinOccurs(choiceObj);
+        Element extensions = serializeExtensions(choiceObj);
+
+        serializeAnnotation(choiceObj.getAnnotation());
+        for (XmlSchemaChoiceMember obj : choiceObj.getItems()) {
+            if (obj instanceof XmlSchemaElement) {
+                serializeElement((XmlSchemaElement)obj);
+            } else if (obj instanceof XmlSchemaGroupRef) {
+                serializeGroupRef((XmlSchemaGroupRef)obj);
+            } else if (obj instanceof XmlSchemaChoice) {
+                serializeChoice((XmlSchemaChoice)obj);
+            } else if (obj instanceof XmlSchemaSequence) {
+                serializeSequence((XmlSchemaSequence)obj);
+            } else if (obj instanceof XmlSchemaAny) {
+                serializeAny((XmlSchemaAny)obj);
+            }
+        }
+        endElement(extensions);
+    }
+
+    private void serializeComplexContent(XmlSchemaComplexContent complexContentObj)
+        throws XMLStreamException, XmlSchemaSerializerException {
+        startElement(SchemaConstruct.COMPLEX_CONTENT);
+        if (complexContentObj.isMixed()) {
+            attribute("mixed", "true");
+        }
+        if (complexContentObj.getId() != null) {
+            attribute("id", complexContentObj.getId());
+        }
+        Element extensions = serializeExtensions(complexContentObj);
+
+        serializeAnnotation(complexContentObj.getAnnotation());
+        if (complexContentObj.content instanceof XmlSchemaComplexContentRestriction) {
+            serializeComplexContentRestriction((XmlSchemaComplexContentRestriction)complexContentObj.content);
+        } else if (complexContentObj.content instanceof XmlSchemaComplexContentExtension) {
+            serializeComplexContentExtension((XmlSchemaComplexContentExtension)complexContentObj.content);
+        } else {
+            throw new XmlSchemaSerializerException("content of complexContent "
+                                                   + "must be restriction or extension");
+        }
+        endElement(extensions);
+    }
+
+    private void serializeComplexContentExtension(XmlSchemaComplexContentExtension extensionObj)
+        throws XMLStreamException, XmlSchemaSerializerException {
+        startElement(SchemaConstruct.EXTENSION);
+        if (extensionObj.getBaseTypeName() != null) {
+            attribute("base", resolveQName(extensionObj.getBaseTypeName()));
+        }
+        Element extensions = serializeExtensions(extensionObj);
+
+        serializeAnnotation(extensionObj.getAnnotation());
+        serializeParticle(extensionObj.getParticle());
+        serializeAttributes(extensionObj.getAttributes(), extensionObj.getAnyAttribute());
+        endElement(extensions);
+    }
+
+    private void serializeComplexContentRestriction(XmlSchemaComplexContentRestriction restrictionObj)
+        throws XMLStreamException, XmlSchemaSerializerException {
+        startElement(SchemaConstruct.RESTRICTION);
+        if (restrictionObj.getBaseTypeName() != null) {
+            attribute("base", resolveQName(restrictionObj.getBaseTypeName()));
+        }
+        if (restrictionObj.getId() != null) {
+            attribute("id", restrictionObj.getId());
+        }
+        Element extensions = serializeExtensions(restrictionObj);
+
+        serializeAnnotation(restrictionObj.getAnnotation());
+        serializeParticle(restrictionObj.getParticle());
+        serializeAttributes(restrictionObj.getAttributes(), restrictionObj.getAnyAttribute());
+        endElement(extensions);
+    }
+
+    private void serializeComplexType(XmlSchemaComplexType complexTypeObj)
+        throws XMLStreamException, XmlSchemaSerializerException {
+        startElement(SchemaConstruct.COMPLEX_TYPE);
+        if (!complexTypeObj.isAnonymous()) {
+            attribute("name", complexTypeObj.getName());
+        }
+        if (complexTypeObj.isMixed()) {
+            attribute("mixed", "true");
+        }
+        if (complexTypeObj.isAbstract()) {
+            attribute("abstract", "true");
+        }
+        if (complexTypeObj.getId() != null) {
+            attribute("id", complexTypeObj.getId());
+        }
+        if (complexTypeObj.getBlock() != null
+            && complexTypeObj.getBlock() != XmlSchemaDerivationMethod.NONE) {
+            attribute("block", complexTypeObj.getBlock().toString());
+        }
+        if (complexTypeObj.getFinalDerivation() != null
+            && complexTypeObj.getFinalDerivation() != XmlSchemaDerivationMethod.NONE) {
+            attribute("final", complexTypeObj.getFinalDerivation().toString());
+        }
+        Element extensions = serializeExtensions(complexTypeObj);
+
+        serializeAnnotation(complexTypeObj.getAnnotation());
+        if (complexTypeObj.getContentModel() instanceof XmlSchemaSimpleContent) {
+            serializeSimpleContent((XmlSchemaSimpleContent)complexTypeObj.getContentModel());
+        } else if (complexTypeObj.getContentModel() instanceof XmlSchemaComplexContent) {
+            serializeComplexContent((XmlSchemaComplexContent)complexTypeObj.getContentModel());
+        }
+        serializeParticle(complexTypeObj.getParticle());
+        serializeAttributes(complexTypeObj.getAttributes(), complexTypeObj.getAnyAttribute());
+        endElement(extensions);
+    }
+
+    private void serializeDocumentation(XmlSchemaDocumentation documentationObj) throws XMLStreamException {
+        startElement(SchemaConstruct.DOCUMENTATION);
+        if (documentationObj.source != null) {
+            attribute("source", documentationObj.source);
+        }
+        if (documentationObj.language != null) {
+            attribute(XMLConstants.XML_NS_URI, "xml:lang", documentationObj.language);
+        }
+        Element extensions = serializeExtensions(documentationObj);
+
+        serializeMarkup(documentationObj.markup);
+        endElement(extensions);
+    }
+
+    private void serializeElement(XmlSchemaElement elementObj)
+        throws XMLStreamException, XmlSchemaSerializerException {
+        startElement(SchemaConstruct.ELEMENT);
+        if (elementObj.getRef().getTargetQName() != null) {
+            attribute("ref", resolveQName(elementObj.getRef().getTargetQName()));
+        } else if (!elementObj.isAnonymous()) {
+            attribute("name", elementObj.getName());
+        }
+        if (elementObj.isAbstractElement()) {
+            attribute("abstract", "true");
+        }
+        if (elementObj.getBlock() != null && elementObj.getBlock() != XmlSchemaDerivationMethod.NONE) {
+            attribute("block", elementObj.getBlock().toString());
+        }
+        if (elementObj.getDefaultValue() != null) {
+            attribute("default", elementObj.getDefaultValue());
+        }
+        if (elementObj.getFinalDerivation() != null
+            && elementObj.getFinalDerivation() != XmlSchemaDerivationMethod.NONE) {
+            attribute("final", elementObj.getFinalDerivation().toString());
+        }
+        if (elementObj.getFixedValue() != null) {
+            attribute("fixed", elementObj.getFixedValue());
+        }
+        if (elementObj.isFormSpecified()) {
+            attribute("form", elementObj.getForm().toString());
+        }
+        if (elementObj.getId() != null) {
+            attribute("id", elementObj.getId());
+        }
+        serializeMaxMinOccurs(elementObj);
+        if (elementObj.getSubstitutionGroup() != null) {
+            attribute("substitutionGroup", resolveQName(elementObj.getSubstitutionGroup()));
+        }
+        if (elementObj.getSchemaTypeName() != null) {
+            attribute("type", resolveQName(elementObj.getSchemaTypeName()));
+        }
+        if (elementObj.isNillable()) {
+            attribute("nillable", "true");
+        }
+        Element extensions = serializeExtensions(elementObj);
+
+        serializeAnnotation(elementObj.getAnnotation());
+        if (elementObj.getSchemaType() != null && elementObj.getSchemaTypeName() == null) {
+            if (elementObj.getSchemaType() instanceof XmlSchemaComplexType) {
+                serializeComplexType((XmlSchemaComplexType)elementObj.getSchemaType());
+            } else if (elementObj.getSchemaType() instanceof XmlSchemaSimpleType) {
+                serializeSimpleType((XmlSchemaSimpleType)elementObj.getSchemaType());
+            }
+        }
+        for (XmlSchemaIdentityConstraint constraint : elementObj.getConstraints()) {
+            serializeIdentityConstraint(constraint);
+        }
+        endElement(extensions);
+    }
+
+    private void serializeFacet(XmlSchemaFacet facetObj)
+        throws XMLStreamException, XmlSchemaSerializerException {
+        if (facetObj instanceof XmlSchemaMinExclusiveFacet) {
+            startElement(SchemaConstruct.MIN_EXCLUSIVE);
+        } else if (facetObj instanceof XmlSchemaMinInclusiveFacet) {
+            startElement(SchemaConstruct.MIN_INCLUSIVE);
+        } else if (facetObj instanceof XmlSchemaMaxExclusiveFacet) {
+            startElement(SchemaConstruct.MAX_EXCLUSIVE);
+        } else if (facetObj instanceof XmlSchemaMaxInclusiveFacet) {
+            startElement(SchemaConstruct.MAX_INCLUSIVE);
+        } else if (facetObj instanceof XmlSchemaTotalDigitsFacet) {
+            startElement(SchemaConstruct.TOTAL_DIGITS);
+        } else if (facetObj instanceof XmlSchemaFractionDigitsFacet) {
+            startElement(SchemaConstruct.FRACTION_DIGITS);
+        } else if (facetObj instanceof XmlSchemaLengthFacet) {
+            startElement(SchemaConstruct.LENGTH);
+        } else if (facetObj instanceof XmlSchemaMinLengthFacet) {
+            startElement(SchemaConstruct.MIN_LENGTH);
+        } else if (facetObj instanceof XmlSchemaMaxLengthFacet) {
+            startElement(SchemaConstruct.MAX_LENGTH);
+        } else if (facetObj instanceof XmlSchemaEnumerationFacet) {
+            startElement(SchemaConstruct.ENUMERATION);
+        } else if (facetObj instanceof XmlSchemaWhiteSpaceFacet) {
+            startElement(SchemaConstruct.WHITE_SPACE);
+        } else if (facetObj instanceof XmlSchemaPatternFacet) {
+            startElement(SchemaConstruct.PATTERN);
+        } else {
+            throw new XmlSchemaSerializerException("facet not exist " + facetObj.getClass().getName());
+        }
+        attribute("value", facetObj.value.toString());
+        if (facetObj.fixed) {
+            attribute("fixed", "true");
+        }
+        if (facetObj.getId() != null) {
+            attribute("id", facetObj.getId());
+        }
+        Element extensions = serializeExtensions(facetObj);
+
+        serializeAnnotation(facetObj.getAnnotation());
+        endElement(extensions);
+    }
+
+    private void serializeGroup(XmlSchemaGroup groupObj)
+        throws XMLStreamException, XmlSchemaSerializerException {
+        startElement(SchemaConstruct.GROUP);
+        if (!groupObj.isAnonymous()) {
+            if (groupObj.getName().length() > 0) {
+                attribute("name", groupObj.getName());
+            }
+        } else {
+            throw new XmlSchemaSerializerException("Group must have name or ref");
+        }
+        Element extensions = serializeExtensions(groupObj);
+
+        serializeAnnotation(groupObj.getAnnotation());
+        serializeParticle(groupObj.getParticle());
+        endElement(extensions);
+    }
+
+    private void serializeGroupRef(XmlSchemaGroupRef groupRefObj)
+        throws XMLStreamException, XmlSchemaSerializerException {
+        startElement(SchemaConstruct.GROUP);
+        if (groupRefObj.getRefName() != null) {
+            attribute("ref", resolveQName(groupRefObj.getRefName()));
+        } else {
+            throw new XmlSchemaSerializerException("Group must have name or ref");
+        }
+        serializeMaxMinOccurs(groupRefObj);
+        Element extensions = serializeExtensions(groupRefObj);
+
+        serializeAnnotation(groupRefObj.getAnnotation());
+        endElement(extensions);
+    }
+
+    private void serializeIdentityConstraint(XmlSchemaIdentityConstraint constraintObj)
+        throws XMLStreamException, XmlSchemaSerializerException {
+        if (constraintObj instanceof XmlSchemaUnique) {
+            startElement(SchemaConstruct.UNIQUE);
+        } else if (constraintObj instanceof XmlSchemaKey) {
+            startElement(SchemaConstruct.KEY);
+        } else if (constraintObj instanceof XmlSchemaKeyref) {
+            startElement(SchemaConstruct.KEYREF);
+            XmlSchemaKeyref keyref = (XmlSchemaKeyref)constraintObj;
+            if (keyref.refer != null) {
+                attribute("refer", resolveQName(keyref.refer));
+            }
+        } else {
+            throw new XmlSchemaSerializerException("not valid identity constraint");
+        }
+        if (constraintObj.getName() != null) {
+            attribute("name", constraintObj.getName());
+        }
+        Element extensions = serializeExtensions(constraintObj);
+
+        serializeAnnotation(constraintObj.getAnnotation());
+        if (constraintObj.getSelector() != null) {
+            serializeXPath(SchemaConstruct.SELECTOR, constraintObj.getSelector());
+        }
+        for (XmlSchemaXPath field : constraintObj.getFields()) {
+            serializeXPath(SchemaConstruct.FIELD, field);
+        }
+        endElement(extensions);
+    }
+
+    private void serializeImport(XmlSchemaImport importObj) throws XMLStreamException {
+        startElement(SchemaConstruct.IMPORT);
+        if (importObj.namespace != null && !"".equals(importObj.namespace)) {
+            attribute("namespace", importObj.namespace);
+        }
+        String location = getSchemaLocation(importObj);
+        if (location != null && !location.trim().equals("")) {
+            attribute("schemaLocation", location);
+        }
+        if (importObj.getId() != null) {
+            attribute("id", importObj.getId());
+        }
+        Element extensions = serializeExtensions(importObj);
+
+        serializeAnnotation(importObj.getAnnotation());
+        endElement(extensions);
+    }
+
+    private void serializeInclude(XmlSchemaInclude includeObj) throws XMLStreamException {
+        startElement(SchemaConstruct.INCLUDE);
+        String location = getSchemaLocation(includeObj);
+        if (location != null) {
+            attribute("schemaLocation", location);
+        }
+        if (includeObj.getId() != null) {
+            attribute("id", includeObj.getId());
+        }
+        Element extensions = serializeExtensions(includeObj);
+
+        serializeAnnotation(includeObj.getAnnotation());
+        endElement(extensions);
+    }
+
+    private String getSchemaLocation(XmlSchemaExternal external) {
+        String location = null;
+        if (schemaLocations != null && external.getSchema() != null) {
+            location = schemaLocations.get(external.getSchema());
+        }
+        return location == null ? external.schemaLocation : location;
+    }
+
+    private void serializeParticle(XmlSchemaParticle particle)
+        throws XMLStreamException, XmlSchemaSerializerException {
+        if (particle instanceof XmlSchemaSequence) {
+            serializeSequence((XmlSchemaSequence)particle);
+        } else if (particle instanceof XmlSchemaChoice) {
+            serializeChoice((XmlSchemaChoice)particle);
+        } else if (particle instanceof XmlSchemaAll) {
+            serializeAll((XmlSchemaAll)particle);
+        } else if (particle instanceof XmlSchemaGroupRef) {
+            serializeGroupRef((XmlSchemaGroupRef)particle);
+        }
+    }
+
+    private void serializeRedefine(XmlSchemaRedefine redefineObj)
+        throws XMLStreamException, XmlSchemaSerializerException {
+        startElement(SchemaConstruct.REDEFINE);
+        String location = getSchemaLocation(redefineObj);
+        if (location != null) {
+            attribute("schemaLocation", location);
+        } else {
+            throw new XmlSchemaSerializerException("redefine must have schemaLocation fields fill");
+        }
+        if (redefineObj.getId() != null) {
+            attribute("id", redefineObj.getId());
+        }
+        Element extensions = serializeExtensions(redefineObj);
+
+        serializeAnnotation(redefineObj.getAnnotation());
+        for (XmlSchemaObject obj : redefineObj.getItems()) {
+            if (obj instanceof XmlSchemaSimpleType) {
+                serializeSimpleType((XmlSchemaSimpleType)obj);
+            } else if (obj instanceof XmlSchemaComplexType) {
+                serializeComplexType((XmlSchemaComplexType)obj);
+            } else if (obj instanceof XmlSchemaGroupRef) {
+                serializeGroupRef((XmlSchemaGroupRef)obj);
+            } else if (obj instanceof XmlSchemaGroup) {
+                serializeGroup((XmlSchemaGroup)obj);
+            } else if (obj instanceof XmlSchemaAttributeGroup) {
+                serializeAttributeGroup((XmlSchemaAttributeGroup)obj);
+            } else if (obj instanceof XmlSchemaAttributeGroupRef) {
+                serializeAttributeGroupRef((XmlSchemaAttributeGroupRef)obj);
+            }
+        }
+        endElement(extensions);
+    }
+
+    private void serializeSequence(XmlSchemaSequence sequenceObj)
+        throws XMLStreamException, XmlSchemaSerializerException {
+        startElement(SchemaConstruct.SEQUENCE);
+        if (sequenceObj.getId() != null) {
+            attribute("id", sequenceObj.getId());
+        }
+        serializeMaxMinOccurs(sequenceObj);
+        Element extensions = serializeExtensions(sequenceObj);
+
+        serializeAnnotation(sequenceObj.getAnnotation());
+        for (XmlSchemaSequenceMember obj : sequenceObj.getItems()) {
+            if (obj instanceof XmlSchemaElement) {
+                serializeElement((XmlSchemaElement)obj);
+            } else if (obj instanceof XmlSchemaGroupRef) {
+                serializeGroupRef((XmlSchemaGroupRef)obj);
+            } else if (obj instanceof XmlSchemaChoice) {
+                serializeChoice((XmlSchemaChoice)obj);
+            } else if (obj instanceof XmlSchemaSequence) {
+                serializeSequence((XmlSchemaSequence)obj);
+            } else if (obj instanceof XmlSchemaAny) {
+                serializeAny((XmlSchemaAny)obj);
+            }
+        }
+        endElement(extensions);
+    }
+
+    private void serializeSimpleContent(XmlSchemaSimpleContent simpleContentObj)
+        throws XMLStreamException, XmlSchemaSerializerException {
+        startElement(SchemaConstruct.SIMPLE_CONTENT);
+        Element extensions = serializeExtensions(simpleContentObj);
+
+        serializeAnnotation(simpleContentObj.getAnnotation());
+        if (simpleContentObj.content instanceof XmlSchemaSimpleContentRestriction) {
+            serializeSimpleContentRestriction((XmlSchemaSimpleContentRestriction)simpleContentObj.content);
+        } else if (simpleContentObj.content instanceof XmlSchemaSimpleContentExtension) {
+            serializeSimpleContentExtension((XmlSchemaSimpleContentExtension)simpleContentObj.content);
+        } else {
+            throw new XmlSchemaSerializerException("content of simple content "
+                                                   + "must be restriction or extension");
+        }
+        endElement(extensions);
+    }
+
+    private void serializeSimpleContentExtension(XmlSchemaSimpleContentExtension extensionObj)
+        throws XMLStreamException, XmlSchemaSerializerException {
+        startElement(SchemaConstruct.EXTENSION);
+        if (extensionObj.getBaseTypeName() != null) {
+            attribute("base", resolveQName(extensionObj.getBaseTypeName()));
+        }
+        if (extensionObj.getId() != null) {
+            attribute("id", extensionObj.getId());
+        }
+        Element extensions = serializeExtensions(extensionObj);
+
+        serializeAnnotation(extensionObj.getAnnotation());
+        serializeAttributes(extensionObj.getAttributes(), extensionObj.getAnyAttribute());
+        endElement(extensions);
+    }
+
+    private void serializeSimpleContentRestriction(XmlSchemaSimpleContentRestriction restrictionObj)
+        throws XMLStreamException, XmlSchemaSerializerException {
+        startElement(SchemaConstruct.RESTRICTION);
+        if (restrictionObj.getBaseTypeName() != null) {
+            attribute("base", resolveQName(restrictionObj.getBaseTypeName()));
+        }
+        if (restrictionObj.getId() != null) {
+            attribute("id", restrictionObj.getId());
+        }
+        Element extensions = serializeExtensions(restrictionObj);
+
+        serializeAnnotation(restrictionObj.getAnnotation());
+        if (restrictionObj.getBaseType() != null) {
+            serializeSimpleType(restrictionObj.getBaseType());
+        }
+        for (XmlSchemaFacet facet : restrictionObj.getFacets()) {
+            serializeFacet(facet);
+        }
+        serializeAttributes(restrictionObj.getAttributes(), restrictionObj.anyAttribute);
+        endElement(extensions);
+    }
+
+    private void serializeSimpleType(XmlSchemaSimpleType simpleTypeObj)
+        throws XMLStreamException, XmlSchemaSerializerException {
+        startElement(SchemaConstruct.SIMPLE_TYPE);
+        if (simpleTypeObj.getFinalDerivation() != null
+            && simpleTypeObj.getFinalDerivation() != XmlSchemaDerivationMethod.NONE) {
+            attribute("final", simpleTypeObj.getFinalDerivation().toString());
+        }
+        if (simpleTypeObj.getId() != null) {
+            attribute("id", simpleTypeObj.getId());
+        }
+        if (!simpleTypeObj.isAnonymous()) {
+            attribute("name", simpleTypeObj.getName());
+        }
+        Element extensions = serializeExtensions(simpleTypeObj);
+
+        serializeAnnotation(simpleTypeObj.getAnnotation());
+        if (simpleTypeObj.content instanceof XmlSchemaSimpleTypeRestriction) {
+            serializeSimpleTypeRestriction((XmlSchemaSimpleTypeRestriction)simpleTypeObj.content);
+        } else if (simpleTypeObj.content instanceof XmlSchemaSimpleTypeList) {
+            serializeSimpleTypeList((XmlSchemaSimpleTypeList)simpleTypeObj.content);
+        } else if (simpleTypeObj.content instanceof XmlSchemaSimpleTypeUnion) {
+            serializeSimpleTypeUnion((XmlSchemaSimpleTypeUnion)simpleTypeObj.content);
+        }
+        endElement(extensions);
+    }
+
+    private void serializeSimpleTypeList(XmlSchemaSimpleTypeList listObj)
+        throws XMLStreamException, XmlSchemaSerializerException {
+        startElement(SchemaConstruct.LIST);
+        if (listObj.itemTypeName != null) {
+            attribute("itemType", resolveQName(listObj.itemTypeName));
+        }
+        if (listObj.getId() != null) {
+            attribute("id", listObj.getId());
+        }
+        Element extensions = serializeExtensions(listObj);
+
+        serializeAnnotation(listObj.getAnnotation());
+        if (listObj.itemType != null && listObj.itemTypeName == null) {
+            serializeSimpleType(listObj.itemType);
+        }
+        endElement(extensions);
+    }
+
+    private void serializeSimpleTypeRestriction(XmlSchemaSimpleTypeRestriction restrictionObj)
+        throws XMLStreamException, XmlSchemaSerializerException {
+        startElement(SchemaConstruct.RESTRICTION);
+        if (restrictionObj.getBaseTypeName() != null) {
+            attribute("base", resolveQName(restrictionObj.getBaseTypeName()));
+        } else if (restrictionObj.getBaseType() == null) {
+            throw new XmlSchemaSerializerException("restriction must be define "
+                                                   + "with specifying base or inline simpleType");
+        }
+        if (restrictionObj.getId() != null) {
+            attribute("id", restrictionObj.getId());
+        }
+        Element extensions = serializeExtensions(restrictionObj);
+
+        serializeAnnotation(restrictionObj.getAnnotation());
+        if (restrictionObj.getBaseTypeName() == null) {
+            serializeSimpleType(restrictionObj.getBaseType());
+        }
+        for (XmlSchemaFacet facet : restrictionObj.getFacets()) {
+            serializeFacet(facet);
+        }
+        endElement(extensions);
+    }
+
+    private void serializeSimpleTypeUnion(XmlSchemaSimpleTypeUnion unionObj)
+        throws XMLStreamException, XmlSchemaSerializerException {
+        startElement(SchemaConstruct.UNION);
+        if (unionObj.getId() != null) {
+            attribute("id", unionObj.getId());
+        }
+        if (unionObj.getMemberTypesSource() != null) {
+            attribute("memberTypes", unionObj.getMemberTypesSource());
+        } else {
+            QName[] memberTypesQNames = unionObj.getMemberTypesQNames();
+            if (memberTypesQNames != null && memberTypesQNames.length > 0) {
+                StringBuilder memberTypes = new StringBuilder();
+                for (int i = 0; i < memberTypesQNames.length; i++) {
+                    if (i > 0) {
+                        memberTypes.append(' ');
+                    }
+                    memberTypes.append(resolveQName(memberTypesQNames[i]));
+                }
+                attribute("memberTypes", memberTypes.toString());
+            }
+        }
+        Element extensions = serializeExtensions(unionObj);
+
+        serializeAnnotation(unionObj.getAnnotation());
+        for (XmlSchemaSimpleType baseType : unionObj.getBaseTypes()) {
+            serializeSimpleType(baseType);
+        }
+        endElement(extensions);
+    }
+
+    private void serializeXPath(SchemaConstruct construct, XmlSchemaXPath xpathObj)
+        throws XMLStreamException, XmlSchemaSerializerException {
+        startElement(construct);
+        if (xpathObj.xpath != null) {
+            attribute("xpath", xpathObj.xpath);
+        } else {
+            throw new XmlSchemaSerializerException("xpath can't be null");
+        }
+        Element extensions = serializeExtensions(xpathObj);
+
+        serializeAnnotation(xpathObj.getAnnotation());
+        endElement(extensions);
+    }
+
+    private void serializeMaxMinOccurs(XmlSchemaParticle particle) {
+        if (particle.getMaxOccurs() < Long.MAX_VALUE
+            && (particle.getMaxOccurs() > 1 || particle.getMaxOccurs() == 0)) {
+            attribute("maxOccurs", Long.toString(particle.getMaxOccurs()));
+        } else if (particle.getMaxOccurs() == Long.MAX_VALUE) {
+            attribute("maxOccurs", "unbounded");
+        }
+        if (particle.getMinOccurs() > 1 || particle.getMinOccurs() == 0) {
+            attribute("minOccurs", Long.toString(particle.getMinOccurs()));
+        }
+    }
+
+    /**
+     * Let the extension serializers work on a detached element, add the attributes they set to the
+     * element being written and return the element if they added content for its end.
+     */
+    private Element serializeExtensions(XmlSchemaObject schemaObject) {
+        if (writer == null || extReg == null) {
+            return null;
+        }
+        Map<Object, Object> metaInfoMap = schemaObject.getMetaInfoMap();
+        if (metaInfoMap == null || metaInfoMap.isEmpty()) {
+            return null;
+        }
+        Element holder = getExtensionDocument().createElementNS(XSD_NAMESPACE, "extensions");
+        for (Object value : metaInfoMap.values()) {
+            extReg.serializeExtension(schemaObject, value.getClass(), holder);
+        }
+        NamedNodeMap attributes = holder.getAttributes();
+        for (int i = 0; i < attributes.getLength(); i++) {
+            Node attr = attributes.item(i);
+            attribute(attr.getNamespaceURI(), attr.getNodeName(), attr.getNodeValue());
+        }
+        return holder.getFirstChild() == null ? null : holder;
+    }
+
+    /**
+     * Will search whether the namespace already has a prefix. If not, a new prefix is chosen in the first
+     * pass and declared on the schema element.
+     */
+    private String resolveQName(QName name) {
+        String namespace = name.getNamespaceURI();
+        String localPart = name.getLocalPart();
+        int colon = localPart.indexOf(':');
+        if (colon > -1) {
+            localPart = localPart.substring(colon + 1);
+        }
+
+        String prefix = "".equals(namespace) ? "" : schemaNamespace.get(namespace);
+        if (prefix == null) {
+            if (Constants.XMLNS_URI.equals(namespace)) {
+                prefix = Constants.XMLNS_PREFIX;
+            } else if (XMLConstants.XML_NS_URI.equals(namespace)) {
+                prefix = XMLConstants.XML_NS_PREFIX;
+            } else {
+                int magicNumber = 0;
+                Collection<String> prefixes = schemaNamespace.values();
+                while (prefixes.contains("ns" + magicNumber)) {
+                    magicNumber++;
+                }
+                prefix = "ns" + magicNumber;
+                schemaNamespace.put(namespace, prefix);
+                declaredNamespaces.put(prefix, namespace);
+            }
+        }
+        return prefix.length() > 0 ? prefix + ":" + localPart : localPart;
+    }
+
+    private void startElement(SchemaConstruct construct) throws XMLStreamException {
+        if (writer == null) {
+            return;
+        }
+        startChild();
+        if (depth == elementContent.length) {
+            elementContent = Arrays.copyOf(elementContent, depth * 2);
+            mixedContent = Arrays.copyOf(mixedContent, depth * 2);
+        }
+        elementContent[depth] = false;
+        mixedContent[depth] = false;
+        depth++;
+        pendingElement = construct.getLocalName();
+    }
+
+    private void attribute(String name, String value) {
+        attribute(null, name, value);
+    }
+
+    private void attribute(String namespaceURI, String qualifiedName, String value) {
+        if (writer == null) {
+            return;
+        }
+        pendingAttributes.add(namespaceURI);
+        pendingAttributes.add(qualifiedName);
+        pendingAttributes.add(value);
+    }
+
+    private void endElement(Element extensions) throws XMLStreamException {
+        if (writer == null) {
+            return;
+        }
+        if (extensions != null) {
+            for (Node child = extensions.getFirstChild(); child != null; child = child.getNextSibling()) {
+                if (child.getNodeType() == Node.ELEMENT_NODE) {
+                    startChild();
+                } else if (pendingElement != null) {
+                    writePendingElement(false);
+                }
+                copyNode(child);
+            }
+        }
+        depth--;
+        if (pendingElement != null) {
+            writePendingElement(true);
+            return;
+        }
+        if (indentAmount > 0 && elementContent[depth] && !mixedContent[depth]) {
+            newLine(depth);
+        }
+        writer.writeEndElement();
+    }
+
+    // called before an element is written in the current element
+    private void startChild() throws XMLStreamException {
+        if (pendingElement != null) {
+            writePendingElement(false);
+        }
+        if (depth > 0) {
+            elementContent[depth - 1] = true;
+            if (indentAmount > 0 && !mixedContent[depth - 1]) {
+                newLine(depth);
+            }
+        }
+    }
+
+    private void serializeMarkup(NodeList markup) throws XMLStreamException {
+        if (writer == null || markup == null || markup.getLength() == 0) {
+            return;
+        }
+        if (pendingElement != null) {
+            writePendingElement(false);
+        }
+        // the markup is written as it is, without indentation
+        mixedContent[depth - 1] = true;
+        int length = markup.getLength();
+        for (int i = 0; i < length; i++) {
+            copyNode(markup.item(i));
+        }
+    }
+
+    private void writePendingElement(boolean empty) throws XMLStreamException {
+        if (empty) {
+            writer.writeEmptyElement(xsdPrefix, pendingElement, XSD_NAMESPACE);
+        } else {
+            writer.writeStartElement(xsdPrefix, pendingElement, XSD_NAMESPACE);
+        }
+        pendingElement = null;
+        int size = pendingAttributes.size();
+        for (int i = 0; i < size; i += 3) {
+            writeAttribute(pendingAttributes.get(i), pendingAttributes.get(i + 1),
+                           pendingAttributes.get(i + 2));
+        }
+        pendingAttributes.clear();
+    }
+
+    private void writeAttribute(String namespaceURI, String qualifiedName, String value)
+        throws XMLStreamException {
+        if (namespaceURI == null || namespaceURI.length() == 0) {
+            writer.writeAttribute(qualifiedName, value);
+            return;
+        }
+        int colon = qualifiedName.indexOf(':');
+        String prefix = colon > -1 ? qualifiedName.substring(0, colon) : "";
+        String localName = qualifiedName.substring(colon + 1);
+        if (XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(namespaceURI)) {
+            declareNamespace(colon > -1 ? localName : "", value);
+            return;
+        }
+        if (prefix.length() == 0) {
+            prefix = writer.getNamespaceContext().getPrefix(namespaceURI);
+            if (prefix == null || prefix.length() == 0) {
+                int count = 0;
+                prefix = "ns" + count;
+                while (!"".equals(getBoundNamespace(prefix))) {
+                    prefix = "ns" + ++count;
+                }
+            }
+        }
+        bindNamespace(prefix, namespaceURI);
+        writer.writeAttribute(prefix, namespaceURI, localName, value);
+    }
+
+    private void copyNode(Node node) throws XMLStreamException {
+        switch (node.getNodeType()) {
+        case Node.ELEMENT_NODE:
+            copyElement((Element)node);
+            break;
+        case Node.TEXT_NODE:
+            writer.writeCharacters(node.getNodeValue());
+            break;
+        case Node.CDATA_SECTION_NODE:
+            writer.writeCData(node.getNodeValue());
+            break;
+        case Node.COMMENT_NODE:
+            writer.writeComment(node.getNodeValue());
+            break;
+        case Node.PROCESSING_INSTRUCTION_NODE:
+            writer.writeProcessingInstruction(node.getNodeName(), node.getNodeValue());
+            break;
+        case Node.ENTITY_REFERENCE_NODE:
+            for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+                copyNode(child);
+            }
+            break;
+        default:
+            break;
+        }
+    }
+
+    private void copyElement(Element element) throws XMLStreamException {
+        String namespaceURI = element.getNamespaceURI() == null ? "" : element.getNamespaceURI();
+        String prefix = element.getPrefix() == null ? "" : element.getPrefix();
+        String localName = element.getLocalName() == null ? element.getNodeName() : element.getLocalName();
+        boolean empty = element.getFirstChild() == null;
+        if (empty) {
+            writer.writeEmptyElement(prefix, localName, namespaceURI);
+        } else {
+            writer.writeStartElement(prefix, localName, namespaceURI);
+        }
+        NamedNodeMap attributes = element.getAttributes();
+        int length = attributes.getLength();
+        // the declarations first, they may be used by the element or its attributes
+        for (int i = 0; i < length; i++) {
+            Node attr = attributes.item(i);
+            if (XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(attr.getNamespaceURI())) {
+                writeAttribute(attr.getNamespaceURI(), attr.getNodeName(), attr.getNodeValue());
+            }
+        }
+        bindNamespace(prefix, namespaceURI);
+        for (int i = 0; i < length; i++) {
+            Node attr = attributes.item(i);
+            if (!XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(attr.getNamespaceURI())) {
+                writeAttribute(attr.getNamespaceURI(), attr.getNodeName(), attr.getNodeValue());
+            }
+        }
+        if (!empty) {
+            for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+                copyNode(child);
+            }
+            writer.writeEndElement();
+        }
+    }
+
+    private String getBoundNamespace(String prefix) {
+        NamespaceContext context = writer.getNamespaceContext();
+        String uri = context == null ? null : context.getNamespaceURI(prefix);
+        return uri == null ? "" : uri;
+    }
+
+    // declare the namespace on the element just started, unless it is in scope already
+    private void bindNamespace(String prefix, String namespaceURI) throws XMLStreamException {
+        if (!XMLConstants.XML_NS_PREFIX.equals(prefix) && !namespaceURI.equals(getBoundNamespace(prefix))) {
+            declareNamespace(prefix, namespaceURI);
+        }
+    }
+
+    private void declareNamespace(String prefix, String namespaceURI) throws XMLStreamException {
+        if (prefix.length() == 0) {
+            writer.writeDefaultNamespace(namespaceURI);
+            writer.setDefaultNamespace(namespaceURI);
+        } else {
+            writer.writeNamespace(prefix, namespaceURI);
+            writer.setPrefix(prefix, namespaceURI);
+        }
+    }
+
+    private void newLine(int level) throws XMLStreamException {
+        int length = 1 + level * indentAmount;
+        if (indentChars.length < length) {
+            indentChars = new char[length * 2];
+            Arrays.fill(indentChars, ' ');
+            indentChars[0] = '\n';
+        }
+        writer.writeCharacters(indentChars, 0, length);
+    }
+
+    private synchronized XMLOutputFactory getOutputFactory() {
+        if (outputFactory == null) {
+            outputFactory = XMLOutputFactory.newInstance();
+        }
+        return outputFactory;
+    }
+
+    private Document getExtensionDocument() {
+        if (extensionDocument == null) {
+            try {
+                DocumentBuilderFactory docFac = DocumentBuilderFactory.newInstance();
+                docFac.setNamespaceAware(true);
+                extensionDocument = docFac.newDocumentBuilder().newDocument();
+            } catch (ParserConfigurationException e) {
+                throw new XmlSchemaException(e.getMessage());
+            }
+        }
+        return extensionDocument;
+    }
+
+    private static String getEncoding(XmlSchema schemaObj, Map<String, String> options) {
+        String encoding = options == null ? null : options.get(OutputKeys.ENCODING);
+        if (encoding == null || "".equals(encoding)) {
+            encoding = schemaObj.getInputEncoding();
+        }
+        if (encoding == null || "".equals(encoding)) {
+            encoding = DEFAULT_ENCODING;
+        }
+        return encoding;
+    }
+}
@@ -35,6 +35,8 @@ import java.util.Arrays;
 
 public abstract class XmlSchemaType extends XmlSchemaAnnotated implements XmlSchemaNamed {
 
+    private static final long serialVersionUID = 1L;
+
     private XmlSchemaDerivationMethod deriveBy;
     private XmlSchemaDerivationMethod finalDerivation;
     private XmlSchemaDerivationMethod finalResolved;
@@ -29,6 +29,8 @@ package org.apache.ws.commons.schema;
 
 public class XmlSchemaWhiteSpaceFacet extends XmlSchemaFacet {
 
+    private static final long serialVersionUID = 1L;
+
     /**
      * Creates new XmlSchemaWhiteSpaceFacet
      */
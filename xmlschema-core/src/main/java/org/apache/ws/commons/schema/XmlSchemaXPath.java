@@ -25,6 +25,8 @@ package org.apache.ws.commons.schema;
  */
 
 public class XmlSchemaXPath extends XmlSchemaAnnotated {
+    private static final long serialVersionUID = 1L;
+
     String xpath;
 
     /**
@@ -0,0 +1,321 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ws.commons.schema.cache;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.ws.commons.schema.XmlSchema;
+
+/**
+ * Thread-safe {@link SchemaCache} bounded by the total weight of the cached schemas. By default the weight
+ * of a schema is the number of its global items, plus one. When a new schema does not fit, the least
+ * recently used ({@link EvictionPolicy#LRU}) or the least frequently used ({@link EvictionPolicy#LFU})
+ * schemas are evicted.
+ * <br/>
+ * Loading is single-flight: while a thread loads the schema for a key, other threads asking for the same
+ * key wait for that load rather than reading the schema document again. A thread asking for a key it is
+ * loading itself, as happens with circular imports, or whose wait would close a cycle of waiting threads,
+ * calls its loader directly and does not cache the result.
+ */
+public class DefaultSchemaCache implements SchemaCache {
+
+    /**
+     * The schemas to evict first when the cache is full.
+     */
+    public enum EvictionPolicy {
+        /**
+         * Evict the least recently used schemas.
+         */
+        LRU,
+        /**
+         * Evict the least frequently used schemas. Among those used equally often, the oldest go first.
+         */
+        LFU
+    }
+
+    private final Object lock = new Object();
+    private final long maxWeight;
+    private final EvictionPolicy policy;
+    private final LinkedHashMap<SchemaCacheKey, Entry> entries;
+    private final Map<SchemaCacheKey, Thread> loading = new HashMap<SchemaCacheKey, Thread>();
+    private final Map<Thread, SchemaCacheKey> waiting = new HashMap<Thread, SchemaCacheKey>();
+    private long weight;
+    private long hitCount;
+    private long missCount;
+    private long loadCount;
+    private long evictionCount;
+
+    /**
+     * Create a cache with a weight bound and an eviction policy.
+     *
+     * @param maxWeight the maximum total weight of the cached schemas.
+     * @param policy the eviction policy.
+     */
+    public DefaultSchemaCache(long maxWeight, EvictionPolicy policy) {
+        if (maxWeight <= 0) {
+            throw new IllegalArgumentException("maxWeight must be positive: " + maxWeight);
+        }
+        if (policy == null) {
+            throw new IllegalArgumentException("policy must not be null");
+        }
+        this.maxWeight = maxWeight;
+        this.policy = policy;
+        entries = new LinkedHashMap<SchemaCacheKey, Entry>(16, 0.75f, policy == EvictionPolicy.LRU);
+    }
+
+    /**
+     * Create a least recently used cache with a weight bound.
+     *
+     * @param maxWeight the maximum total weight of the cached schemas.
+     */
+    public DefaultSchemaCache(long maxWeight) {
+        this(maxWeight, EvictionPolicy.LRU);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public XmlSchema get(SchemaCacheKey key, SchemaLoader loader) {
+        Thread current = Thread.currentThread();
+        boolean owner = false;
+        synchronized (lock) {
+            while (true) {
+                Entry entry = entries.get(key);
+                if (entry != null) {
+                    hitCount++;
+                    entry.uses++;
+                    return entry.schema;
+                }
+                Thread loadingThread = loading.get(key);
+                if (loadingThread == null) {
+                    missCount++;
+                    loading.put(key, current);
+                    owner = true;
+                    break;
+                }
+                if (loadingThread == current || waitsFor(loadingThread, current)) {
+                    missCount++;
+                    break;
+                }
+                waiting.put(current, key);
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    missCount++;
+                    break;
+                } finally {
+                    waiting.remove(current);
+                }
+            }
+        }
+        if (!owner) {
+            return loader.load();
+        }
+
+        XmlSchema schema = null;
+        try {
+            schema = loader.load();
+        } finally {
+            synchronized (lock) {
+                loading.remove(key);
+                loadCount++;
+                if (schema != null) {
+                    put(key, schema);
+                }
+                lock.notifyAll();
+            }
+        }
+        return schema;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void invalidate(SchemaCacheKey key) {
+        synchronized (lock) {
+            Entry entry = entries.remove(key);
+            if (entry != null) {
+                weight -= entry.weight;
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void clear() {
+        synchronized (lock) {
+            entries.clear();
+            weight = 0;
+        }
+    }
+
+    /**
+     * @return the number of cached schemas.
+     */
+    public int size() {
+        synchronized (lock) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * @return the total weight of the cached schemas.
+     */
+    public long getWeight() {
+        synchronized (lock) {
+            return weight;
+        }
+    }
+
+    /**
+     * @return the maximum total weight of the cached schemas.
+     */
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * @return the eviction policy.
+     */
+    public EvictionPolicy getEvictionPolicy() {
+        return policy;
+    }
+
+    /**
+     * @return the number of requests answered from the cache, including those that waited for the load of
+     *         another thread.
+     */
+    public long getHitCount() {
+        synchronized (lock) {
+            return hitCount;
+        }
+    }
+
+    /**
+     * @return the number of requests that had to call their loader.
+     */
+    public long getMissCount() {
+        synchronized (lock) {
+            return missCount;
+        }
+    }
+
+    /**
+     * @return the number of loads whose result was offered to the cache.
+     */
+    public long getLoadCount() {
+        synchronized (lock) {
+            return loadCount;
+        }
+    }
+
+    /**
+     * @return the number of schemas evicted to make room for others.
+     */
+    public long getEvictionCount() {
+        synchronized (lock) {
+            return evictionCount;
+        }
+    }
+
+    @Override
+    public String toString() {
+        synchronized (lock) {
+            return super.toString() + "[size=" + entries.size() + ", weight=" + weight + "/" + maxWeight
+                + ", hits=" + hitCount + ", misses=" + missCount + ", evictions=" + evictionCount + "]";
+        }
+    }
+
+    /**
+     * Compute the weight of a schema. Subclasses may override this to weigh schemas differently; the weight
+     * must be positive.
+     *
+     * @param schema the schema.
+     * @return the weight.
+     */
+    protected long weigh(XmlSchema schema) {
+        return 1 + schema.getItems().size();
+    }
+
+    private void put(SchemaCacheKey key, XmlSchema schema) {
+        long entryWeight = weigh(schema);
+        if (entryWeight > maxWeight) {
+            return;
+        }
+        Entry previous = entries.remove(key);
+        if (previous != null) {
+            weight -= previous.weight;
+        }
+        while (weight + entryWeight > maxWeight) {
+            evict();
+        }
+        entries.put(key, new Entry(schema, entryWeight));
+        weight += entryWeight;
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<SchemaCacheKey, Entry>> iterator = entries.entrySet().iterator();
+        Map.Entry<SchemaCacheKey, Entry> victim = iterator.next();
+        if (policy == EvictionPolicy.LFU) {
+            // entries are in insertion order, so the first of the least used is the oldest
+            while (iterator.hasNext()) {
+                Map.Entry<SchemaCacheKey, Entry> entry = iterator.next();
+                if (entry.getValue().uses < victim.getValue().uses) {
+                    victim = entry;
+                }
+            }
+        }
+        entries.remove(victim.getKey());
+        weight -= victim.getValue().weight;
+        evictionCount++;
+    }
+
+    /**
+     * Tell if a thread waits, directly or through other threads, for a schema that a given thread loads.
+     */
+    private boolean waitsFor(Thread thread, Thread target) {
+        for (int i = 0; thread != null && i <= waiting.size(); i++) {
+            SchemaCacheKey key = waiting.get(thread);
+            if (key == null) {
+                return false;
+            }
+            thread = loading.get(key);
+            if (thread == target) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class Entry {
+        final XmlSchema schema;
+        final long weight;
+        long uses;
+
+        Entry(XmlSchema schema, long weight) {
+            this.schema = schema;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ws.commons.schema.cache;
+
+import org.apache.ws.commons.schema.XmlSchema;
+
+/**
+ * A cache of the schemas that a schema collection resolves for includes, imports and redefines. A cache can
+ * be shared by any number of collections and threads, so that a schema document referenced by many
+ * documents is only read once. Register a cache with
+ * {@link org.apache.ws.commons.schema.XmlSchemaCollection#setSchemaCache(SchemaCache)}.
+ * <br/>
+ * A collection that gets a schema read by another collection registers it, and the schemas it refers to,
+ * among its own schemas, so that they are found by namespace and by component name. The parent of such a
+ * schema is still the collection that read it, and only freezing that collection freezes it.
+ * <br/>
+ * CAUTION: the cached XmlSchema objects are handed out to every user of the cache as they are. They must
+ * not be modified.
+ */
+public interface SchemaCache {
+    /**
+     * Return the schema cached under a key, calling the loader if there is none. Implementations must be
+     * thread-safe. A loader may itself resolve further schemas through the cache.
+     *
+     * @param key the key, which identifies the target namespace, schema location and base URI of the
+     *            reference to the schema.
+     * @param loader the loader for the schema.
+     * @return the schema, or null if the loader did not find one.
+     */
+    XmlSchema get(SchemaCacheKey key, SchemaLoader loader);
+
+    /**
+     * Remove the schema cached under a key, if any.
+     *
+     * @param key the key.
+     */
+    void invalidate(SchemaCacheKey key);
+
+    /**
+     * Remove all the cached schemas.
+     */
+    void clear();
+}
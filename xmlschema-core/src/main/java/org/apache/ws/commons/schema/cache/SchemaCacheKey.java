@@ -0,0 +1,94 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ws.commons.schema.cache;
+
+/**
+ * Key of a schema in a {@link SchemaCache}: the target namespace, schema location and base URI of a
+ * reference to the schema.
+ */
+public final class SchemaCacheKey {
+    private final String targetNamespace;
+    private final String schemaLocation;
+    private final String baseUri;
+
+    /**
+     * Create a key.
+     *
+     * @param targetNamespace the target namespace, or null.
+     * @param schemaLocation the schema location, or null.
+     * @param baseUri the base URI against which the location is resolved, or null.
+     */
+    public SchemaCacheKey(String targetNamespace, String schemaLocation, String baseUri) {
+        this.targetNamespace = targetNamespace;
+        this.schemaLocation = schemaLocation;
+        this.baseUri = baseUri;
+    }
+
+    /**
+     * @return the target namespace, or null.
+     */
+    public String getTargetNamespace() {
+        return targetNamespace;
+    }
+
+    /**
+     * @return the schema location, or null.
+     */
+    public String getSchemaLocation() {
+        return schemaLocation;
+    }
+
+    /**
+     * @return the base URI, or null.
+     */
+    public String getBaseUri() {
+        return baseUri;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = 1;
+        result = 31 * result + (targetNamespace == null ? 0 : targetNamespace.hashCode());
+        result = 31 * result + (schemaLocation == null ? 0 : schemaLocation.hashCode());
+        result = 31 * result + (baseUri == null ? 0 : baseUri.hashCode());
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof SchemaCacheKey)) {
+            return false;
+        }
+        SchemaCacheKey other = (SchemaCacheKey)obj;
+        return equal(targetNamespace, other.targetNamespace) && equal(schemaLocation, other.schemaLocation)
+            && equal(baseUri, other.baseUri);
+    }
+
+    @Override
+    public String toString() {
+        return "{" + targetNamespace + "}" + schemaLocation + " from " + baseUri;
+    }
+
+    private static boolean equal(String s1, String s2) {
+        return s1 == null ? s2 == null : s1.equals(s2);
+    }
+}
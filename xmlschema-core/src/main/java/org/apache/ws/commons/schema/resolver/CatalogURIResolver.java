@@ -0,0 +1,287 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ws.commons.schema.resolver;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * Resolves imports, includes and redefines to schema documents in a local store, as listed by an OASIS XML
+ * catalog or a properties manifest. A reference is looked up by its schema location resolved against the
+ * base URI, then by the schema location as written, then by its namespace; the first match is served
+ * from the file the catalog maps it to. References that are not in the catalog are passed to a fallback
+ * resolver, by default a {@link DefaultURIResolver}.
+ * <br/>
+ * The files of the store are memory mapped on first use and the mappings are kept, so resolving a
+ * reference does not touch the file system, and a document that is referenced many times is read from the
+ * file only once. The system ID of a served document is the URI of its file, which is also in the catalog,
+ * so that the relative references of the documents in the store are resolved in the store as well. The files
+ * must not change while the resolver is in use. This class is thread-safe once the catalogs are loaded.
+ */
+public class CatalogURIResolver implements CollectionURIResolver {
+    /**
+     * The namespace of OASIS XML catalogs.
+     */
+    public static final String CATALOG_NS = "urn:oasis:names:tc:entity:xmlns:xml:catalog";
+
+    private final ConcurrentMap<String, File> entries = new ConcurrentHashMap<String, File>();
+    private final ConcurrentMap<File, MappedByteBuffer> buffers =
+        new ConcurrentHashMap<File, MappedByteBuffer>();
+    private URIResolver fallback = new DefaultURIResolver();
+    private String collectionBaseURI;
+
+    /**
+     * Map a URI, schema location or namespace to a file of the store. The file is also mapped by its own
+     * URI.
+     *
+     * @param key the URI, schema location or namespace.
+     * @param file the file.
+     */
+    public void addEntry(String key, File file) {
+        File absolute = file.getAbsoluteFile();
+        entries.put(key, absolute);
+        entries.put(absolute.toURI().toString(), absolute);
+    }
+
+    /**
+     * Load a properties manifest. Each key is a URI, schema location or namespace, and each value the path
+     * of a file, relative to the directory of the manifest unless it is absolute.
+     *
+     * @param manifest the manifest.
+     * @throws IOException if the manifest cannot be read.
+     */
+    public void loadProperties(File manifest) throws IOException {
+        Properties properties = new Properties();
+        InputStream in = new FileInputStream(manifest);
+        try {
+            properties.load(in);
+        } finally {
+            in.close();
+        }
+        File directory = manifest.getAbsoluteFile().getParentFile();
+        for (Map.Entry<Object, Object> entry : properties.entrySet()) {
+            File file = new File((String)entry.getValue());
+            addEntry((String)entry.getKey(), file.isAbsolute() ? file : new File(directory, file.getPath()));
+        }
+    }
+
+    /**
+     * Load an OASIS XML catalog. The <code>system</code> entries map system IDs and the <code>uri</code>
+     * entries map URIs, schema locations or namespaces; the referenced URIs are resolved against the
+     * <code>xml:base</code> in scope or else the catalog, and must be file URIs. Other entries, such as
+     * rewrites, delegates and next catalogs, are ignored.
+     *
+     * @param catalog the catalog.
+     * @throws IOException if the catalog cannot be read, or refers to something other than a file.
+     */
+    public void loadCatalog(File catalog) throws IOException {
+        Document document;
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware(true);
+            document = factory.newDocumentBuilder().parse(catalog);
+        } catch (ParserConfigurationException e) {
+            throw new IOException(e.getMessage());
+        } catch (SAXException e) {
+            throw new IOException("Invalid catalog " + catalog + ": " + e.getMessage());
+        }
+        loadCatalogEntries(document.getDocumentElement(), catalog.getAbsoluteFile().toURI());
+    }
+
+    private void loadCatalogEntries(Element element, URI base) throws IOException {
+        String xmlBase = element.getAttributeNS("http://www.w3.org/XML/1998/namespace", "base");
+        if (xmlBase.length() > 0) {
+            base = base.resolve(xmlBase);
+        }
+        if (CATALOG_NS.equals(element.getNamespaceURI())) {
+            if ("system".equals(element.getLocalName())) {
+                addCatalogEntry(element.getAttribute("systemId"), element.getAttribute("uri"), base);
+            } else if ("uri".equals(element.getLocalName())) {
+                addCatalogEntry(element.getAttribute("name"), element.getAttribute("uri"), base);
+            }
+        }
+        for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeType() == Node.ELEMENT_NODE) {
+                loadCatalogEntries((Element)child, base);
+            }
+        }
+    }
+
+    private void addCatalogEntry(String key, String uri, URI base) throws IOException {
+        URI resolved = base.resolve(uri);
+        if (!"file".equals(resolved.getScheme())) {
+            throw new IOException("The catalog entry for " + key + " is not a file: " + resolved);
+        }
+        addEntry(key, new File(resolved));
+    }
+
+    /**
+     * Get the file that a reference resolves to.
+     *
+     * @param namespace the namespace of the reference.
+     * @param schemaLocation the schema location of the reference.
+     * @param baseUri the URI of the referencing document, or null.
+     * @return the file, or null if the reference is not in the catalog.
+     */
+    public File lookup(String namespace, String schemaLocation, String baseUri) {
+        File file = null;
+        if (baseUri != null) {
+            try {
+                file = entries.get(new URI(baseUri).resolve(new URI(schemaLocation)).toString());
+            } catch (URISyntaxException e) {
+                // not a URI reference; look it up as written
+            } catch (IllegalArgumentException e) {
+                // an opaque base URI
+            }
+        }
+        if (file == null) {
+            file = entries.get(schemaLocation);
+        }
+        if (file == null && namespace != null) {
+            file = entries.get(namespace);
+        }
+        return file;
+    }
+
+    public InputSource resolveEntity(String namespace, String schemaLocation, String baseUri) {
+        File file = lookup(namespace, schemaLocation, baseUri);
+        if (file == null) {
+            return fallback == null ? null : fallback.resolveEntity(namespace, schemaLocation, baseUri);
+        }
+        InputSource source = new InputSource(file.toURI().toString());
+        try {
+            source.setByteStream(new ByteBufferInputStream(getBuffer(file)));
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot read " + file + " for " + schemaLocation, e);
+        }
+        return source;
+    }
+
+    private ByteBuffer getBuffer(File file) throws IOException {
+        MappedByteBuffer buffer = buffers.get(file);
+        if (buffer == null) {
+            RandomAccessFile input = new RandomAccessFile(file, "r");
+            try {
+                FileChannel channel = input.getChannel();
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            } finally {
+                input.close();
+            }
+            MappedByteBuffer existing = buffers.putIfAbsent(file, buffer);
+            if (existing != null) {
+                buffer = existing;
+            }
+        }
+        // each reader gets its own position
+        return buffer.duplicate();
+    }
+
+    /**
+     * Get the resolver for the references that are not in the catalog.
+     *
+     * @return the resolver, or null if these references are not resolved.
+     */
+    public URIResolver getFallback() {
+        return fallback;
+    }
+
+    /**
+     * Set the resolver for the references that are not in the catalog. The default is a
+     * {@link DefaultURIResolver}.
+     *
+     * @param fallback the resolver, or null to leave these references unresolved.
+     */
+    public void setFallback(URIResolver fallback) {
+        this.fallback = fallback;
+        if (fallback instanceof CollectionURIResolver) {
+            ((CollectionURIResolver)fallback).setCollectionBaseURI(collectionBaseURI);
+        }
+    }
+
+    public String getCollectionBaseURI() {
+        return collectionBaseURI;
+    }
+
+    public void setCollectionBaseURI(String collectionBaseURI) {
+        this.collectionBaseURI = collectionBaseURI;
+        if (fallback instanceof CollectionURIResolver) {
+            ((CollectionURIResolver)fallback).setCollectionBaseURI(collectionBaseURI);
+        }
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(len, buffer.remaining());
+            buffer.get(b, off, count);
+            return count;
+        }
+
+        @Override
+        public long skip(long n) {
+            int count = (int)Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
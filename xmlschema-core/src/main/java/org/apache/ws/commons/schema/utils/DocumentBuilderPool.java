@@ -0,0 +1,167 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ws.commons.schema.utils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * Keeps the namespace aware document builders that a schema collection parses schema documents with, so
+ * that the parser factory is looked up and configured once and each builder is reset and used again rather
+ * than created for every document. This class is thread-safe: a builder is used by one thread at a time, and
+ * as many builders are created as there are threads parsing at once.
+ * <br/>
+ * The factory is configured through {@link #setFeature(String, boolean)} or by passing a configured
+ * factory to the constructor; subclasses can also override {@link #prepare(DocumentBuilder)} to set an
+ * entity resolver or error handler on each builder.
+ */
+public class DocumentBuilderPool {
+    /**
+     * The number of idle builders kept by default.
+     */
+    public static final int DEFAULT_MAX_IDLE = 8;
+
+    private final DocumentBuilderFactory factory;
+    private final int maxIdle;
+    private final List<DocumentBuilder> idle = new ArrayList<DocumentBuilder>();
+    // incremented when the factory changes, so that builders created before are dropped on release
+    private int generation;
+
+    /**
+     * Create a pool with a new factory and the default number of idle builders.
+     */
+    public DocumentBuilderPool() {
+        this(DocumentBuilderFactory.newInstance(), DEFAULT_MAX_IDLE);
+    }
+
+    /**
+     * Create a pool with the given factory, which is made namespace aware. The factory must not be changed
+     * other than through this pool afterwards.
+     *
+     * @param factory the factory.
+     * @param maxIdle the number of idle builders to keep.
+     */
+    public DocumentBuilderPool(DocumentBuilderFactory factory, int maxIdle) {
+        if (maxIdle < 0) {
+            throw new IllegalArgumentException("maxIdle cannot be negative");
+        }
+        factory.setNamespaceAware(true);
+        this.factory = factory;
+        this.maxIdle = maxIdle;
+    }
+
+    /**
+     * Set a feature of the factory. Builders created before are discarded as they are released.
+     *
+     * @param name the feature.
+     * @param value the value.
+     * @throws ParserConfigurationException if the factory does not support the feature.
+     */
+    public void setFeature(String name, boolean value) throws ParserConfigurationException {
+        synchronized (factory) {
+            factory.setFeature(name, value);
+            idle.clear();
+            generation++;
+        }
+    }
+
+    /**
+     * Set the secure processing feature of the factory, {@link XMLConstants#FEATURE_SECURE_PROCESSING},
+     * which limits the resources a document can make the parser use.
+     *
+     * @param secure whether to process securely.
+     * @throws ParserConfigurationException if the factory does not support the feature.
+     */
+    public void setSecureProcessing(boolean secure) throws ParserConfigurationException {
+        setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, secure);
+    }
+
+    /**
+     * Parse a document with a builder from the pool.
+     *
+     * @param inputSource the document.
+     * @return the parsed document.
+     * @throws ParserConfigurationException if no builder can be created.
+     * @throws IOException if the document cannot be read.
+     * @throws SAXException if the document is not well formed.
+     */
+    public Document parse(InputSource inputSource) throws ParserConfigurationException, IOException,
+        SAXException {
+        int builderGeneration;
+        DocumentBuilder builder;
+        synchronized (factory) {
+            builderGeneration = generation;
+            builder = idle.isEmpty() ? null : idle.remove(idle.size() - 1);
+            if (builder == null) {
+                builder = factory.newDocumentBuilder();
+            }
+        }
+        try {
+            prepare(builder);
+            return builder.parse(inputSource);
+        } finally {
+            release(builder, builderGeneration);
+        }
+    }
+
+    /**
+     * Prepare a builder before it parses a document. This is called for each document, since resetting a
+     * builder takes back its entity resolver and error handler. The default does nothing.
+     *
+     * @param builder the builder.
+     */
+    protected void prepare(DocumentBuilder builder) {
+    }
+
+    /**
+     * Get the number of idle builders in the pool.
+     *
+     * @return the number.
+     */
+    public int getIdleCount() {
+        synchronized (factory) {
+            return idle.size();
+        }
+    }
+
+    private void release(DocumentBuilder builder, int builderGeneration) {
+        try {
+            builder.reset();
+        } catch (UnsupportedOperationException e) {
+            // a parser that cannot be reset is not used again
+            return;
+        }
+        synchronized (factory) {
+            if (builderGeneration == generation && idle.size() < maxIdle) {
+                idle.add(builder);
+            }
+        }
+    }
+}
@@ -116,6 +116,16 @@ public final class NodeNamespaceContext implements NamespacePrefixList, Serializ
         return new NodeNamespaceContext(declarations);
     }
 
+    /**
+     * Creates a new instance from prefix declarations that were collected without a DOM tree, for example
+     * from a StAX reader.
+     *
+     * @param pDeclarations map of prefixes to namespace URIs; the default namespace has the prefix "".
+     */
+    public static NodeNamespaceContext getNamespaceContext(Map<String, String> pDeclarations) {
+        return new NodeNamespaceContext(new HashMap<String, String>(pDeclarations));
+    }
+
     public String[] getDeclaredPrefixes() {
         if (prefixes == null) {
             Collection<String> keys = declarations.keySet();
@@ -0,0 +1,130 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ws.commons.schema.utils;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+
+/**
+ * Shares equal strings and qualified names among the objects of a schema collection, so that a name or
+ * namespace used by many components is kept once. Unlike {@link String#intern()}, the values are released
+ * with the collection, see {@link org.apache.ws.commons.schema.XmlSchemaCollection#getInterner()}.
+ * <br/>
+ * Qualified names that differ only in prefix are equal, but are kept apart so that the prefix of the
+ * result is the one asked for. This class is thread-safe.
+ */
+public final class QNameInterner {
+    private final ConcurrentMap<String, String> strings = new ConcurrentHashMap<String, String>();
+    private final ConcurrentMap<String, ConcurrentMap<QName, QName>> qnamesByPrefix =
+        new ConcurrentHashMap<String, ConcurrentMap<QName, QName>>();
+
+    /**
+     * Return the shared string equal to the given one.
+     *
+     * @param value the string, or null.
+     * @return the shared string, or null if the value is null.
+     */
+    public String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        String result = strings.putIfAbsent(value, value);
+        return result == null ? value : result;
+    }
+
+    /**
+     * Return the shared qualified name without a prefix.
+     *
+     * @param namespaceURI the namespace, with null the same as no namespace.
+     * @param localPart the local name.
+     * @return the shared name.
+     */
+    public QName intern(String namespaceURI, String localPart) {
+        return intern(namespaceURI, localPart, XMLConstants.DEFAULT_NS_PREFIX);
+    }
+
+    /**
+     * Return the shared qualified name.
+     *
+     * @param namespaceURI the namespace, with null the same as no namespace.
+     * @param localPart the local name.
+     * @param prefix the prefix.
+     * @return the shared name.
+     */
+    public QName intern(String namespaceURI, String localPart, String prefix) {
+        return intern(new QName(namespaceURI, localPart, prefix));
+    }
+
+    /**
+     * Return the shared qualified name equal to the given one and with the same prefix.
+     *
+     * @param qname the name, or null.
+     * @return the shared name, or null if the name is null.
+     */
+    public QName intern(QName qname) {
+        if (qname == null) {
+            return null;
+        }
+        ConcurrentMap<QName, QName> qnames = qnamesByPrefix.get(qname.getPrefix());
+        if (qnames == null) {
+            qnames = new ConcurrentHashMap<QName, QName>();
+            ConcurrentMap<QName, QName> existing = qnamesByPrefix.putIfAbsent(intern(qname.getPrefix()),
+                                                                              qnames);
+            if (existing != null) {
+                qnames = existing;
+            }
+        }
+        QName result = qnames.get(qname);
+        if (result == null) {
+            QName shared = new QName(intern(qname.getNamespaceURI()), intern(qname.getLocalPart()),
+                                     intern(qname.getPrefix()));
+            result = qnames.putIfAbsent(shared, shared);
+            if (result == null) {
+                result = shared;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Tell how many distinct strings are shared, including those of the qualified names.
+     *
+     * @return the number of strings.
+     */
+    public int getStringCount() {
+        return strings.size();
+    }
+
+    /**
+     * Tell how many distinct qualified names are shared.
+     *
+     * @return the number of names.
+     */
+    public int getQNameCount() {
+        int count = 0;
+        for (ConcurrentMap<QName, QName> qnames : qnamesByPrefix.values()) {
+            count += qnames.size();
+        }
+        return count;
+    }
+}
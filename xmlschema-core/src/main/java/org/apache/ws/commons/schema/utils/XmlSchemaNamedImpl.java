@@ -22,8 +22,10 @@ package org.apache.ws.commons.schema.utils;
 import javax.xml.namespace.QName;
 
 import org.apache.ws.commons.schema.XmlSchema;
+import org.apache.ws.commons.schema.XmlSchemaCollection;
 import org.apache.ws.commons.schema.XmlSchemaException;
 
+import java.io.Serializable;
 import java.util.Arrays;
 
 /**
@@ -39,7 +41,9 @@ import java.util.Arrays;
  * book-keeping.
  * 
  */
-public class XmlSchemaNamedImpl implements XmlSchemaNamed {
+public class XmlSchemaNamedImpl implements XmlSchemaNamed, Serializable {
+
+    private static final long serialVersionUID = 1L;
     
     protected XmlSchema parentSchema;
     /*
@@ -122,7 +126,12 @@ public class XmlSchemaNamedImpl implements XmlSchemaNamed {
             if (refTwin != null && refTwin.getTargetQName() != null) {
                 throw new XmlSchemaException("Attempt to set name on object with ref='xxx'");
             }
-            qname = new QName(parentSchema.getLogicalTargetNamespace(), name);
+            XmlSchemaCollection collection = parentSchema.getParent();
+            if (collection == null) {
+                qname = new QName(parentSchema.getLogicalTargetNamespace(), name);
+            } else {
+                qname = collection.getInterner().intern(parentSchema.getLogicalTargetNamespace(), name);
+            }
         }
     }
     
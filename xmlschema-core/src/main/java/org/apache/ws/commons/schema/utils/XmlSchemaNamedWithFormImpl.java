@@ -31,6 +31,8 @@ import java.util.Arrays;
  *
  */
 public class XmlSchemaNamedWithFormImpl extends XmlSchemaNamedImpl implements XmlSchemaNamedWithForm {
+    private static final long serialVersionUID = 1L;
+
     private XmlSchemaForm form = XmlSchemaForm.NONE;
     private boolean element;
     private QName wireName;
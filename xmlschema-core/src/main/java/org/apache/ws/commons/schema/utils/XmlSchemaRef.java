@@ -19,6 +19,8 @@
 
 package org.apache.ws.commons.schema.utils;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 
 import org.apache.ws.commons.schema.XmlSchema;
 import org.apache.ws.commons.schema.XmlSchemaAttribute;
@@ -33,6 +35,8 @@ import org.apache.ws.commons.schema.XmlSchemaType;
  * Implementation for ref='QName', a common construct in the schema.
  */
 public class XmlSchemaRef<T extends XmlSchemaNamed> extends XmlSchemaRefBase {
+    private static final long serialVersionUID = 1L;
+
     private Class<? extends T> targetClass;
     private T targetObject;
 
@@ -48,6 +52,13 @@ public class XmlSchemaRef<T extends XmlSchemaNamed> extends XmlSchemaRefBase {
 
     public T getTarget() {
 
+        if (targetObject != null) {
+            XmlSchema targetSchema = targetObject.getParent();
+            if (targetSchema != null && targetSchema.isReplaced()) {
+                // the schema of the target was read again
+                targetObject = null;
+            }
+        }
         if (targetObject == null && targetQName != null) {
             Class<?> cls = targetClass;
             XmlSchemaCollection parentCollection = parent.getParent();
@@ -68,6 +79,16 @@ public class XmlSchemaRef<T extends XmlSchemaNamed> extends XmlSchemaRefBase {
         return targetObject;
     }
 
+    /**
+     * Resolve the target before the reference is serialized, so that it is restored already linked.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        if (parent.getParent() != null) {
+            getTarget();
+        }
+        out.defaultWriteObject();
+    }
+
     @Override
     public String toString() {
         return "XmlSchemaRef: " + targetClass.getName() + " " + targetQName;
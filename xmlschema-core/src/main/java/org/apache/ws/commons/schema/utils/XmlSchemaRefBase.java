@@ -19,12 +19,16 @@
 
 package org.apache.ws.commons.schema.utils;
 
+import java.io.Serializable;
+
 import javax.xml.namespace.QName;
 
 import org.apache.ws.commons.schema.XmlSchema;
 import org.apache.ws.commons.schema.XmlSchemaException;
 
-public abstract class XmlSchemaRefBase {
+public abstract class XmlSchemaRefBase implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     protected XmlSchema parent;
     protected QName targetQName;
@@ -0,0 +1,68 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ws.commons.schema;
+
+import java.io.File;
+
+import javax.xml.namespace.QName;
+
+import org.xml.sax.InputSource;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import tests.Resources;
+
+/**
+ * The index of the external components of a schema is not rebuilt for every change while schemas that
+ * include each other are read.
+ */
+public class ExternalComponentsTest extends Assert {
+    private static final String NS = "urn:xmlschema:circular-include";
+
+    @Test
+    public void testCircularIncludeBuild() throws Exception {
+        XmlSchemaCollection schemaCol = new XmlSchemaCollection();
+        String systemId = new File(Resources.asURI("circular-include/a.xsd")).toURI().toString();
+        XmlSchema a = schemaCol.read(new InputSource(systemId));
+        XmlSchema b = ((XmlSchemaInclude)a.getExternals().get(0)).getSchema();
+        assertSame(a, ((XmlSchemaInclude)b.getExternals().get(0)).getSchema());
+        // once for each change of the externals, not for each component
+        assertTrue(a.indexBuilds + " " + b.indexBuilds, a.indexBuilds <= 2 && b.indexBuilds <= 2);
+
+        int aBuilds = a.indexBuilds;
+        int bBuilds = b.indexBuilds;
+        for (int i = 0; i < 10; i++) {
+            assertNotNull(a.getTypeByName(new QName(NS, "B" + i)));
+            assertNotNull(b.getTypeByName(new QName(NS, "A" + i)));
+            assertNull(a.getTypeByName(new QName(NS, "C" + i)));
+            assertNull(b.getTypeByName(new QName(NS, "C" + i)));
+        }
+        assertEquals(aBuilds, a.indexBuilds);
+        assertEquals(bBuilds, b.indexBuilds);
+
+        // a new type of b is indexed again for a, but not for b itself
+        new XmlSchemaSimpleType(b, true).setName("C0");
+        assertNotNull(a.getTypeByName(new QName(NS, "C0")));
+        assertNull(b.getTypeByName(new QName(NS, "C1")));
+        assertEquals(aBuilds + 1, a.indexBuilds);
+        assertEquals(bBuilds, b.indexBuilds);
+    }
+}
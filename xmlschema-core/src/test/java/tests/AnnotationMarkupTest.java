@@ -0,0 +1,143 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package tests;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.xml.stream.XMLInputFactory;
+
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+
+import org.apache.ws.commons.schema.AnnotationMarkupMode;
+import org.apache.ws.commons.schema.XmlSchema;
+import org.apache.ws.commons.schema.XmlSchemaAnnotationItem;
+import org.apache.ws.commons.schema.XmlSchemaAppInfo;
+import org.apache.ws.commons.schema.XmlSchemaCollection;
+import org.apache.ws.commons.schema.XmlSchemaDocumentation;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * The annotation markup modes keep the same annotation items, with their markup copied, copied on demand
+ * or dropped.
+ */
+public class AnnotationMarkupTest extends Assert {
+
+    @Test
+    public void testLazyMarkup() throws Exception {
+        XmlSchema eager = read(AnnotationMarkupMode.EAGER, false);
+        XmlSchema lazy = read(AnnotationMarkupMode.LAZY, false);
+        assertEquals(serialize(eager), serialize(lazy));
+
+        List<XmlSchemaAnnotationItem> items = lazy.getAnnotation().getItems();
+        NodeList markup = ((XmlSchemaAppInfo)items.get(0)).getMarkup();
+        assertEquals(1, markup.getLength());
+        assertEquals("testing101", markup.item(0).getNodeValue());
+        assertSame(markup.item(0), markup.item(0));
+        // a copy, not the node of the source document
+        assertNull(markup.item(0).getParentNode().getParentNode());
+
+        // a stream cannot be read again later, so the markup is copied
+        assertEquals(serialize(eager), serialize(read(AnnotationMarkupMode.LAZY, true)));
+    }
+
+    @Test
+    public void testLazyMarkupConcurrentReads() throws Exception {
+        final String expected = serialize(read(AnnotationMarkupMode.EAGER, false));
+        final XmlSchema lazy = read(AnnotationMarkupMode.LAZY, false);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<Future<String>>();
+            for (int i = 0; i < 16; i++) {
+                results.add(executor.submit(new Callable<String>() {
+                    public String call() throws Exception {
+                        return serialize(lazy);
+                    }
+                }));
+            }
+            for (Future<String> result : results) {
+                assertEquals(expected, result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testDroppedMarkup() throws Exception {
+        for (boolean stream : new boolean[] {false, true}) {
+            XmlSchema eager = read(AnnotationMarkupMode.EAGER, stream);
+            XmlSchema dropped = read(AnnotationMarkupMode.DROP, stream);
+            List<XmlSchemaAnnotationItem> eagerItems = eager.getAnnotation().getItems();
+            List<XmlSchemaAnnotationItem> droppedItems = dropped.getAnnotation().getItems();
+            assertEquals(eagerItems.size(), droppedItems.size());
+
+            XmlSchemaAppInfo appInfo = (XmlSchemaAppInfo)droppedItems.get(0);
+            assertEquals("http://test101/source/appinfo", appInfo.getSource());
+            assertNull(appInfo.getMarkup());
+            XmlSchemaDocumentation documentation = (XmlSchemaDocumentation)droppedItems.get(1);
+            assertEquals("en", documentation.getLanguage());
+            assertNull(documentation.getMarkup());
+
+            // items that had only markup are kept, empty ones are not
+            String[] types = {"emptyAppinfo", "emptyDocumentation", "emptyAppinfoDocumentation"};
+            for (String type : types) {
+                assertEquals(eager.getTypeByName(type).getAnnotation().getItems().size(),
+                             dropped.getTypeByName(type).getAnnotation().getItems().size());
+            }
+            serialize(dropped);
+        }
+    }
+
+    private static XmlSchema read(AnnotationMarkupMode mode, boolean stream) throws Exception {
+        File file = new File(Resources.asURI("annotation.xsd"));
+        XmlSchemaCollection schemaCol = new XmlSchemaCollection();
+        schemaCol.setAnnotationMarkupMode(mode);
+        if (!stream) {
+            return schemaCol.read(new InputSource(file.toURI().toString()));
+        }
+        InputStream in = new FileInputStream(file);
+        try {
+            return schemaCol.read(XMLInputFactory.newInstance()
+                .createXMLStreamReader(file.toURI().toString(), in));
+        } finally {
+            in.close();
+        }
+    }
+
+    private static String serialize(XmlSchema schema) throws Exception {
+        StringWriter writer = new StringWriter();
+        schema.write(writer);
+        return writer.toString();
+    }
+}
@@ -0,0 +1,160 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package tests;
+
+import java.io.File;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.namespace.QName;
+import javax.xml.transform.stream.StreamSource;
+
+import org.xml.sax.InputSource;
+
+import org.apache.ws.commons.schema.XmlSchema;
+import org.apache.ws.commons.schema.XmlSchemaCollection;
+import org.apache.ws.commons.schema.XmlSchemaException;
+import org.apache.ws.commons.schema.resolver.DefaultURIResolver;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Asynchronous reads into the same collection are serialized, and fetch the referenced documents on their
+ * executor.
+ */
+public class AsyncReadTest extends Assert {
+    private static final String[] SCHEMAS = {
+        "importBase.xsd", "circular/a.xsd", "redefine-include/redefine-import1.xsd",
+        "WSCOMMONS-87/includeBase.xsd", "XMLSCHEMA-8/a/b/c/s1.xsd"
+    };
+
+    @Test
+    public void testConcurrentReads() throws Exception {
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            XmlSchemaCollection collection = new XmlSchemaCollection();
+            List<Future<XmlSchema>> futures = new ArrayList<Future<XmlSchema>>();
+            for (String name : SCHEMAS) {
+                futures.add(collection.readAsync(new InputSource(systemId(name)), executorService));
+            }
+            for (int i = 0; i < SCHEMAS.length; i++) {
+                XmlSchema schema = futures.get(i).get();
+                assertEquals(systemId(SCHEMAS[i]), schema.getSourceURI());
+                assertSame(schema, collection.getXmlSchema(systemId(SCHEMAS[i]))[0]);
+            }
+
+            XmlSchemaCollection sequential = new XmlSchemaCollection();
+            for (String name : SCHEMAS) {
+                sequential.read(new InputSource(systemId(name)));
+            }
+            assertEquals(sequential.getXmlSchemas().length, collection.getXmlSchemas().length);
+            assertNotNull(collection.getTypeByQName(new QName("http://soapinterop.org/xsd2", "SOAPStruct")));
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    public void testReferencesFetchedOnExecutor() throws Exception {
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            final AtomicInteger tasks = new AtomicInteger();
+            final Executor executor = executorService;
+            Executor counting = new Executor() {
+                public void execute(Runnable command) {
+                    tasks.incrementAndGet();
+                    executor.execute(command);
+                }
+            };
+            XmlSchemaCollection collection = new XmlSchemaCollection();
+            XmlSchema schema = collection.readAsync(new StreamSource(systemId("importBase.xsd")), counting)
+                .get();
+            assertNotNull(schema.getTypeByName(new QName("http://soapinterop.org/xsd2", "SOAPStruct")));
+            // the read itself and the prefetching of the imported document
+            assertTrue(tasks.get() > 1);
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    public void testReferencesResolvedOnce() throws Exception {
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        try {
+            final ConcurrentMap<String, AtomicInteger> resolutions =
+                new ConcurrentHashMap<String, AtomicInteger>();
+            XmlSchemaCollection collection = new XmlSchemaCollection();
+            collection.setSchemaResolver(new DefaultURIResolver() {
+                @Override
+                public InputSource resolveEntity(String namespace, String schemaLocation, String baseUri) {
+                    resolutions.putIfAbsent(schemaLocation, new AtomicInteger());
+                    resolutions.get(schemaLocation).incrementAndGet();
+                    return super.resolveEntity(namespace, schemaLocation, baseUri);
+                }
+            });
+            XmlSchema schema = collection.readAsync(new InputSource(systemId("circular/a.xsd")),
+                                                    executorService).get();
+            assertNotNull(schema);
+            assertFalse(resolutions.isEmpty());
+            for (Map.Entry<String, AtomicInteger> entry : resolutions.entrySet()) {
+                assertEquals(entry.getKey(), 1, entry.getValue().get());
+            }
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    public void testFailedRead() throws Exception {
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            XmlSchemaCollection collection = new XmlSchemaCollection();
+            Future<XmlSchema> future = collection.readAsync(new InputSource(new StringReader("<schema")),
+                                                            executorService);
+            try {
+                future.get();
+                fail();
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof XmlSchemaException);
+            }
+            // the collection can still be read into
+            XmlSchema schema = collection.readAsync(new InputSource(systemId("importAux.xsd")),
+                                                    executorService).get();
+            assertSame(schema, collection.schemaForNamespace("http://soapinterop.org/xsd2"));
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    private static String systemId(String name) throws Exception {
+        return new File(Resources.asURI(name)).toURI().toString();
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package tests;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+
+import javax.xml.namespace.QName;
+
+import org.xml.sax.InputSource;
+
+import org.apache.ws.commons.schema.XmlSchema;
+import org.apache.ws.commons.schema.XmlSchemaCollection;
+import org.apache.ws.commons.schema.XmlSchemaImport;
+import org.apache.ws.commons.schema.resolver.CatalogURIResolver;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * References listed in a catalog are served from the local store, including the relative references of the
+ * documents in the store.
+ */
+public class CatalogResolverTest extends Assert {
+    private static final String NS = "http://soapinterop.org/xsd";
+    private static final String NS2 = "http://soapinterop.org/xsd2";
+    private static final String REMOTE_BASE = "http://example.org/schemas/base.xsd";
+
+    @Test
+    public void testXmlCatalog() throws Exception {
+        File resources = new File(Resources.asURI("importBase.xsd")).getAbsoluteFile().getParentFile();
+        File catalog = write("catalog.xml",
+            "<catalog xmlns='urn:oasis:names:tc:entity:xmlns:xml:catalog' xml:base='"
+            + resources.toURI() + "'>"
+            + "<system systemId='" + REMOTE_BASE + "' uri='importBase.xsd'/>"
+            + "<group><uri name='" + NS2 + "' uri='importAux.xsd'/></group>"
+            + "<rewriteSystem systemIdStartString='http://example.org/' rewritePrefix='unused/'/>"
+            + "</catalog>");
+        CatalogURIResolver resolver = new CatalogURIResolver();
+        resolver.loadCatalog(catalog);
+
+        XmlSchemaCollection schemaCol = new XmlSchemaCollection();
+        schemaCol.setSchemaResolver(resolver);
+        XmlSchema schema = schemaCol.read(new InputSource(new StringReader(importing(REMOTE_BASE))));
+
+        XmlSchema base = ((XmlSchemaImport)schema.getExternals().get(0)).getSchema();
+        assertNotNull(base);
+        assertEquals(new File(resources, "importBase.xsd").toURI().toString(), base.getSourceURI());
+        // the relative import of the base schema is resolved to the store through the file URI
+        XmlSchema aux = schemaCol.schemaForNamespace(NS2);
+        assertNotNull(aux);
+        assertEquals(new File(resources, "importAux.xsd").toURI().toString(), aux.getSourceURI());
+        assertNotNull(schemaCol.getTypeByQName(new QName(NS2, "SOAPStruct")));
+
+        // a namespace entry matches whatever the location
+        assertEquals(new File(resources, "importAux.xsd"), resolver.lookup(NS2, "elsewhere.xsd", null));
+        assertNull(resolver.lookup("urn:unknown", "elsewhere.xsd", null));
+    }
+
+    @Test
+    public void testPropertiesManifest() throws Exception {
+        File aux = new File(Resources.asURI("importAux.xsd")).getAbsoluteFile();
+        String path = aux.getPath().replace('\\', '/');
+        File manifest = write("catalog.properties", "http\\://example.org/schemas/aux.xsd=" + path + "\n");
+        CatalogURIResolver resolver = new CatalogURIResolver();
+        resolver.loadProperties(manifest);
+
+        // relative to a base URI, and as written
+        assertEquals(aux, resolver.lookup(NS2, "aux.xsd", REMOTE_BASE));
+        assertEquals(aux, resolver.lookup(NS2, "http://example.org/schemas/aux.xsd", null));
+        InputSource source = resolver.resolveEntity(NS2, "aux.xsd", REMOTE_BASE);
+        assertEquals(aux.toURI().toString(), source.getSystemId());
+        assertNotNull(source.getByteStream());
+        assertEquals(aux.length(), source.getByteStream().available());
+
+        XmlSchemaCollection schemaCol = new XmlSchemaCollection();
+        schemaCol.setSchemaResolver(resolver);
+        for (int i = 0; i < 2; i++) {
+            InputSource input = new InputSource(new StringReader(importing("aux.xsd")));
+            input.setSystemId("http://example.org/schemas/importing" + i + ".xsd");
+            schemaCol.read(input);
+        }
+        assertNotNull(schemaCol.schemaForNamespace(NS2));
+    }
+
+    @Test
+    public void testFallback() throws Exception {
+        CatalogURIResolver resolver = new CatalogURIResolver();
+        String systemId = new File(Resources.asURI("importBase.xsd")).toURI().toString();
+        XmlSchemaCollection schemaCol = new XmlSchemaCollection();
+        schemaCol.setSchemaResolver(resolver);
+        schemaCol.read(new InputSource(systemId));
+        assertNotNull(schemaCol.schemaForNamespace(NS2));
+
+        resolver.setFallback(null);
+        assertNull(resolver.resolveEntity(NS2, "importAux.xsd", systemId));
+    }
+
+    private static String importing(String location) {
+        return "<schema xmlns='http://www.w3.org/2001/XMLSchema' targetNamespace='urn:importing'>"
+            + "<import namespace='" + (location.equals(REMOTE_BASE) ? NS : NS2) + "' schemaLocation='"
+            + location + "'/></schema>";
+    }
+
+    private static File write(String name, String content) throws Exception {
+        File directory = new File("target/catalog");
+        directory.mkdirs();
+        File file = new File(directory, name);
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+}
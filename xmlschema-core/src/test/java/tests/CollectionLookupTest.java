@@ -0,0 +1,72 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package tests;
+
+import java.io.File;
+
+import javax.xml.namespace.QName;
+
+import org.xml.sax.InputSource;
+
+import org.apache.ws.commons.schema.XmlSchema;
+import org.apache.ws.commons.schema.XmlSchemaCollection;
+import org.apache.ws.commons.schema.constants.Constants;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CollectionLookupTest extends Assert {
+    private static final String NS = "http://soapinterop.org/xsd";
+    private static final String NS2 = "http://soapinterop.org/xsd2";
+
+    @Test
+    public void testLookupByNamespaceAndSystemId() throws Exception {
+        String systemId = new File(Resources.asURI("importBase.xsd")).toURI().toString();
+        XmlSchemaCollection schemaCol = new XmlSchemaCollection();
+        XmlSchema base = schemaCol.read(new InputSource(systemId));
+
+        assertSame(base, schemaCol.schemaForNamespace(NS));
+        XmlSchema aux = schemaCol.schemaForNamespace(NS2);
+        assertNotNull(aux);
+        assertNull(schemaCol.schemaForNamespace("http://example.org/unknown"));
+
+        XmlSchema[] bySystemId = schemaCol.getXmlSchema(systemId);
+        assertEquals(1, bySystemId.length);
+        assertSame(base, bySystemId[0]);
+        assertSame(aux, schemaCol.getXmlSchema(aux.getSourceURI())[0]);
+        assertEquals(0, schemaCol.getXmlSchema("urn:unknown").length);
+
+        assertNotNull(schemaCol.getElementByQName(new QName(NS, "echoStructParam")));
+        assertNotNull(schemaCol.getElementByQName(new QName(NS2, "SOAPWrapper")));
+        assertSame(aux.getTypeByName("SOAPStruct"), schemaCol.getTypeByQName(new QName(NS2, "SOAPStruct")));
+        assertNull(schemaCol.getTypeByQName(new QName(NS, "SOAPStruct")));
+        assertNotNull(schemaCol.getTypeByQName(Constants.XSD_STRING));
+    }
+
+    @Test
+    public void testSchemasAddedLater() throws Exception {
+        XmlSchemaCollection schemaCol = new XmlSchemaCollection();
+        assertNull(schemaCol.getElementByQName(new QName(NS2, "SOAPWrapper")));
+
+        String systemId = new File(Resources.asURI("importAux.xsd")).toURI().toString();
+        schemaCol.read(new InputSource(systemId));
+        assertNotNull(schemaCol.getElementByQName(new QName(NS2, "SOAPWrapper")));
+    }
+}
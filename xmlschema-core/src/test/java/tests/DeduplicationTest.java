@@ -0,0 +1,129 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package tests;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import javax.xml.namespace.QName;
+
+import org.xml.sax.InputSource;
+
+import org.apache.ws.commons.schema.XmlSchema;
+import org.apache.ws.commons.schema.XmlSchemaCollection;
+import org.apache.ws.commons.schema.XmlSchemaExternal;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Copies of a document at different locations are read once when deduplicating.
+ */
+public class DeduplicationTest extends Assert {
+    private static final String COMMON =
+        "<schema xmlns='http://www.w3.org/2001/XMLSchema' targetNamespace='urn:common'>"
+        + "<simpleType name='code'><restriction base='string'/></simpleType></schema>";
+    private static final String CHAMELEON =
+        "<schema xmlns='http://www.w3.org/2001/XMLSchema'>"
+        + "<simpleType name='shared'><restriction base='int'/></simpleType></schema>";
+
+    @Test
+    public void testCopiesReadOnce() throws Exception {
+        File directory = createDocuments();
+
+        XmlSchemaCollection plain = new XmlSchemaCollection();
+        readAll(plain, directory);
+        assertEquals(2, countCommon(plain));
+        assertEquals(0, plain.getDeduplicatedCount());
+
+        XmlSchemaCollection schemaCol = new XmlSchemaCollection();
+        schemaCol.setDeduplicating(true);
+        XmlSchema[] mains = readAll(schemaCol, directory);
+        assertEquals(1, countCommon(schemaCol));
+        assertEquals(1, schemaCol.getDeduplicatedCount());
+        XmlSchema common = importedSchema(mains[0]);
+        assertSame(common, importedSchema(mains[1]));
+        assertSame(common, importedSchema(mains[2]));
+        assertNotNull(mains[1].getTypeByName(new QName("urn:common", "code")));
+
+        // the chameleon copies are included into different namespaces, so they are read each time
+        assertNotNull(mains[0].getTypeByName(new QName("urn:main0", "shared")));
+        assertNotNull(mains[1].getTypeByName(new QName("urn:main1", "shared")));
+    }
+
+    private static XmlSchema[] readAll(XmlSchemaCollection schemaCol, File directory) {
+        XmlSchema[] mains = new XmlSchema[3];
+        for (int i = 0; i < mains.length; i++) {
+            File main = new File(directory, "main" + i + ".xsd");
+            mains[i] = schemaCol.read(new InputSource(main.toURI().toString()));
+        }
+        return mains;
+    }
+
+    private static int countCommon(XmlSchemaCollection schemaCol) {
+        int count = 0;
+        for (XmlSchema schema : schemaCol.getXmlSchemas()) {
+            if ("urn:common".equals(schema.getTargetNamespace())) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static XmlSchema importedSchema(XmlSchema schema) {
+        for (XmlSchemaExternal external : schema.getExternals()) {
+            XmlSchema externalSchema = external.getSchema();
+            if (externalSchema != null && "urn:common".equals(externalSchema.getTargetNamespace())) {
+                return externalSchema;
+            }
+        }
+        return null;
+    }
+
+    private static File createDocuments() throws Exception {
+        File directory = new File("target/dedup");
+        write(new File(directory, "a/common.xsd"), COMMON);
+        write(new File(directory, "b/common.xsd"), COMMON);
+        write(new File(directory, "a/chameleon.xsd"), CHAMELEON);
+        write(new File(directory, "b/chameleon.xsd"), CHAMELEON);
+        String[] copies = {"a", "b", "a"};
+        for (int i = 0; i < copies.length; i++) {
+            write(new File(directory, "main" + i + ".xsd"),
+                  "<schema xmlns='http://www.w3.org/2001/XMLSchema' targetNamespace='urn:main" + i + "'>"
+                  + "<include schemaLocation='" + copies[i] + "/chameleon.xsd'/>"
+                  + "<import namespace='urn:common' schemaLocation='" + copies[i] + "/common.xsd'/>"
+                  + "</schema>");
+        }
+        return directory;
+    }
+
+    private static void write(File file, String content) throws Exception {
+        file.getParentFile().mkdirs();
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package tests;
+
+import java.io.File;
+
+import javax.xml.namespace.QName;
+
+import org.xml.sax.InputSource;
+
+import org.apache.ws.commons.schema.XmlSchema;
+import org.apache.ws.commons.schema.XmlSchemaCollection;
+import org.apache.ws.commons.schema.XmlSchemaElement;
+import org.apache.ws.commons.schema.XmlSchemaImport;
+import org.apache.ws.commons.schema.XmlSchemaSimpleType;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Deep lookups search the schemas reached through includes and imports, and notice when these change.
+ */
+public class DeepLookupTest extends Assert {
+    private static final String NS = "http://soapinterop.org/xsd";
+    private static final String NS2 = "http://soapinterop.org/xsd2";
+
+    @Test
+    public void testLookupThroughImport() throws Exception {
+        XmlSchemaCollection schemaCol = new XmlSchemaCollection();
+        XmlSchema base = schemaCol.read(new InputSource(systemId("importBase.xsd")));
+        XmlSchema aux = schemaCol.schemaForNamespace(NS2);
+
+        QName soapStruct = new QName(NS2, "SOAPStruct");
+        assertNotNull(aux.getTypeByName(soapStruct));
+        assertSame(aux.getTypeByName(soapStruct), base.getTypeByName(soapStruct));
+        assertSame(aux.getElementByName(new QName(NS2, "SOAPWrapper")),
+                   base.getElementByName(new QName(NS2, "SOAPWrapper")));
+        assertNull(base.getTypeByName("SOAPStruct"));
+        assertNull(base.getTypeByName(new QName(NS2, "unknown")));
+        // the import does not go back to the base schema
+        assertNull(aux.getElementByName(new QName(NS, "echoStructParam")));
+    }
+
+    @Test
+    public void testCircularImports() throws Exception {
+        XmlSchemaCollection schemaCol = new XmlSchemaCollection();
+        XmlSchema a = schemaCol.read(new InputSource(systemId("circular/a.xsd")));
+        XmlSchema b = schemaCol.schemaForNamespace("urn:xmlschema:recursive:b");
+        assertNotNull(b);
+
+        assertNull(a.getTypeByName(new QName("urn:xmlschema:recursive:b", "missing")));
+
+        XmlSchemaSimpleType type = new XmlSchemaSimpleType(b, true);
+        type.setName("added");
+        QName name = type.getQName();
+        assertSame(type, b.getTypeByName(name));
+        assertSame(type, a.getTypeByName(name));
+
+        XmlSchemaElement element = new XmlSchemaElement(a, true);
+        element.setName("added");
+        assertSame(element, b.getElementByName(element.getQName()));
+    }
+
+    @Test
+    public void testImportAddedLater() throws Exception {
+        XmlSchemaCollection schemaCol = new XmlSchemaCollection();
+        XmlSchema importing = new XmlSchema("urn:importing", schemaCol);
+        XmlSchema imported = new XmlSchema("urn:imported", schemaCol);
+        XmlSchemaSimpleType type = new XmlSchemaSimpleType(imported, true);
+        type.setName("type");
+
+        assertNull(importing.getTypeByName(type.getQName()));
+
+        XmlSchemaImport schemaImport = new XmlSchemaImport(importing);
+        schemaImport.setNamespace("urn:imported");
+        assertNull(importing.getTypeByName(type.getQName()));
+
+        schemaImport.setSchema(imported);
+        assertSame(type, importing.getTypeByName(type.getQName()));
+
+        imported.getSchemaTypes().remove(type.getQName());
+        assertNull(importing.getTypeByName(type.getQName()));
+    }
+
+    private static String systemId(String name) throws Exception {
+        return new File(Resources.asURI(name)).toURI().toString();
+    }
+}
@@ -0,0 +1,136 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package tests;
+
+import java.io.File;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.parsers.DocumentBuilder;
+
+import org.w3c.dom.Document;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
+
+import org.apache.ws.commons.schema.XmlSchema;
+import org.apache.ws.commons.schema.XmlSchemaCollection;
+import org.apache.ws.commons.schema.XmlSchemaException;
+import org.apache.ws.commons.schema.utils.DocumentBuilderPool;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * A schema collection parses documents with reset builders from its pool, configured once.
+ */
+public class DocumentBuilderPoolTest extends Assert {
+    private static final String DOCTYPE_SCHEMA =
+        "<!DOCTYPE schema [<!ENTITY doc 'entity text'>]>"
+        + "<schema xmlns='http://www.w3.org/2001/XMLSchema' targetNamespace='urn:doctype'>"
+        + "<annotation><documentation>&doc;</documentation></annotation></schema>";
+
+    @Test
+    public void testBuildersReused() throws Exception {
+        XmlSchemaCollection schemaCol = new XmlSchemaCollection();
+        DocumentBuilderPool pool = schemaCol.getDocumentBuilderPool();
+        assertSame(pool, schemaCol.getDocumentBuilderPool());
+        schemaCol.read(new InputSource(systemId("importBase.xsd")));
+        // the base schema and its import were parsed one after the other by the same builder
+        assertEquals(1, pool.getIdleCount());
+        assertNotNull(schemaCol.schemaForNamespace("http://soapinterop.org/xsd2"));
+    }
+
+    @Test
+    public void testFeatures() throws Exception {
+        XmlSchemaCollection schemaCol = new XmlSchemaCollection();
+        XmlSchema schema = schemaCol.read(new InputSource(new StringReader(DOCTYPE_SCHEMA)));
+        assertNotNull(schema.getAnnotation());
+
+        DocumentBuilderPool pool = new DocumentBuilderPool();
+        pool.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+        XmlSchemaCollection secureCol = new XmlSchemaCollection();
+        secureCol.setDocumentBuilderPool(pool);
+        try {
+            secureCol.read(new InputSource(new StringReader(DOCTYPE_SCHEMA)));
+            fail("A document type declaration was accepted");
+        } catch (XmlSchemaException e) {
+            // expected
+        }
+        // the pool is usable after a failed parse
+        secureCol.read(new InputSource(systemId("importAux.xsd")));
+        assertEquals(1, pool.getIdleCount());
+    }
+
+    @Test
+    public void testPrepareAfterReset() throws Exception {
+        final AtomicInteger resolved = new AtomicInteger();
+        DocumentBuilderPool pool = new DocumentBuilderPool() {
+            @Override
+            protected void prepare(DocumentBuilder builder) {
+                builder.setEntityResolver(new EntityResolver() {
+                    public InputSource resolveEntity(String publicId, String systemId) {
+                        resolved.incrementAndGet();
+                        return new InputSource(new StringReader(""));
+                    }
+                });
+            }
+        };
+        String document = "<!DOCTYPE schema SYSTEM 'urn:unresolvable'><schema/>";
+        for (int i = 0; i < 3; i++) {
+            pool.parse(new InputSource(new StringReader(document)));
+        }
+        assertEquals(3, resolved.get());
+        assertEquals(1, pool.getIdleCount());
+    }
+
+    @Test
+    public void testConcurrentParsing() throws Exception {
+        final DocumentBuilderPool pool = new DocumentBuilderPool();
+        final String systemId = systemId("woden.xsd");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Document>> results = new ArrayList<Future<Document>>();
+            for (int i = 0; i < 32; i++) {
+                results.add(executor.submit(new Callable<Document>() {
+                    public Document call() throws Exception {
+                        return pool.parse(new InputSource(systemId));
+                    }
+                }));
+            }
+            for (Future<Document> result : results) {
+                assertEquals("schema", result.get().getDocumentElement().getLocalName());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(pool.getIdleCount() >= 1 && pool.getIdleCount() <= 4);
+    }
+
+    private static String systemId(String name) throws Exception {
+        return new File(Resources.asURI(name)).toURI().toString();
+    }
+}
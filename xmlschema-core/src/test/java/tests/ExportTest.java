@@ -0,0 +1,200 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package tests;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.xml.sax.InputSource;
+
+import org.apache.ws.commons.schema.XmlSchema;
+import org.apache.ws.commons.schema.XmlSchemaCollection;
+import org.apache.ws.commons.schema.XmlSchemaExporter;
+import org.apache.ws.commons.schema.XmlSchemaSerializerService;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Exporting a set of schemas gives the same documents whether or not they are rendered concurrently.
+ */
+public class ExportTest extends Assert {
+    private static final String[] SCHEMAS = {
+        "importBase.xsd", "circular/a.xsd", "redefine-include/redefine-import1.xsd",
+        "WSCOMMONS-87/includeBase.xsd", "XMLSCHEMA-8/a/b/c/s1.xsd"
+    };
+
+    @Test
+    public void testReachableSchemas() throws Exception {
+        XmlSchemaCollection schemaCol = new XmlSchemaCollection();
+        XmlSchema a = schemaCol.read(new InputSource(systemId("circular/a.xsd")));
+        List<XmlSchema> schemas = XmlSchemaExporter.getReachableSchemas(a);
+        assertEquals(2, schemas.size());
+        assertSame(a, schemas.get(0));
+        assertSame(schemaCol.schemaForNamespace("urn:xmlschema:recursive:b"), schemas.get(1));
+    }
+
+    @Test
+    public void testDocumentNames() throws Exception {
+        XmlSchemaCollection schemaCol = new XmlSchemaCollection();
+        XmlSchema first = new XmlSchema("urn:first", "http://example.org/a/Types.xsd?v=1", schemaCol);
+        XmlSchema second = new XmlSchema("urn:second", "http://example.org/b/types.xsd", schemaCol);
+        XmlSchema third = new XmlSchema("urn:third", "http://example.org/c/my types", schemaCol);
+        XmlSchema fourth = new XmlSchema("urn:fourth", schemaCol);
+        first.setSourceURI("http://example.org/a/Types.xsd?v=1");
+        second.setSourceURI("http://example.org/b/types.xsd");
+        third.setSourceURI("http://example.org/c/my types");
+        Map<String, XmlSchema> names =
+            XmlSchemaExporter.getDocumentNames(Arrays.asList(first, second, third, fourth));
+        assertEquals(Arrays.asList("Types.xsd", "types_1.xsd", "my_types.xsd", "schema.xsd"),
+                     new ArrayList<String>(names.keySet()));
+        assertSame(second, names.get("types_1.xsd"));
+    }
+
+    @Test
+    public void testConcurrentExportMatchesSerial() throws Exception {
+        XmlSchemaCollection schemaCol = new XmlSchemaCollection();
+        for (String name : SCHEMAS) {
+            schemaCol.read(new InputSource(systemId(name)));
+        }
+        List<XmlSchema> schemas = XmlSchemaExporter.getSchemas(schemaCol);
+        assertTrue(schemas.size() > SCHEMAS.length);
+
+        XmlSchemaSerializerService service = new XmlSchemaSerializerService();
+        XmlSchemaExporter serial = new XmlSchemaExporter(service);
+        XmlSchemaExporter concurrent = new XmlSchemaExporter();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            concurrent.setExecutor(executor);
+
+            byte[] serialZip = zip(serial, schemas);
+            for (int i = 0; i < 5; i++) {
+                assertTrue(Arrays.equals(serialZip, zip(concurrent, schemas)));
+            }
+
+            File serialDir = directory("serial");
+            File concurrentDir = directory("concurrent");
+            Map<String, XmlSchema> names = serial.export(schemas, serialDir);
+            assertEquals(names, concurrent.export(schemas, concurrentDir));
+            assertEquals(schemas.size(), names.size());
+            Map<String, byte[]> entries = unzip(serialZip);
+            assertEquals(names.keySet(), entries.keySet());
+            for (Map.Entry<String, XmlSchema> entry : names.entrySet()) {
+                byte[] expected = entries.get(entry.getKey());
+                assertTrue(entry.getKey(),
+                           Arrays.equals(expected, read(new File(serialDir, entry.getKey()))));
+                assertTrue(entry.getKey(),
+                           Arrays.equals(expected, read(new File(concurrentDir, entry.getKey()))));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testSchemaLocations() throws Exception {
+        XmlSchemaCollection schemaCol = new XmlSchemaCollection();
+        XmlSchema s1 = schemaCol.read(new InputSource(systemId("XMLSCHEMA-8/a/b/c/s1.xsd")));
+        XmlSchema other = new XmlSchema("urn:other", new XmlSchemaCollection());
+        other.setSourceURI("http://example.org/s2.xsd");
+        List<XmlSchema> schemas = new ArrayList<XmlSchema>();
+        schemas.add(other);
+        schemas.addAll(XmlSchemaExporter.getReachableSchemas(s1));
+
+        File dir = directory("locations");
+        Map<String, XmlSchema> names = new XmlSchemaExporter().export(schemas, dir);
+        assertEquals(Arrays.asList("s2.xsd", "s1.xsd", "s2_1.xsd", "s3.xsd"),
+                     new ArrayList<String>(names.keySet()));
+        String s1Document = new String(read(new File(dir, "s1.xsd")), "UTF-8");
+        assertTrue(s1Document, s1Document.contains("schemaLocation=\"s2_1.xsd\""));
+        assertEquals(s1Document, new String(unzip(zip(new XmlSchemaExporter(), schemas)).get("s1.xsd"),
+                                            "UTF-8"));
+
+        XmlSchemaCollection exportedCol = new XmlSchemaCollection();
+        exportedCol.read(new InputSource(new File(dir, "s1.xsd").toURI().toString()));
+        XmlSchema s2 = exportedCol.schemaForNamespace("http://xmlschema.apache.org/S2");
+        assertNotNull(s2);
+        assertTrue(s2.getSourceURI(), s2.getSourceURI().endsWith("/s2_1.xsd"));
+        assertEquals(3, XmlSchemaExporter.getSchemas(exportedCol).size());
+    }
+
+    private static Map<String, byte[]> unzip(byte[] bytes) throws Exception {
+        Map<String, byte[]> entries = new HashMap<String, byte[]>();
+        ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(bytes));
+        for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+            entries.put(entry.getName(), read(zip));
+        }
+        return entries;
+    }
+
+    private static byte[] zip(XmlSchemaExporter exporter, List<XmlSchema> schemas) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ZipOutputStream zip = new ZipOutputStream(out);
+        exporter.export(schemas, zip);
+        zip.close();
+        return out.toByteArray();
+    }
+
+    private static File directory(String name) {
+        File directory = new File("target/export/" + name);
+        if (directory.isDirectory()) {
+            for (File file : directory.listFiles()) {
+                file.delete();
+            }
+        }
+        return directory;
+    }
+
+    private static byte[] read(File file) throws Exception {
+        InputStream in = new FileInputStream(file);
+        try {
+            return read(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static byte[] read(InputStream in) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        for (int n = in.read(buffer); n != -1; n = in.read(buffer)) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private static String systemId(String name) throws Exception {
+        return new File(Resources.asURI(name)).toURI().toString();
+    }
+}
@@ -0,0 +1,161 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package tests;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.xml.namespace.QName;
+
+import org.xml.sax.InputSource;
+
+import org.apache.ws.commons.schema.XmlSchema;
+import org.apache.ws.commons.schema.XmlSchemaCollection;
+import org.apache.ws.commons.schema.XmlSchemaComplexType;
+import org.apache.ws.commons.schema.XmlSchemaElement;
+import org.apache.ws.commons.schema.XmlSchemaForm;
+import org.apache.ws.commons.schema.XmlSchemaSequence;
+import org.apache.ws.commons.schema.XmlSchemaSimpleType;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * A frozen collection can be read from many threads and rejects changes.
+ */
+public class FreezeTest extends Assert {
+    private static final String NS2 = "http://soapinterop.org/xsd2";
+    private static final String[] SCHEMAS = {
+        "importBase.xsd", "elementreferences.xsd", "circular/a.xsd"
+    };
+
+    @Test
+    public void testConcurrentReads() throws Exception {
+        final XmlSchemaCollection schemaCol = new XmlSchemaCollection();
+        for (String name : SCHEMAS) {
+            schemaCol.read(new InputSource(systemId(name)));
+        }
+        schemaCol.freeze();
+        assertTrue(schemaCol.isFrozen());
+        final String expected = serialize(schemaCol);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<Future<String>>();
+            for (int i = 0; i < 32; i++) {
+                results.add(executor.submit(new Callable<String>() {
+                    public String call() throws Exception {
+                        for (XmlSchema schema : schemaCol.getXmlSchemas()) {
+                            assertTrue(schema.isFrozen());
+                            if (schema.getNamespaceContext() != null) {
+                                schema.getNamespaceContext().getDeclaredPrefixes();
+                            }
+                            for (XmlSchemaElement element : schema.getElements().values()) {
+                                assertSame(element, schemaCol.getElementByQName(element.getQName()));
+                                if (element.isRef()) {
+                                    assertNotNull(element.getRef().getTarget());
+                                }
+                            }
+                        }
+                        assertNotNull(schemaCol.getTypeByQName(new QName(NS2, "SOAPStruct")));
+                        return serialize(schemaCol);
+                    }
+                }));
+            }
+            for (Future<String> result : results) {
+                assertEquals(expected, result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testReferencesResolved() throws Exception {
+        XmlSchemaCollection schemaCol = new XmlSchemaCollection();
+        XmlSchema schema = schemaCol.read(new InputSource(systemId("elementreferences.xsd")));
+        schemaCol.freeze();
+        XmlSchemaElement attTests = schema.getElementByName("attTests");
+        XmlSchemaComplexType type = (XmlSchemaComplexType)attTests.getSchemaType();
+        XmlSchemaElement ref = (XmlSchemaElement)((XmlSchemaSequence)type.getParticle()).getItems().get(0);
+        assertTrue(ref.isRef());
+        assertSame(schema.getElementByName("attrTest"), ref.getRef().getTarget());
+    }
+
+    @Test
+    public void testChangesRejected() throws Exception {
+        XmlSchemaCollection schemaCol = new XmlSchemaCollection();
+        XmlSchema schema = schemaCol.read(new InputSource(systemId("importBase.xsd")));
+        schemaCol.freeze();
+
+        try {
+            schemaCol.read(new InputSource(systemId("circular/a.xsd")));
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        try {
+            schema.getElements().clear();
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        try {
+            schema.setElementFormDefault(XmlSchemaForm.UNQUALIFIED);
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        try {
+            XmlSchemaSimpleType type = new XmlSchemaSimpleType(schema, true);
+            type.setName("added");
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        assertNull(schema.getTypeByName("added"));
+    }
+
+    private static String serialize(XmlSchemaCollection collection) throws Exception {
+        Map<String, String> documents = new TreeMap<String, String>();
+        for (XmlSchema schema : collection.getXmlSchemas()) {
+            if (schema.getSourceURI() == null) {
+                continue;
+            }
+            StringWriter writer = new StringWriter();
+            schema.write(writer);
+            documents.put(schema.getSourceURI() + "|" + schema.getTargetNamespace(), writer.toString());
+        }
+        return documents.toString();
+    }
+
+    private static String systemId(String name) throws Exception {
+        return new File(Resources.asURI(name)).toURI().toString();
+    }
+}
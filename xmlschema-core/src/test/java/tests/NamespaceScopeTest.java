@@ -0,0 +1,95 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package tests;
+
+import java.io.StringReader;
+
+import javax.xml.namespace.QName;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.xml.sax.InputSource;
+
+import org.apache.ws.commons.schema.XmlSchema;
+import org.apache.ws.commons.schema.XmlSchemaAttribute;
+import org.apache.ws.commons.schema.XmlSchemaCollection;
+import org.apache.ws.commons.schema.XmlSchemaComplexType;
+import org.apache.ws.commons.schema.XmlSchemaElement;
+import org.apache.ws.commons.schema.XmlSchemaSequence;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * References are resolved with the namespace declarations in scope at the referring element, when prefixes
+ * are declared again on siblings and descendants.
+ */
+public class NamespaceScopeTest extends Assert {
+    private static final String SCHEMA =
+        "<wrapper xmlns:p='urn:outer'>"
+        + "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema' targetNamespace='urn:target'"
+        + " xmlns='urn:target'>"
+        + "<xs:element name='a' type='p:A'/>"
+        + "<xs:element name='b' xmlns:p='urn:b' type='p:B'/>"
+        + "<xs:element name='c' type='p:C'/>"
+        + "<xs:complexType name='D' xmlns:p='urn:d'>"
+        + "<xs:sequence>"
+        + "<xs:element name='d1' type='p:D1'/>"
+        + "<xs:element name='d2' xmlns:p='urn:d2' type='p:D2'/>"
+        + "<xs:element name='d3' type='p:D3'/>"
+        + "<xs:element name='d4' type='D4'/>"
+        + "<xs:element name='d5' xmlns='' type='D5'/>"
+        + "</xs:sequence>"
+        + "<xs:attribute name='e' type='p:E'/>"
+        + "</xs:complexType>"
+        + "<xs:element name='f' type='p:F'/>"
+        + "</xs:schema>"
+        + "</wrapper>";
+
+    @Test
+    public void testRedeclaredPrefixes() throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        Document doc = factory.newDocumentBuilder().parse(new InputSource(new StringReader(SCHEMA)));
+        Element schemaEl = (Element)doc.getDocumentElement().getFirstChild();
+        XmlSchema schema = new XmlSchemaCollection().read(schemaEl);
+
+        assertEquals(new QName("urn:outer", "A"), schema.getElementByName("a").getSchemaTypeName());
+        assertEquals(new QName("urn:b", "B"), schema.getElementByName("b").getSchemaTypeName());
+        assertEquals(new QName("urn:outer", "C"), schema.getElementByName("c").getSchemaTypeName());
+        assertEquals(new QName("urn:outer", "F"), schema.getElementByName("f").getSchemaTypeName());
+
+        XmlSchemaComplexType type = (XmlSchemaComplexType)schema.getTypeByName("D");
+        XmlSchemaSequence sequence = (XmlSchemaSequence)type.getParticle();
+        assertEquals(new QName("urn:d", "D1"), typeName(sequence, 0));
+        assertEquals(new QName("urn:d2", "D2"), typeName(sequence, 1));
+        assertEquals(new QName("urn:d", "D3"), typeName(sequence, 2));
+        assertEquals(new QName("urn:target", "D4"), typeName(sequence, 3));
+        assertEquals(new QName("", "D5"), typeName(sequence, 4));
+        XmlSchemaAttribute attribute = (XmlSchemaAttribute)type.getAttributes().get(0);
+        assertEquals(new QName("urn:d", "E"), attribute.getSchemaTypeName());
+    }
+
+    private static QName typeName(XmlSchemaSequence sequence, int index) {
+        return ((XmlSchemaElement)sequence.getItems().get(index)).getSchemaTypeName();
+    }
+}
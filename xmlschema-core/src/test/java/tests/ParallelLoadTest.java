@@ -0,0 +1,136 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package tests;
+
+import java.io.File;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.xml.sax.InputSource;
+
+import org.apache.ws.commons.schema.XmlSchema;
+import org.apache.ws.commons.schema.XmlSchemaCollection;
+import org.apache.ws.commons.schema.XmlSchemaException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Loading the referenced documents concurrently gives the same collection as loading them one after the
+ * other.
+ */
+public class ParallelLoadTest extends Assert {
+    private static final String[] SCHEMAS = {
+        "importBase.xsd", "circular/a.xsd", "redefine-include/redefine-import1.xsd",
+        "WSCOMMONS-87/includeBase.xsd", "XMLSCHEMA-8/a/b/c/s1.xsd"
+    };
+
+    @Test
+    public void testSameCollection() throws Exception {
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            final AtomicInteger tasks = new AtomicInteger();
+            final Executor executor = executorService;
+            Executor counting = new Executor() {
+                public void execute(Runnable command) {
+                    tasks.incrementAndGet();
+                    executor.execute(command);
+                }
+            };
+            for (String name : SCHEMAS) {
+                XmlSchemaCollection sequential = new XmlSchemaCollection();
+                sequential.read(new InputSource(systemId(name)));
+
+                XmlSchemaCollection parallel = new XmlSchemaCollection();
+                parallel.setExecutor(counting);
+                parallel.read(new InputSource(systemId(name)));
+
+                assertEquals(name, describe(sequential), describe(parallel));
+            }
+            assertTrue(tasks.get() > 0);
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    public void testExecutorThatDoesNotRun() throws Exception {
+        final List<Runnable> queued = new ArrayList<Runnable>();
+        XmlSchemaCollection parallel = new XmlSchemaCollection();
+        parallel.setExecutor(new Executor() {
+            public void execute(Runnable command) {
+                queued.add(command);
+            }
+        });
+        parallel.read(new InputSource(systemId("importBase.xsd")));
+        assertFalse(queued.isEmpty());
+
+        XmlSchemaCollection sequential = new XmlSchemaCollection();
+        sequential.read(new InputSource(systemId("importBase.xsd")));
+        assertEquals(describe(sequential), describe(parallel));
+    }
+
+    @Test
+    public void testMissingDocument() throws Exception {
+        String schema = "<schema xmlns='http://www.w3.org/2001/XMLSchema' targetNamespace='urn:missing'>"
+            + "<include schemaLocation='does-not-exist.xsd'/></schema>";
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            XmlSchemaCollection parallel = new XmlSchemaCollection();
+            parallel.setExecutor(executorService);
+            File base = new File(Resources.asURI("importBase.xsd")).getParentFile();
+            parallel.setBaseUri(base.toURI().toString());
+            parallel.read(new InputSource(new StringReader(schema)));
+            fail();
+        } catch (XmlSchemaException e) {
+            // reported by the builder, as without an executor
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    /**
+     * The schemas of a collection in order, with their serialized form.
+     */
+    private static String describe(XmlSchemaCollection collection) throws Exception {
+        StringBuilder description = new StringBuilder();
+        for (XmlSchema schema : collection.getXmlSchemas()) {
+            description.append(schema.getSourceURI()).append('|').append(schema.getTargetNamespace());
+            if (schema.getSourceURI() != null) {
+                StringWriter writer = new StringWriter();
+                schema.write(writer);
+                description.append('\n').append(writer);
+            }
+            description.append('\n');
+        }
+        return description.toString();
+    }
+
+    private static String systemId(String name) throws Exception {
+        return new File(Resources.asURI(name)).toURI().toString();
+    }
+}
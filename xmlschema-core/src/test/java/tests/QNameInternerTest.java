@@ -0,0 +1,135 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package tests;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+
+import org.xml.sax.InputSource;
+
+import org.apache.ws.commons.schema.XmlSchema;
+import org.apache.ws.commons.schema.XmlSchemaCollection;
+import org.apache.ws.commons.schema.XmlSchemaComplexType;
+import org.apache.ws.commons.schema.XmlSchemaElement;
+import org.apache.ws.commons.schema.XmlSchemaObject;
+import org.apache.ws.commons.schema.XmlSchemaSequence;
+import org.apache.ws.commons.schema.XmlSchemaSequenceMember;
+import org.apache.ws.commons.schema.XmlSchemaType;
+import org.apache.ws.commons.schema.utils.QNameInterner;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * The names and namespaces of the components of a collection are shared, rather than copied for every
+ * reference.
+ */
+public class QNameInternerTest extends Assert {
+    private static final String NS = "urn:interned";
+    private static final int TYPES = 2000;
+
+    @Test
+    public void testPrefixesKeptApart() {
+        QNameInterner interner = new QNameInterner();
+        QName name = interner.intern(NS, "name", "a");
+        assertSame(name, interner.intern(new QName(new String(NS), "name", "a")));
+        QName other = interner.intern(NS, "name", "b");
+        assertEquals(name, other);
+        assertNotSame(name, other);
+        assertEquals("b", other.getPrefix());
+        assertSame(name.getNamespaceURI(), other.getNamespaceURI());
+        assertEquals(2, interner.getQNameCount());
+        assertNull(interner.intern((String)null));
+        assertSame(interner.intern(NS), interner.intern(new String(NS)));
+    }
+
+    @Test
+    public void testLargeSchema() throws Exception {
+        XmlSchemaCollection domCollection = new XmlSchemaCollection();
+        checkShared(domCollection.read(new InputSource(new StringReader(generate()))));
+
+        XmlSchemaCollection staxCollection = new XmlSchemaCollection();
+        checkShared(staxCollection.read(XMLInputFactory.newInstance()
+            .createXMLStreamReader(new StringReader(generate()))));
+    }
+
+    /**
+     * Count the name instances referred to by the schema, which would be one per reference without
+     * interning.
+     */
+    private static void checkShared(XmlSchema schema) {
+        List<QName> names = new ArrayList<QName>();
+        for (XmlSchemaType type : schema.getSchemaTypes().values()) {
+            names.add(type.getQName());
+            XmlSchemaSequence sequence = (XmlSchemaSequence)((XmlSchemaComplexType)type).getParticle();
+            for (XmlSchemaSequenceMember member : sequence.getItems()) {
+                XmlSchemaElement element = (XmlSchemaElement)member;
+                names.add(element.isRef() ? element.getRef().getTargetQName() : element.getSchemaTypeName());
+            }
+        }
+        for (XmlSchemaObject item : schema.getItems()) {
+            if (item instanceof XmlSchemaElement) {
+                names.add(((XmlSchemaElement)item).getQName());
+            }
+        }
+        assertTrue(names.size() > 4 * TYPES);
+
+        Map<QName, Object> nameInstances = new IdentityHashMap<QName, Object>();
+        Map<String, Object> namespaceInstances = new IdentityHashMap<String, Object>();
+        Set<String> distinctNames = new HashSet<String>();
+        for (QName name : names) {
+            nameInstances.put(name, name);
+            namespaceInstances.put(name.getNamespaceURI(), name);
+            // names that differ in prefix are equal, but not shared
+            distinctNames.add(name.getPrefix() + ":" + name);
+        }
+        assertEquals(distinctNames.size(), nameInstances.size());
+        assertTrue(2 * nameInstances.size() < names.size());
+        assertEquals(2, namespaceInstances.size());
+        assertTrue(schema.getParent().getInterner().getQNameCount() >= distinctNames.size());
+    }
+
+    private static String generate() {
+        StringBuilder schema = new StringBuilder();
+        schema.append("<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema' xmlns:tns='" + NS
+                      + "' targetNamespace='" + NS + "' elementFormDefault='qualified'>");
+        schema.append("<xs:complexType name='Shared'><xs:sequence/></xs:complexType>");
+        schema.append("<xs:element name='shared' type='tns:Shared'/>");
+        for (int i = 0; i < TYPES; i++) {
+            schema.append("<xs:complexType name='Type" + i + "'><xs:sequence>");
+            schema.append("<xs:element name='a' type='tns:Shared'/>");
+            schema.append("<xs:element name='b' type='xs:string'/>");
+            schema.append("<xs:element ref='tns:shared'/>");
+            schema.append("<xs:element name='c' type='tns:Type" + (i + 1) % TYPES + "'/>");
+            schema.append("</xs:sequence></xs:complexType>");
+        }
+        schema.append("</xs:schema>");
+        return schema.toString();
+    }
+}
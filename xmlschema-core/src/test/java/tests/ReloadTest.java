@@ -0,0 +1,201 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package tests;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import javax.xml.namespace.QName;
+
+import org.xml.sax.InputSource;
+
+import org.apache.ws.commons.schema.XmlSchema;
+import org.apache.ws.commons.schema.XmlSchemaCollection;
+import org.apache.ws.commons.schema.XmlSchemaComplexType;
+import org.apache.ws.commons.schema.XmlSchemaElement;
+import org.apache.ws.commons.schema.XmlSchemaException;
+import org.apache.ws.commons.schema.XmlSchemaSequence;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Reloading a changed document reads it and the documents that refer to it again, and keeps the others.
+ */
+public class ReloadTest extends Assert {
+    private static final String XSD = "<schema xmlns='http://www.w3.org/2001/XMLSchema' ";
+
+    private static final String MAIN = XSD + "targetNamespace='urn:main' xmlns:t='urn:types'>"
+        + "<import namespace='urn:types' schemaLocation='types.xsd'/>"
+        + "<element name='root' type='t:T'/>"
+        + "<complexType name='Holder'><sequence><element ref='t:entry'/></sequence></complexType>"
+        + "</schema>";
+    private static final String TYPES = XSD + "targetNamespace='urn:types' xmlns:t='urn:types'>"
+        + "<include schemaLocation='common.xsd'/>"
+        + "<complexType name='T'><sequence><element name='a' type='t:Code'/></sequence></complexType>"
+        + "<element name='entry' type='string'/>"
+        + "</schema>";
+    private static final String CHANGED_TYPES = XSD + "targetNamespace='urn:types' xmlns:t='urn:types'>"
+        + "<include schemaLocation='common.xsd'/>"
+        + "<complexType name='T'><sequence><element name='b' type='int'/></sequence></complexType>"
+        + "<element name='entry' type='t:Code'/>"
+        + "</schema>";
+    private static final String COMMON = XSD + "targetNamespace='urn:types'>"
+        + "<simpleType name='Code'><restriction base='string'/></simpleType>"
+        + "</schema>";
+    private static final String OTHER = XSD + "targetNamespace='urn:other' xmlns:t='urn:types'>"
+        + "<import namespace='urn:types' schemaLocation='common.xsd'/>"
+        + "<element name='code' type='t:Code'/>"
+        + "</schema>";
+
+    @Test
+    public void testReload() throws Exception {
+        File directory = directory("reload");
+        write(directory, "types.xsd", TYPES);
+        XmlSchemaCollection collection = read(directory);
+        String typesId = systemId(directory, "types.xsd");
+        XmlSchema oldTypes = collection.getXmlSchema(typesId)[0];
+        XmlSchema oldMain = collection.getXmlSchema(systemId(directory, "main.xsd"))[0];
+        XmlSchema common = collection.getXmlSchema(systemId(directory, "common.xsd"))[0];
+        XmlSchema other = collection.getXmlSchema(systemId(directory, "other.xsd"))[0];
+        XmlSchemaElement entryRef = (XmlSchemaElement)((XmlSchemaSequence)((XmlSchemaComplexType)oldMain
+            .getTypeByName("Holder")).getParticle()).getItems().get(0);
+        assertSame(oldTypes.getElementByName("entry"), entryRef.getRef().getTarget());
+
+        write(directory, "types.xsd", CHANGED_TYPES);
+        XmlSchema[] reloaded = collection.reload(typesId);
+
+        assertEquals(2, reloaded.length);
+        XmlSchema types = reloaded[0];
+        XmlSchema main = reloaded[1];
+        assertEquals(typesId, types.getSourceURI());
+        assertSame(types, collection.getXmlSchema(typesId)[0]);
+        assertSame(main, collection.schemaForNamespace("urn:main"));
+        assertTrue(oldTypes.isReplaced());
+        assertTrue(oldMain.isReplaced());
+        assertFalse(types.isReplaced());
+
+        // the schemas that do not refer to the changed document are kept
+        assertFalse(common.isReplaced());
+        assertSame(common, collection.getXmlSchema(systemId(directory, "common.xsd"))[0]);
+        assertSame(other, collection.getXmlSchema(systemId(directory, "other.xsd"))[0]);
+
+        XmlSchemaElement root = main.getElementByName("root");
+        assertSame(types.getTypeByName("T"), root.getSchemaType());
+        assertSame(common.getTypeByName("Code"), types.getElementByName("entry").getSchemaType());
+        // a reference that was resolved before the reload is resolved again
+        assertSame(types.getElementByName("entry"), entryRef.getRef().getTarget());
+
+        assertEquals(describe(read(directory)), describe(collection));
+    }
+
+    @Test
+    public void testReloadUnknownDocument() throws Exception {
+        File directory = directory("unknown");
+        write(directory, "types.xsd", TYPES);
+        XmlSchemaCollection collection = read(directory);
+        int count = collection.getXmlSchemas().length;
+
+        assertEquals(0, collection.reload(systemId(directory, "unknown.xsd")).length);
+        assertEquals(count, collection.getXmlSchemas().length);
+    }
+
+    @Test
+    public void testFailedReload() throws Exception {
+        File directory = directory("failed");
+        write(directory, "types.xsd", TYPES);
+        XmlSchemaCollection collection = read(directory);
+        String typesId = systemId(directory, "types.xsd");
+        XmlSchema types = collection.getXmlSchema(typesId)[0];
+        String before = describe(collection);
+
+        write(directory, "types.xsd", "<schema");
+        try {
+            collection.reload(typesId);
+            fail();
+        } catch (XmlSchemaException e) {
+            // the collection is left as it was
+        }
+        assertFalse(types.isReplaced());
+        assertSame(types, collection.getXmlSchema(typesId)[0]);
+        assertEquals(before, describe(collection));
+        assertNotNull(collection.getTypeByQName(new QName("urn:types", "T")));
+    }
+
+    private static XmlSchemaCollection read(File directory) throws Exception {
+        write(directory, "main.xsd", MAIN);
+        write(directory, "common.xsd", COMMON);
+        write(directory, "other.xsd", OTHER);
+        XmlSchemaCollection collection = new XmlSchemaCollection();
+        collection.read(new InputSource(systemId(directory, "main.xsd")));
+        collection.read(new InputSource(systemId(directory, "other.xsd")));
+        return collection;
+    }
+
+    /**
+     * The schemas of a collection ordered by system ID and target namespace, with their serialized form.
+     */
+    private static String describe(XmlSchemaCollection collection) throws Exception {
+        XmlSchema[] schemas = collection.getXmlSchemas();
+        Arrays.sort(schemas, new Comparator<XmlSchema>() {
+            public int compare(XmlSchema a, XmlSchema b) {
+                return key(a).compareTo(key(b));
+            }
+        });
+        StringBuilder description = new StringBuilder();
+        for (XmlSchema schema : schemas) {
+            description.append(key(schema));
+            if (schema.getSourceURI() != null) {
+                StringWriter writer = new StringWriter();
+                schema.write(writer);
+                description.append('\n').append(writer);
+            }
+            description.append('\n');
+        }
+        return description.toString();
+    }
+
+    private static String key(XmlSchema schema) {
+        return schema.getSourceURI() + "|" + schema.getTargetNamespace();
+    }
+
+    private static File directory(String name) {
+        File directory = new File("target/reload/" + name);
+        directory.mkdirs();
+        return directory;
+    }
+
+    private static void write(File directory, String name, String content) throws Exception {
+        OutputStream out = new FileOutputStream(new File(directory, name));
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+
+    private static String systemId(File directory, String name) {
+        return new File(directory, name).getAbsoluteFile().toURI().toString();
+    }
+}
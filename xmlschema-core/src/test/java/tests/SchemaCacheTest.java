@@ -0,0 +1,219 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package tests;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.namespace.QName;
+
+import org.xml.sax.InputSource;
+
+import org.apache.ws.commons.schema.XmlSchema;
+import org.apache.ws.commons.schema.XmlSchemaCollection;
+import org.apache.ws.commons.schema.XmlSchemaImport;
+import org.apache.ws.commons.schema.XmlSchemaSimpleType;
+import org.apache.ws.commons.schema.cache.DefaultSchemaCache;
+import org.apache.ws.commons.schema.cache.DefaultSchemaCache.EvictionPolicy;
+import org.apache.ws.commons.schema.cache.SchemaCacheKey;
+import org.apache.ws.commons.schema.cache.SchemaLoader;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SchemaCacheTest extends Assert {
+
+    @Test
+    public void testSharedBetweenCollections() throws Exception {
+        DefaultSchemaCache cache = new DefaultSchemaCache(1000);
+        String systemId = new File(Resources.asURI("importBase.xsd")).toURI().toString();
+
+        XmlSchemaCollection first = new XmlSchemaCollection();
+        first.setSchemaCache(cache);
+        XmlSchema aux = getImported(first.read(new InputSource(systemId)));
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getMissCount());
+
+        XmlSchemaCollection second = new XmlSchemaCollection();
+        second.setSchemaCache(cache);
+        assertSame(aux, getImported(second.read(new InputSource(systemId))));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getLoadCount());
+
+        // the shared schema is one of the schemas of the second collection, but still belongs to the first
+        assertSame(first, aux.getParent());
+        assertSame(aux, second.schemaForNamespace(aux.getTargetNamespace()));
+        assertTrue(Arrays.asList(second.getXmlSchemas()).contains(aux));
+        assertNotNull(second.getTypeByQName(new QName(aux.getTargetNamespace(), "SOAPStruct")));
+    }
+
+    @Test
+    public void testFreezeLeavesSharedSchemas() throws Exception {
+        DefaultSchemaCache cache = new DefaultSchemaCache(1000);
+        String systemId = new File(Resources.asURI("importBase.xsd")).toURI().toString();
+        XmlSchemaCollection first = new XmlSchemaCollection();
+        first.setSchemaCache(cache);
+        XmlSchema aux = getImported(first.read(new InputSource(systemId)));
+        XmlSchemaCollection second = new XmlSchemaCollection();
+        second.setSchemaCache(cache);
+        XmlSchema base = second.read(new InputSource(systemId));
+
+        // the second collection freezes its own schemas only, the first one may still change the shared one
+        second.freeze();
+        assertTrue(base.isFrozen());
+        assertFalse(aux.isFrozen());
+        new XmlSchemaSimpleType(aux, true).setName("added");
+        QName added = new QName(aux.getTargetNamespace(), "added");
+        assertNotNull(base.getTypeByName(added));
+        assertNotNull(second.getTypeByQName(added));
+
+        first.freeze();
+        assertTrue(aux.isFrozen());
+    }
+
+    @Test
+    public void testCircularImports() throws Exception {
+        DefaultSchemaCache cache = new DefaultSchemaCache(1000);
+        XmlSchemaCollection schemaCol = new XmlSchemaCollection();
+        schemaCol.setSchemaCache(cache);
+        String systemId = new File(Resources.asURI("circular/a.xsd")).toURI().toString();
+        XmlSchema a = schemaCol.read(new InputSource(systemId));
+        XmlSchema b = getImported(a);
+        assertSame(a, getImported(b));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction() {
+        DefaultSchemaCache cache = new DefaultSchemaCache(6, EvictionPolicy.LRU);
+        cache.get(key("a"), loader(schema(1), null));
+        cache.get(key("b"), loader(schema(1), null));
+        cache.get(key("c"), loader(schema(1), null));
+        assertEquals(6, cache.getWeight());
+
+        cache.get(key("a"), null);
+        cache.get(key("d"), loader(schema(0), null));
+        assertEquals(3, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        assertNotNull(cache.get(key("a"), null));
+        assertNull(cache.get(key("b"), loader(null, null)));
+    }
+
+    @Test
+    public void testLeastFrequentlyUsedEviction() {
+        DefaultSchemaCache cache = new DefaultSchemaCache(3, EvictionPolicy.LFU);
+        cache.get(key("a"), loader(schema(0), null));
+        cache.get(key("b"), loader(schema(0), null));
+        cache.get(key("c"), loader(schema(0), null));
+        cache.get(key("a"), null);
+        cache.get(key("a"), null);
+        cache.get(key("c"), null);
+
+        cache.get(key("d"), loader(schema(0), null));
+        assertNull(cache.get(key("b"), loader(null, null)));
+        assertNotNull(cache.get(key("a"), null));
+        assertNotNull(cache.get(key("c"), null));
+        assertNotNull(cache.get(key("d"), null));
+
+        // too heavy to be cached at all
+        cache.get(key("e"), loader(schema(5), null));
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void testSingleFlight() throws Exception {
+        final DefaultSchemaCache cache = new DefaultSchemaCache(100);
+        final AtomicInteger loads = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        final XmlSchema schema = schema(0);
+        final XmlSchema[] results = new XmlSchema[8];
+        Thread[] threads = new Thread[results.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    results[index] = cache.get(key("key"), loader(schema, loads));
+                }
+            };
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(1, loads.get());
+        for (XmlSchema result : results) {
+            assertSame(schema, result);
+        }
+        assertEquals(1, cache.getMissCount());
+        assertEquals(results.length - 1, cache.getHitCount());
+    }
+
+    @Test
+    public void testKeysKeepTheirParts() {
+        DefaultSchemaCache cache = new DefaultSchemaCache(100);
+        XmlSchema first = schema(0);
+        XmlSchema second = schema(0);
+        assertSame(first, cache.get(new SchemaCacheKey("a", "bc", "base"), loader(first, null)));
+        assertSame(second, cache.get(new SchemaCacheKey("ab", "c", "base"), loader(second, null)));
+        assertSame(first, cache.get(new SchemaCacheKey("a", "bc", "base"), null));
+        assertEquals(2, cache.size());
+    }
+
+    private static SchemaCacheKey key(String schemaLocation) {
+        return new SchemaCacheKey(null, schemaLocation, null);
+    }
+
+    private static XmlSchema getImported(XmlSchema schema) {
+        return ((XmlSchemaImport)schema.getExternals().get(0)).getSchema();
+    }
+
+    private static XmlSchema schema(int types) {
+        XmlSchema schema = new XmlSchema();
+        for (int i = 0; i < types; i++) {
+            new XmlSchemaSimpleType(schema, true).setName("type" + i);
+        }
+        return schema;
+    }
+
+    private static SchemaLoader loader(final XmlSchema schema, final AtomicInteger loads) {
+        return new SchemaLoader() {
+            public XmlSchema load() {
+                if (loads != null) {
+                    loads.incrementAndGet();
+                    try {
+                        // give the other threads time to ask for the schema
+                        Thread.sleep(100);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return schema;
+            }
+        };
+    }
+}
@@ -0,0 +1,153 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package tests;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.xml.namespace.QName;
+import javax.xml.transform.OutputKeys;
+
+import org.xml.sax.InputSource;
+
+import org.apache.ws.commons.schema.XmlSchema;
+import org.apache.ws.commons.schema.XmlSchemaCollection;
+import org.apache.ws.commons.schema.XmlSchemaElement;
+import org.apache.ws.commons.schema.XmlSchemaSerializerService;
+import org.apache.ws.commons.schema.XmlSchemaStreamSerializer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SerializerServiceTest extends Assert {
+
+    @Test
+    public void testSameAsStreamSerializer() throws Exception {
+        XmlSchema schema = read("importBase.xsd");
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        new XmlSchemaStreamSerializer().serialize(schema, expected, null);
+
+        XmlSchemaSerializerService service = new XmlSchemaSerializerService();
+        assertFalse(service.isCacheRendered());
+        assertTrue(Arrays.equals(expected.toByteArray(), service.render(schema, null)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.write(schema, out, null);
+        assertTrue(Arrays.equals(expected.toByteArray(), out.toByteArray()));
+    }
+
+    @Test
+    public void testCachedRendering() throws Exception {
+        XmlSchemaCollection collection = new XmlSchemaCollection();
+        XmlSchema schema = collection.read(new InputSource(systemId("elementreferences.xsd")));
+        XmlSchemaSerializerService service = new XmlSchemaSerializerService(true);
+        byte[] first = service.render(schema, null);
+
+        // a schema that is not frozen is rendered again, so that any change is seen
+        XmlSchemaElement added = new XmlSchemaElement(schema, true);
+        added.setName("addedElement");
+        added.setSchemaTypeName(new QName("http://www.w3.org/2001/XMLSchema", "string"));
+        assertTrue(new String(service.render(schema, null), "UTF-8").contains("addedElement"));
+        added.setNillable(true);
+        assertTrue(new String(service.render(schema, null), "UTF-8").contains("nillable"));
+        assertTrue(first.length < service.render(schema, null).length);
+
+        collection.freeze();
+        first = service.render(schema, null);
+        assertTrue(Arrays.equals(first, service.render(schema, null)));
+
+        // other options are rendered separately
+        Map<String, String> options = new HashMap<String, String>();
+        options.put(OutputKeys.INDENT, "no");
+        byte[] compact = service.render(schema, options);
+        assertTrue(compact.length < first.length);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.write(schema, out, new HashMap<String, String>(options));
+        assertTrue(Arrays.equals(compact, out.toByteArray()));
+    }
+
+    @Test
+    public void testFrozenSchema() throws Exception {
+        XmlSchemaCollection collection = new XmlSchemaCollection();
+        XmlSchema schema = collection.read(new InputSource(systemId("importBase.xsd")));
+        collection.freeze();
+        XmlSchemaSerializerService service = new XmlSchemaSerializerService(true);
+        byte[] first = service.render(schema, null);
+        first[0] = 0;
+        byte[] second = service.render(schema, null);
+        assertEquals('<', second[0]);
+        service.clear();
+        assertTrue(Arrays.equals(second, service.render(schema, null)));
+    }
+
+    @Test
+    public void testConcurrentWrites() throws Exception {
+        final List<XmlSchema> schemas = new ArrayList<XmlSchema>();
+        for (String name : new String[] {"importBase.xsd", "allSimpleTypes.xsd", "choice.xsd"}) {
+            schemas.add(read(name));
+        }
+        final XmlSchemaSerializerService service = new XmlSchemaSerializerService();
+        final List<byte[]> expected = new ArrayList<byte[]>();
+        for (XmlSchema schema : schemas) {
+            expected.add(service.render(schema, null));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+            for (int t = 0; t < 8; t++) {
+                results.add(executor.submit(new Callable<Boolean>() {
+                    public Boolean call() throws Exception {
+                        for (int i = 0; i < 50; i++) {
+                            int index = i % schemas.size();
+                            ByteArrayOutputStream out = new ByteArrayOutputStream();
+                            service.write(schemas.get(index), out, null);
+                            if (!Arrays.equals(expected.get(index), out.toByteArray())) {
+                                return Boolean.FALSE;
+                            }
+                        }
+                        return Boolean.TRUE;
+                    }
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static XmlSchema read(String name) throws Exception {
+        return new XmlSchemaCollection().read(new InputSource(systemId(name)));
+    }
+
+    private static String systemId(String name) throws Exception {
+        return new File(Resources.asURI(name)).toURI().toString();
+    }
+}
@@ -0,0 +1,156 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package tests;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.xml.namespace.QName;
+
+import org.xml.sax.InputSource;
+
+import org.apache.ws.commons.schema.XmlSchema;
+import org.apache.ws.commons.schema.XmlSchemaCollection;
+import org.apache.ws.commons.schema.XmlSchemaComplexType;
+import org.apache.ws.commons.schema.XmlSchemaElement;
+import org.apache.ws.commons.schema.XmlSchemaException;
+import org.apache.ws.commons.schema.XmlSchemaSequence;
+import org.apache.ws.commons.schema.XmlSchemaSnapshot;
+import org.apache.ws.commons.schema.constants.Constants;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SnapshotTest extends Assert {
+
+    private static final String[] SCHEMAS = {
+        "allSimpleTypes.xsd", "annotation.xsd", "annotation-appinfo-deep.xsd", "appInfo.xsd",
+        "attributegroup.xsd", "constraints.xsd", "elementreferences.xsd", "externalAttributes.xsd",
+        "facets.xsd", "group.xsd", "importBase.xsd", "mixedContent.xsd", "notation.xsd", "union.xsd",
+        "circular/a.xsd", "redefine-include/redefine-import1.xsd", "WSCOMMONS-87/includeBase.xsd"
+    };
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        for (String name : SCHEMAS) {
+            XmlSchemaCollection collection = new XmlSchemaCollection();
+            collection.read(new InputSource(systemId(new File(Resources.asURI(name)))));
+
+            XmlSchemaCollection restored = XmlSchemaSnapshot.read(snapshot(collection), true);
+            assertEquals(name, serialize(collection), serialize(restored));
+            assertEquals(name, collection.getXmlSchemas().length, restored.getXmlSchemas().length);
+        }
+    }
+
+    @Test
+    public void testReferencesAreLinked() throws Exception {
+        XmlSchemaCollection collection = new XmlSchemaCollection();
+        collection.read(new InputSource(systemId(new File(Resources.asURI("elementreferences.xsd")))));
+
+        XmlSchemaCollection restored = XmlSchemaSnapshot.read(snapshot(collection));
+        String ns = "http://soapinterop.org/types";
+        XmlSchemaElement attTests = restored.getElementByQName(new QName(ns, "attTests"));
+        XmlSchemaSequence sequence =
+            (XmlSchemaSequence)((XmlSchemaComplexType)attTests.getSchemaType()).getParticle();
+        XmlSchemaElement ref = (XmlSchemaElement)sequence.getItems().get(0);
+        assertSame(restored.getElementByQName(new QName(ns, "attrTest")), ref.getRef().getTarget());
+
+        // the built-in types are shared, not copied
+        assertSame(new XmlSchemaCollection().getTypeByQName(Constants.XSD_STRING),
+                   restored.getTypeByQName(Constants.XSD_STRING));
+    }
+
+    @Test
+    public void testChangedSource() throws Exception {
+        File file = File.createTempFile("snapshot", ".xsd");
+        try {
+            writeSchema(file, "a");
+            XmlSchemaCollection collection = new XmlSchemaCollection();
+            collection.read(new InputSource(systemId(file)));
+            ByteArrayInputStream snapshot = snapshot(collection);
+
+            snapshot.mark(Integer.MAX_VALUE);
+            assertTrue(XmlSchemaSnapshot.isCurrent(snapshot));
+            snapshot.reset();
+            assertNotNull(XmlSchemaSnapshot.read(snapshot, true)
+                .getElementByQName(new QName("urn:snapshot", "a")));
+
+            writeSchema(file, "b");
+            snapshot.reset();
+            assertFalse(XmlSchemaSnapshot.isCurrent(snapshot));
+            snapshot.reset();
+            try {
+                XmlSchemaSnapshot.read(snapshot, true);
+                fail("the snapshot is out of date");
+            } catch (XmlSchemaException e) {
+                // expected
+            }
+            snapshot.reset();
+            assertNotNull(XmlSchemaSnapshot.read(snapshot, false));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test(expected = XmlSchemaException.class)
+    public void testNotASnapshot() throws Exception {
+        XmlSchemaSnapshot.read(new ByteArrayInputStream(new byte[] {1, 2, 3, 4, 5, 6, 7, 8}));
+    }
+
+    private static ByteArrayInputStream snapshot(XmlSchemaCollection collection) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        XmlSchemaSnapshot.write(collection, out);
+        return new ByteArrayInputStream(out.toByteArray());
+    }
+
+    private static void writeSchema(File file, String elementName) throws Exception {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(("<schema xmlns='http://www.w3.org/2001/XMLSchema' targetNamespace='urn:snapshot'>"
+                       + "<element name='" + elementName + "' type='string'/></schema>").getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+
+    private static String systemId(File file) {
+        return file.toURI().toString();
+    }
+
+    private static String serialize(XmlSchemaCollection collection) throws Exception {
+        Map<String, String> documents = new TreeMap<String, String>();
+        for (XmlSchema schema : collection.getXmlSchemas()) {
+            if (schema.getSourceURI() == null) {
+                // the built-in schema
+                continue;
+            }
+            StringWriter writer = new StringWriter();
+            schema.write(writer);
+            documents.put(schema.getSourceURI() + "|" + schema.getTargetNamespace(), writer.toString());
+        }
+        return documents.toString();
+    }
+}
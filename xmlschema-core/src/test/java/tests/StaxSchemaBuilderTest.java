@@ -0,0 +1,151 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package tests;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+
+import org.xml.sax.InputSource;
+
+import org.apache.ws.commons.schema.XmlSchema;
+import org.apache.ws.commons.schema.XmlSchemaAppInfo;
+import org.apache.ws.commons.schema.XmlSchemaCollection;
+import org.apache.ws.commons.schema.XmlSchemaElement;
+import org.apache.ws.commons.schema.XmlSchemaException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks that reading a schema from a StAX reader gives the same object model as reading it from a DOM
+ * document.
+ */
+public class StaxSchemaBuilderTest extends Assert {
+
+    /**
+     * Read every schema document of the test resources with both builders. Documents that the DOM builder
+     * rejects must be rejected by the StAX builder as well.
+     */
+    @Test
+    public void testSameModelAsDom() throws Exception {
+        List<File> files = new ArrayList<File>();
+        collectSchemas(new File(Resources.TEST_RESOURCES), files);
+        assertFalse(files.isEmpty());
+        for (File file : files) {
+            String systemId = file.toURI().toString();
+
+            String expected;
+            try {
+                XmlSchemaCollection domCollection = new XmlSchemaCollection();
+                domCollection.read(new InputSource(systemId));
+                expected = serialize(domCollection);
+            } catch (XmlSchemaException e) {
+                expected = null;
+            }
+
+            String actual;
+            InputStream in = new FileInputStream(file);
+            try {
+                XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(systemId, in);
+                XmlSchemaCollection staxCollection = new XmlSchemaCollection();
+                staxCollection.read(reader);
+                assertEquals(XMLStreamConstants.END_ELEMENT, reader.getEventType());
+                reader.close();
+                actual = serialize(staxCollection);
+            } catch (XmlSchemaException e) {
+                actual = null;
+            } finally {
+                in.close();
+            }
+
+            assertEquals(file.getPath(), expected, actual);
+        }
+    }
+
+    @Test
+    public void testAppInfoMarkup() throws Exception {
+        XMLStreamReader reader = XMLInputFactory.newInstance()
+            .createXMLStreamReader(new FileInputStream(Resources.asURI("appInfo.xsd")));
+        XmlSchema schema = new XmlSchemaCollection().read(reader);
+        XmlSchemaAppInfo appInfo = (XmlSchemaAppInfo)schema.getAnnotation().getItems().get(0);
+        assertTrue(appInfo.getMarkup().getLength() > 0);
+    }
+
+    @Test
+    public void testEmbeddedSchemas() throws Exception {
+        XMLStreamReader reader = XMLInputFactory.newInstance()
+            .createXMLStreamReader(new FileInputStream(Resources.asURI("twoSchemas.wsdl")));
+        XmlSchemaCollection schemaCol = new XmlSchemaCollection();
+        int count = 0;
+        while (reader.hasNext()) {
+            if (reader.next() == XMLStreamConstants.START_ELEMENT
+                && "schema".equals(reader.getLocalName())
+                && XMLConstants.W3C_XML_SCHEMA_NS_URI.equals(reader.getNamespaceURI())) {
+                schemaCol.read(reader);
+                count++;
+            }
+        }
+        assertEquals(2, count);
+
+        XmlSchemaElement elem1 = schemaCol.getElementByQName(new QName("http://tns.demo.org", "elem1"));
+        assertNotNull(elem1);
+        // elem2 in the first schema refers to a prefix that is declared outside of the schema element
+        assertNotNull(schemaCol.getTypeByQName(new QName("http://ns1.demo.org", "elem3")));
+    }
+
+    private static void collectSchemas(File dir, List<File> files) {
+        File[] children = dir.listFiles();
+        Arrays.sort(children);
+        for (File child : children) {
+            if (child.isDirectory()) {
+                collectSchemas(child, files);
+            } else if (child.getName().endsWith(".xsd")) {
+                files.add(child);
+            }
+        }
+    }
+
+    private static String serialize(XmlSchemaCollection collection) throws Exception {
+        Map<String, String> documents = new TreeMap<String, String>();
+        for (XmlSchema schema : collection.getXmlSchemas()) {
+            if (schema.getSourceURI() == null) {
+                // the built-in schema
+                continue;
+            }
+            StringWriter writer = new StringWriter();
+            schema.write(writer);
+            documents.put(schema.getSourceURI() + "|" + schema.getTargetNamespace(), writer.toString());
+        }
+        return documents.toString();
+    }
+}
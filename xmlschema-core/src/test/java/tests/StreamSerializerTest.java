@@ -0,0 +1,143 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package tests;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.transform.OutputKeys;
+
+import org.xml.sax.InputSource;
+
+import org.apache.ws.commons.schema.XmlSchema;
+import org.apache.ws.commons.schema.XmlSchemaCollection;
+import org.apache.ws.commons.schema.XmlSchemaStreamSerializer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks that a schema written by the streaming serializer reads back to the same object model.
+ */
+public class StreamSerializerTest extends Assert {
+
+    private static final String[] SCHEMAS = {
+        "allSimpleTypes.xsd", "annotation.xsd", "annotation-appinfo-deep.xsd", "appInfo.xsd", "any.xsd",
+        "anyAttTest.xsd", "attributegroup.xsd", "block.xsd", "choice.xsd", "constraints.xsd",
+        "externalAttributes.xsd", "facets.xsd", "group.xsd", "importBase.xsd", "list.xsd",
+        "mixedContent.xsd", "screstriction.xsd", "union.xsd", "xml.xsd", "circular/a.xsd",
+        "redefine-include/redefine-import1.xsd", "WSCOMMONS-87/includeBase.xsd", "woden.xsd"
+    };
+
+    @Test
+    public void testSameModelAsDom() throws Exception {
+        for (String name : SCHEMAS) {
+            String systemId = new File(Resources.asURI(name)).toURI().toString();
+            XmlSchemaCollection collection = new XmlSchemaCollection();
+            XmlSchema schema = collection.read(new InputSource(systemId));
+
+            StringWriter streamed = new StringWriter();
+            XmlSchemaStreamSerializer serializer = new XmlSchemaStreamSerializer();
+            serializer.setExtReg(collection.getExtReg());
+            serializer.serialize(schema, streamed, null);
+
+            InputSource source = new InputSource(new StringReader(streamed.toString()));
+            source.setSystemId(systemId);
+            XmlSchema reread = new XmlSchemaCollection().read(source);
+
+            assertEquals(name, write(schema), write(reread));
+        }
+    }
+
+    @Test
+    public void testOptions() throws Exception {
+        XmlSchema schema = read("choice.xsd");
+        XmlSchemaStreamSerializer serializer = new XmlSchemaStreamSerializer();
+
+        StringWriter defaults = new StringWriter();
+        serializer.serialize(schema, defaults, null);
+        assertTrue(defaults.toString().startsWith("<"));
+        assertTrue(defaults.toString().contains("\n    <"));
+        assertTrue(defaults.toString().contains("\n        <"));
+
+        Map<String, String> options = new HashMap<String, String>();
+        options.put(OutputKeys.INDENT, "yes");
+        options.put(XmlSchemaStreamSerializer.INDENT_AMOUNT, "2");
+        options.put(OutputKeys.ENCODING, "ISO-8859-1");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        serializer.serialize(schema, out, options);
+        String document = out.toString("ISO-8859-1");
+        assertTrue(document.startsWith("<?xml"));
+        assertTrue(document.contains("ISO-8859-1"));
+        assertTrue(document.contains("\n  <element name=\"computer\">\n    <complexType>"));
+
+        options.clear();
+        options.put(OutputKeys.OMIT_XML_DECLARATION, "yes");
+        StringWriter compact = new StringWriter();
+        serializer.serialize(schema, compact, options);
+        assertFalse(compact.toString().contains("\n"));
+        assertEquals(defaults.toString().replaceAll(">\\s+<", "><"), compact.toString());
+    }
+
+    @Test
+    public void testEmbedded() throws Exception {
+        XmlSchema schema = read("elementreferences.xsd");
+        StringWriter out = new StringWriter();
+        XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(out);
+        writer.writeStartDocument();
+        writer.writeStartElement("types");
+        schema.write(writer);
+        writer.writeEndElement();
+        writer.writeEndDocument();
+        writer.close();
+
+        XMLStreamReader reader = XMLInputFactory.newInstance()
+            .createXMLStreamReader(new StringReader(out.toString()));
+        reader.nextTag();
+        assertEquals("types", reader.getLocalName());
+        reader.nextTag();
+        assertEquals(XMLConstants.W3C_XML_SCHEMA_NS_URI, reader.getNamespaceURI());
+        XmlSchema embedded = new XmlSchemaCollection().read(reader);
+        assertEquals(XMLStreamConstants.END_ELEMENT, reader.getEventType());
+        assertEquals(schema.getElements().keySet(), embedded.getElements().keySet());
+    }
+
+    private static XmlSchema read(String name) throws Exception {
+        String systemId = new File(Resources.asURI(name)).toURI().toString();
+        return new XmlSchemaCollection().read(new InputSource(systemId));
+    }
+
+    private static String write(XmlSchema schema) {
+        StringWriter writer = new StringWriter();
+        schema.write(writer);
+        return writer.toString();
+    }
+}
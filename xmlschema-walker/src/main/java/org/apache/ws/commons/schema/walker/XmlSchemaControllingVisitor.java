@@ -0,0 +1,81 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ws.commons.schema.walker;
+
+import org.apache.ws.commons.schema.XmlSchemaAll;
+import org.apache.ws.commons.schema.XmlSchemaChoice;
+import org.apache.ws.commons.schema.XmlSchemaElement;
+import org.apache.ws.commons.schema.XmlSchemaSequence;
+
+/**
+ * An {@link XmlSchemaVisitor} that also controls the walk: it may skip the
+ * children of the elements and groups it enters, or end the walk.
+ * <p>
+ * Right after the {@link XmlSchemaWalker} notified such a visitor that an
+ * element or group was entered, it asks the visitor how to go on. Visitors
+ * that do not implement this interface always let the walk continue.
+ * </p>
+ */
+public interface XmlSchemaControllingVisitor extends XmlSchemaVisitor {
+
+    /**
+     * Asked after
+     * {@link #onEnterElement(XmlSchemaElement, XmlSchemaTypeInfo, boolean)}.
+     * <p>
+     * The visitor may return {@link XmlSchemaWalkControl#SKIP_CHILDREN} to
+     * skip the attributes and children of the element, or
+     * {@link XmlSchemaWalkControl#STOP} to end the walk.
+     * </p>
+     *
+     * @param element The element the walker has just entered.
+     * @param typeInfo The type information of that element.
+     * @param previouslyVisited Whether the element was previously visited.
+     * @return How the walk goes on.
+     */
+    XmlSchemaWalkControl controlElement(XmlSchemaElement element, XmlSchemaTypeInfo typeInfo,
+                                        boolean previouslyVisited);
+
+    /**
+     * Asked after {@link #onEnterAllGroup(XmlSchemaAll)}.
+     *
+     * @param all The {@link XmlSchemaAll} representing the all group.
+     * @return How the walk goes on: {@link XmlSchemaWalkControl#SKIP_CHILDREN}
+     *         skips the children of the group.
+     */
+    XmlSchemaWalkControl controlAllGroup(XmlSchemaAll all);
+
+    /**
+     * Asked after {@link #onEnterChoiceGroup(XmlSchemaChoice)}.
+     *
+     * @param choice The {@link XmlSchemaChoice} representing the choice group.
+     * @return How the walk goes on: {@link XmlSchemaWalkControl#SKIP_CHILDREN}
+     *         skips the children of the group.
+     */
+    XmlSchemaWalkControl controlChoiceGroup(XmlSchemaChoice choice);
+
+    /**
+     * Asked after {@link #onEnterSequenceGroup(XmlSchemaSequence)}.
+     *
+     * @param seq The {@link XmlSchemaSequence} representing the sequence.
+     * @return How the walk goes on: {@link XmlSchemaWalkControl#SKIP_CHILDREN}
+     *         skips the children of the group.
+     */
+    XmlSchemaWalkControl controlSequenceGroup(XmlSchemaSequence seq);
+}
@@ -0,0 +1,169 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ws.commons.schema.walker;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+import javax.xml.namespace.QName;
+
+import org.apache.ws.commons.schema.XmlSchemaCollection;
+import org.apache.ws.commons.schema.XmlSchemaElement;
+
+/**
+ * Walks several root {@link XmlSchemaElement}s of an
+ * {@link XmlSchemaCollection} at the same time, each with its own
+ * {@link XmlSchemaWalker} and {@link XmlSchemaVisitor}. The walkers share
+ * one {@link XmlSchemaScopeCache}, so the substitution groups and the type
+ * scopes of the collection are computed once for all of them.
+ * <p>
+ * Each root is walked as if by a new walker: an element visited in the walk
+ * of one root is not reported as previously visited in the walk of another.
+ * </p>
+ */
+public final class XmlSchemaParallelWalker {
+
+    private final XmlSchemaScopeCache scopeCache;
+    private Set<QName> userRecognizedTypes;
+
+    /**
+     * Initializes the {@link XmlSchemaParallelWalker} with the
+     * {@link XmlSchemaCollection} to walk.
+     *
+     * @param xmlSchemas The set of schemas to walk.
+     */
+    public XmlSchemaParallelWalker(XmlSchemaCollection xmlSchemas) {
+        this(new XmlSchemaScopeCache(xmlSchemas));
+    }
+
+    /**
+     * Initializes the {@link XmlSchemaParallelWalker} with an
+     * {@link XmlSchemaScopeCache}, which may be shared with other walkers.
+     *
+     * @param scopeCache The scopes of the types of the schemas to walk.
+     */
+    public XmlSchemaParallelWalker(XmlSchemaScopeCache scopeCache) {
+        if (scopeCache == null) {
+            throw new IllegalArgumentException("Input XmlSchemaScopeCache cannot be null.");
+        }
+        this.scopeCache = scopeCache;
+    }
+
+    /**
+     * Defines the set of types the calling code recognizes, as
+     * {@link XmlSchemaWalker#setUserRecognizedTypes(Set)} does for the walk
+     * of each root.
+     *
+     * @param userRecognizedTypes The set of types the user recognizes and would
+     *            like recognized when traversed.
+     */
+    public void setUserRecognizedTypes(Set<QName> userRecognizedTypes) {
+        this.userRecognizedTypes = userRecognizedTypes;
+    }
+
+    /**
+     * The user-defined types set with the call to
+     * {@link #setUserRecognizedTypes(Set)}, or <code>null</code> if none.
+     */
+    public Set<QName> getUserRecognizedTypes() {
+        return userRecognizedTypes;
+    }
+
+    /**
+     * Walks the root elements on the executor, and waits for all of the walks
+     * to complete. The visitor of each root comes from the factory, and is
+     * only notified by the walk of that root.
+     * <p>
+     * The visitors are returned in the order of the roots, whatever the order
+     * the walks complete in, so merging their results gives the same outcome
+     * on every run. If a walk fails, the walks that have not started yet are
+     * cancelled and the exception of the first root that failed, in the order
+     * of the roots, is thrown.
+     * </p>
+     * <p>
+     * As this method waits for the walks, the executor must either run them on
+     * other threads or run them before <code>execute</code> returns; a
+     * {@link java.util.concurrent.ThreadPoolExecutor} with a few threads is a
+     * good fit.
+     * </p>
+     *
+     * @param roots The root elements to start the walks from.
+     * @param visitorFactory Creates the visitor of each root.
+     * @param executor The executor to run the walks on.
+     * @return The visitors of the roots, in the order of the roots.
+     * @throws InterruptedException If interrupted while waiting for the walks.
+     */
+    public <V extends XmlSchemaVisitor> List<V> walk(Collection<XmlSchemaElement> roots,
+                                                     final XmlSchemaVisitorFactory<V> visitorFactory,
+                                                     Executor executor) throws InterruptedException {
+        if (roots == null) {
+            throw new IllegalArgumentException("The root elements cannot be null.");
+        } else if (visitorFactory == null) {
+            throw new IllegalArgumentException("The visitor factory cannot be null.");
+        } else if (executor == null) {
+            throw new IllegalArgumentException("The executor cannot be null.");
+        }
+
+        final Set<QName> recognizedTypes = userRecognizedTypes;
+        final List<FutureTask<V>> walks = new ArrayList<FutureTask<V>>(roots.size());
+        try {
+            for (final XmlSchemaElement root : roots) {
+                FutureTask<V> walk = new FutureTask<V>(new Callable<V>() {
+                    public V call() {
+                        final V visitor = visitorFactory.newVisitor(root);
+                        final XmlSchemaWalker walker = new XmlSchemaWalker(scopeCache, visitor);
+                        walker.setUserRecognizedTypes(recognizedTypes);
+                        walker.walk(root);
+                        return visitor;
+                    }
+                });
+                walks.add(walk);
+                executor.execute(walk);
+            }
+
+            final List<V> visitors = new ArrayList<V>(walks.size());
+            for (FutureTask<V> walk : walks) {
+                visitors.add(walk.get());
+            }
+            return visitors;
+
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            } else if (cause instanceof Error) {
+                throw (Error)cause;
+            }
+            throw new IllegalStateException("Walk failed", cause);
+
+        } finally {
+            // Does nothing to the walks that completed.
+            for (FutureTask<V> walk : walks) {
+                walk.cancel(false);
+            }
+        }
+    }
+}
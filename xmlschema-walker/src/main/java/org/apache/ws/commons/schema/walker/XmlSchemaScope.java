@@ -26,6 +26,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.xml.namespace.QName;
 
@@ -64,7 +65,8 @@ import org.apache.ws.commons.schema.utils.XmlSchemaNamed;
 final class XmlSchemaScope {
 
     private Map<String, XmlSchema> schemasByNamespace;
-    private Map<QName, XmlSchemaScope> scopeCache;
+    private ConcurrentMap<QName, XmlSchemaScope> scopeCache;
+    private Map<XmlSchemaType, XmlSchemaScope> anonymousScopeCache;
 
     private XmlSchemaTypeInfo typeInfo;
     private HashMap<QName, XmlSchemaAttrInfo> attributes;
@@ -86,9 +88,11 @@ final class XmlSchemaScope {
         this();
         this.schemasByNamespace = child.schemasByNamespace;
         this.scopeCache = child.scopeCache;
+        this.anonymousScopeCache = child.anonymousScopeCache;
         this.userRecognizedTypes = child.userRecognizedTypes;
 
         walk(type);
+        resolveAttributeTypes();
     }
 
     /**
@@ -98,18 +102,23 @@ final class XmlSchemaScope {
      *
      * @param element The base element to build the scope from.
      * @param substitutions The master list of substitution groups to pull from.
+     * @param scopeCache The scopes of named types, by type name.
+     * @param anonymousScopeCache The scopes of anonymous types, by identity.
      * @param userRecognizedTypes The set of types recognized by the caller.
      */
     XmlSchemaScope(XmlSchemaType type, Map<String, XmlSchema> xmlSchemasByNamespace,
-                   Map<QName, XmlSchemaScope> scopeCache, Set<QName> userRecognizedTypes) {
+                   ConcurrentMap<QName, XmlSchemaScope> scopeCache,
+                   Map<XmlSchemaType, XmlSchemaScope> anonymousScopeCache, Set<QName> userRecognizedTypes) {
 
         this();
 
         schemasByNamespace = xmlSchemasByNamespace;
         this.scopeCache = scopeCache;
+        this.anonymousScopeCache = anonymousScopeCache;
         this.userRecognizedTypes = userRecognizedTypes;
 
         walk(type);
+        resolveAttributeTypes();
     }
 
     /**
@@ -197,8 +206,11 @@ final class XmlSchemaScope {
             List<XmlSchemaSimpleType> baseTypes = union.getBaseTypes();
 
             if (namedBaseTypes != null) {
+                // Do not add the named member types to the union itself.
                 if (baseTypes == null) {
                     baseTypes = new ArrayList<XmlSchemaSimpleType>(namedBaseTypes.length);
+                } else {
+                    baseTypes = new ArrayList<XmlSchemaSimpleType>(baseTypes);
                 }
 
                 for (QName namedBaseType : namedBaseTypes) {
@@ -697,14 +709,60 @@ final class XmlSchemaScope {
     }
 
     private XmlSchemaScope getScope(XmlSchemaType type) {
-        if ((type.getQName() != null) && scopeCache.containsKey(type.getQName())) {
+        XmlSchemaScope scope = getCached(type, scopeCache, anonymousScopeCache);
+        if (scope == null) {
+            scope = cache(type, new XmlSchemaScope(this, type), scopeCache, anonymousScopeCache);
+        }
+        return scope;
+    }
+
+    /**
+     * Returns the cached scope of the type, or <code>null</code> if it has
+     * not been computed yet. Named types are looked up by name, and anonymous
+     * types by identity, since distinct anonymous types may be equal.
+     */
+    static XmlSchemaScope getCached(XmlSchemaType type, ConcurrentMap<QName, XmlSchemaScope> scopeCache,
+                                    Map<XmlSchemaType, XmlSchemaScope> anonymousScopeCache) {
+        if (type.getQName() != null) {
             return scopeCache.get(type.getQName());
+        }
+        return anonymousScopeCache.get(type);
+    }
+
+    /**
+     * Caches the scope of the type, unless another thread cached one first,
+     * and returns the cached scope.
+     */
+    static XmlSchemaScope cache(XmlSchemaType type, XmlSchemaScope scope,
+                                ConcurrentMap<QName, XmlSchemaScope> scopeCache,
+                                Map<XmlSchemaType, XmlSchemaScope> anonymousScopeCache) {
+        XmlSchemaScope existing;
+        if (type.getQName() != null) {
+            existing = scopeCache.putIfAbsent(type.getQName(), scope);
         } else {
-            XmlSchemaScope scope = new XmlSchemaScope(this, type);
-            if (type.getQName() != null) {
-                scopeCache.put(type.getQName(), scope);
+            synchronized (anonymousScopeCache) {
+                existing = anonymousScopeCache.get(type);
+                if (existing == null) {
+                    anonymousScopeCache.put(type, scope);
+                }
+            }
+        }
+        return (existing != null) ? existing : scope;
+    }
+
+    /**
+     * Sets the types of the attributes in scope, so the scope is complete
+     * before it is cached and shared.
+     */
+    private void resolveAttributeTypes() {
+        if (attributes == null) {
+            return;
+        }
+        for (XmlSchemaAttrInfo attr : attributes.values()) {
+            final XmlSchemaType attrType = attr.getAttribute().getSchemaType();
+            if ((attr.getType() == null) && (attrType != null)) {
+                attr.setType(getScope(attrType).getTypeInfo());
             }
-            return scope;
         }
     }
 
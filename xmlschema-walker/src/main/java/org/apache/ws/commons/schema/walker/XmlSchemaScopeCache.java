@@ -0,0 +1,176 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ws.commons.schema.walker;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.xml.namespace.QName;
+
+import org.apache.ws.commons.schema.XmlSchema;
+import org.apache.ws.commons.schema.XmlSchemaCollection;
+import org.apache.ws.commons.schema.XmlSchemaElement;
+import org.apache.ws.commons.schema.XmlSchemaType;
+
+/**
+ * The scopes of the types in an {@link XmlSchemaCollection}, shared by any
+ * number of {@link XmlSchemaWalker}s and threads. The scope of a type, with
+ * its merged attributes and facets, is computed the first time a walker
+ * reaches the type, and is then kept for the lifetime of the cache. Named
+ * types are kept by name, and anonymous types by identity.
+ * <p>
+ * Scopes depend on the user-recognized types of the walker, so they are kept
+ * separately for each set of user-recognized types.
+ * </p>
+ * <p>
+ * The collection must not change while the cache is in use; consider calling
+ * {@link XmlSchemaCollection#freeze()} before creating the cache.
+ * </p>
+ */
+public final class XmlSchemaScopeCache {
+
+    private final XmlSchemaCollection schemas;
+    private final Map<String, XmlSchema> schemasByNamespace;
+    private final Map<QName, List<XmlSchemaElement>> elemsBySubstGroup;
+    private final ConcurrentMap<Set<QName>, TypeScopes> scopesByRecognizedTypes;
+
+    /**
+     * Creates a cache for the scopes of the types in the
+     * {@link XmlSchemaCollection}.
+     *
+     * @param xmlSchemas The schemas that the walkers walk.
+     */
+    public XmlSchemaScopeCache(XmlSchemaCollection xmlSchemas) {
+        if (xmlSchemas == null) {
+            throw new IllegalArgumentException("Input XmlSchemaCollection cannot be null.");
+        }
+
+        schemas = xmlSchemas;
+
+        schemasByNamespace = new HashMap<String, XmlSchema>();
+        elemsBySubstGroup = new HashMap<QName, List<XmlSchemaElement>>();
+
+        for (XmlSchema schema : schemas.getXmlSchemas()) {
+            schemasByNamespace.put(schema.getTargetNamespace(), schema);
+
+            for (XmlSchemaElement elem : schema.getElements().values()) {
+                if (elem.getSubstitutionGroup() != null) {
+                    List<XmlSchemaElement> elems = elemsBySubstGroup.get(elem.getSubstitutionGroup());
+                    if (elems == null) {
+                        elems = new ArrayList<XmlSchemaElement>();
+                        elemsBySubstGroup.put(elem.getSubstitutionGroup(), elems);
+                    }
+                    elems.add(elem);
+                }
+            }
+        }
+
+        scopesByRecognizedTypes = new ConcurrentHashMap<Set<QName>, TypeScopes>();
+    }
+
+    /**
+     * The {@link XmlSchemaCollection} whose type scopes are cached.
+     */
+    public XmlSchemaCollection getCollection() {
+        return schemas;
+    }
+
+    Map<String, XmlSchema> getSchemasByNamespace() {
+        return schemasByNamespace;
+    }
+
+    Map<QName, List<XmlSchemaElement>> getElemsBySubstGroup() {
+        return elemsBySubstGroup;
+    }
+
+    /**
+     * The scopes computed for a set of user-recognized types, which may be
+     * <code>null</code>.
+     */
+    TypeScopes getScopes(Set<QName> userRecognizedTypes) {
+        Set<QName> key;
+        if (userRecognizedTypes == null) {
+            key = Collections.emptySet();
+        } else {
+            key = Collections.unmodifiableSet(new HashSet<QName>(userRecognizedTypes));
+        }
+
+        TypeScopes scopes = scopesByRecognizedTypes.get(key);
+        if (scopes == null) {
+            scopes = new TypeScopes(key);
+            TypeScopes existing = scopesByRecognizedTypes.putIfAbsent(key, scopes);
+            if (existing != null) {
+                scopes = existing;
+            }
+        }
+        return scopes;
+    }
+
+    /**
+     * Discards the scopes computed so far.
+     */
+    void clear() {
+        scopesByRecognizedTypes.clear();
+    }
+
+    /**
+     * The scopes of the types for one set of user-recognized types.
+     * A scope is not modified once it is in the map, so threads may share it.
+     */
+    final class TypeScopes {
+        private final Set<QName> userRecognizedTypes;
+        private final ConcurrentMap<QName, XmlSchemaScope> scopes;
+        private final Map<XmlSchemaType, XmlSchemaScope> anonymousScopes;
+
+        TypeScopes(Set<QName> userRecognizedTypes) {
+            this.userRecognizedTypes = userRecognizedTypes;
+            scopes = new ConcurrentHashMap<QName, XmlSchemaScope>();
+            anonymousScopes =
+                Collections.synchronizedMap(new IdentityHashMap<XmlSchemaType, XmlSchemaScope>());
+        }
+
+        /**
+         * Returns the scope of the type, computing it if the type has not
+         * been reached yet.
+         */
+        XmlSchemaScope getScope(XmlSchemaType type) {
+            XmlSchemaScope scope = XmlSchemaScope.getCached(type, scopes, anonymousScopes);
+            if (scope == null) {
+                scope = new XmlSchemaScope(type, schemasByNamespace, scopes, anonymousScopes,
+                                           userRecognizedTypes);
+                // Another thread may have computed the same scope.
+                scope = XmlSchemaScope.cache(type, scope, scopes, anonymousScopes);
+            }
+            return scope;
+        }
+
+        int size() {
+            return scopes.size() + anonymousScopes.size();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ws.commons.schema.walker;
+
+import org.apache.ws.commons.schema.XmlSchemaElement;
+
+/**
+ * Creates the {@link XmlSchemaVisitor} for each root element that an
+ * {@link XmlSchemaParallelWalker} walks.
+ *
+ * @param <V> The type of the visitors.
+ */
+public interface XmlSchemaVisitorFactory<V extends XmlSchemaVisitor> {
+
+    /**
+     * Creates the visitor to notify while walking from the root element. This
+     * is called on the thread that walks the root, once for each root.
+     *
+     * @param root The root element the walk starts from.
+     * @return A new visitor, not shared with the walks of other roots.
+     */
+    V newVisitor(XmlSchemaElement root);
+}
@@ -0,0 +1,54 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ws.commons.schema.walker;
+
+/**
+ * Tells the {@link XmlSchemaWalker} how to go on after an
+ * {@link XmlSchemaControllingVisitor} was notified that an element or group
+ * was entered.
+ * <p>
+ * When several controlling visitors are attached to the walker, the walk
+ * follows the strongest of their answers: {@link #STOP} over
+ * {@link #SKIP_CHILDREN} over {@link #CONTINUE}. All of the visitors are
+ * notified of the entry, whatever the others answer.
+ * </p>
+ */
+public enum XmlSchemaWalkControl {
+
+    /**
+     * Walk the attributes and children of the element, or the children of
+     * the group.
+     */
+    CONTINUE,
+
+    /**
+     * Do not walk the attributes and children of the element, or the children
+     * of the group. The walk goes on with the exit of the element or group,
+     * and then its siblings. A skipped element is not considered visited, so
+     * its children are walked if it is reached again.
+     */
+    SKIP_CHILDREN,
+
+    /**
+     * End the walk right away. The visitors are not notified of anything
+     * else, not even the exits of the elements and groups they are in.
+     */
+    STOP
+}
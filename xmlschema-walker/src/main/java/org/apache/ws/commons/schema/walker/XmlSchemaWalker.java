@@ -19,9 +19,10 @@
 
 package org.apache.ws.commons.schema.walker;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -52,12 +53,14 @@ public final class XmlSchemaWalker {
 
     private Set<QName> userRecognizedTypes;
 
-    private final XmlSchemaCollection schemas;
     private final ArrayList<XmlSchemaVisitor> visitors;
     private final Map<QName, List<XmlSchemaElement>> elemsBySubstGroup;
     private final Map<String, XmlSchema> schemasByNamespace;
-    private final Map<QName, XmlSchemaScope> scopeCache;
+    private final XmlSchemaScopeCache scopeCache;
+    private final boolean sharedScopeCache;
     private final Set<QName> visitedElements;
+    private XmlSchemaScopeCache.TypeScopes scopes;
+    private boolean stopped;
 
     /**
      * Initializes the {@link XmlSchemaWalker} with the
@@ -65,34 +68,37 @@ public final class XmlSchemaWalker {
      * {@link XmlSchemaElement}.
      */
     public XmlSchemaWalker(XmlSchemaCollection xmlSchemas) {
-        if (xmlSchemas == null) {
-            throw new IllegalArgumentException("Input XmlSchemaCollection cannot be null.");
-        }
+        this(new XmlSchemaScopeCache(xmlSchemas), false);
+    }
 
-        schemas = xmlSchemas;
-        visitors = new ArrayList<XmlSchemaVisitor>(1);
+    /**
+     * Initializes the {@link XmlSchemaWalker} with an
+     * {@link XmlSchemaScopeCache} shared with other walkers of the same
+     * {@link XmlSchemaCollection}, possibly on other threads. The walker
+     * reuses the type scopes that other walkers already computed, and
+     * {@link #clear()} keeps them.
+     *
+     * @param scopeCache The scopes of the types of the schemas to walk.
+     */
+    public XmlSchemaWalker(XmlSchemaScopeCache scopeCache) {
+        this(scopeCache, true);
+    }
 
-        schemasByNamespace = new HashMap<String, XmlSchema>();
-        elemsBySubstGroup = new HashMap<QName, List<XmlSchemaElement>>();
+    private XmlSchemaWalker(XmlSchemaScopeCache scopeCache, boolean shared) {
+        if (scopeCache == null) {
+            throw new IllegalArgumentException("Input XmlSchemaScopeCache cannot be null.");
+        }
 
-        for (XmlSchema schema : schemas.getXmlSchemas()) {
-            schemasByNamespace.put(schema.getTargetNamespace(), schema);
+        this.scopeCache = scopeCache;
+        sharedScopeCache = shared;
+        visitors = new ArrayList<XmlSchemaVisitor>(1);
 
-            for (XmlSchemaElement elem : schema.getElements().values()) {
-                if (elem.getSubstitutionGroup() != null) {
-                    List<XmlSchemaElement> elems = elemsBySubstGroup.get(elem.getSubstitutionGroup());
-                    if (elems == null) {
-                        elems = new ArrayList<XmlSchemaElement>();
-                        elemsBySubstGroup.put(elem.getSubstitutionGroup(), elems);
-                    }
-                    elems.add(elem);
-                }
-            }
-        }
+        schemasByNamespace = scopeCache.getSchemasByNamespace();
+        elemsBySubstGroup = scopeCache.getElemsBySubstGroup();
 
-        scopeCache = new HashMap<QName, XmlSchemaScope>();
         visitedElements = new java.util.HashSet<QName>();
         userRecognizedTypes = null;
+        scopes = null;
     }
 
     /**
@@ -113,6 +119,22 @@ public final class XmlSchemaWalker {
         }
     }
 
+    /**
+     * Initializes the <code>XmlSchemaWalker</code> with a shared
+     * {@link XmlSchemaScopeCache} and an {@link XmlSchemaVisitor} to notify as
+     * the schema is walked.
+     *
+     * @param scopeCache The scopes of the types of the schemas to walk.
+     * @param visitor The visitor to visit during the walk.
+     */
+    public XmlSchemaWalker(XmlSchemaScopeCache scopeCache, XmlSchemaVisitor visitor) {
+
+        this(scopeCache);
+        if (visitor != null) {
+            visitors.add(visitor);
+        }
+    }
+
     /**
      * Adds a new visitor to be notified as the XML Schemas are walked.
      *
@@ -139,10 +161,13 @@ public final class XmlSchemaWalker {
 
     /**
      * Clears the internal state in preparation for another walk through the
-     * schema.
+     * schema. The type scopes of a shared {@link XmlSchemaScopeCache} are kept.
      */
     public void clear() {
-        scopeCache.clear();
+        if (!sharedScopeCache) {
+            scopeCache.clear();
+            scopes = null;
+        }
         visitedElements.clear();
     }
 
@@ -163,6 +188,7 @@ public final class XmlSchemaWalker {
      */
     public void setUserRecognizedTypes(Set<QName> userRecognizedTypes) {
         this.userRecognizedTypes = userRecognizedTypes;
+        scopes = null;
     }
 
     /**
@@ -181,10 +207,77 @@ public final class XmlSchemaWalker {
      * Once this method completes, call {@link #clear()} before starting another
      * walk through the XML Schemas.
      * </p>
+     * <p>
+     * An {@link XmlSchemaControllingVisitor} may skip the children of the
+     * elements and groups it enters, or end the walk, as described in
+     * {@link XmlSchemaWalkControl}.
+     * </p>
      *
      * @param element The root element to start the walk from.
      */
     public void walk(XmlSchemaElement element) {
+        final ArrayDeque<Step> steps = new ArrayDeque<Step>();
+        stopped = false;
+        enter(element, steps);
+
+        while (!stopped && !steps.isEmpty()) {
+            final XmlSchemaParticle next = steps.peek().next();
+            if (next != null) {
+                enter(next, steps);
+            } else {
+                steps.pop().exit();
+            }
+        }
+    }
+
+    /**
+     * An element or group the walk is in. The walk keeps these on its own
+     * stack instead of the thread's, so the depth of the schema is not limited
+     * by the size of the thread's stack.
+     */
+    private abstract static class Step {
+
+        /**
+         * The next particle to walk inside of this step, or <code>null</code>
+         * if there are none left.
+         */
+        abstract XmlSchemaParticle next();
+
+        /**
+         * Notifies the visitors that the walk is leaving this step.
+         */
+        abstract void exit();
+    }
+
+    private void enter(XmlSchemaParticle particle, ArrayDeque<Step> steps) {
+        if (particle instanceof XmlSchemaGroupRef) {
+            XmlSchemaGroupRef groupRef = (XmlSchemaGroupRef)particle;
+            XmlSchemaGroupParticle group = groupRef.getParticle();
+            if (group == null) {
+                XmlSchema schema = schemasByNamespace.get(groupRef.getRefName().getNamespaceURI());
+
+                group = schema.getGroupByName(groupRef.getRefName()).getParticle();
+            }
+            enter(group, groupRef.getMinOccurs(), groupRef.getMaxOccurs(), steps);
+
+        } else if (particle instanceof XmlSchemaGroupParticle) {
+            enter((XmlSchemaGroupParticle)particle, particle.getMinOccurs(), particle.getMaxOccurs(), steps);
+
+        } else if (particle instanceof XmlSchemaElement) {
+            enter((XmlSchemaElement)particle, steps);
+
+        } else if (particle instanceof XmlSchemaAny) {
+            for (XmlSchemaVisitor visitor : visitors) {
+                visitor.onVisitAny((XmlSchemaAny)particle);
+            }
+
+        } else {
+            throw new IllegalArgumentException("Unknown particle type " + particle.getClass().getName());
+        }
+
+    }
+
+    private void enter(XmlSchemaElement element, ArrayDeque<Step> steps) {
         element = getElement(element, false);
 
         final XmlSchemaElement substGroupElem = element;
@@ -216,58 +309,50 @@ public final class XmlSchemaWalker {
             }
         }
 
+        XmlSchemaTypeInfo typeInfo = null;
+        boolean previouslyVisited = false;
+        XmlSchemaParticle child = null;
+
         if (schemaType != null) {
-            XmlSchemaScope scope = null;
-            if ((schemaType.getQName() != null) && scopeCache.containsKey(schemaType.getQName())) {
-                scope = scopeCache.get(schemaType.getQName());
-            } else {
-                scope = new XmlSchemaScope(schemaType, schemasByNamespace, scopeCache, userRecognizedTypes);
-                if (schemaType.getQName() != null) {
-                    scopeCache.put(schemaType.getQName(), scope);
-                }
+            if (scopes == null) {
+                scopes = scopeCache.getScopes(userRecognizedTypes);
             }
+            final XmlSchemaScope scope = scopes.getScope(schemaType);
 
             // 1. Fetch all attributes as a List<XmlSchemaAttribute>.
             final Collection<XmlSchemaAttrInfo> attrs = scope.getAttributesInScope();
-            final XmlSchemaTypeInfo typeInfo = scope.getTypeInfo();
+            typeInfo = scope.getTypeInfo();
 
             // 2. for each visitor, call visitor.startElement(element, type);
-            final boolean previouslyVisited = (!element.isAnonymous() && visitedElements.contains(element
-                .getQName()));
+            previouslyVisited = (!element.isAnonymous() && visitedElements.contains(element.getQName()));
 
+            XmlSchemaWalkControl control = XmlSchemaWalkControl.CONTINUE;
             for (XmlSchemaVisitor visitor : visitors) {
                 visitor.onEnterElement(element, typeInfo, previouslyVisited);
+                if (visitor instanceof XmlSchemaControllingVisitor) {
+                    control = strongest(control, ((XmlSchemaControllingVisitor)visitor)
+                        .controlElement(element, typeInfo, previouslyVisited));
+                }
+            }
+
+            if (control == XmlSchemaWalkControl.STOP) {
+                stopped = true;
+                return;
             }
+            final boolean skipped = (control == XmlSchemaWalkControl.SKIP_CHILDREN);
 
-            if (!element.isAnonymous() && !previouslyVisited) {
+            if (!element.isAnonymous() && !previouslyVisited && !skipped) {
                 visitedElements.add(element.getQName());
             }
 
-            // If we already visited this element, skip the attributes and
-            // child.
-            if (!previouslyVisited) {
+            // If we already visited this element, or a visitor asked to skip
+            // it, skip the attributes and child.
+            if (!previouslyVisited && !skipped) {
 
-                // 3. Walk the attributes in the element, retrieving type
-                // information.
+                // 3. Walk the attributes in the element; the scope has
+                // already retrieved their type information.
                 if (attrs != null) {
                     for (XmlSchemaAttrInfo attr : attrs) {
-                        XmlSchemaType attrType = attr.getAttribute().getSchemaType();
-                        XmlSchemaScope attrScope = null;
-                        if ((attrType.getQName() != null) && scopeCache.containsKey(attrType.getQName())) {
-                            attrScope = scopeCache.get(attrType.getQName());
-                        } else {
-                            attrScope = new XmlSchemaScope(attr.getAttribute().getSchemaType(),
-                                                           schemasByNamespace, scopeCache,
-                                                           userRecognizedTypes);
-
-                            if (attrType.getName() != null) {
-                                scopeCache.put(attrType.getQName(), attrScope);
-                            }
-                        }
-
-                        final XmlSchemaTypeInfo attrTypeInfo = attrScope.getTypeInfo();
-                        attr.setType(attrTypeInfo);
-
                         for (XmlSchemaVisitor visitor : visitors) {
                             visitor.onVisitAttribute(element, attr);
                         }
@@ -289,19 +374,8 @@ public final class XmlSchemaWalker {
                     visitor.onEndAttributes(element, typeInfo);
                 }
 
-                // 6. Walk the child groups and elements (if any), depth-first.
-                final XmlSchemaParticle child = scope.getParticle();
-                if (child != null) {
-                    walk(child);
-                }
-            }
-
-            /*
-             * 7. On the way back up, call visitor.endElement(element, type,
-             * attributes);
-             */
-            for (XmlSchemaVisitor visitor : visitors) {
-                visitor.onExitElement(element, typeInfo, previouslyVisited);
+                // 6. The child groups and elements (if any) are walked next.
+                child = scope.getParticle();
             }
 
         } else if (!element.isAbstract()) {
@@ -309,47 +383,69 @@ public final class XmlSchemaWalker {
                                             + " is not abstract and has no type.");
         }
 
-        // 8. Now handle substitute elements, if any.
-        if (substitutes != null) {
-            for (XmlSchemaElement substitute : substitutes) {
-                walk(substitute);
-            }
-
-            for (XmlSchemaVisitor visitor : visitors) {
-                visitor.onExitSubstitutionGroup(substGroupElem);
-            }
-        }
+        steps.push(new ElementStep(element, substGroupElem, typeInfo, previouslyVisited, child, substitutes));
     }
 
-    private void walk(XmlSchemaParticle particle) {
-        if (particle instanceof XmlSchemaGroupRef) {
-            XmlSchemaGroupRef groupRef = (XmlSchemaGroupRef)particle;
-            XmlSchemaGroupParticle group = groupRef.getParticle();
-            if (group == null) {
-                XmlSchema schema = schemasByNamespace.get(groupRef.getRefName().getNamespaceURI());
+    /**
+     * An element being walked: first its child, if any, then its exit, and
+     * then the substitute elements, if it is the root of a substitution group.
+     */
+    private final class ElementStep extends Step {
+        private final XmlSchemaElement element;
+        private final XmlSchemaElement substGroupElem;
+        private final XmlSchemaTypeInfo typeInfo;
+        private final boolean previouslyVisited;
+        private final Iterator<XmlSchemaElement> substitutes;
+        private XmlSchemaParticle child;
+        private boolean exited;
+
+        ElementStep(XmlSchemaElement element, XmlSchemaElement substGroupElem, XmlSchemaTypeInfo typeInfo,
+                    boolean previouslyVisited, XmlSchemaParticle child, List<XmlSchemaElement> substitutes) {
+            this.element = element;
+            this.substGroupElem = substGroupElem;
+            this.typeInfo = typeInfo;
+            this.previouslyVisited = previouslyVisited;
+            this.child = child;
+            this.substitutes = (substitutes == null) ? null : substitutes.iterator();
+            exited = (typeInfo == null);
+        }
 
-                group = schema.getGroupByName(groupRef.getRefName()).getParticle();
+        XmlSchemaParticle next() {
+            if (child != null) {
+                final XmlSchemaParticle next = child;
+                child = null;
+                return next;
             }
-            walk(group, groupRef.getMinOccurs(), groupRef.getMaxOccurs());
 
-        } else if (particle instanceof XmlSchemaGroupParticle) {
-            walk((XmlSchemaGroupParticle)particle, particle.getMinOccurs(), particle.getMaxOccurs());
-
-        } else if (particle instanceof XmlSchemaElement) {
-            walk((XmlSchemaElement)particle);
-
-        } else if (particle instanceof XmlSchemaAny) {
-            for (XmlSchemaVisitor visitor : visitors) {
-                visitor.onVisitAny((XmlSchemaAny)particle);
+            if (!exited) {
+                /*
+                 * 7. On the way back up, call visitor.endElement(element,
+                 * type, attributes);
+                 */
+                for (XmlSchemaVisitor visitor : visitors) {
+                    visitor.onExitElement(element, typeInfo, previouslyVisited);
+                }
+                exited = true;
             }
 
-        } else {
-            throw new IllegalArgumentException("Unknown particle type " + particle.getClass().getName());
+            // 8. Now handle substitute elements, if any.
+            if ((substitutes != null) && substitutes.hasNext()) {
+                return substitutes.next();
+            }
+            return null;
         }
 
+        void exit() {
+            if (substitutes != null) {
+                for (XmlSchemaVisitor visitor : visitors) {
+                    visitor.onExitSubstitutionGroup(substGroupElem);
+                }
+            }
+        }
     }
 
-    private void walk(XmlSchemaGroupParticle group, long minOccurs, long maxOccurs) {
+    private void enter(XmlSchemaGroupParticle group, long minOccurs, long maxOccurs,
+                       ArrayDeque<Step> steps) {
 
         // Only make a copy of the particle if the minOccurs or maxOccurs was
         // set.
@@ -425,18 +521,37 @@ public final class XmlSchemaWalker {
         }
 
         // 3. Notify the visitors.
+        XmlSchemaWalkControl control = XmlSchemaWalkControl.CONTINUE;
         for (XmlSchemaVisitor visitor : visitors) {
+            final XmlSchemaControllingVisitor controller = (visitor instanceof XmlSchemaControllingVisitor)
+                ? (XmlSchemaControllingVisitor)visitor : null;
             if (all != null) {
                 visitor.onEnterAllGroup(all);
+                if (controller != null) {
+                    control = strongest(control, controller.controlAllGroup(all));
+                }
             } else if (choice != null) {
                 visitor.onEnterChoiceGroup(choice);
+                if (controller != null) {
+                    control = strongest(control, controller.controlChoiceGroup(choice));
+                }
             } else if (seq != null) {
                 visitor.onEnterSequenceGroup(seq);
+                if (controller != null) {
+                    control = strongest(control, controller.controlSequenceGroup(seq));
+                }
             }
         }
 
-        // 4. Walk the children.
-        if (all != null) {
+        if (control == XmlSchemaWalkControl.STOP) {
+            stopped = true;
+            return;
+        }
+
+        // 4. Walk the children, unless a visitor asked to skip them.
+        if (control == XmlSchemaWalkControl.SKIP_CHILDREN) {
+            children = new ArrayList<XmlSchemaParticle>(0);
+        } else if (all != null) {
             children = new ArrayList<XmlSchemaParticle>(all.getItems().size());
             for (XmlSchemaAllMember item : all.getItems()) {
                 if (item instanceof XmlSchemaGroup) {
@@ -482,18 +597,42 @@ public final class XmlSchemaWalker {
             throw new IllegalStateException("Could not process group of type " + group.getClass().getName());
         }
 
-        for (XmlSchemaParticle child : children) {
-            walk(child);
+        if (all != null) {
+            group = all;
+        } else if (choice != null) {
+            group = choice;
+        } else {
+            group = seq;
         }
+        steps.push(new GroupStep(group, children));
+    }
 
-        // 5. Notify the visitors we are exiting the group.
-        for (XmlSchemaVisitor visitor : visitors) {
-            if (all != null) {
-                visitor.onExitAllGroup(all);
-            } else if (choice != null) {
-                visitor.onExitChoiceGroup(choice);
-            } else if (seq != null) {
-                visitor.onExitSequenceGroup(seq);
+    /**
+     * A group being walked: its children, then its exit.
+     */
+    private final class GroupStep extends Step {
+        private final XmlSchemaGroupParticle group;
+        private final Iterator<XmlSchemaParticle> children;
+
+        GroupStep(XmlSchemaGroupParticle group, List<XmlSchemaParticle> children) {
+            this.group = group;
+            this.children = children.iterator();
+        }
+
+        XmlSchemaParticle next() {
+            return children.hasNext() ? children.next() : null;
+        }
+
+        void exit() {
+            // 5. Notify the visitors we are exiting the group.
+            for (XmlSchemaVisitor visitor : visitors) {
+                if (group instanceof XmlSchemaAll) {
+                    visitor.onExitAllGroup((XmlSchemaAll)group);
+                } else if (group instanceof XmlSchemaChoice) {
+                    visitor.onExitChoiceGroup((XmlSchemaChoice)group);
+                } else {
+                    visitor.onExitSequenceGroup((XmlSchemaSequence)group);
+                }
             }
         }
     }
@@ -559,6 +698,17 @@ public final class XmlSchemaWalker {
         return copy;
     }
 
+    /**
+     * The stronger of the two answers of the visitors; a visitor that returns
+     * <code>null</code> lets the walk continue.
+     */
+    private static XmlSchemaWalkControl strongest(XmlSchemaWalkControl control, XmlSchemaWalkControl other) {
+        if ((other == null) || (other.compareTo(control) < 0)) {
+            return control;
+        }
+        return other;
+    }
+
     private static QName getElementQName(XmlSchemaElement element) {
         if (element.isRef()) {
             return element.getRefBase().getTargetQName();
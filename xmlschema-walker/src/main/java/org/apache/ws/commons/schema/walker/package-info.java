@@ -31,5 +31,12 @@
  * Instances of {@link org.apache.ws.commons.schema.walker.XmlSchemaVisitor}
  * can be attached to receive notifications when each element, attribute, and
  * group (subsitution group, choice group, all group, or sequence) is reached.
+ *
+ * <h2>Walking several roots</h2>
+ *
+ * {@link org.apache.ws.commons.schema.walker.XmlSchemaParallelWalker} walks
+ * several root elements at the same time on an
+ * {@link java.util.concurrent.Executor}, with a visitor for each root from an
+ * {@link org.apache.ws.commons.schema.walker.XmlSchemaVisitorFactory}.
  */
 package org.apache.ws.commons.schema.walker;
\ No newline at end of file
@@ -0,0 +1,155 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ws.commons.schema.walker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.ws.commons.schema.XmlSchema;
+import org.apache.ws.commons.schema.XmlSchemaAll;
+import org.apache.ws.commons.schema.XmlSchemaAny;
+import org.apache.ws.commons.schema.XmlSchemaAnyAttribute;
+import org.apache.ws.commons.schema.XmlSchemaChoice;
+import org.apache.ws.commons.schema.XmlSchemaCollection;
+import org.apache.ws.commons.schema.XmlSchemaComplexType;
+import org.apache.ws.commons.schema.XmlSchemaElement;
+import org.apache.ws.commons.schema.XmlSchemaSequence;
+import org.junit.Test;
+
+public class TestDeepSchemaWalk {
+
+    private static final int DEPTH = 20000;
+    private static final long STACK_SIZE = 256 * 1024;
+
+    /**
+     * Walks elements nested far deeper than a small thread stack could hold
+     * if the walk recursed.
+     */
+    @Test
+    public void testDeepNesting() throws Throwable {
+        final XmlSchemaCollection collection = new XmlSchemaCollection();
+        final XmlSchema schema = new XmlSchema("urn:deep", collection);
+
+        final XmlSchemaElement root = new XmlSchemaElement(schema, true);
+        root.setName("root");
+        XmlSchemaElement parent = root;
+        for (int i = 1; i < DEPTH; i++) {
+            final XmlSchemaElement child = new XmlSchemaElement(schema, false);
+            child.setName("child" + i);
+            parent.setType(sequenceOf(schema, child));
+            parent = child;
+        }
+        parent.setType(sequenceOf(schema, null));
+
+        final CountingVisitor visitor = new CountingVisitor();
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread thread = new Thread(null, new Runnable() {
+            public void run() {
+                try {
+                    new XmlSchemaWalker(collection, visitor).walk(root);
+                } catch (Throwable t) {
+                    failure.set(t);
+                }
+            }
+        }, "deep walk", STACK_SIZE);
+        thread.start();
+        thread.join();
+
+        assertNull(failure.get());
+        assertEquals(DEPTH, visitor.elements);
+        assertEquals(DEPTH, visitor.sequences);
+        assertEquals(0, visitor.depth);
+        assertEquals(2 * DEPTH, visitor.maxDepth);
+    }
+
+    private static XmlSchemaComplexType sequenceOf(XmlSchema schema, XmlSchemaElement child) {
+        final XmlSchemaSequence seq = new XmlSchemaSequence();
+        if (child != null) {
+            seq.getItems().add(child);
+        }
+        final XmlSchemaComplexType type = new XmlSchemaComplexType(schema, false);
+        type.setParticle(seq);
+        return type;
+    }
+
+    private static final class CountingVisitor implements XmlSchemaVisitor {
+        int elements;
+        int sequences;
+        int depth;
+        int maxDepth;
+
+        private void enter() {
+            depth++;
+            maxDepth = Math.max(depth, maxDepth);
+        }
+
+        public void onEnterElement(XmlSchemaElement element, XmlSchemaTypeInfo typeInfo,
+                                   boolean previouslyVisited) {
+            elements++;
+            enter();
+        }
+
+        public void onExitElement(XmlSchemaElement element, XmlSchemaTypeInfo typeInfo,
+                                  boolean previouslyVisited) {
+            depth--;
+        }
+
+        public void onVisitAttribute(XmlSchemaElement element, XmlSchemaAttrInfo attrInfo) {
+        }
+
+        public void onEndAttributes(XmlSchemaElement element, XmlSchemaTypeInfo typeInfo) {
+        }
+
+        public void onEnterSubstitutionGroup(XmlSchemaElement base) {
+        }
+
+        public void onExitSubstitutionGroup(XmlSchemaElement base) {
+        }
+
+        public void onEnterAllGroup(XmlSchemaAll all) {
+        }
+
+        public void onExitAllGroup(XmlSchemaAll all) {
+        }
+
+        public void onEnterChoiceGroup(XmlSchemaChoice choice) {
+        }
+
+        public void onExitChoiceGroup(XmlSchemaChoice choice) {
+        }
+
+        public void onEnterSequenceGroup(XmlSchemaSequence seq) {
+            sequences++;
+            enter();
+        }
+
+        public void onExitSequenceGroup(XmlSchemaSequence seq) {
+            depth--;
+        }
+
+        public void onVisitAny(XmlSchemaAny any) {
+        }
+
+        public void onVisitAnyAttribute(XmlSchemaElement element, XmlSchemaAnyAttribute anyAttr) {
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ws.commons.schema.walker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.xml.transform.stream.StreamSource;
+
+import org.apache.ws.commons.schema.XmlSchema;
+import org.apache.ws.commons.schema.XmlSchemaCollection;
+import org.apache.ws.commons.schema.XmlSchemaElement;
+import org.apache.ws.commons.schema.testutils.UtilsForTests;
+import org.apache.ws.commons.schema.walker.TestXmlSchemaScopeCache.RecordingVisitor;
+import org.junit.Test;
+
+public class TestXmlSchemaParallelWalker {
+
+    private static final XmlSchemaVisitorFactory<RecordingVisitor> RECORDING =
+        new XmlSchemaVisitorFactory<RecordingVisitor>() {
+            public RecordingVisitor newVisitor(XmlSchemaElement root) {
+                return new RecordingVisitor();
+            }
+        };
+
+    /**
+     * The walk of each root gives the same result as a walk by a new walker,
+     * in the order of the roots.
+     */
+    @Test
+    public void testWalkAllRoots() throws Exception {
+        final XmlSchemaCollection collection = read("complex_schema.xsd");
+        final List<XmlSchemaElement> roots = new ArrayList<XmlSchemaElement>();
+        for (XmlSchema schema : collection.getXmlSchemas()) {
+            if ("urn:avro:complex_schema".equals(schema.getTargetNamespace())) {
+                roots.addAll(schema.getElements().values());
+            }
+        }
+        assertTrue(roots.size() > 1);
+
+        final List<String> expected = new ArrayList<String>();
+        for (XmlSchemaElement root : roots) {
+            RecordingVisitor visitor = new RecordingVisitor();
+            new XmlSchemaWalker(collection, visitor).walk(root);
+            expected.add(visitor.toString());
+        }
+
+        final XmlSchemaParallelWalker walker = new XmlSchemaParallelWalker(collection);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (int i = 0; i < 4; i++) {
+                final List<String> actual = new ArrayList<String>();
+                for (RecordingVisitor visitor : walker.walk(roots, RECORDING, executor)) {
+                    actual.add(visitor.toString());
+                }
+                assertEquals(expected, actual);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * The exception of a failed walk is thrown to the caller.
+     */
+    @Test
+    public void testFailedWalk() throws Exception {
+        final XmlSchemaCollection collection = new XmlSchemaCollection();
+        final XmlSchemaElement untyped = new XmlSchemaElement(new XmlSchema("urn:failed", collection), true);
+        untyped.setName("untyped");
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            new XmlSchemaParallelWalker(collection).walk(Collections.singletonList(untyped), RECORDING,
+                                                         executor);
+            fail("An element without a type cannot be walked.");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("untyped"));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static XmlSchemaCollection read(String name) throws Exception {
+        File file = UtilsForTests.buildFile("src", "test", "resources", name);
+        FileReader fileReader = new FileReader(file);
+        try {
+            XmlSchemaCollection collection = new XmlSchemaCollection();
+            collection.read(new StreamSource(fileReader, file.getAbsolutePath()));
+            return collection;
+        } finally {
+            fileReader.close();
+        }
+    }
+}
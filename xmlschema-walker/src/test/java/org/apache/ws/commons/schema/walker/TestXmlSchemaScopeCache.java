@@ -0,0 +1,254 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ws.commons.schema.walker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.xml.namespace.QName;
+import javax.xml.transform.stream.StreamSource;
+
+import org.apache.ws.commons.schema.XmlSchemaAll;
+import org.apache.ws.commons.schema.XmlSchemaAny;
+import org.apache.ws.commons.schema.XmlSchemaAnyAttribute;
+import org.apache.ws.commons.schema.XmlSchemaChoice;
+import org.apache.ws.commons.schema.XmlSchemaCollection;
+import org.apache.ws.commons.schema.XmlSchemaElement;
+import org.apache.ws.commons.schema.XmlSchemaSequence;
+import org.apache.ws.commons.schema.testutils.UtilsForTests;
+import org.junit.Test;
+
+public class TestXmlSchemaScopeCache {
+
+    private static final QName ROOT = new QName("http://avro.apache.org/AvroTest", "root");
+
+    /**
+     * Walkers on several threads that share a cache see the same walk as a
+     * walker with its own scopes, and the scopes are computed once.
+     */
+    @Test
+    public void testSharedAcrossThreads() throws Exception {
+        final XmlSchemaCollection collection = read("test_schema.xsd");
+        final XmlSchemaElement root = collection.getElementByQName(ROOT);
+
+        final RecordingVisitor expected = new RecordingVisitor();
+        new XmlSchemaWalker(collection, expected).walk(root);
+        assertTrue(expected.toString().startsWith("enter " + ROOT));
+
+        final XmlSchemaScopeCache cache = new XmlSchemaScopeCache(collection);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> walks = new ArrayList<Future<String>>();
+            for (int i = 0; i < 16; i++) {
+                walks.add(executor.submit(new Callable<String>() {
+                    public String call() {
+                        RecordingVisitor visitor = new RecordingVisitor();
+                        XmlSchemaWalker walker = new XmlSchemaWalker(cache, visitor);
+                        walker.walk(root);
+                        walker.clear();
+                        walker.walk(root);
+                        return visitor.toString();
+                    }
+                }));
+            }
+            for (Future<String> walk : walks) {
+                assertEquals(expected.toString() + expected.toString(), walk.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        final int computed = cache.getScopes(null).size();
+        assertTrue(computed > 0);
+        new XmlSchemaWalker(cache).walk(root);
+        assertEquals(computed, cache.getScopes(null).size());
+    }
+
+    @Test
+    public void testUserRecognizedTypes() throws Exception {
+        final XmlSchemaCollection collection = read("test_schema.xsd");
+        final XmlSchemaElement root = collection.getElementByQName(ROOT);
+        final XmlSchemaScopeCache cache = new XmlSchemaScopeCache(collection);
+
+        final RecordingVisitor expected = new RecordingVisitor();
+        XmlSchemaWalker walker = new XmlSchemaWalker(collection, expected);
+        walker.setUserRecognizedTypes(Collections.singleton(XmlSchemaBaseSimpleType.STRING.getQName()));
+        walker.walk(root);
+
+        final RecordingVisitor actual = new RecordingVisitor();
+        walker = new XmlSchemaWalker(cache, actual);
+        walker.setUserRecognizedTypes(Collections.singleton(XmlSchemaBaseSimpleType.STRING.getQName()));
+        walker.walk(root);
+        assertEquals(expected.toString(), actual.toString());
+
+        // the scopes are kept apart from those without user-recognized types
+        assertNotSame(cache.getScopes(null), cache.getScopes(walker.getUserRecognizedTypes()));
+        assertSame(cache.getScopes(walker.getUserRecognizedTypes()),
+                   cache.getScopes(Collections.singleton(XmlSchemaBaseSimpleType.STRING.getQName())));
+    }
+
+    /**
+     * The scopes of anonymous types are computed once, like those of named
+     * types, and the walk does not change.
+     */
+    @Test
+    public void testAnonymousTypes() throws Exception {
+        final String ns = "urn:avro:complex_schema";
+        final XmlSchemaCollection collection = read("complex_schema.xsd");
+        final XmlSchemaElement root = collection.getElementByQName(new QName(ns, "root"));
+        final XmlSchemaElement realRoot = collection.getElementByQName(new QName(ns, "realRoot"));
+        assertNull(realRoot.getSchemaType().getQName());
+
+        final RecordingVisitor expected = new RecordingVisitor();
+        new XmlSchemaWalker(collection, expected).walk(root);
+
+        final XmlSchemaScopeCache cache = new XmlSchemaScopeCache(collection);
+        RecordingVisitor actual = new RecordingVisitor();
+        new XmlSchemaWalker(cache, actual).walk(root);
+        assertEquals(expected.toString(), actual.toString());
+
+        final XmlSchemaScopeCache.TypeScopes scopes = cache.getScopes(null);
+        final int computed = scopes.size();
+        final XmlSchemaScope scope = scopes.getScope(realRoot.getSchemaType());
+
+        actual = new RecordingVisitor();
+        new XmlSchemaWalker(cache, actual).walk(root);
+        assertEquals(expected.toString(), actual.toString());
+        assertEquals(computed, scopes.size());
+        assertSame(scope, scopes.getScope(realRoot.getSchemaType()));
+    }
+
+    private static XmlSchemaCollection read(String name) throws Exception {
+        File file = UtilsForTests.buildFile("src", "test", "resources", name);
+        FileReader fileReader = new FileReader(file);
+        try {
+            XmlSchemaCollection collection = new XmlSchemaCollection();
+            collection.read(new StreamSource(fileReader, file.getAbsolutePath()));
+            return collection;
+        } finally {
+            fileReader.close();
+        }
+    }
+
+    /**
+     * Records the walk as text.
+     */
+    static class RecordingVisitor implements XmlSchemaVisitor {
+        private final StringBuilder events = new StringBuilder();
+
+        @Override
+        public void onEnterElement(XmlSchemaElement element, XmlSchemaTypeInfo typeInfo,
+                                   boolean previouslyVisited) {
+            record("enter " + element.getQName() + " " + describe(typeInfo) + " " + previouslyVisited);
+        }
+
+        @Override
+        public void onExitElement(XmlSchemaElement element, XmlSchemaTypeInfo typeInfo,
+                                  boolean previouslyVisited) {
+            record("exit " + element.getQName());
+        }
+
+        @Override
+        public void onVisitAttribute(XmlSchemaElement element, XmlSchemaAttrInfo attrInfo) {
+            record("attribute " + attrInfo.getAttribute().getQName() + " " + describe(attrInfo.getType()));
+        }
+
+        @Override
+        public void onEndAttributes(XmlSchemaElement element, XmlSchemaTypeInfo typeInfo) {
+            record("end attributes");
+        }
+
+        @Override
+        public void onEnterSubstitutionGroup(XmlSchemaElement base) {
+            record("enter substitution group " + base.getQName());
+        }
+
+        @Override
+        public void onExitSubstitutionGroup(XmlSchemaElement base) {
+            record("exit substitution group");
+        }
+
+        @Override
+        public void onEnterAllGroup(XmlSchemaAll all) {
+            record("enter all");
+        }
+
+        @Override
+        public void onExitAllGroup(XmlSchemaAll all) {
+            record("exit all");
+        }
+
+        @Override
+        public void onEnterChoiceGroup(XmlSchemaChoice choice) {
+            record("enter choice");
+        }
+
+        @Override
+        public void onExitChoiceGroup(XmlSchemaChoice choice) {
+            record("exit choice");
+        }
+
+        @Override
+        public void onEnterSequenceGroup(XmlSchemaSequence seq) {
+            record("enter sequence");
+        }
+
+        @Override
+        public void onExitSequenceGroup(XmlSchemaSequence seq) {
+            record("exit sequence");
+        }
+
+        @Override
+        public void onVisitAny(XmlSchemaAny any) {
+            record("any");
+        }
+
+        @Override
+        public void onVisitAnyAttribute(XmlSchemaElement element, XmlSchemaAnyAttribute anyAttr) {
+            record("any attribute");
+        }
+
+        @Override
+        public String toString() {
+            return events.toString();
+        }
+
+        private void record(String event) {
+            events.append(event).append('\n');
+        }
+
+        private static String describe(XmlSchemaTypeInfo typeInfo) {
+            return (typeInfo == null) ? "null" : typeInfo + " " + typeInfo.getFacets();
+        }
+    }
+}
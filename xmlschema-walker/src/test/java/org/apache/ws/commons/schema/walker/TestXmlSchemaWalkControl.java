@@ -0,0 +1,180 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ws.commons.schema.walker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileReader;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+import javax.xml.transform.stream.StreamSource;
+
+import org.apache.ws.commons.schema.XmlSchemaAll;
+import org.apache.ws.commons.schema.XmlSchemaChoice;
+import org.apache.ws.commons.schema.XmlSchemaCollection;
+import org.apache.ws.commons.schema.XmlSchemaElement;
+import org.apache.ws.commons.schema.XmlSchemaSequence;
+import org.apache.ws.commons.schema.testutils.UtilsForTests;
+import org.apache.ws.commons.schema.walker.TestXmlSchemaScopeCache.RecordingVisitor;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestXmlSchemaWalkControl {
+
+    private static final String NS = "http://avro.apache.org/AvroTest";
+
+    private XmlSchemaCollection collection;
+    private XmlSchemaElement root;
+    private List<String> fullWalk;
+
+    @Before
+    public void setUp() throws Exception {
+        File file = UtilsForTests.buildFile("src", "test", "resources", "test_schema.xsd");
+        FileReader fileReader = new FileReader(file);
+        try {
+            collection = new XmlSchemaCollection();
+            collection.read(new StreamSource(fileReader, file.getAbsolutePath()));
+        } finally {
+            fileReader.close();
+        }
+        root = collection.getElementByQName(new QName(NS, "root"));
+
+        RecordingVisitor visitor = new RecordingVisitor();
+        new XmlSchemaWalker(collection, visitor).walk(root);
+        fullWalk = events(visitor);
+    }
+
+    /**
+     * A skipped element is exited right after it is entered, the walk goes on
+     * with its siblings, and it is not reported as previously visited later.
+     */
+    @Test
+    public void testSkipElement() {
+        final ControllingVisitor visitor =
+            new ControllingVisitor("record", null, XmlSchemaWalkControl.SKIP_CHILDREN);
+        new XmlSchemaWalker(collection, visitor).walk(root);
+        final List<String> events = events(visitor);
+
+        int skipped = 0;
+        boolean substituteWalked = false;
+        for (int i = 0; i < events.size(); i++) {
+            if (events.get(i).startsWith("enter {" + NS + "}record ")) {
+                assertTrue(events.get(i).endsWith(" false"));
+                assertEquals("exit {" + NS + "}record", events.get(i + 1));
+                skipped++;
+            } else if (events.get(i).startsWith("enter {" + NS + "}map ")) {
+                // the substitute of the skipped record is walked
+                substituteWalked |= !events.get(i + 1).equals("exit {" + NS + "}map");
+            }
+        }
+        assertTrue(skipped > 1);
+        assertTrue(substituteWalked);
+        assertTrue(events.size() < fullWalk.size());
+        assertEquals(fullWalk.get(fullWalk.size() - 1), events.get(events.size() - 1));
+    }
+
+    /**
+     * The children of a skipped group are not walked.
+     */
+    @Test
+    public void testSkipGroup() {
+        final ControllingVisitor visitor =
+            new ControllingVisitor(null, XmlSchemaChoice.class, XmlSchemaWalkControl.SKIP_CHILDREN);
+        new XmlSchemaWalker(collection, visitor).walk(root);
+        final List<String> events = events(visitor);
+
+        final List<String> expected = fullWalk.subList(0, fullWalk.indexOf("enter choice") + 1);
+        assertEquals(expected, events.subList(0, expected.size()));
+        assertEquals(Arrays.asList("exit choice", "exit sequence", "exit {" + NS + "}root"),
+                     events.subList(expected.size(), events.size()));
+    }
+
+    /**
+     * A stopped walk ends with the entry that stopped it, for all of the
+     * visitors.
+     */
+    @Test
+    public void testStop() {
+        final RecordingVisitor other = new RecordingVisitor();
+        final ControllingVisitor visitor = new ControllingVisitor("map", null, XmlSchemaWalkControl.STOP);
+        new XmlSchemaWalker(collection, other).addVisitor(visitor).walk(root);
+
+        int stop = 0;
+        while (!fullWalk.get(stop).startsWith("enter {" + NS + "}map ")) {
+            stop++;
+        }
+        final List<String> expected = fullWalk.subList(0, stop + 1);
+        assertEquals(expected, events(visitor));
+        assertEquals(expected, events(other));
+        assertFalse(events(visitor).contains("exit {" + NS + "}root"));
+    }
+
+    private static List<String> events(RecordingVisitor visitor) {
+        return Arrays.asList(visitor.toString().split("\n"));
+    }
+
+    /**
+     * Records the walk, and controls it when entering the elements of a name
+     * or the groups of a kind.
+     */
+    private static final class ControllingVisitor extends RecordingVisitor
+        implements XmlSchemaControllingVisitor {
+
+        private final String name;
+        private final Class<?> group;
+        private final XmlSchemaWalkControl control;
+
+        ControllingVisitor(String name, Class<?> group, XmlSchemaWalkControl control) {
+            this.name = name;
+            this.group = group;
+            this.control = control;
+        }
+
+        @Override
+        public XmlSchemaWalkControl controlElement(XmlSchemaElement element, XmlSchemaTypeInfo typeInfo,
+                                                   boolean previouslyVisited) {
+            return element.getName().equals(name) ? control : XmlSchemaWalkControl.CONTINUE;
+        }
+
+        @Override
+        public XmlSchemaWalkControl controlAllGroup(XmlSchemaAll all) {
+            return controlGroup(all);
+        }
+
+        @Override
+        public XmlSchemaWalkControl controlChoiceGroup(XmlSchemaChoice choice) {
+            return controlGroup(choice);
+        }
+
+        @Override
+        public XmlSchemaWalkControl controlSequenceGroup(XmlSchemaSequence seq) {
+            return controlGroup(seq);
+        }
+
+        private XmlSchemaWalkControl controlGroup(Object entered) {
+            return group != null && group.isInstance(entered) ? control : XmlSchemaWalkControl.CONTINUE;
+        }
+    }
+}